@@ -0,0 +1,206 @@
+package io.hostilerobot.ceramicrelief.collection.heap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * binary min-heap of int IDs in [0, capacity) keyed by a double, backed by flat arrays.
+ * Each ID knows its position in the heap, so its key can be changed or it can be removed in O(log n)
+ * without allocating, unlike an object heap where each entry is a node.
+ *
+ * Entries with equal keys are ordered by an optional long tie-breaker, then by ID, so the order in which they are
+ * polled is deterministic.
+ */
+public final class IndexedDoubleHeap {
+    private final int[] heap;        // IDs in heap order
+    private final double[] keys;     // key of each ID
+    private final long[] ties;       // tie-breaker of each ID, compared when keys are equal
+    private final int[] positions;   // position of each ID in heap, or -1 if absent
+    private int size = 0;
+
+    public IndexedDoubleHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new double[capacity];
+        ties = new long[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return positions.length;
+    }
+
+    public boolean contains(int id) {
+        return positions[id] >= 0;
+    }
+
+    /**
+     * @return the key of id. Only meaningful while id is in the heap
+     */
+    public double key(int id) {
+        return keys[id];
+    }
+
+    /**
+     * @return the tie-breaker of id. Only meaningful while id is in the heap
+     */
+    public long tie(int id) {
+        return ties[id];
+    }
+
+    /**
+     * adds id with the given key, or changes its key if it is already in the heap
+     */
+    public void insert(int id, double key) {
+        insert(id, key, 0L);
+    }
+
+    /**
+     * adds id with the given key and tie-breaker, or changes them if it is already in the heap
+     */
+    public void insert(int id, double key, long tie) {
+        int position = positions[id];
+        if(position >= 0) {
+            update(id, key, tie);
+            return;
+        }
+        keys[id] = key;
+        ties[id] = tie;
+        heap[size] = id;
+        positions[id] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * changes the key of an id that is already in the heap
+     */
+    public void update(int id, double key) {
+        update(id, key, 0L);
+    }
+
+    /**
+     * changes the key and tie-breaker of an id that is already in the heap
+     */
+    public void update(int id, double key, long tie) {
+        int position = positions[id];
+        if(position < 0) {
+            throw new NoSuchElementException("id " + id + " is not in the heap");
+        }
+        double oldKey = keys[id];
+        long oldTie = ties[id];
+        keys[id] = key;
+        ties[id] = tie;
+        if(key < oldKey || (key == oldKey && tie < oldTie)) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    /**
+     * removes id if it is in the heap
+     * @return true if it was in the heap
+     */
+    public boolean remove(int id) {
+        int position = positions[id];
+        if(position < 0) {
+            return false;
+        }
+        positions[id] = -1;
+        int last = heap[--size];
+        if(position < size) {
+            heap[position] = last;
+            positions[last] = position;
+            siftDown(position);
+            siftUp(positions[last]);
+        }
+        return true;
+    }
+
+    /**
+     * @return ID with the lowest key
+     */
+    public int peek() {
+        if(size == 0) {
+            throw new NoSuchElementException();
+        }
+        return heap[0];
+    }
+
+    public double peekKey() {
+        return keys[peek()];
+    }
+
+    /**
+     * removes and returns the ID with the lowest key
+     */
+    public int poll() {
+        int id = peek();
+        remove(id);
+        return id;
+    }
+
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private boolean less(int a, int b) {
+        double keyA = keys[a];
+        double keyB = keys[b];
+        if(keyA != keyB) {
+            return keyA < keyB;
+        }
+        long tieA = ties[a];
+        long tieB = ties[b];
+        return tieA < tieB || (tieA == tieB && a < b);
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentId = heap[parent];
+            if(!less(id, parentId)) {
+                break;
+            }
+            heap[position] = parentId;
+            positions[parentId] = position;
+            position = parent;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        int half = size >>> 1;
+        while(position < half) {
+            int child = 2 * position + 1;
+            int childId = heap[child];
+            int right = child + 1;
+            if(right < size && less(heap[right], childId)) {
+                child = right;
+                childId = heap[child];
+            }
+            if(!less(childId, id)) {
+                break;
+            }
+            heap[position] = childId;
+            positions[childId] = position;
+            position = child;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+}
@@ -0,0 +1,97 @@
+package io.hostilerobot.ceramicrelief.drivers.benchmark;
+
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.Orientation2D;
+
+import java.util.Random;
+
+/**
+ * measures time per call of {@link Orientation2D#orient2d} against the plain cross product it replaces.
+ *
+ * Two sets of points are timed. In the first, the points are spread out, so the floating point filter settles every call.
+ * In the second, the third point is on the line through the first two, rounded to the nearest double, so most calls
+ * fall through to the exact stages. For each set we also count how often the plain cross product gets the sign wrong.
+ *
+ * usage: OrientationBenchmark [points] [iterations]
+ */
+public class OrientationBenchmark {
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) {
+        int points = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(1);
+        double[] spread = new double[points * 6];
+        double[] inLine = new double[points * 6];
+        for(int i = 0; i < points * 6; i += 6) {
+            for(int j = 0; j < 6; j++) {
+                spread[i + j] = random.nextDouble() * 1000.0;
+            }
+            double t = random.nextDouble() * 3.0 - 1.0;
+            inLine[i] = spread[i];
+            inLine[i + 1] = spread[i + 1];
+            inLine[i + 2] = spread[i + 2];
+            inLine[i + 3] = spread[i + 3];
+            inLine[i + 4] = spread[i] + t * (spread[i + 2] - spread[i]);
+            inLine[i + 5] = spread[i + 1] + t * (spread[i + 3] - spread[i + 1]);
+        }
+
+        for(int i = 0; i < WARMUP; i++) {
+            robust(spread);
+            robust(inLine);
+            plain(spread);
+            plain(inLine);
+        }
+
+        System.out.printf("%d points%n", points);
+        System.out.printf("spread: %d wrong signs from the cross product%n", wrongSigns(spread));
+        System.out.printf("in line: %d wrong signs from the cross product%n", wrongSigns(inLine));
+        for(int i = 0; i < iterations; i++) {
+            System.out.printf("run %d: spread %.2f ns robust, %.2f ns plain; in line %.2f ns robust, %.2f ns plain%n", i,
+                    time(spread, true), time(spread, false), time(inLine, true), time(inLine, false));
+        }
+    }
+
+    private static double time(double[] coords, boolean robust) {
+        long start = System.nanoTime();
+        int sum = robust ? robust(coords) : plain(coords);
+        long elapsed = System.nanoTime() - start;
+        if(sum == Integer.MIN_VALUE) {
+            // keeps the loop from being dropped, never happens
+            System.out.println(sum);
+        }
+        return (double) elapsed / (coords.length / 6);
+    }
+
+    private static int robust(double[] c) {
+        int sum = 0;
+        for(int i = 0; i < c.length; i += 6) {
+            sum += (int) Math.signum(Orientation2D.orient2d(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5]));
+        }
+        return sum;
+    }
+
+    private static int plain(double[] c) {
+        int sum = 0;
+        for(int i = 0; i < c.length; i += 6) {
+            sum += (int) Math.signum(cross(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5]));
+        }
+        return sum;
+    }
+
+    private static int wrongSigns(double[] c) {
+        int wrong = 0;
+        for(int i = 0; i < c.length; i += 6) {
+            double robust = Orientation2D.orient2d(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5]);
+            double plain = cross(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5]);
+            if(Math.signum(robust) != Math.signum(plain)) {
+                wrong++;
+            }
+        }
+        return wrong;
+    }
+
+    private static double cross(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (ax - cx) * (by - cy) - (ay - cy) * (bx - cx);
+    }
+}
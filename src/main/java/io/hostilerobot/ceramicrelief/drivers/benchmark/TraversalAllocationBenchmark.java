@@ -0,0 +1,75 @@
+package io.hostilerobot.ceramicrelief.drivers.benchmark;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.DFSMeshPartitionTraversal;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.PartitionedMeshTraversal;
+import io.hostilerobot.ceramicrelief.texture.projection.ProjectionState;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * measures time and bytes allocated per face when partitioning a mesh with {@link DFSMeshPartitionTraversal}.
+ *
+ * The mesh is a closed tube of (rings x segments) quads, each split into two faces. Runs a few warmup passes first,
+ * so only steady-state allocation is counted. Each projection sizes its own traversal buffers once, which is counted.
+ *
+ * usage: TraversalAllocationBenchmark [rings] [segments] [iterations]
+ */
+public class TraversalAllocationBenchmark {
+    private static final int WARMUP = 3;
+
+    public static void main(String[] args) {
+        int rings = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int segments = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        QMesh mesh = tube(rings, segments).freeze();
+        PartitionedMeshTraversal traversal = new PartitionedMeshTraversal(new DFSMeshPartitionTraversal());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+
+        for(int i = 0; i < WARMUP; i++) {
+            traversal.projectAll(new ProjectionState(mesh, Map.of()));
+        }
+
+        System.out.printf("%d faces, %d vertices%n", mesh.faceCount(), mesh.vertexCount());
+        for(int i = 0; i < iterations; i++) {
+            // output lists are sized up front, so they're allocated here rather than during the traversal
+            ProjectionState state = new ProjectionState(mesh, Map.of());
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            int partitions = traversal.projectAll(state).size();
+            long elapsed = System.nanoTime() - start;
+            long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            System.out.printf("run %d: %d partitions, %.1f ms, %.1f bytes/face%n",
+                    i, partitions, elapsed / 1e6, (double) bytes / mesh.faceCount());
+        }
+    }
+
+    private static QMesh tube(int rings, int segments) {
+        double[] vertices = new double[(rings + 1) * segments * 3];
+        for(int ring = 0; ring <= rings; ring++) {
+            for(int segment = 0; segment < segments; segment++) {
+                double angle = 2 * Math.PI * segment / segments;
+                int v = (ring * segments + segment) * 3;
+                vertices[v] = Math.cos(angle);
+                vertices[v + 1] = Math.sin(angle);
+                vertices[v + 2] = ring * (2 * Math.PI / segments);
+            }
+        }
+        int[] faces = new int[rings * segments * 6];
+        int f = 0;
+        for(int ring = 0; ring < rings; ring++) {
+            for(int segment = 0; segment < segments; segment++) {
+                int a = ring * segments + segment;
+                int b = ring * segments + (segment + 1) % segments;
+                int c = a + segments;
+                int d = b + segments;
+                faces[f++] = a; faces[f++] = b; faces[f++] = d;
+                faces[f++] = a; faces[f++] = d; faces[f++] = c;
+            }
+        }
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+}
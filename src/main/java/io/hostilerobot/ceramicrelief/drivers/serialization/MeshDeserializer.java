@@ -27,7 +27,13 @@ public class MeshDeserializer extends StdDeserializer<QMesh> {
         QVertex3D[] vertices = ctxt.readTreeAsValue(node.get("vertices"), QVertex3D[].class);
         int[] faces = ctxt.readTreeAsValue(node.get("faces"), int[].class);
 
-
+        double[] xyz = new double[vertices.length * 3];
+        for(int v = 0; v < vertices.length; v++) {
+            xyz[v * 3] = vertices[v].getX();
+            xyz[v * 3 + 1] = vertices[v].getY();
+            xyz[v * 3 + 2] = vertices[v].getZ();
+        }
+        intoValue.setVertices(xyz, faces);
 
         return intoValue;
     }
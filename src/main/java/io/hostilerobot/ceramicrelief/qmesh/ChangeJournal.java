@@ -0,0 +1,120 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * modification version of a mesh, and a journal of which faces changed at each version.
+ *
+ * Consumers remember the version they last synced at, and later ask for the faces that changed since then.
+ * Each face is only reported once per query, at its most recent change. Stale entries for a face that changed
+ * again later are dropped when the journal grows, so it stays within a small multiple of the face count.
+ */
+final class ChangeJournal {
+    private long version;
+    // changes at or before this version are not in the journal, so everything should be treated as changed
+    private long resetVersion;
+
+    private long[] faceVersions = new long[16]; // most recent version each face changed at
+    private int[] faces = new int[16];
+    private long[] versions = new long[16];    // ascending
+    private int size = 0;
+
+    ChangeJournal() {
+        this(0);
+    }
+
+    /**
+     * starts at the given version with no known history, e.g. for a snapshot of another mesh
+     */
+    ChangeJournal(long version) {
+        this.version = version;
+        this.resetVersion = version;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * starts a new version
+     */
+    long advance() {
+        return ++version;
+    }
+
+    /**
+     * forgets all changes, e.g. when the whole mesh is replaced. Any earlier version reports every face as changed
+     */
+    void reset() {
+        resetVersion = ++version;
+        size = 0;
+        Arrays.fill(faceVersions, 0L);
+    }
+
+    /**
+     * @return true if the changes since the given version are known
+     */
+    boolean covers(long since) {
+        return since >= resetVersion;
+    }
+
+    /**
+     * records that face changed in the current version
+     */
+    void markFace(int face) {
+        if(face >= faceVersions.length) {
+            faceVersions = Arrays.copyOf(faceVersions, Math.max(face + 1, faceVersions.length + (faceVersions.length >> 1)));
+        }
+        if(faceVersions[face] == version) {
+            return; // already marked in this version
+        }
+        faceVersions[face] = version;
+        if(size == faces.length) {
+            compact();
+        }
+        faces[size] = face;
+        versions[size] = version;
+        size++;
+    }
+
+    // drop entries that are superseded by a later change to the same face, then grow if that didn't free enough
+    private void compact() {
+        int write = 0;
+        for(int read = 0; read < size; read++) {
+            if(faceVersions[faces[read]] == versions[read]) {
+                faces[write] = faces[read];
+                versions[write] = versions[read];
+                write++;
+            }
+        }
+        size = write;
+        if(size > faces.length / 2) {
+            faces = Arrays.copyOf(faces, faces.length << 1);
+            versions = Arrays.copyOf(versions, versions.length << 1);
+        }
+    }
+
+    /**
+     * visits each face that changed after the given version once. Only valid if {@link #covers} the version
+     */
+    void forEachChangedSince(long since, IntConsumer action) {
+        // versions are ascending, so find the first entry after since
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(versions[mid] <= since) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for(int idx = low; idx < size; idx++) {
+            int face = faces[idx];
+            if(faceVersions[face] == versions[idx]) {
+                action.accept(face);
+            }
+        }
+    }
+}
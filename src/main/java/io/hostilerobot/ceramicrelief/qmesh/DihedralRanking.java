@@ -0,0 +1,83 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.stream.IntStream;
+
+/**
+ * -cos(theta) between the unit normals of each pair of adjacent faces, aligned with the slots of a {@link FaceAdjacency}.
+ *
+ * This ranges from -1 for faces that are coplanar to 1 for faces that fold back onto each other, so ordering by it
+ * lays down the flattest neighbors first. Computed for every slot at once in parallel, then patched for the faces
+ * that changed since, so repeated projections of the same mesh don't recompute it.
+ */
+public final class DihedralRanking {
+    private final FaceAdjacency adjacency;
+    private final double[] ranks;
+    // mesh version the ranks are up to date with
+    private long version;
+
+    private DihedralRanking(FaceAdjacency adjacency, double[] ranks, long version) {
+        this.adjacency = adjacency;
+        this.ranks = ranks;
+        this.version = version;
+    }
+
+    static DihedralRanking of(FaceAdjacency adjacency, FaceNormals normals, long version) {
+        double[] ranks = new double[adjacency.slotCount()];
+        IntStream.range(0, adjacency.faceCount()).parallel().forEach(face -> {
+            for(int slot = adjacency.start(face), end = adjacency.end(face); slot < end; slot++) {
+                ranks[slot] = rank(normals, face, adjacency.neighbor(slot));
+            }
+        });
+        return new DihedralRanking(adjacency, ranks, version);
+    }
+
+    private static double rank(FaceNormals normals, int face1, int face2) {
+        // the unit normals are precomputed, so cos(theta) is just their dot product
+        double cosTheta = normals.unitX(face1) * normals.unitX(face2)
+                + normals.unitY(face1) * normals.unitY(face2)
+                + normals.unitZ(face1) * normals.unitZ(face2);
+        return -cosTheta;
+    }
+
+    /**
+     * recomputes the slots on either side of a face whose normal changed
+     */
+    void update(FaceNormals normals, int face) {
+        for(int slot = adjacency.start(face), end = adjacency.end(face); slot < end; slot++) {
+            int other = adjacency.neighbor(slot);
+            double rank = rank(normals, face, other);
+            ranks[slot] = rank;
+            ranks[adjacency.slotOf(other, face)] = rank;
+        }
+    }
+
+    long version() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    public FaceAdjacency getAdjacency() {
+        return adjacency;
+    }
+
+    /**
+     * @return -cos(theta) between the face that owns slot and {@code getAdjacency().neighbor(slot)}
+     */
+    public double rank(int slot) {
+        return ranks[slot];
+    }
+
+    /**
+     * @return -cos(theta) between two adjacent faces
+     */
+    public double rank(int face1, int face2) {
+        int slot = adjacency.slotOf(face1, face2);
+        if(slot < 0) {
+            throw new IllegalArgumentException("faces " + face1 + " and " + face2 + " are not adjacent");
+        }
+        return ranks[slot];
+    }
+}
@@ -0,0 +1,228 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.Arrays;
+
+/**
+ * open-addressing table from an undirected mesh edge to the faces that contain it.
+ *
+ * An edge (v1, v2) is identified by the packed key {@code min(v1, v2) << 32 | max(v1, v2)}, so (v1, v2) and (v2, v1)
+ * are the same edge. Each slot holds its first two faces inline, which covers every edge of a manifold mesh.
+ * Note that more than two faces may share an edge in 3d space; any faces past the second spill into a shared
+ * linked list that is only allocated once a non-manifold edge shows up.
+ *
+ * Slots are stable until the table is resized, and a resize only happens in {@link #insert}.
+ */
+final class EdgeTable {
+    private static final long EMPTY = -1L; // vertex IDs are non-negative, so no real key is negative
+    private static final int INLINE_FACES = 2;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] face0;
+    private int[] face1;
+    private int[] faceCounts;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    // spill list for faces past the second on an edge. null until needed
+    private int[] spillHead;
+    private int[] spillFace;
+    private int[] spillNext;
+    private int spillSize;
+
+    EdgeTable() {
+        this(16);
+    }
+
+    EdgeTable(int expectedEdges) {
+        int capacity = Integer.highestOneBit(Math.max((int) (expectedEdges / LOAD_FACTOR), 8) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        face0 = new int[capacity];
+        face1 = new int[capacity];
+        faceCounts = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    static long key(int v1, int v2) {
+        return v1 < v2
+                ? ((long) v1 << 32) | v2
+                : ((long) v2 << 32) | v1;
+    }
+
+    static int keyV1(long key) {
+        return (int) (key >>> 32);
+    }
+
+    static int keyV2(long key) {
+        return (int) key;
+    }
+
+    private static int mix(long key) {
+        // murmur3 finalizer, so neighboring vertex IDs don't land in neighboring slots
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe53b5a59L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * @return number of distinct edges in the table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of slots. Valid slots are in [0, capacity()), and may be empty
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean isUsed(int slot) {
+        return keys[slot] != EMPTY;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @return slot of the edge (v1, v2), or -1 if no face has this edge
+     */
+    int find(int v1, int v2) {
+        long key = key(v1, v2);
+        for(int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if(existing == key) {
+                return slot;
+            } else if(existing == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * finds the slot for edge (v1, v2), creating an empty entry if it does not exist yet
+     * @return slot of the edge
+     */
+    int insert(int v1, int v2) {
+        if(size >= resizeAt) {
+            rehash();
+        }
+        long key = key(v1, v2);
+        int slot = mix(key) & mask;
+        for(long existing; (existing = keys[slot]) != EMPTY; slot = (slot + 1) & mask) {
+            if(existing == key) {
+                return slot;
+            }
+        }
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldFace0 = face0;
+        int[] oldFace1 = face1;
+        int[] oldCounts = faceCounts;
+        int[] oldSpill = spillHead;
+        allocate(oldKeys.length << 1);
+        if(oldSpill != null) {
+            spillHead = new int[keys.length];
+            Arrays.fill(spillHead, -1);
+        }
+        for(int old = 0; old < oldKeys.length; old++) {
+            long key = oldKeys[old];
+            if(key == EMPTY) {
+                continue;
+            }
+            int slot = mix(key) & mask;
+            while(keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            face0[slot] = oldFace0[old];
+            face1[slot] = oldFace1[old];
+            faceCounts[slot] = oldCounts[old];
+            if(oldSpill != null) {
+                spillHead[slot] = oldSpill[old];
+            }
+        }
+    }
+
+    int faceCount(int slot) {
+        return faceCounts[slot];
+    }
+
+    /**
+     * @return the index-th face on the edge at slot, in the order faces were added
+     */
+    int face(int slot, int index) {
+        if(index == 0) {
+            return face0[slot];
+        } else if(index == 1) {
+            return face1[slot];
+        }
+        int node = spillHead[slot];
+        for(int skip = index - INLINE_FACES; skip > 0; skip--) {
+            node = spillNext[node];
+        }
+        return spillFace[node];
+    }
+
+    /**
+     * adds a face to the edge at slot. Adding the same face as the most recently added one is ignored, which
+     * happens for degenerate triangles that repeat a vertex
+     */
+    void addFace(int slot, int face) {
+        int count = faceCounts[slot];
+        if(count > 0 && face(slot, count - 1) == face) {
+            return;
+        }
+        if(count == 0) {
+            face0[slot] = face;
+        } else if(count == 1) {
+            face1[slot] = face;
+        } else {
+            spill(slot, face);
+        }
+        faceCounts[slot] = count + 1;
+    }
+
+    private void spill(int slot, int face) {
+        if(spillHead == null) {
+            spillHead = new int[keys.length];
+            Arrays.fill(spillHead, -1);
+            spillFace = new int[8];
+            spillNext = new int[8];
+        } else if(spillSize == spillFace.length) {
+            spillFace = Arrays.copyOf(spillFace, spillSize << 1);
+            spillNext = Arrays.copyOf(spillNext, spillSize << 1);
+        }
+        int node = spillSize++;
+        spillFace[node] = face;
+        spillNext[node] = -1;
+
+        // append to the tail to keep faces in insertion order. Only non-manifold edges get here, so lists are short
+        int tail = spillHead[slot];
+        if(tail == -1) {
+            spillHead[slot] = node;
+        } else {
+            while(spillNext[tail] != -1) {
+                tail = spillNext[tail];
+            }
+            spillNext[tail] = node;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.stream.IntStream;
+
+/**
+ * every edge of a {@link QMesh} and the faces on it, for finding open boundaries and non-manifold edges.
+ *
+ * Edges are numbered in ascending order of (lower vertex, higher vertex). The faces on edge e are
+ * {@code face(i)} for i in [start(e), end(e)), in ascending order. An edge with one face is on a boundary,
+ * and an edge with more than two faces is non-manifold. Edges and their faces are derived in one parallel sort
+ * and kept as flat arrays; the boundary and non-manifold edges are listed up front.
+ */
+public final class EdgeTopology {
+    private final SortedEdges edges;
+    private final int[] boundaryEdges;
+    private final int[] nonManifoldEdges;
+
+    private EdgeTopology(SortedEdges edges) {
+        this.edges = edges;
+        this.boundaryEdges = IntStream.range(0, edges.edgeCount()).parallel()
+                .filter(e -> edges.faceCount(e) == 1)
+                .toArray();
+        this.nonManifoldEdges = IntStream.range(0, edges.edgeCount()).parallel()
+                .filter(e -> edges.faceCount(e) > 2)
+                .toArray();
+    }
+
+    static EdgeTopology of(QMeshStorage storage) {
+        return new EdgeTopology(SortedEdges.of(storage));
+    }
+
+    public int edgeCount() {
+        return edges.edgeCount();
+    }
+
+    /**
+     * @return lower vertex of the edge
+     */
+    public int v1(int edge) {
+        return EdgeTable.keyV1(edges.key(edge));
+    }
+
+    /**
+     * @return higher vertex of the edge
+     */
+    public int v2(int edge) {
+        return EdgeTable.keyV2(edges.key(edge));
+    }
+
+    public int start(int edge) {
+        return edges.start(edge);
+    }
+
+    public int end(int edge) {
+        return edges.end(edge);
+    }
+
+    public int faceCount(int edge) {
+        return edges.faceCount(edge);
+    }
+
+    public int face(int idx) {
+        return edges.face(idx);
+    }
+
+    /**
+     * @return ID of the edge between v1 and v2 in either order, or -1 if no face has this edge
+     */
+    public int find(int v1, int v2) {
+        return edges.find(v1, v2);
+    }
+
+    /**
+     * @param corner 0 for (v1, v2), 1 for (v2, v3), 2 for (v3, v1)
+     * @return ID of the given side of face
+     */
+    public int edgeOf(int face, int corner) {
+        return edges.edgeOf(face, corner);
+    }
+
+    /**
+     * @return ID of an edge that both faces are on, or -1 if they don't share one
+     */
+    public int sharedEdge(int face1, int face2) {
+        for(int corner = 0; corner < 3; corner++) {
+            int edge = edges.edgeOf(face1, corner);
+            for(int idx = edges.start(edge), end = edges.end(edge); idx < end; idx++) {
+                if(edges.face(idx) == face2) {
+                    return edge;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public boolean isBoundary(int edge) {
+        return edges.faceCount(edge) == 1;
+    }
+
+    public boolean isNonManifold(int edge) {
+        return edges.faceCount(edge) > 2;
+    }
+
+    /**
+     * @return true if any side of face is non-manifold
+     */
+    public boolean touchesNonManifold(int face) {
+        return isNonManifold(edges.edgeOf(face, 0))
+                || isNonManifold(edges.edgeOf(face, 1))
+                || isNonManifold(edges.edgeOf(face, 2));
+    }
+
+    /**
+     * @return IDs of edges with exactly one face, ascending. The returned array must not be modified
+     */
+    public int[] boundaryEdges() {
+        return boundaryEdges;
+    }
+
+    /**
+     * @return IDs of edges with more than two faces, ascending. The returned array must not be modified
+     */
+    public int[] nonManifoldEdges() {
+        return nonManifoldEdges;
+    }
+
+    public boolean isManifold() {
+        return nonManifoldEdges.length == 0;
+    }
+
+    public boolean isClosed() {
+        return boundaryEdges.length == 0;
+    }
+}
@@ -0,0 +1,139 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * compressed sparse row index of faces that share an edge in a {@link QMesh}
+ *
+ * the neighbors of face f are {@code neighbor(slot)} for slot in [start(f), end(f)), in ascending order.
+ * Every adjacency appears twice, once in each direction, and a face is never its own neighbor.
+ * Slots are stable for the lifetime of the index, so per-adjacency data can be kept in flat arrays aligned to them.
+ *
+ * Iterate with a plain loop:
+ * <pre>
+ *     for(int slot = adjacency.start(face), end = adjacency.end(face); slot < end; slot++) {
+ *         int other = adjacency.neighbor(slot);
+ *     }
+ * </pre>
+ */
+public final class FaceAdjacency {
+    private final int[] offsets; // faceCount + 1 entries. neighbors of f are in [offsets[f], offsets[f + 1])
+    private final int[] neighbors;
+
+    FaceAdjacency(int[] offsets, int[] neighbors) {
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    public int faceCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return total number of slots. This is twice the number of adjacent face pairs
+     */
+    public int slotCount() {
+        return offsets[offsets.length - 1];
+    }
+
+    public int start(int face) {
+        return offsets[face];
+    }
+
+    public int end(int face) {
+        return offsets[face + 1];
+    }
+
+    public int degree(int face) {
+        return offsets[face + 1] - offsets[face];
+    }
+
+    public int neighbor(int slot) {
+        return neighbors[slot];
+    }
+
+    /**
+     * @return slot in the neighbors of face1 that points to face2, or -1 if they are not adjacent
+     */
+    public int slotOf(int face1, int face2) {
+        int slot = Arrays.binarySearch(neighbors, offsets[face1], offsets[face1 + 1], face2);
+        return slot >= 0 ? slot : -1;
+    }
+
+    public boolean areAdjacent(int face1, int face2) {
+        return slotOf(face1, face2) >= 0;
+    }
+
+    /**
+     * builds the index from the faces along each edge. Every pair of faces that share an edge are adjacent,
+     * including all pairs along a non-manifold edge. Faces that share more than one edge are only adjacent once.
+     */
+    static FaceAdjacency build(int faceCount, EdgeTable edges) {
+        // first pass: upper bound on each face's degree
+        int[] counts = new int[faceCount + 1];
+        for(int slot = 0; slot < edges.capacity(); slot++) {
+            int count;
+            if(!edges.isUsed(slot) || (count = edges.faceCount(slot)) < 2) {
+                continue;
+            }
+            for(int i = 0; i < count; i++) {
+                counts[edges.face(slot, i)] += count - 1;
+            }
+        }
+        int[] cursor = new int[faceCount + 1];
+        for(int face = 0; face < faceCount; face++) {
+            cursor[face + 1] = cursor[face] + counts[face];
+        }
+
+        // second pass: scatter neighbors into their face's range
+        int[] scattered = new int[cursor[faceCount]];
+        int[] fill = Arrays.copyOf(cursor, faceCount);
+        for(int slot = 0; slot < edges.capacity(); slot++) {
+            int count;
+            if(!edges.isUsed(slot) || (count = edges.faceCount(slot)) < 2) {
+                continue;
+            }
+            for(int i = 0; i < count; i++) {
+                int face = edges.face(slot, i);
+                for(int j = 0; j < count; j++) {
+                    if(i != j) {
+                        scattered[fill[face]++] = edges.face(slot, j);
+                    }
+                }
+            }
+        }
+        return compact(faceCount, cursor, scattered);
+    }
+
+    /**
+     * sorts each face's range and drops repeats and self references, then packs the ranges together
+     * @param ranges faceCount + 1 offsets into scattered
+     */
+    static FaceAdjacency compact(int faceCount, int[] ranges, int[] scattered) {
+        int[] unique = new int[faceCount + 1];
+        IntStream.range(0, faceCount).parallel().forEach(face -> {
+            int from = ranges[face];
+            int to = ranges[face + 1];
+            Arrays.sort(scattered, from, to);
+            int write = from;
+            for(int read = from; read < to; read++) {
+                int other = scattered[read];
+                if(other != face && (write == from || scattered[write - 1] != other)) {
+                    scattered[write++] = other;
+                }
+            }
+            unique[face + 1] = write - from;
+        });
+        for(int face = 0; face < faceCount; face++) {
+            unique[face + 1] += unique[face];
+        }
+        if(unique[faceCount] == scattered.length) {
+            return new FaceAdjacency(unique, scattered);
+        }
+        int[] neighbors = new int[unique[faceCount]];
+        IntStream.range(0, faceCount).parallel().forEach(face ->
+                System.arraycopy(scattered, ranges[face], neighbors, unique[face], unique[face + 1] - unique[face]));
+        return new FaceAdjacency(unique, neighbors);
+    }
+}
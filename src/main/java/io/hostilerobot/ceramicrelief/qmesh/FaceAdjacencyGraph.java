@@ -0,0 +1,290 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.jgrapht.Graph;
+import org.jgrapht.GraphType;
+import org.jgrapht.graph.AbstractGraph;
+import org.jgrapht.graph.DefaultGraphType;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * read-only JGraphT view of a {@link FaceAdjacency}, for callers that want to run graph algorithms over the mesh.
+ * V: face ID, E: pair of adjacent faces
+ *
+ * Edges are created on demand, so the same edge may be handed out as different (but equal) objects.
+ * Hot loops should iterate the {@link FaceAdjacency} directly instead.
+ */
+final class FaceAdjacencyGraph extends AbstractGraph<Integer, QMeshEdge> {
+    private static final GraphType TYPE = new DefaultGraphType.Builder()
+            .undirected()
+            .allowSelfLoops(false)
+            .allowMultipleEdges(false)
+            .weighted(false)
+            .modifiable(false)
+            .build();
+
+    private final FaceAdjacency adjacency;
+
+    FaceAdjacencyGraph(FaceAdjacency adjacency) {
+        this.adjacency = adjacency;
+    }
+
+    FaceAdjacency getAdjacency() {
+        return adjacency;
+    }
+
+    @Override
+    public Set<QMeshEdge> getAllEdges(Integer sourceVertex, Integer targetVertex) {
+        if(!containsVertex(sourceVertex) || !containsVertex(targetVertex)) {
+            return null;
+        }
+        QMeshEdge edge = getEdge(sourceVertex, targetVertex);
+        return edge == null ? Collections.emptySet() : Collections.singleton(edge);
+    }
+
+    @Override
+    public QMeshEdge getEdge(Integer sourceVertex, Integer targetVertex) {
+        if(containsVertex(sourceVertex) && containsVertex(targetVertex)
+                && adjacency.areAdjacent(sourceVertex, targetVertex)) {
+            return new QMeshEdge(sourceVertex, targetVertex);
+        }
+        return null;
+    }
+
+    @Override
+    public Supplier<Integer> getVertexSupplier() {
+        return null;
+    }
+
+    @Override
+    public Supplier<QMeshEdge> getEdgeSupplier() {
+        return null;
+    }
+
+    @Override
+    public QMeshEdge addEdge(Integer sourceVertex, Integer targetVertex) {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+
+    @Override
+    public boolean addEdge(Integer sourceVertex, Integer targetVertex, QMeshEdge qMeshEdge) {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+
+    @Override
+    public Integer addVertex() {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+
+    @Override
+    public boolean addVertex(Integer integer) {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+
+    @Override
+    public boolean containsEdge(QMeshEdge edge) {
+        return edge != null && containsVertex(edge.getFace1()) && containsVertex(edge.getFace2())
+                && adjacency.areAdjacent(edge.getFace1(), edge.getFace2());
+    }
+
+    @Override
+    public boolean containsVertex(Integer face) {
+        return face != null && face >= 0 && face < adjacency.faceCount();
+    }
+
+    @Override
+    public Set<QMeshEdge> edgeSet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<QMeshEdge> iterator() {
+                return new Iterator<>() {
+                    private int face = 0;
+                    private int slot = advance(0);
+
+                    // next slot at or after from that points to a higher face, so each edge is only listed once
+                    private int advance(int from) {
+                        for(int s = from; s < adjacency.slotCount(); s++) {
+                            while(s >= adjacency.end(face)) {
+                                face++;
+                            }
+                            if(adjacency.neighbor(s) > face) {
+                                return s;
+                            }
+                        }
+                        return adjacency.slotCount();
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < adjacency.slotCount();
+                    }
+
+                    @Override
+                    public QMeshEdge next() {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        QMeshEdge edge = new QMeshEdge(face, adjacency.neighbor(slot));
+                        slot = advance(slot + 1);
+                        return edge;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof QMeshEdge edge && containsEdge(edge);
+            }
+
+            @Override
+            public int size() {
+                return adjacency.slotCount() / 2;
+            }
+        };
+    }
+
+    @Override
+    public int degreeOf(Integer face) {
+        assertVertexExist(face);
+        return adjacency.degree(face);
+    }
+
+    @Override
+    public Set<QMeshEdge> edgesOf(Integer face) {
+        assertVertexExist(face);
+        final int source = face;
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<QMeshEdge> iterator() {
+                return new Iterator<>() {
+                    private int slot = adjacency.start(source);
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < adjacency.end(source);
+                    }
+
+                    @Override
+                    public QMeshEdge next() {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return new QMeshEdge(source, adjacency.neighbor(slot++));
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof QMeshEdge edge
+                        && (edge.getFace1() == source || edge.getFace2() == source)
+                        && containsEdge(edge);
+            }
+
+            @Override
+            public int size() {
+                return adjacency.degree(source);
+            }
+        };
+    }
+
+    @Override
+    public int inDegreeOf(Integer face) {
+        return degreeOf(face);
+    }
+
+    @Override
+    public Set<QMeshEdge> incomingEdgesOf(Integer face) {
+        return edgesOf(face);
+    }
+
+    @Override
+    public int outDegreeOf(Integer face) {
+        return degreeOf(face);
+    }
+
+    @Override
+    public Set<QMeshEdge> outgoingEdgesOf(Integer face) {
+        return edgesOf(face);
+    }
+
+    @Override
+    public QMeshEdge removeEdge(Integer sourceVertex, Integer targetVertex) {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+
+    @Override
+    public boolean removeEdge(QMeshEdge edge) {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+
+    @Override
+    public boolean removeVertex(Integer face) {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+
+    @Override
+    public Set<Integer> vertexSet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<>() {
+                    private int face = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return face < adjacency.faceCount();
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return face++;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer face && containsVertex(face);
+            }
+
+            @Override
+            public int size() {
+                return adjacency.faceCount();
+            }
+        };
+    }
+
+    @Override
+    public Integer getEdgeSource(QMeshEdge edge) {
+        return edge.getFace1();
+    }
+
+    @Override
+    public Integer getEdgeTarget(QMeshEdge edge) {
+        return edge.getFace2();
+    }
+
+    @Override
+    public GraphType getType() {
+        return TYPE;
+    }
+
+    @Override
+    public double getEdgeWeight(QMeshEdge edge) {
+        return Graph.DEFAULT_EDGE_WEIGHT;
+    }
+
+    @Override
+    public void setEdgeWeight(QMeshEdge edge, double weight) {
+        throw new UnsupportedOperationException("mesh connectivity is read-only");
+    }
+}
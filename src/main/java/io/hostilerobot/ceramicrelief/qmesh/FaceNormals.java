@@ -0,0 +1,153 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.stream.IntStream;
+
+/**
+ * normals and unit normals of every face in a mesh, computed in one batch and stored as flat coordinate arrays.
+ *
+ * the normal of face (v1, v2, v3) is (v2 - v1) x (v3 - v2), and is not normalized.
+ * A degenerate face has a zero normal, and its unit normal is also zero rather than NaN.
+ */
+final class FaceNormals {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int CHUNK = 4096; // faces per parallel task
+
+    private final double[] normalX;
+    private final double[] normalY;
+    private final double[] normalZ;
+    private final double[] unitX;
+    private final double[] unitY;
+    private final double[] unitZ;
+
+    private FaceNormals(int faceCount) {
+        this(new double[faceCount], new double[faceCount], new double[faceCount],
+                new double[faceCount], new double[faceCount], new double[faceCount]);
+    }
+
+    /**
+     * wraps already computed normals, e.g. ones read back from a file
+     */
+    FaceNormals(double[] normalX, double[] normalY, double[] normalZ,
+                double[] unitX, double[] unitY, double[] unitZ) {
+        this.normalX = normalX;
+        this.normalY = normalY;
+        this.normalZ = normalZ;
+        this.unitX = unitX;
+        this.unitY = unitY;
+        this.unitZ = unitZ;
+    }
+
+    static FaceNormals of(QMeshStorage storage) {
+        int faceCount = storage.faceCount();
+        FaceNormals normals = new FaceNormals(faceCount);
+        int chunks = (faceCount + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk ->
+                normals.compute(storage, chunk * CHUNK, Math.min(faceCount, (chunk + 1) * CHUNK)));
+        return normals;
+    }
+
+    /**
+     * computes faces in [from, to). The two edge vectors are staged in the unit and normal arrays,
+     * then overwritten in place by the vectorized cross product
+     */
+    private void compute(QMeshStorage storage, int from, int to) {
+        for(int face = from; face < to; face++) {
+            stage(storage, face);
+        }
+
+        int face = from;
+        for(int upper = from + SPECIES.loopBound(to - from); face < upper; face += SPECIES.length()) {
+            DoubleVector ax = DoubleVector.fromArray(SPECIES, unitX, face);
+            DoubleVector ay = DoubleVector.fromArray(SPECIES, unitY, face);
+            DoubleVector az = DoubleVector.fromArray(SPECIES, unitZ, face);
+            DoubleVector bx = DoubleVector.fromArray(SPECIES, normalX, face);
+            DoubleVector by = DoubleVector.fromArray(SPECIES, normalY, face);
+            DoubleVector bz = DoubleVector.fromArray(SPECIES, normalZ, face);
+
+            DoubleVector nx = ay.mul(bz).sub(az.mul(by));
+            DoubleVector ny = az.mul(bx).sub(ax.mul(bz));
+            DoubleVector nz = ax.mul(by).sub(ay.mul(bx));
+            DoubleVector length = nx.mul(nx).add(ny.mul(ny)).add(nz.mul(nz)).sqrt();
+            VectorMask<Double> degenerate = length.compare(VectorOperators.EQ, 0.0);
+            DoubleVector inverse = length.broadcast(1.0).div(length).blend(0.0, degenerate);
+
+            nx.intoArray(normalX, face);
+            ny.intoArray(normalY, face);
+            nz.intoArray(normalZ, face);
+            nx.mul(inverse).intoArray(unitX, face);
+            ny.mul(inverse).intoArray(unitY, face);
+            nz.mul(inverse).intoArray(unitZ, face);
+        }
+        for(; face < to; face++) {
+            crossScalar(face);
+        }
+    }
+
+    /**
+     * recomputes a single face, e.g. after one of its vertices moved
+     */
+    void update(QMeshStorage storage, int face) {
+        stage(storage, face);
+        crossScalar(face);
+    }
+
+    private void stage(QMeshStorage storage, int face) {
+        int v1 = storage.getV1(face);
+        int v2 = storage.getV2(face);
+        int v3 = storage.getV3(face);
+        double x2 = storage.getX(v2);
+        double y2 = storage.getY(v2);
+        double z2 = storage.getZ(v2);
+        // a = v2 - v1, b = v3 - v2
+        unitX[face] = x2 - storage.getX(v1);
+        unitY[face] = y2 - storage.getY(v1);
+        unitZ[face] = z2 - storage.getZ(v1);
+        normalX[face] = storage.getX(v3) - x2;
+        normalY[face] = storage.getY(v3) - y2;
+        normalZ[face] = storage.getZ(v3) - z2;
+    }
+
+    private void crossScalar(int face) {
+        double ax = unitX[face], ay = unitY[face], az = unitZ[face];
+        double bx = normalX[face], by = normalY[face], bz = normalZ[face];
+        double nx = ay * bz - az * by;
+        double ny = az * bx - ax * bz;
+        double nz = ax * by - ay * bx;
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        double inverse = length == 0.0 ? 0.0 : 1.0 / length;
+        normalX[face] = nx;
+        normalY[face] = ny;
+        normalZ[face] = nz;
+        unitX[face] = nx * inverse;
+        unitY[face] = ny * inverse;
+        unitZ[face] = nz * inverse;
+    }
+
+    int faceCount() {
+        return normalX.length;
+    }
+
+    double normalX(int face) {
+        return normalX[face];
+    }
+    double normalY(int face) {
+        return normalY[face];
+    }
+    double normalZ(int face) {
+        return normalZ[face];
+    }
+    double unitX(int face) {
+        return unitX[face];
+    }
+    double unitY(int face) {
+        return unitY[face];
+    }
+    double unitZ(int face) {
+        return unitZ[face];
+    }
+}
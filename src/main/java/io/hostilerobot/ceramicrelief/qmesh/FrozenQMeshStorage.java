@@ -0,0 +1,91 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.stream.IntStream;
+
+/**
+ * read-only copy of another storage, used by frozen meshes. All state is in final fields,
+ * so it can be read from any number of threads without synchronization
+ */
+final class FrozenQMeshStorage implements QMeshStorage {
+    private final double[] vertices;
+    private final int[] faces;
+
+    private FrozenQMeshStorage(double[] vertices, int[] faces) {
+        this.vertices = vertices;
+        this.faces = faces;
+    }
+
+    static FrozenQMeshStorage copyOf(QMeshStorage storage) {
+        if(storage instanceof FrozenQMeshStorage frozen) {
+            return frozen;
+        }
+        double[] vertices = new double[storage.vertexCount() * 3];
+        int[] faces = new int[storage.faceCount() * 3];
+        IntStream.range(0, storage.vertexCount()).parallel().forEach(v -> {
+            vertices[v * 3] = storage.getX(v);
+            vertices[v * 3 + 1] = storage.getY(v);
+            vertices[v * 3 + 2] = storage.getZ(v);
+        });
+        IntStream.range(0, storage.faceCount()).parallel().forEach(f -> {
+            faces[f * 3] = storage.getV1(f);
+            faces[f * 3 + 1] = storage.getV2(f);
+            faces[f * 3 + 2] = storage.getV3(f);
+        });
+        return new FrozenQMeshStorage(vertices, faces);
+    }
+
+    @Override
+    public int vertexCount() {
+        return vertices.length / 3;
+    }
+
+    @Override
+    public int faceCount() {
+        return faces.length / 3;
+    }
+
+    @Override
+    public double getX(int vertex) {
+        return vertices[vertex * 3];
+    }
+
+    @Override
+    public double getY(int vertex) {
+        return vertices[vertex * 3 + 1];
+    }
+
+    @Override
+    public double getZ(int vertex) {
+        return vertices[vertex * 3 + 2];
+    }
+
+    @Override
+    public int getV1(int face) {
+        return faces[face * 3];
+    }
+
+    @Override
+    public int getV2(int face) {
+        return faces[face * 3 + 1];
+    }
+
+    @Override
+    public int getV3(int face) {
+        return faces[face * 3 + 2];
+    }
+
+    @Override
+    public void setVertex(int vertex, double x, double y, double z) {
+        throw new UnsupportedOperationException("storage is frozen");
+    }
+
+    @Override
+    public int addVertex(double x, double y, double z) {
+        throw new UnsupportedOperationException("storage is frozen");
+    }
+
+    @Override
+    public int addFace(int v1, int v2, int v3) {
+        throw new UnsupportedOperationException("storage is frozen");
+    }
+}
@@ -0,0 +1,118 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.Arrays;
+
+/**
+ * default storage for a {@link QMesh}. Keeps vertices in one interleaved {@code double[]} (x, y, z per vertex)
+ * and faces in one interleaved {@code int[]} (v1, v2, v3 per face). Arrays grow by half their size when full.
+ */
+public class HeapQMeshStorage implements QMeshStorage {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] vertices;
+    private int[] faces;
+    private int vertexCount;
+    private int faceCount;
+
+    public HeapQMeshStorage() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    public HeapQMeshStorage(int vertexCapacity, int faceCapacity) {
+        this.vertices = new double[Math.max(vertexCapacity, 1) * 3];
+        this.faces = new int[Math.max(faceCapacity, 1) * 3];
+    }
+
+    /**
+     * wraps existing arrays without copying. {@code vertices.length} and {@code faces.length} must be multiples of 3
+     */
+    public HeapQMeshStorage(double[] vertices, int[] faces) {
+        if(vertices.length % 3 != 0 || faces.length % 3 != 0) {
+            throw new IllegalArgumentException("vertex and face arrays must be a multiple of 3 in length");
+        }
+        this.vertices = vertices;
+        this.faces = faces;
+        this.vertexCount = vertices.length / 3;
+        this.faceCount = faces.length / 3;
+    }
+
+    private static int grow(int current, int required) {
+        return Math.max(current + (current >> 1), required);
+    }
+
+    @Override
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public int faceCount() {
+        return faceCount;
+    }
+
+    @Override
+    public double getX(int vertex) {
+        return vertices[vertex * 3];
+    }
+
+    @Override
+    public double getY(int vertex) {
+        return vertices[vertex * 3 + 1];
+    }
+
+    @Override
+    public double getZ(int vertex) {
+        return vertices[vertex * 3 + 2];
+    }
+
+    @Override
+    public int getV1(int face) {
+        return faces[face * 3];
+    }
+
+    @Override
+    public int getV2(int face) {
+        return faces[face * 3 + 1];
+    }
+
+    @Override
+    public int getV3(int face) {
+        return faces[face * 3 + 2];
+    }
+
+    @Override
+    public void setVertex(int vertex, double x, double y, double z) {
+        int idx = vertex * 3;
+        vertices[idx] = x;
+        vertices[idx + 1] = y;
+        vertices[idx + 2] = z;
+    }
+
+    @Override
+    public int addVertex(double x, double y, double z) {
+        int id = vertexCount;
+        int idx = id * 3;
+        if(idx + 3 > vertices.length) {
+            vertices = Arrays.copyOf(vertices, grow(vertices.length, idx + 3));
+        }
+        vertices[idx] = x;
+        vertices[idx + 1] = y;
+        vertices[idx + 2] = z;
+        vertexCount++;
+        return id;
+    }
+
+    @Override
+    public int addFace(int v1, int v2, int v3) {
+        int id = faceCount;
+        int idx = id * 3;
+        if(idx + 3 > faces.length) {
+            faces = Arrays.copyOf(faces, grow(faces.length, idx + 3));
+        }
+        faces[idx] = v1;
+        faces[idx + 1] = v2;
+        faces[idx + 2] = v3;
+        faceCount++;
+        return id;
+    }
+}
@@ -0,0 +1,572 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import io.hostilerobot.ceramicrelief.collection.heap.IndexedDoubleHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * simplifies a mesh by collapsing edges in order of their quadric error (Garland and Heckbert), to get cheaper
+ * levels of detail for previews.
+ *
+ * Each vertex accumulates the area weighted planes of the faces around it as a quadric, and an edge collapses to
+ * the point that minimizes the sum of its endpoints' quadrics. Quadrics and initial edge costs are computed in
+ * parallel. Edges are then collapsed cheapest first from an {@link IndexedDoubleHeap} keyed by edge ID.
+ * A collapse is skipped if it would make the surface non-manifold or flip a face. Open boundaries are held in
+ * place by extra planes perpendicular to each boundary edge.
+ *
+ * Faces keep their identity through collapses, so every face of a decimated level maps back to the original
+ * face it came from. Faces that collapse away map to a nearby face that absorbed them.
+ */
+public final class MeshDecimator {
+    private static final int QUADRIC = 10; // a², ab, ac, ad, b², bc, bd, c², cd, d² of the plane ax + by + cz + d = 0
+    private static final double BOUNDARY_WEIGHT = 1000.0;
+    private static final double SINGULAR = 1e-12;
+
+    private final int originalFaces;
+
+    // current geometry
+    private final double[] positions;
+    private final double[] quadrics;
+    private final int[] faceVertices;
+    private final boolean[] faceAlive;
+    private final int[] absorbedBy; // for a dead face, the face it was merged into
+    private int liveFaces;
+
+    // per-vertex incidence. Lists only ever hold live faces and edges
+    private final int[][] vertexFaces;
+    private final int[] vertexFaceCounts;
+    private final int[][] vertexEdges;
+    private final int[] vertexEdgeCounts;
+
+    // edges, the point each would collapse to, and the heap of collapse costs
+    private final int[] edgeA;
+    private final int[] edgeB;
+    private final double[] targets;
+    private final IndexedDoubleHeap heap;
+
+    private final int[] stamps; // scratch for the manifold check
+    private int stamp = 0;
+
+    private MeshDecimator(QMesh mesh) {
+        QMeshStorage storage = mesh.getStorage();
+        int vertexCount = storage.vertexCount();
+        originalFaces = storage.faceCount();
+
+        positions = new double[vertexCount * 3];
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            positions[v * 3] = storage.getX(v);
+            positions[v * 3 + 1] = storage.getY(v);
+            positions[v * 3 + 2] = storage.getZ(v);
+        });
+        faceVertices = new int[originalFaces * 3];
+        IntStream.range(0, originalFaces).parallel().forEach(f -> {
+            faceVertices[f * 3] = storage.getV1(f);
+            faceVertices[f * 3 + 1] = storage.getV2(f);
+            faceVertices[f * 3 + 2] = storage.getV3(f);
+        });
+        faceAlive = new boolean[originalFaces];
+        absorbedBy = new int[originalFaces];
+        Arrays.fill(absorbedBy, -1);
+
+        VertexFaces incidentFaces = VertexFaces.of(storage);
+        SortedEdges edges = SortedEdges.of(storage);
+        FaceNormals normals = mesh.getNormals();
+
+        // degenerate faces are dropped up front
+        for(int f = 0; f < originalFaces; f++) {
+            int v1 = faceVertices[f * 3], v2 = faceVertices[f * 3 + 1], v3 = faceVertices[f * 3 + 2];
+            faceAlive[f] = v1 != v2 && v2 != v3 && v3 != v1;
+            if(faceAlive[f]) {
+                liveFaces++;
+            }
+        }
+
+        vertexFaces = new int[vertexCount][];
+        vertexFaceCounts = new int[vertexCount];
+        quadrics = new double[vertexCount * QUADRIC];
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            int[] faces = new int[incidentFaces.end(v) - incidentFaces.start(v)];
+            int count = 0;
+            for(int idx = incidentFaces.start(v), end = incidentFaces.end(v); idx < end; idx++) {
+                int f = incidentFaces.face(idx);
+                if(!faceAlive[f]) {
+                    continue;
+                }
+                faces[count++] = f;
+                // plane of the face weighted by its area. The normal's length is twice the area
+                double nx = normals.unitX(f), ny = normals.unitY(f), nz = normals.unitZ(f);
+                double area = 0.5 * Math.sqrt(normals.normalX(f) * normals.normalX(f)
+                        + normals.normalY(f) * normals.normalY(f) + normals.normalZ(f) * normals.normalZ(f));
+                int p = faceVertices[f * 3];
+                double d = -(nx * positions[p * 3] + ny * positions[p * 3 + 1] + nz * positions[p * 3 + 2]);
+                addPlane(quadrics, v, nx, ny, nz, d, area);
+            }
+            vertexFaces[v] = faces;
+            vertexFaceCounts[v] = count;
+        });
+
+        int edgeCount = edges.edgeCount();
+        edgeA = new int[edgeCount];
+        edgeB = new int[edgeCount];
+        targets = new double[edgeCount * 3];
+        int[] edgeCounts = new int[vertexCount];
+        for(int e = 0; e < edgeCount; e++) {
+            long key = edges.key(e);
+            edgeA[e] = EdgeTable.keyV1(key);
+            edgeB[e] = EdgeTable.keyV2(key);
+            if(edgeA[e] == edgeB[e]) {
+                continue; // from a face that repeats a vertex
+            }
+            edgeCounts[edgeA[e]]++;
+            edgeCounts[edgeB[e]]++;
+        }
+        vertexEdges = new int[vertexCount][];
+        vertexEdgeCounts = new int[vertexCount];
+        for(int v = 0; v < vertexCount; v++) {
+            vertexEdges[v] = new int[edgeCounts[v]];
+        }
+        for(int e = 0; e < edgeCount; e++) {
+            if(edgeA[e] == edgeB[e]) {
+                continue;
+            }
+            addEdge(edgeA[e], e);
+            addEdge(edgeB[e], e);
+            // boundary edges get a plane perpendicular to their face, so the boundary stays put
+            if(edges.faceCount(e) == 1) {
+                int f = edges.face(edges.start(e));
+                if(faceAlive[f]) {
+                    addBoundaryPlane(e, f, normals);
+                }
+            }
+        }
+
+        heap = new IndexedDoubleHeap(edgeCount);
+        double[] costs = new double[edgeCount];
+        IntStream.range(0, edgeCount).parallel().forEach(e -> costs[e] = computeCost(e));
+        for(int e = 0; e < edgeCount; e++) {
+            if(edgeA[e] != edgeB[e]) {
+                heap.insert(e, costs[e]);
+            }
+        }
+        stamps = new int[vertexCount];
+    }
+
+    /**
+     * simplifies mesh down to at most targetFaceCount faces, or as close as it can get without
+     * breaking the surface
+     */
+    public static Decimated decimate(QMesh mesh, int targetFaceCount) {
+        MeshDecimator decimator = new MeshDecimator(mesh);
+        decimator.collapseTo(targetFaceCount);
+        return decimator.snapshot();
+    }
+
+    /**
+     * builds several levels of detail in one run, each simplified further from the previous one
+     * @param targetFaceCounts face count of each level
+     * @return a level for each target, from the most to the least detailed
+     */
+    public static List<Decimated> levels(QMesh mesh, int... targetFaceCounts) {
+        int[] targets = targetFaceCounts.clone();
+        Arrays.sort(targets);
+        MeshDecimator decimator = new MeshDecimator(mesh);
+        List<Decimated> levels = new ArrayList<>(targets.length);
+        for(int level = targets.length - 1; level >= 0; level--) {
+            decimator.collapseTo(targets[level]);
+            levels.add(decimator.snapshot());
+        }
+        return levels;
+    }
+
+    private void collapseTo(int targetFaceCount) {
+        while(liveFaces > targetFaceCount && !heap.isEmpty() && heap.peekKey() < Double.POSITIVE_INFINITY) {
+            int e = heap.peek();
+            if(canCollapse(e)) {
+                heap.remove(e);
+                collapse(e);
+            } else {
+                // retried once something around it changes
+                heap.update(e, Double.POSITIVE_INFINITY);
+            }
+        }
+    }
+
+    private static void addPlane(double[] quadrics, int v, double a, double b, double c, double d, double weight) {
+        int q = v * QUADRIC;
+        quadrics[q] += weight * a * a;
+        quadrics[q + 1] += weight * a * b;
+        quadrics[q + 2] += weight * a * c;
+        quadrics[q + 3] += weight * a * d;
+        quadrics[q + 4] += weight * b * b;
+        quadrics[q + 5] += weight * b * c;
+        quadrics[q + 6] += weight * b * d;
+        quadrics[q + 7] += weight * c * c;
+        quadrics[q + 8] += weight * c * d;
+        quadrics[q + 9] += weight * d * d;
+    }
+
+    private void addBoundaryPlane(int e, int f, FaceNormals normals) {
+        int a = edgeA[e];
+        int b = edgeB[e];
+        double ex = positions[b * 3] - positions[a * 3];
+        double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+        double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+        // edge x face normal lies in the face's plane and is perpendicular to the edge
+        double px = ey * normals.unitZ(f) - ez * normals.unitY(f);
+        double py = ez * normals.unitX(f) - ex * normals.unitZ(f);
+        double pz = ex * normals.unitY(f) - ey * normals.unitX(f);
+        double length = Math.sqrt(px * px + py * py + pz * pz);
+        if(length == 0.0) {
+            return;
+        }
+        px /= length;
+        py /= length;
+        pz /= length;
+        double d = -(px * positions[a * 3] + py * positions[a * 3 + 1] + pz * positions[a * 3 + 2]);
+        double weight = BOUNDARY_WEIGHT * (ex * ex + ey * ey + ez * ez);
+        addPlane(quadrics, a, px, py, pz, d, weight);
+        addPlane(quadrics, b, px, py, pz, d, weight);
+    }
+
+    private static double error(double[] q, double x, double y, double z) {
+        return q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x
+                + q[4] * y * y + 2 * q[5] * y * z + 2 * q[6] * y
+                + q[7] * z * z + 2 * q[8] * z
+                + q[9];
+    }
+
+    /**
+     * finds the point edge e collapses to and stores it in targets
+     * @return error of collapsing there
+     */
+    private double computeCost(int e) {
+        int a = edgeA[e];
+        int b = edgeB[e];
+        double[] q = new double[QUADRIC];
+        for(int i = 0; i < QUADRIC; i++) {
+            q[i] = quadrics[a * QUADRIC + i] + quadrics[b * QUADRIC + i];
+        }
+
+        // minimize the quadric: solve A x = -b with A the upper 3x3 block, by Cramer's rule
+        double a11 = q[0], a12 = q[1], a13 = q[2];
+        double a22 = q[4], a23 = q[5], a33 = q[7];
+        double det = a11 * (a22 * a33 - a23 * a23) - a12 * (a12 * a33 - a23 * a13) + a13 * (a12 * a23 - a22 * a13);
+        double scale = Math.abs(a11) + Math.abs(a22) + Math.abs(a33);
+        double x, y, z;
+        if(Math.abs(det) > SINGULAR * scale * scale * scale) {
+            double b1 = -q[3], b2 = -q[6], b3 = -q[8];
+            x = (b1 * (a22 * a33 - a23 * a23) - a12 * (b2 * a33 - a23 * b3) + a13 * (b2 * a23 - a22 * b3)) / det;
+            y = (a11 * (b2 * a33 - b3 * a23) - b1 * (a12 * a33 - a23 * a13) + a13 * (a12 * b3 - b2 * a13)) / det;
+            z = (a11 * (a22 * b3 - a23 * b2) - a12 * (a12 * b3 - b2 * a13) + b1 * (a12 * a23 - a22 * a13)) / det;
+        } else {
+            // flat or degenerate neighborhood: pick the best of the endpoints and the midpoint
+            double ax = positions[a * 3], ay = positions[a * 3 + 1], az = positions[a * 3 + 2];
+            double bx = positions[b * 3], by = positions[b * 3 + 1], bz = positions[b * 3 + 2];
+            double mx = (ax + bx) / 2, my = (ay + by) / 2, mz = (az + bz) / 2;
+            double errorA = error(q, ax, ay, az);
+            double errorB = error(q, bx, by, bz);
+            double errorM = error(q, mx, my, mz);
+            if(errorA <= errorB && errorA <= errorM) {
+                x = ax; y = ay; z = az;
+            } else if(errorB <= errorM) {
+                x = bx; y = by; z = bz;
+            } else {
+                x = mx; y = my; z = mz;
+            }
+        }
+        targets[e * 3] = x;
+        targets[e * 3 + 1] = y;
+        targets[e * 3 + 2] = z;
+        return Math.max(0.0, error(q, x, y, z));
+    }
+
+    private int otherVertex(int e, int v) {
+        return edgeA[e] == v ? edgeB[e] : edgeA[e];
+    }
+
+    private boolean hasVertex(int f, int v) {
+        return faceVertices[f * 3] == v || faceVertices[f * 3 + 1] == v || faceVertices[f * 3 + 2] == v;
+    }
+
+    /**
+     * a collapse keeps the surface manifold if the endpoints only share the neighbors across the faces on the edge,
+     * and no face around the edge turns over when its vertex moves to the target
+     */
+    private boolean canCollapse(int e) {
+        int a = edgeA[e];
+        int b = edgeB[e];
+        stamp++;
+        for(int i = 0; i < vertexEdgeCounts[a]; i++) {
+            stamps[otherVertex(vertexEdges[a][i], a)] = stamp;
+        }
+        int sharedNeighbors = 0;
+        for(int i = 0; i < vertexEdgeCounts[b]; i++) {
+            if(stamps[otherVertex(vertexEdges[b][i], b)] == stamp) {
+                sharedNeighbors++;
+            }
+        }
+        int sharedFaces = 0;
+        for(int i = 0; i < vertexFaceCounts[b]; i++) {
+            if(hasVertex(vertexFaces[b][i], a)) {
+                sharedFaces++;
+            }
+        }
+        if(sharedNeighbors != sharedFaces) {
+            return false;
+        }
+        return !flips(a, b, e) && !flips(b, a, e);
+    }
+
+    /**
+     * @return true if moving v to the target of e turns over one of v's faces that does not also use other
+     */
+    private boolean flips(int v, int other, int e) {
+        double tx = targets[e * 3], ty = targets[e * 3 + 1], tz = targets[e * 3 + 2];
+        for(int i = 0; i < vertexFaceCounts[v]; i++) {
+            int f = vertexFaces[v][i];
+            if(hasVertex(f, other)) {
+                continue; // collapses away
+            }
+            int corner = faceVertices[f * 3] == v ? 0 : faceVertices[f * 3 + 1] == v ? 1 : 2;
+            int p = faceVertices[f * 3 + (corner + 1) % 3];
+            int r = faceVertices[f * 3 + (corner + 2) % 3];
+            double px = positions[p * 3], py = positions[p * 3 + 1], pz = positions[p * 3 + 2];
+            double rx = positions[r * 3], ry = positions[r * 3 + 1], rz = positions[r * 3 + 2];
+            // normal with v where it is, and with v at the target
+            double beforeX, beforeY, beforeZ, afterX, afterY, afterZ;
+            {
+                double ux = px - positions[v * 3], uy = py - positions[v * 3 + 1], uz = pz - positions[v * 3 + 2];
+                double wx = rx - px, wy = ry - py, wz = rz - pz;
+                beforeX = uy * wz - uz * wy;
+                beforeY = uz * wx - ux * wz;
+                beforeZ = ux * wy - uy * wx;
+                ux = px - tx;
+                uy = py - ty;
+                uz = pz - tz;
+                afterX = uy * wz - uz * wy;
+                afterY = uz * wx - ux * wz;
+                afterZ = ux * wy - uy * wx;
+            }
+            if(beforeX * afterX + beforeY * afterY + beforeZ * afterZ <= 0.0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * collapses edge e, moving its first vertex to the target and merging the second vertex into it
+     */
+    private void collapse(int e) {
+        int keep = edgeA[e];
+        int gone = edgeB[e];
+        removeEdge(keep, e);
+        removeEdge(gone, e);
+        positions[keep * 3] = targets[e * 3];
+        positions[keep * 3 + 1] = targets[e * 3 + 1];
+        positions[keep * 3 + 2] = targets[e * 3 + 2];
+        for(int i = 0; i < QUADRIC; i++) {
+            quadrics[keep * QUADRIC + i] += quadrics[gone * QUADRIC + i];
+        }
+
+        // faces on the edge die, the rest move over to keep
+        int deadStart = -1;
+        for(int i = 0; i < vertexFaceCounts[gone]; i++) {
+            int f = vertexFaces[gone][i];
+            if(hasVertex(f, keep)) {
+                faceAlive[f] = false;
+                liveFaces--;
+                for(int corner = 0; corner < 3; corner++) {
+                    int v = faceVertices[f * 3 + corner];
+                    if(v != gone) {
+                        removeFace(v, f);
+                    }
+                }
+                // remember dead faces in a chain through absorbedBy until we know who absorbs them
+                absorbedBy[f] = deadStart;
+                deadStart = f;
+            } else {
+                for(int corner = 0; corner < 3; corner++) {
+                    if(faceVertices[f * 3 + corner] == gone) {
+                        faceVertices[f * 3 + corner] = keep;
+                    }
+                }
+                addFace(keep, f);
+            }
+        }
+        vertexFaceCounts[gone] = 0;
+        // a dead face is absorbed by a face that now has its third vertex, or any face around keep
+        for(int f = deadStart; f >= 0; ) {
+            int next = absorbedBy[f];
+            absorbedBy[f] = absorber(f, keep, gone);
+            f = next;
+        }
+
+        // edges of gone move over to keep, unless keep already has an edge to the same vertex
+        stamp++;
+        for(int i = 0; i < vertexEdgeCounts[keep]; i++) {
+            stamps[otherVertex(vertexEdges[keep][i], keep)] = stamp;
+        }
+        for(int i = 0; i < vertexEdgeCounts[gone]; i++) {
+            int edge = vertexEdges[gone][i];
+            int other = otherVertex(edge, gone);
+            if(stamps[other] == stamp) {
+                heap.remove(edge);
+                removeEdge(other, edge);
+            } else {
+                if(edgeA[edge] == gone) {
+                    edgeA[edge] = keep;
+                } else {
+                    edgeB[edge] = keep;
+                }
+                addEdge(keep, edge);
+                stamps[other] = stamp;
+            }
+        }
+        vertexEdgeCounts[gone] = 0;
+
+        // keep moved and its quadric changed, so every edge around it has a new cost
+        for(int i = 0; i < vertexEdgeCounts[keep]; i++) {
+            int edge = vertexEdges[keep][i];
+            heap.insert(edge, computeCost(edge));
+        }
+    }
+
+    private int absorber(int dead, int keep, int gone) {
+        int third = faceVertices[dead * 3];
+        for(int corner = 0; corner < 3; corner++) {
+            int v = faceVertices[dead * 3 + corner];
+            if(v != keep && v != gone) {
+                third = v;
+            }
+        }
+        for(int i = 0; i < vertexFaceCounts[keep]; i++) {
+            if(hasVertex(vertexFaces[keep][i], third)) {
+                return vertexFaces[keep][i];
+            }
+        }
+        return vertexFaceCounts[keep] > 0 ? vertexFaces[keep][0] : -1;
+    }
+
+    private void addFace(int v, int f) {
+        if(vertexFaceCounts[v] == vertexFaces[v].length) {
+            vertexFaces[v] = Arrays.copyOf(vertexFaces[v], Math.max(4, vertexFaces[v].length * 2));
+        }
+        vertexFaces[v][vertexFaceCounts[v]++] = f;
+    }
+
+    private void removeFace(int v, int f) {
+        int[] faces = vertexFaces[v];
+        for(int i = 0; i < vertexFaceCounts[v]; i++) {
+            if(faces[i] == f) {
+                faces[i] = faces[--vertexFaceCounts[v]];
+                return;
+            }
+        }
+    }
+
+    private void addEdge(int v, int e) {
+        if(vertexEdgeCounts[v] == vertexEdges[v].length) {
+            vertexEdges[v] = Arrays.copyOf(vertexEdges[v], Math.max(4, vertexEdges[v].length * 2));
+        }
+        vertexEdges[v][vertexEdgeCounts[v]++] = e;
+    }
+
+    private void removeEdge(int v, int e) {
+        int[] edges = vertexEdges[v];
+        for(int i = 0; i < vertexEdgeCounts[v]; i++) {
+            if(edges[i] == e) {
+                edges[i] = edges[--vertexEdgeCounts[v]];
+                return;
+            }
+        }
+    }
+
+    /**
+     * builds a mesh from the current state, keeping only vertices that are still used
+     */
+    private Decimated snapshot() {
+        int vertexCount = positions.length / 3;
+        int[] vertexIds = new int[vertexCount];
+        Arrays.fill(vertexIds, -1);
+        int[] faceMap = new int[liveFaces];
+        int[] faces = new int[liveFaces * 3];
+        int keptVertices = 0;
+        int keptFaces = 0;
+        for(int f = 0; f < originalFaces; f++) {
+            if(!faceAlive[f]) {
+                continue;
+            }
+            for(int corner = 0; corner < 3; corner++) {
+                int v = faceVertices[f * 3 + corner];
+                if(vertexIds[v] < 0) {
+                    vertexIds[v] = keptVertices++;
+                }
+                faces[keptFaces * 3 + corner] = vertexIds[v];
+            }
+            faceMap[keptFaces++] = f;
+        }
+        double[] vertices = new double[keptVertices * 3];
+        for(int v = 0; v < vertexCount; v++) {
+            if(vertexIds[v] >= 0) {
+                System.arraycopy(positions, v * 3, vertices, vertexIds[v] * 3, 3);
+            }
+        }
+
+        // original face -> decimated face, following dead faces to whoever absorbed them
+        int[] decimatedIds = new int[originalFaces];
+        Arrays.fill(decimatedIds, -1);
+        for(int f = 0; f < keptFaces; f++) {
+            decimatedIds[faceMap[f]] = f;
+        }
+        int[] originalFaceMap = new int[originalFaces];
+        for(int f = 0; f < originalFaces; f++) {
+            int current = f;
+            // absorbedBy always points at a face that was alive at the time, so this ends
+            for(int hops = 0; current >= 0 && !faceAlive[current] && hops < originalFaces; hops++) {
+                current = absorbedBy[current];
+            }
+            originalFaceMap[f] = current >= 0 && faceAlive[current] ? decimatedIds[current] : -1;
+        }
+
+        QMesh mesh = QMesh.builder().vertices(vertices).faces(faces).build();
+        return new Decimated(mesh, faceMap, originalFaceMap);
+    }
+
+    /**
+     * a simplified mesh and how its faces relate to the original mesh
+     */
+    public static final class Decimated {
+        private final QMesh mesh;
+        private final int[] faceMap;
+        private final int[] originalFaceMap;
+
+        private Decimated(QMesh mesh, int[] faceMap, int[] originalFaceMap) {
+            this.mesh = mesh;
+            this.faceMap = faceMap;
+            this.originalFaceMap = originalFaceMap;
+        }
+
+        public QMesh getMesh() {
+            return mesh;
+        }
+
+        /**
+         * @return original face ID for each decimated face
+         */
+        public int[] getFaceMap() {
+            return faceMap;
+        }
+
+        /**
+         * @return decimated face ID that each original face ended up in, or -1 if it has none
+         *         (e.g. it was degenerate to begin with)
+         */
+        public int[] getOriginalFaceMap() {
+            return originalFaceMap;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+
+/**
+ * storage for a {@link QMesh} that lives outside the java heap in {@link MemorySegment}s.
+ * Same layout as {@link HeapQMeshStorage}: interleaved x, y, z doubles per vertex and v1, v2, v3 ints per face,
+ * always little-endian so the segments can be written to or mapped from a file as-is.
+ *
+ * Segments allocated by this class are owned by an automatic arena and are released once unreachable.
+ * Segments passed in by the caller (e.g. a mapped file) stay owned by the caller's arena.
+ */
+public class OffHeapQMeshStorage implements QMeshStorage {
+    static final ValueLayout.OfDouble COORD = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final ValueLayout.OfInt INDEX = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    static final long VERTEX_BYTES = 3 * COORD.byteSize();
+    static final long FACE_BYTES = 3 * INDEX.byteSize();
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private MemorySegment vertices;
+    private MemorySegment faces;
+    private int vertexCount;
+    private int faceCount;
+
+    public OffHeapQMeshStorage() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    public OffHeapQMeshStorage(int vertexCapacity, int faceCapacity) {
+        this.vertices = allocate(Math.max(vertexCapacity, 1) * VERTEX_BYTES);
+        this.faces = allocate(Math.max(faceCapacity, 1) * FACE_BYTES);
+    }
+
+    /**
+     * wraps existing segments without copying, with every vertex and face in the segments in use.
+     * Read-only segments are permitted, in which case any modification will throw
+     */
+    public OffHeapQMeshStorage(MemorySegment vertices, MemorySegment faces) {
+        if(vertices.byteSize() % VERTEX_BYTES != 0 || faces.byteSize() % FACE_BYTES != 0) {
+            throw new IllegalArgumentException("segment sizes do not line up with whole vertices and faces");
+        }
+        this.vertices = vertices;
+        this.faces = faces;
+        this.vertexCount = Math.toIntExact(vertices.byteSize() / VERTEX_BYTES);
+        this.faceCount = Math.toIntExact(faces.byteSize() / FACE_BYTES);
+    }
+
+    static MemorySegment allocate(long bytes) {
+        return Arena.ofAuto().allocate(bytes, Double.BYTES);
+    }
+
+    private static MemorySegment grow(MemorySegment current, long used, long required) {
+        long size = Math.max(current.byteSize() + (current.byteSize() >> 1), required);
+        MemorySegment grown = allocate(size);
+        MemorySegment.copy(current, 0, grown, 0, used);
+        return grown;
+    }
+
+    /**
+     * @return the portion of the vertex segment that is in use
+     */
+    public MemorySegment vertexSegment() {
+        return vertices.asSlice(0, vertexCount * VERTEX_BYTES);
+    }
+
+    /**
+     * @return the portion of the face segment that is in use
+     */
+    public MemorySegment faceSegment() {
+        return faces.asSlice(0, faceCount * FACE_BYTES);
+    }
+
+    @Override
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public int faceCount() {
+        return faceCount;
+    }
+
+    @Override
+    public double getX(int vertex) {
+        return vertices.getAtIndex(COORD, vertex * 3L);
+    }
+
+    @Override
+    public double getY(int vertex) {
+        return vertices.getAtIndex(COORD, vertex * 3L + 1);
+    }
+
+    @Override
+    public double getZ(int vertex) {
+        return vertices.getAtIndex(COORD, vertex * 3L + 2);
+    }
+
+    @Override
+    public int getV1(int face) {
+        return faces.getAtIndex(INDEX, face * 3L);
+    }
+
+    @Override
+    public int getV2(int face) {
+        return faces.getAtIndex(INDEX, face * 3L + 1);
+    }
+
+    @Override
+    public int getV3(int face) {
+        return faces.getAtIndex(INDEX, face * 3L + 2);
+    }
+
+    @Override
+    public void setVertex(int vertex, double x, double y, double z) {
+        long idx = vertex * 3L;
+        vertices.setAtIndex(COORD, idx, x);
+        vertices.setAtIndex(COORD, idx + 1, y);
+        vertices.setAtIndex(COORD, idx + 2, z);
+    }
+
+    @Override
+    public int addVertex(double x, double y, double z) {
+        int id = vertexCount;
+        long used = id * VERTEX_BYTES;
+        if(used + VERTEX_BYTES > vertices.byteSize()) {
+            vertices = grow(vertices, used, used + VERTEX_BYTES);
+        }
+        vertexCount++;
+        setVertex(id, x, y, z);
+        return id;
+    }
+
+    @Override
+    public int addFace(int v1, int v2, int v3) {
+        int id = faceCount;
+        long used = id * FACE_BYTES;
+        if(used + FACE_BYTES > faces.byteSize()) {
+            faces = grow(faces, used, used + FACE_BYTES);
+        }
+        long idx = id * 3L;
+        faces.setAtIndex(INDEX, idx, v1);
+        faces.setAtIndex(INDEX, idx + 1, v2);
+        faces.setAtIndex(INDEX, idx + 2, v3);
+        faceCount++;
+        return id;
+    }
+}
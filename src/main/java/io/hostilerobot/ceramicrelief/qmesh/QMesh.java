@@ -1,12 +1,9 @@
 package io.hostilerobot.ceramicrelief.qmesh;
 
-import io.hostilerobot.ceramicrelief.util.Hash;
-import org.apache.commons.math.fraction.Fraction;
 import org.jgrapht.Graph;
-import org.jgrapht.graph.SimpleGraph;
 
+import java.lang.foreign.MemorySegment;
 import java.util.*;
-import java.util.function.BiFunction;
 import java.util.stream.IntStream;
 
 /**
@@ -21,164 +18,334 @@ import java.util.stream.IntStream;
  * But I think it's better to just have a hashmap that is exposed to the client so the heavier lifting is just done with faster data structures.
  */
 public class QMesh {
+    public int faceCount() {
+        return storage.faceCount();
+    }
+    public int vertexCount() {
+        return storage.vertexCount();
+    }
+    public IntStream getFaces() {
+        return IntStream.range(0, faceCount());
+    }
+    public IntStream getVertices() {
+        return IntStream.range(0, vertexCount());
+    }
+
+    // keep track of edges and the faces that are attached to it. Note that more than two faces may share an edge in 3d space
+    // built on demand from the faces in storage, then kept up to date by addTriangle
+    private EdgeTable edgeConnectivity;
+
+    // vertices and faces, stored as flat primitive triples rather than per-element objects
+    private QMeshStorage storage;
+    // normal and unit normal of each face. Computed for every face at once, then patched for faces around
+    // a moved vertex. Dropped when faces are added
+    private FaceNormals normals;
+    // faces that use each vertex, so an edit to a vertex only touches the faces around it. Built on demand
+    private VertexFaces vertexFaces;
+    // modification version, and which faces changed at each version
+    private final ChangeJournal changes;
+    // a frozen mesh has every cache built up front and rejects edits, so reading it never writes
+    private final boolean frozen;
+    // last snapshot taken by freeze(), reused until this mesh is edited
+    private QMesh snapshot;
+
+    // index of faces that share an edge. Built on demand, and dropped when a face is added
+    private FaceAdjacency adjacency;
+    // graph view over adjacency for callers that need JGraphT
+    private FaceAdjacencyGraph meshConnectivity;
+    // every edge and the faces on it. Built on demand, and dropped when a face is added
+    private EdgeTopology edgeTopology;
+    // -cos(theta) for each adjacency slot. Built on demand, then patched from the change journal
+    private DihedralRanking dihedralRanking;
+
+    public QMesh() {
+        this(new HeapQMeshStorage());
+    }
+
     /**
-     * cache mesh edge. Used to find edges that are the same in 3d space, and only used internally in IMesh
-     * to build a graph among faces that share an edge. Note that more than two faces may share an edge in 3d space
+     * @param storage backing storage for vertices and faces. Faces already in the storage are connected up
+     *                as if they were added through {@link #addTriangle}
      */
-    private static class CMeshEdge {
-        // represents IDs for vertices in the mesh
-        private int v1, v2;
+    public QMesh(QMeshStorage storage) {
+        this(storage, null);
+    }
 
-        private CMeshEdge(int v1, int v2) {
-            this.v1 = v1;
-            this.v2 = v2;
-        }
+    private QMesh(QMeshStorage storage, FaceAdjacency adjacency) {
+        this(storage, adjacency, null);
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            CMeshEdge that = (CMeshEdge) o;
+    /**
+     * @param adjacency adjacency of the faces in storage, or null to build it on demand
+     * @param normals normals of the faces in storage, or null to compute them on demand
+     */
+    QMesh(QMeshStorage storage, FaceAdjacency adjacency, FaceNormals normals) {
+        this.storage = storage;
+        this.adjacency = adjacency;
+        this.normals = normals;
+        this.changes = new ChangeJournal();
+        this.frozen = false;
+    }
 
-            // it's the same edge if we're switching up the order
-            return (getV1() == that.getV2() && getV2() == that.getV2())
-                    || (getV1() == that.getV2() && getV2() == that.getV1());
-        }
+    // snapshot of source, see freeze()
+    private QMesh(QMesh source) {
+        this.storage = FrozenQMeshStorage.copyOf(source.storage);
+        this.adjacency = source.getAdjacency();
+        this.normals = FaceNormals.of(storage);
+        this.vertexFaces = source.vertexFaces != null ? source.vertexFaces : VertexFaces.of(storage);
+        this.meshConnectivity = new FaceAdjacencyGraph(adjacency);
+        this.edgeTopology = source.edgeTopology != null ? source.edgeTopology : EdgeTopology.of(storage);
+        this.changes = new ChangeJournal(source.getVersion());
+        this.dihedralRanking = DihedralRanking.of(adjacency, normals, changes.version());
+        this.frozen = true;
+    }
 
-        public int getV1() {
-            return v1;
+    /**
+     * takes an immutable snapshot of this mesh. The snapshot has its own copy of the vertices and faces, and its
+     * adjacency, normals and other lookups are all computed before this returns, so reading it never writes.
+     * Once published (e.g. handed to an executor), it can be read by any number of threads without locking.
+     * Edits to this mesh do not affect the snapshot, and editing the snapshot throws UnsupportedOperationException.
+     *
+     * The snapshot has the same version as this mesh, and reports every face as changed for any earlier version.
+     * Every edit moves the version on, so the snapshot is kept and handed out again until this mesh is next edited
+     * @return the snapshot, or this mesh if it is already frozen
+     */
+    public QMesh freeze() {
+        if(frozen) {
+            return this;
         }
-
-        public int getV2() {
-            return v2;
+        QMesh current = snapshot;
+        if(current == null || current.getVersion() != getVersion()) {
+            current = new QMesh(this);
+            snapshot = current;
         }
+        return current;
+    }
 
-        @Override
-        public int hashCode() {
-            return Hash.hashSymmetric(getV1(), getV2());
-        }
+    public boolean isFrozen() {
+        return frozen;
+    }
 
-        public String toString() {
-            return getV1() + " -- " + getV2();
+    private void checkMutable() {
+        if(frozen) {
+            throw new UnsupportedOperationException("mesh is frozen");
         }
     }
 
-    public int faceCount() {
-        return faces.size();
-    }
-    public int vertexCount() {
-        return vertices.size();
+    private EdgeTable getEdgeConnectivity() {
+        EdgeTable current = edgeConnectivity;
+        if(current == null) {
+            current = new EdgeTable(faceCount() * 3 / 2);
+            edgeConnectivity = current;
+            for(int face = 0; face < faceCount(); face++) {
+                connectFace(face);
+            }
+        }
+        return current;
     }
-    public IntStream getFaces() {
-        return IntStream.range(0, faceCount());
+    /**
+     * @return index of the faces that share an edge with each face
+     */
+    public FaceAdjacency getAdjacency() {
+        FaceAdjacency current = adjacency;
+        if(current == null) {
+            // if we're already tracking edges one at a time, reuse them. Otherwise derive them in bulk
+            current = edgeConnectivity != null
+                    ? FaceAdjacency.build(faceCount(), edgeConnectivity)
+                    : SortedEdges.of(storage).toAdjacency(faceCount());
+            adjacency = current;
+        }
+        return current;
     }
-    public IntStream getVertices() {
-        return IntStream.range(0, vertexCount());
+
+    /**
+     * graph that keeps track of the connectivity along edges of faces
+     * V: Face tag
+     * E: Edge in the mesh, represented by the two faces that share it
+     *
+     * this is a read-only view over {@link #getAdjacency()}, so it does not reflect faces added after it is retrieved
+     */
+    public Graph<Integer, QMeshEdge> getMeshConnectivity() {
+        FaceAdjacency current = getAdjacency();
+        if(meshConnectivity == null || meshConnectivity.getAdjacency() != current) {
+            meshConnectivity = new FaceAdjacencyGraph(current);
+        }
+        return meshConnectivity;
     }
 
-    private List<Map<Integer, CMeshEdge>> edgeCache; // cache the existing edges so we'll use the same objects
-    private Map<CMeshEdge, Set<Integer>> edgeConnectivity; // keep track of edges and the faces that are attached to it
+    /**
+     * @return every edge of this mesh and the faces on it, for finding boundary and non-manifold edges.
+     *         Not updated by faces added after it is retrieved
+     */
+    public EdgeTopology getEdgeTopology() {
+        EdgeTopology current = edgeTopology;
+        if(current == null) {
+            current = EdgeTopology.of(storage);
+            edgeTopology = current;
+        }
+        return current;
+    }
 
-    private List<QVertex3D> vertices;
-    private List<QMeshFace> faces;
-    private List<QVertex3D> normals; // map from the face ID to the normal for the face
+    /**
+     * @return -cos(theta) between each pair of adjacent faces, aligned with the slots of {@link #getAdjacency()}.
+     *         Computed for the whole mesh once, then patched for faces around moved vertices, so it can be shared
+     *         by every projection of this mesh
+     */
+    public DihedralRanking getDihedralRanking() {
+        FaceAdjacency currentAdjacency = getAdjacency();
+        DihedralRanking current = dihedralRanking;
+        long version = changes.version();
+        if(current == null || current.getAdjacency() != currentAdjacency || !changes.covers(current.version())) {
+            current = DihedralRanking.of(currentAdjacency, getNormals(), version);
+            dihedralRanking = current;
+        } else if(current.version() != version) {
+            FaceNormals currentNormals = getNormals();
+            DihedralRanking stale = current;
+            changes.forEachChangedSince(current.version(), face -> stale.update(currentNormals, face));
+            current.setVersion(version);
+        }
+        return current;
+    }
 
-    private Graph<Integer, QMeshEdge> meshConnectivity;
-        // auto-built graph that keeps track of the connectivity along edges of faces
-        // V: Face tag
-        // E: Edge in the mesh, represented by two vertex tags.
+    /**
+     * @return modification version of this mesh. It increases on every edit, so a consumer can remember the version
+     *         it last synced at and later ask for only what changed with {@link #getChangedFaces}
+     */
+    public long getVersion() {
+        return changes.version();
+    }
 
-    public QMesh() {
-        // make the following linked
-        this.vertices = new ArrayList<>();
-        this.faces = new ArrayList<>();
-        this.meshConnectivity = new SimpleGraph<>(null, null, false);
-        this.edgeConnectivity = new HashMap<>();
-        this.edgeCache = new ArrayList<>();
-        this.normals = new ArrayList<>();
-    }
-    private static <X> void expandToIdx(List<X> items, int idx) {
-        int toAdd = idx - items.size() + 1;
-        for(int x = 0; x < toAdd; x++)
-            items.add(null);
-    }
-
-    private CMeshEdge getCachedEdge(int v1, int v2) {
-        // swap so v1 is always the lesser element.
-        if(v1 > v2) {
-            int tmp = v1;
-            v1 = v2;
-            v2 = tmp;
-        }
-
-        Map<Integer, CMeshEdge> entry = null;
-        if(v1 < edgeCache.size()) {
-            CMeshEdge edge;
-            if((entry = edgeCache.get(v1)) != null && (edge = entry.get(v2)) != null) {
-                return edge;
-            }
-        } else {
-            // expand edgeCache to include v1
-            expandToIdx(edgeCache, v1);
+    /**
+     * faces whose geometry changed after the given version: faces around a moved vertex, and newly added faces.
+     * Each face is listed once. If the given version predates the mesh being replaced with {@link #setVertices},
+     * every face is listed
+     */
+    public IntStream getChangedFaces(long sinceVersion) {
+        if(!changes.covers(sinceVersion)) {
+            return getFaces();
         }
-        if(entry == null) {
-            entry = new HashMap<>(2);
-            edgeCache.set(v1, entry);
+        IntStream.Builder changed = IntStream.builder();
+        changes.forEachChangedSince(sinceVersion, changed);
+        return changed.build();
+    }
+
+    /**
+     * @return faces that use the given vertex, in ascending order
+     */
+    public IntStream getFacesOfVertex(int vertex) {
+        VertexFaces index = getVertexFaces();
+        return IntStream.range(index.start(vertex), index.end(vertex)).map(index::face);
+    }
+
+    private VertexFaces getVertexFaces() {
+        VertexFaces current = vertexFaces;
+        if(current == null) {
+            current = VertexFaces.of(storage);
+            vertexFaces = current;
         }
-        CMeshEdge edge = new CMeshEdge(v1, v2);
-        entry.put(v2, edge);
-        return edge;
+        return current;
     }
 
-    public Graph<Integer, QMeshEdge> getMeshConnectivity() {
-        return meshConnectivity;
+    /**
+     * backing storage, for readers in this package. Edits must go through the mesh so the version, the change journal
+     * and the cached normals and ranking keep up. Other packages read through the primitive accessors below
+     */
+    QMeshStorage getStorage() {
+        return storage;
     }
 
+    /**
+     * @return a detached copy of the vertex. Modifying it does not affect the mesh, use {@link #setVertex} instead
+     */
     public QVertex3D getVertex(int id) {
-        return vertices.get(id);
+        return new QVertex3D(storage.getX(id), storage.getY(id), storage.getZ(id));
     }
     public QMeshFace getFace(int id) {
-        return faces.get(id);
+        return new QMeshFace(storage.getV1(id), storage.getV2(id), storage.getV3(id));
+    }
+
+    // primitive accessors, so hot loops don't need to create a QVertex3D or QMeshFace for each lookup
+    public double getVertexX(int id) {
+        return storage.getX(id);
+    }
+    public double getVertexY(int id) {
+        return storage.getY(id);
+    }
+    public double getVertexZ(int id) {
+        return storage.getZ(id);
+    }
+    public int getFaceV1(int id) {
+        return storage.getV1(id);
+    }
+    public int getFaceV2(int id) {
+        return storage.getV2(id);
+    }
+    public int getFaceV3(int id) {
+        return storage.getV3(id);
     }
 
     private boolean validVertex(int id) {
         return id >= 0 && id < vertexCount();
     }
 
+    /**
+     * computes the normal and unit normal of every face in one vectorized, parallel pass.
+     * This happens on the first normal lookup anyway, but can be called up front to keep it out of a hot loop
+     */
+    public void computeNormals() {
+        getNormals();
+    }
+
+    FaceNormals getNormals() {
+        FaceNormals current = normals;
+        if(current == null) {
+            current = FaceNormals.of(storage);
+            normals = current;
+        }
+        return current;
+    }
+
     // normal that has not (yet) changed to a unit vector
     public QVertex3D getNormal(int face) {
-        QVertex3D normal;
-
-        if (face < normals.size() && (normal = normals.get(face)) != null) {
-            return normal;
-        } else {
-            QMeshFace meshFace = getFace(face);
-            QVertex3D len12 = new QVertex3D();
-            QVertex3D len23 = new QVertex3D();
+        FaceNormals current = getNormals();
+        return new QVertex3D(current.normalX(face), current.normalY(face), current.normalZ(face));
+    }
 
-            // return (vertex2 - vertex1) x (vertex3 - vertex2)
-            QVertex3D vertex2 = getVertex(meshFace.getV2());
-            QVertex3D.subtract(vertex2, getVertex(meshFace.getV1()), len12);
-            QVertex3D.subtract(getVertex(meshFace.getV3()), vertex2, len23);
-            QVertex3D.cross(len12, len23, len23);
-            expandToIdx(normals, face);
-            normals.set(face, len23);
-            return len23;
-        }
+    // unit normal of the face, or zero if the face is degenerate
+    public double getUnitNormalX(int face) {
+        return getNormals().unitX(face);
+    }
+    public double getUnitNormalY(int face) {
+        return getNormals().unitY(face);
+    }
+    public double getUnitNormalZ(int face) {
+        return getNormals().unitZ(face);
     }
 
     public boolean setVertex(int id, double x, double y, double z) {
+        checkMutable();
         if(!validVertex(id)) {
             return false;
         }
-        vertices.get(id).set(x, y, z);
+        storage.setVertex(id, x, y, z);
+
+        // only the faces around this vertex are affected. Adjacency doesn't depend on positions, so it is kept as-is
+        changes.advance();
+        VertexFaces index = getVertexFaces();
+        FaceNormals currentNormals = normals;
+        for(int idx = index.start(id), end = index.end(id); idx < end; idx++) {
+            int face = index.face(idx);
+            changes.markFace(face);
+            if(currentNormals != null) {
+                currentNormals.update(storage, face);
+            }
+        }
         return true;
     }
 
     public int addVertex(double x, double y, double z) {
-        int idx = vertexCount();
-        vertices.add(new QVertex3D(x, y, z));
-        return idx;
+        checkMutable();
+        changes.advance();
+        return storage.addVertex(x, y, z);
     }
 
     /**
@@ -188,45 +355,175 @@ public class QMesh {
      * @return id for the new triangle
      */
     public int addTriangle(int v1, int v2, int v3) {
+        checkMutable();
         if(!validVertex(v1) || !validVertex(v2) || !validVertex(v3)) {
             throw new NoSuchElementException("Mesh does not contain all vertices (" + v1 + ", " + v2 + ", " + v3 + ")");
         }
-        final int idx = faceCount();
-        faces.add(new QMeshFace(v1, v2, v3));
-        meshConnectivity.addVertex(idx); // add a vertex for the face.
+        final int idx = storage.addFace(v1, v2, v3);
+        if(edgeConnectivity != null) {
+            connectFace(idx);
+        } // otherwise this face is picked up when the edges are built
+        adjacency = null;
+        edgeTopology = null;
+        dihedralRanking = null;
+        normals = null;
+        vertexFaces = null;
+        changes.advance();
+        changes.markFace(idx);
+        return idx;
+    }
 
-        BiFunction<CMeshEdge, Set<Integer>, Set<Integer>> addFaceFn = (edge, faces) -> {
-            if(faces == null) {
-                faces = new HashSet<>();
-            }
-            // add graph connectivity from this face to all other faces that share an edge
-            for(int face : faces) {
-                // don't place an edge down in a self loop to the same face
-                // don't add an edge between faces that are already connected
-                if(face != idx) {
-                    if(!meshConnectivity.containsEdge(idx, face)) {
-                        meshConnectivity.addEdge(idx, face, new QMeshEdge(idx, face));
-                    }
-                    if(!meshConnectivity.containsEdge(face, idx)) {
-                        // bidirectional support in case we want to swap out the graph type
-                        meshConnectivity.addEdge(face, idx, new QMeshEdge(face, idx));
-                    }
-                }
-            }
-            faces.add(idx);
-            return faces;
-        };
+    private void connectFace(final int idx) {
+        int v1 = storage.getV1(idx);
+        int v2 = storage.getV2(idx);
+        int v3 = storage.getV3(idx);
 
-        // if there already is a face with this edge, then we add this face to the set of faces along this edge
-        // we also add a connection in the graph to represent that the faces share an edge
-        edgeConnectivity.compute(getCachedEdge(v1, v2), addFaceFn);
-        edgeConnectivity.compute(getCachedEdge(v2, v3), addFaceFn);
-        edgeConnectivity.compute(getCachedEdge(v3, v1), addFaceFn);
+        // if there already is a face with this edge, then we add this face to the list of faces along this edge
+        // faces along the same edge become adjacent once the adjacency index is rebuilt
+        connectEdge(idx, v1, v2);
+        connectEdge(idx, v2, v3);
+        connectEdge(idx, v3, v1);
+    }
 
-        return idx;
+    private void connectEdge(int idx, int va, int vb) {
+        edgeConnectivity.addFace(edgeConnectivity.insert(va, vb), idx);
     }
 
+    /**
+     * replaces the contents of this mesh
+     */
     public void setVertices(List<QVertex3D> vertices, List<QMeshFace> faces) {
-        // todo
+        checkMutable();
+        double[] xyz = new double[vertices.size() * 3];
+        for(int v = 0; v < vertices.size(); v++) {
+            QVertex3D vertex = vertices.get(v);
+            xyz[v * 3] = vertex.getX();
+            xyz[v * 3 + 1] = vertex.getY();
+            xyz[v * 3 + 2] = vertex.getZ();
+        }
+        int[] indices = new int[faces.size() * 3];
+        for(int f = 0; f < faces.size(); f++) {
+            QMeshFace face = faces.get(f);
+            indices[f * 3] = face.getV1();
+            indices[f * 3 + 1] = face.getV2();
+            indices[f * 3 + 2] = face.getV3();
+        }
+        setVertices(xyz, indices);
+    }
+
+    /**
+     * replaces the contents of this mesh, using the arrays as backing storage without copying them
+     * @param vertices x, y, z for each vertex
+     * @param faces v1, v2, v3 for each face
+     */
+    public void setVertices(double[] vertices, int[] faces) {
+        checkMutable();
+        QMesh built = builder().vertices(vertices).faces(faces).build();
+        this.storage = built.storage;
+        this.adjacency = built.adjacency;
+        this.edgeConnectivity = null;
+        this.meshConnectivity = null;
+        this.edgeTopology = null;
+        this.dihedralRanking = null;
+        this.normals = null;
+        this.vertexFaces = null;
+        changes.reset();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * builds a mesh from flat vertex and index arrays in one go, rather than face by face with {@link #addTriangle}.
+     * Edges are found by a parallel sort of packed edge keys, and the adjacency index is built eagerly from them.
+     */
+    public static final class Builder {
+        private double[] vertices = new double[0];
+        private int[] faces = new int[0];
+        private boolean offHeap = false;
+        private VertexWelder welder = null;
+
+        private Builder() {}
+
+        /**
+         * @param vertices x, y, z for each vertex. Used as-is when building on heap, so it should not be modified after
+         */
+        public Builder vertices(double[] vertices) {
+            if(vertices.length % 3 != 0) {
+                throw new IllegalArgumentException("vertex array length " + vertices.length + " is not a multiple of 3");
+            }
+            this.vertices = vertices;
+            return this;
+        }
+
+        /**
+         * @param faces v1, v2, v3 for each face. Used as-is when building on heap, so it should not be modified after
+         */
+        public Builder faces(int[] faces) {
+            if(faces.length % 3 != 0) {
+                throw new IllegalArgumentException("face array length " + faces.length + " is not a multiple of 3");
+            }
+            this.faces = faces;
+            return this;
+        }
+
+        /**
+         * store vertices and faces outside the java heap
+         */
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * merge vertices within {@link io.hostilerobot.ceramicrelief.util.Epsilon#epsilon()} of each other before
+         * building, so faces that touch in space are connected. Faces that collapse from welding are dropped
+         */
+        public Builder weld(boolean weld) {
+            this.welder = weld ? new VertexWelder() : null;
+            return this;
+        }
+
+        /**
+         * merge vertices within the given distance of each other before building
+         */
+        public Builder weld(double epsilon) {
+            this.welder = new VertexWelder(epsilon);
+            return this;
+        }
+
+        public QMesh build() {
+            validateFaces(vertices.length / 3, faces);
+            double[] vertices = this.vertices;
+            int[] faces = this.faces;
+            if(welder != null) {
+                VertexWelder.Welded welded = welder.weld(vertices, faces);
+                vertices = welded.getVertices();
+                faces = welded.getFaces();
+            }
+            int vertexCount = vertices.length / 3;
+
+            QMeshStorage storage;
+            if(offHeap) {
+                MemorySegment vertexSegment = OffHeapQMeshStorage.allocate(vertexCount * OffHeapQMeshStorage.VERTEX_BYTES);
+                MemorySegment faceSegment = OffHeapQMeshStorage.allocate(faces.length / 3 * OffHeapQMeshStorage.FACE_BYTES);
+                MemorySegment.copy(vertices, 0, vertexSegment, OffHeapQMeshStorage.COORD, 0, vertices.length);
+                MemorySegment.copy(faces, 0, faceSegment, OffHeapQMeshStorage.INDEX, 0, faces.length);
+                storage = new OffHeapQMeshStorage(vertexSegment, faceSegment);
+            } else {
+                storage = new HeapQMeshStorage(vertices, faces);
+            }
+            return new QMesh(storage, SortedEdges.of(storage).toAdjacency(storage.faceCount()));
+        }
+
+        private static void validateFaces(int vertexCount, int[] faces) {
+            IntStream.range(0, faces.length).parallel().forEach(idx -> {
+                int vertex = faces[idx];
+                if(vertex < 0 || vertex >= vertexCount) {
+                    throw new NoSuchElementException("Mesh does not contain vertex " + vertex + " of face " + idx / 3);
+                }
+            });
+        }
     }
 }
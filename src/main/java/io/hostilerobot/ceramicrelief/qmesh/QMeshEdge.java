@@ -4,11 +4,11 @@ import io.hostilerobot.ceramicrelief.util.Hash;
 
 public class QMeshEdge {
     // represents IDs for two adjacent edges in the mesh
-    // this is more specific than CMeshEdge, as more than two faces in the mesh can share an edge.
+    // this is more specific than a vertex-to-vertex edge, as more than two faces in the mesh can share an edge.
     // However, we disallow two faces from sharing more than one edge
     private final int face1, face2;
 
-    QMeshEdge(int face1, int face2) {
+    public QMeshEdge(int face1, int face2) {
         this.face1 = face1;
         this.face2 = face2;
     }
@@ -20,7 +20,7 @@ public class QMeshEdge {
         QMeshEdge that = (QMeshEdge) o;
 
         // it's the same edge if we're switching up the order
-        return (getFace1() == that.getFace2() && getFace2() == that.getFace2())
+        return (getFace1() == that.getFace1() && getFace2() == that.getFace2())
                 || (getFace1() == that.getFace2() && getFace2() == that.getFace1());
     }
 
@@ -0,0 +1,196 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * compact binary file format for a {@link QMesh}, meant to be mapped into memory rather than parsed.
+ *
+ * everything is little-endian, in this order:
+ * <pre>
+ *     header      magic "QMSH", format version, flags, vertex count, face count, adjacency slot count (6 ints)
+ *     vertices    x, y, z doubles for each vertex
+ *     faces       v1, v2, v3 ints for each face
+ *     adjacency   face count + 1 offsets, then the neighbor of each slot (see {@link FaceAdjacency})
+ *     normals     only if flagged: normal x, y, z then unit normal x, y, z, each as one double per face
+ * </pre>
+ *
+ * When loading, the vertex and face sections are used in place as an {@link OffHeapQMeshStorage}, so opening a mesh
+ * costs a mapping rather than a pass over the file. Adjacency and normals are bulk copied into a handful of arrays.
+ * The mapping is private: edits to the loaded mesh are copy-on-write and never reach the file.
+ * If the file itself is read-only, so is the mapping, and moving a vertex of the loaded mesh will throw.
+ * The file is trusted to be well formed beyond its header and section sizes; face indices are not re-validated.
+ */
+public final class QMeshFile {
+    private QMeshFile() {}
+
+    private static final int MAGIC = 'Q' | 'M' << 8 | 'S' << 16 | 'H' << 24;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_NORMALS = 1;
+
+    private static final ValueLayout.OfInt HEADER = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final long HEADER_BYTES = 6 * HEADER.byteSize();
+
+    /**
+     * writes the mesh to path, replacing anything already there. The adjacency is built first if necessary
+     * @param includeNormals also store face normals, computing them first if necessary
+     */
+    public static void write(QMesh mesh, Path path, boolean includeNormals) throws IOException {
+        QMeshStorage storage = mesh.getStorage();
+        FaceAdjacency adjacency = mesh.getAdjacency();
+        FaceNormals normals = includeNormals ? mesh.getNormals() : null;
+        int vertexCount = storage.vertexCount();
+        int faceCount = storage.faceCount();
+        int slotCount = adjacency.slotCount();
+        Sections sections = new Sections(vertexCount, faceCount, slotCount, includeNormals);
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Arena arena = Arena.ofConfined()) {
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, sections.end, arena);
+
+            file.setAtIndex(HEADER, 0, MAGIC);
+            file.setAtIndex(HEADER, 1, FORMAT_VERSION);
+            file.setAtIndex(HEADER, 2, includeNormals ? FLAG_NORMALS : 0);
+            file.setAtIndex(HEADER, 3, vertexCount);
+            file.setAtIndex(HEADER, 4, faceCount);
+            file.setAtIndex(HEADER, 5, slotCount);
+
+            MemorySegment vertices = file.asSlice(sections.vertices, vertexCount * OffHeapQMeshStorage.VERTEX_BYTES);
+            MemorySegment faces = file.asSlice(sections.faces, faceCount * OffHeapQMeshStorage.FACE_BYTES);
+            if(storage instanceof OffHeapQMeshStorage offHeap) {
+                MemorySegment.copy(offHeap.vertexSegment(), 0, vertices, 0, vertices.byteSize());
+                MemorySegment.copy(offHeap.faceSegment(), 0, faces, 0, faces.byteSize());
+            } else {
+                for(int v = 0; v < vertexCount; v++) {
+                    vertices.setAtIndex(OffHeapQMeshStorage.COORD, v * 3L, storage.getX(v));
+                    vertices.setAtIndex(OffHeapQMeshStorage.COORD, v * 3L + 1, storage.getY(v));
+                    vertices.setAtIndex(OffHeapQMeshStorage.COORD, v * 3L + 2, storage.getZ(v));
+                }
+                for(int f = 0; f < faceCount; f++) {
+                    faces.setAtIndex(OffHeapQMeshStorage.INDEX, f * 3L, storage.getV1(f));
+                    faces.setAtIndex(OffHeapQMeshStorage.INDEX, f * 3L + 1, storage.getV2(f));
+                    faces.setAtIndex(OffHeapQMeshStorage.INDEX, f * 3L + 2, storage.getV3(f));
+                }
+            }
+
+            MemorySegment offsets = file.asSlice(sections.offsets);
+            for(int f = 0; f <= faceCount; f++) {
+                offsets.setAtIndex(OffHeapQMeshStorage.INDEX, f, f < faceCount ? adjacency.start(f) : slotCount);
+            }
+            MemorySegment neighbors = file.asSlice(sections.neighbors);
+            for(int slot = 0; slot < slotCount; slot++) {
+                neighbors.setAtIndex(OffHeapQMeshStorage.INDEX, slot, adjacency.neighbor(slot));
+            }
+
+            if(normals != null) {
+                MemorySegment normalSection = file.asSlice(sections.normals);
+                long stride = faceCount;
+                for(int f = 0; f < faceCount; f++) {
+                    normalSection.setAtIndex(OffHeapQMeshStorage.COORD, f, normals.normalX(f));
+                    normalSection.setAtIndex(OffHeapQMeshStorage.COORD, stride + f, normals.normalY(f));
+                    normalSection.setAtIndex(OffHeapQMeshStorage.COORD, 2 * stride + f, normals.normalZ(f));
+                    normalSection.setAtIndex(OffHeapQMeshStorage.COORD, 3 * stride + f, normals.unitX(f));
+                    normalSection.setAtIndex(OffHeapQMeshStorage.COORD, 4 * stride + f, normals.unitY(f));
+                    normalSection.setAtIndex(OffHeapQMeshStorage.COORD, 5 * stride + f, normals.unitZ(f));
+                }
+            }
+            file.force();
+        }
+    }
+
+    /**
+     * maps a mesh file. The mapping is released once the mesh is unreachable
+     */
+    public static QMesh map(Path path) throws IOException {
+        return map(path, Arena.ofAuto());
+    }
+
+    /**
+     * maps a mesh file into the given arena. The mesh must not be used after the arena is closed
+     */
+    public static QMesh map(Path path, Arena arena) throws IOException {
+        MemorySegment file;
+        // a private mapping needs a writable channel, even though nothing is ever written back
+        boolean writable = Files.isWritable(path);
+        try(FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size < HEADER_BYTES) {
+                throw new IOException(path + " is too short to be a qmesh file");
+            }
+            file = channel.map(writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY, 0, size, arena);
+        }
+
+        if(file.getAtIndex(HEADER, 0) != MAGIC) {
+            throw new IOException(path + " is not a qmesh file");
+        }
+        int formatVersion = file.getAtIndex(HEADER, 1);
+        if(formatVersion != FORMAT_VERSION) {
+            throw new IOException(path + " has unsupported qmesh format version " + formatVersion);
+        }
+        int flags = file.getAtIndex(HEADER, 2);
+        int vertexCount = file.getAtIndex(HEADER, 3);
+        int faceCount = file.getAtIndex(HEADER, 4);
+        int slotCount = file.getAtIndex(HEADER, 5);
+        if(vertexCount < 0 || faceCount < 0 || slotCount < 0) {
+            throw new IOException(path + " has a corrupt qmesh header");
+        }
+        boolean hasNormals = (flags & FLAG_NORMALS) != 0;
+        Sections sections = new Sections(vertexCount, faceCount, slotCount, hasNormals);
+        if(file.byteSize() != sections.end) {
+            throw new IOException(path + " is " + file.byteSize() + " bytes, expected " + sections.end);
+        }
+
+        QMeshStorage storage = new OffHeapQMeshStorage(
+                file.asSlice(sections.vertices, vertexCount * OffHeapQMeshStorage.VERTEX_BYTES),
+                file.asSlice(sections.faces, faceCount * OffHeapQMeshStorage.FACE_BYTES));
+
+        int[] offsets = new int[faceCount + 1];
+        int[] neighbors = new int[slotCount];
+        MemorySegment.copy(file, OffHeapQMeshStorage.INDEX, sections.offsets, offsets, 0, offsets.length);
+        MemorySegment.copy(file, OffHeapQMeshStorage.INDEX, sections.neighbors, neighbors, 0, neighbors.length);
+        FaceAdjacency adjacency = new FaceAdjacency(offsets, neighbors);
+
+        FaceNormals normals = null;
+        if(hasNormals) {
+            double[][] axes = new double[6][faceCount];
+            for(int axis = 0; axis < axes.length; axis++) {
+                long from = sections.normals + axis * faceCount * OffHeapQMeshStorage.COORD.byteSize();
+                MemorySegment.copy(file, OffHeapQMeshStorage.COORD, from, axes[axis], 0, faceCount);
+            }
+            normals = new FaceNormals(axes[0], axes[1], axes[2], axes[3], axes[4], axes[5]);
+        }
+        return new QMesh(storage, adjacency, normals);
+    }
+
+    /**
+     * byte offsets of each section in a file with the given counts
+     */
+    private static final class Sections {
+        private final long vertices;
+        private final long faces;
+        private final long offsets;
+        private final long neighbors;
+        private final long normals;
+        private final long end;
+
+        Sections(int vertexCount, int faceCount, int slotCount, boolean hasNormals) {
+            long indexBytes = OffHeapQMeshStorage.INDEX.byteSize();
+            vertices = HEADER_BYTES;
+            faces = vertices + vertexCount * OffHeapQMeshStorage.VERTEX_BYTES;
+            offsets = faces + faceCount * OffHeapQMeshStorage.FACE_BYTES;
+            neighbors = offsets + (faceCount + 1L) * indexBytes;
+            normals = neighbors + slotCount * indexBytes;
+            end = normals + (hasNormals ? 6L * faceCount * OffHeapQMeshStorage.COORD.byteSize() : 0);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+/**
+ * flat backing storage for the vertices and faces of a {@link QMesh}
+ *
+ * vertices are stored as x, y, z triples and faces are stored as v1, v2, v3 triples, both indexed by their ID.
+ * This keeps the mesh free of per-vertex and per-face objects so large meshes stay compact and can be streamed
+ * through linearly. {@link QVertex3D} and {@link QMeshFace} are only created on request as detached copies.
+ */
+public interface QMeshStorage {
+    int vertexCount();
+    int faceCount();
+
+    double getX(int vertex);
+    double getY(int vertex);
+    double getZ(int vertex);
+
+    int getV1(int face);
+    int getV2(int face);
+    int getV3(int face);
+
+    void setVertex(int vertex, double x, double y, double z);
+
+    /**
+     * @return the id of the new vertex
+     */
+    int addVertex(double x, double y, double z);
+
+    /**
+     * @return the id of the new face
+     */
+    int addFace(int v1, int v2, int v3);
+}
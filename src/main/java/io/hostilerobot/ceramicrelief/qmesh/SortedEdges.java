@@ -0,0 +1,212 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * all edges of a set of faces, derived in bulk by sorting packed edge keys rather than inserting face by face.
+ *
+ * edges are identified by the same packed key as {@link EdgeTable}, and are numbered by ascending key.
+ * The faces along edge e are {@code face(i)} for i in [start(e), end(e)), in ascending face order.
+ * Keys are radix sorted: a counting sort on the lower vertex, then each vertex's bucket is sorted and numbered
+ * in parallel. Buckets are about the size of a vertex's valence, so this is linear in practice.
+ */
+final class SortedEdges {
+    private final long[] keys;        // unique edge keys, ascending
+    private final int[] faceOffsets;  // edgeCount + 1 entries into faces
+    private final int[] faces;
+    private final int[] faceEdges;    // 3 per face: edge ID of (v1, v2), (v2, v3), (v3, v1)
+
+    private SortedEdges(long[] keys, int[] faceOffsets, int[] faces, int[] faceEdges) {
+        this.keys = keys;
+        this.faceOffsets = faceOffsets;
+        this.faces = faces;
+        this.faceEdges = faceEdges;
+    }
+
+    static SortedEdges of(QMeshStorage storage) {
+        int faceCount = storage.faceCount();
+        int vertexCount = storage.vertexCount();
+        int halfEdgeCount = faceCount * 3;
+
+        // one packed key per corner of each face
+        long[] halfEdges = new long[halfEdgeCount];
+        IntStream.range(0, faceCount).parallel().forEach(face -> {
+            int v1 = storage.getV1(face);
+            int v2 = storage.getV2(face);
+            int v3 = storage.getV3(face);
+            int idx = face * 3;
+            halfEdges[idx] = EdgeTable.key(v1, v2);
+            halfEdges[idx + 1] = EdgeTable.key(v2, v3);
+            halfEdges[idx + 2] = EdgeTable.key(v3, v1);
+        });
+
+        // radix sort on the key: counting sort by the high half (lower vertex), then sort each bucket by the low half.
+        // the counting sort is stable, so corners with the same key stay in ascending face order
+        int[] buckets = new int[vertexCount + 1];
+        for(long key : halfEdges) {
+            buckets[EdgeTable.keyV1(key) + 1]++;
+        }
+        for(int v = 0; v < vertexCount; v++) {
+            buckets[v + 1] += buckets[v];
+        }
+        int[] order = new int[halfEdgeCount];
+        int[] fill = Arrays.copyOf(buckets, vertexCount);
+        for(int idx = 0; idx < halfEdgeCount; idx++) {
+            order[fill[EdgeTable.keyV1(halfEdges[idx])]++] = idx;
+        }
+
+        // sort each bucket, and count its distinct edges and (edge, face) entries.
+        // A degenerate face may list the same edge twice; it is only counted once
+        int[] edgeCounts = new int[vertexCount + 1];
+        int[] entryCounts = new int[vertexCount + 1];
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            int from = buckets[v];
+            int to = buckets[v + 1];
+            sortBucket(halfEdges, order, from, to);
+            int edges = 0;
+            int entries = 0;
+            for(int i = from; i < to; i++) {
+                if(i == from || halfEdges[order[i]] != halfEdges[order[i - 1]]) {
+                    edges++;
+                    entries++;
+                } else if(order[i] / 3 != order[i - 1] / 3) {
+                    entries++;
+                }
+            }
+            edgeCounts[v + 1] = edges;
+            entryCounts[v + 1] = entries;
+        });
+        for(int v = 0; v < vertexCount; v++) {
+            edgeCounts[v + 1] += edgeCounts[v];
+            entryCounts[v + 1] += entryCounts[v];
+        }
+
+        // edges are numbered in bucket order, which is ascending key order
+        int edgeCount = edgeCounts[vertexCount];
+        long[] keys = new long[edgeCount];
+        int[] faceOffsets = new int[edgeCount + 1];
+        int[] faces = new int[entryCounts[vertexCount]];
+        int[] faceEdges = new int[halfEdgeCount];
+        faceOffsets[edgeCount] = faces.length;
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            int edge = edgeCounts[v] - 1;
+            int entry = entryCounts[v];
+            for(int i = buckets[v], to = buckets[v + 1]; i < to; i++) {
+                int idx = order[i];
+                int face = idx / 3;
+                if(i == buckets[v] || halfEdges[idx] != halfEdges[order[i - 1]]) {
+                    edge++;
+                    keys[edge] = halfEdges[idx];
+                    faceOffsets[edge] = entry;
+                    faces[entry++] = face;
+                } else if(face != order[i - 1] / 3) {
+                    faces[entry++] = face;
+                }
+                faceEdges[idx] = edge;
+            }
+        });
+        return new SortedEdges(keys, faceOffsets, faces, faceEdges);
+    }
+
+    /**
+     * sorts order[from, to) by the higher vertex of each key, breaking ties by corner index
+     */
+    private static void sortBucket(long[] halfEdges, int[] order, int from, int to) {
+        int size = to - from;
+        if(size <= 32) {
+            // buckets are about as big as a vertex's valence, so this is the common case
+            for(int i = from + 1; i < to; i++) {
+                int idx = order[i];
+                int v2 = EdgeTable.keyV2(halfEdges[idx]);
+                int j = i - 1;
+                for(; j >= from && EdgeTable.keyV2(halfEdges[order[j]]) > v2; j--) {
+                    order[j + 1] = order[j];
+                }
+                order[j + 1] = idx;
+            }
+        } else {
+            long[] packed = new long[size];
+            for(int i = 0; i < size; i++) {
+                int idx = order[from + i];
+                packed[i] = ((long) EdgeTable.keyV2(halfEdges[idx]) << 32) | idx;
+            }
+            Arrays.sort(packed);
+            for(int i = 0; i < size; i++) {
+                order[from + i] = (int) packed[i];
+            }
+        }
+    }
+
+    int edgeCount() {
+        return keys.length;
+    }
+
+    long key(int edge) {
+        return keys[edge];
+    }
+
+    int start(int edge) {
+        return faceOffsets[edge];
+    }
+
+    int end(int edge) {
+        return faceOffsets[edge + 1];
+    }
+
+    int faceCount(int edge) {
+        return faceOffsets[edge + 1] - faceOffsets[edge];
+    }
+
+    int face(int idx) {
+        return faces[idx];
+    }
+
+    /**
+     * @param corner 0 for (v1, v2), 1 for (v2, v3), 2 for (v3, v1)
+     * @return edge ID of the given side of face
+     */
+    int edgeOf(int face, int corner) {
+        return faceEdges[face * 3 + corner];
+    }
+
+    /**
+     * @return edge ID of (v1, v2), or -1 if no face has this edge
+     */
+    int find(int v1, int v2) {
+        int edge = Arrays.binarySearch(keys, EdgeTable.key(v1, v2));
+        return edge >= 0 ? edge : -1;
+    }
+
+    /**
+     * faces that share an edge are adjacent. Built with one linear pass over the edges
+     */
+    FaceAdjacency toAdjacency(int faceCount) {
+        int[] counts = new int[faceCount + 1];
+        for(int edge = 0; edge < keys.length; edge++) {
+            int from = faceOffsets[edge];
+            int to = faceOffsets[edge + 1];
+            for(int i = from; i < to; i++) {
+                counts[faces[i] + 1] += to - from - 1;
+            }
+        }
+        for(int face = 0; face < faceCount; face++) {
+            counts[face + 1] += counts[face];
+        }
+        int[] scattered = new int[counts[faceCount]];
+        int[] fill = Arrays.copyOf(counts, faceCount);
+        for(int edge = 0; edge < keys.length; edge++) {
+            int from = faceOffsets[edge];
+            int to = faceOffsets[edge + 1];
+            for(int i = from; i < to; i++) {
+                int face = faces[i];
+                for(int j = from; j < to; j++) {
+                    if(i != j) {
+                        scattered[fill[face]++] = faces[j];
+                    }
+                }
+            }
+        }
+        return FaceAdjacency.compact(faceCount, counts, scattered);
+    }
+}
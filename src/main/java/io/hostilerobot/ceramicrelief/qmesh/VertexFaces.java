@@ -0,0 +1,72 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+/**
+ * compressed sparse row index from each vertex to the faces that use it.
+ * The faces of vertex v are {@code face(i)} for i in [start(v), end(v)), in ascending order.
+ * A degenerate face that repeats a vertex is only listed once for it
+ *
+ * vertices added after the index was built have no faces.
+ */
+final class VertexFaces {
+    private final int[] offsets; // vertexCount + 1 entries
+    private final int[] faces;
+
+    private VertexFaces(int[] offsets, int[] faces) {
+        this.offsets = offsets;
+        this.faces = faces;
+    }
+
+    static VertexFaces of(QMeshStorage storage) {
+        int vertexCount = storage.vertexCount();
+        int faceCount = storage.faceCount();
+        int[] offsets = new int[vertexCount + 1];
+        for(int face = 0; face < faceCount; face++) {
+            int v1 = storage.getV1(face);
+            int v2 = storage.getV2(face);
+            int v3 = storage.getV3(face);
+            offsets[v1 + 1]++;
+            if(v2 != v1) {
+                offsets[v2 + 1]++;
+            }
+            if(v3 != v1 && v3 != v2) {
+                offsets[v3 + 1]++;
+            }
+        }
+        for(int v = 0; v < vertexCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        // faces are visited in order, so each vertex's range comes out sorted
+        int[] faces = new int[offsets[vertexCount]];
+        int[] fill = new int[vertexCount];
+        System.arraycopy(offsets, 0, fill, 0, vertexCount);
+        for(int face = 0; face < faceCount; face++) {
+            int v1 = storage.getV1(face);
+            int v2 = storage.getV2(face);
+            int v3 = storage.getV3(face);
+            faces[fill[v1]++] = face;
+            if(v2 != v1) {
+                faces[fill[v2]++] = face;
+            }
+            if(v3 != v1 && v3 != v2) {
+                faces[fill[v3]++] = face;
+            }
+        }
+        return new VertexFaces(offsets, faces);
+    }
+
+    int vertexCount() {
+        return offsets.length - 1;
+    }
+
+    int start(int vertex) {
+        return vertex < vertexCount() ? offsets[vertex] : 0;
+    }
+
+    int end(int vertex) {
+        return vertex < vertexCount() ? offsets[vertex + 1] : 0;
+    }
+
+    int face(int idx) {
+        return faces[idx];
+    }
+}
@@ -0,0 +1,280 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import io.hostilerobot.ceramicrelief.util.Epsilon;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * merges vertices that are within epsilon of each other, so faces that touch in space also share vertex IDs.
+ * Formats like STL repeat each vertex for every triangle, and without welding no two faces would be adjacent.
+ *
+ * Vertices are bucketed into a uniform hash grid with cells epsilon wide, so a vertex only needs to be compared
+ * against the 27 cells around it. Each vertex then points at the lowest vertex within epsilon of it, and chains
+ * of these are collapsed by pointer jumping. Both steps run in parallel.
+ *
+ * Welding is transitive: if a is near b and b is near c, all three are merged even if a and c are further apart.
+ * A welded vertex keeps the position of the lowest vertex merged into it. Faces that lose a vertex to welding
+ * (e.g. slivers shorter than epsilon) are dropped.
+ */
+public final class VertexWelder {
+    private final double epsilon;
+
+    public VertexWelder() {
+        this(Epsilon.epsilon());
+    }
+
+    public VertexWelder(double epsilon) {
+        if(!(epsilon > 0.0)) {
+            throw new IllegalArgumentException("epsilon must be positive, got " + epsilon);
+        }
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * @param vertices x, y, z for each vertex
+     * @param faces v1, v2, v3 for each face
+     */
+    public Welded weld(double[] vertices, int[] faces) {
+        int vertexCount = vertices.length / 3;
+        double epsilonSq = epsilon * epsilon;
+
+        // bucket vertices by grid cell
+        long[] cellKeys = new long[vertexCount];
+        IntStream.range(0, vertexCount).parallel().forEach(v ->
+                cellKeys[v] = cellKey(cell(vertices[v * 3]), cell(vertices[v * 3 + 1]), cell(vertices[v * 3 + 2])));
+        CellTable cells = new CellTable(cellKeys);
+
+        // each vertex points at the lowest vertex within epsilon of it. A vertex only writes its own entry
+        int[] parent = new int[vertexCount];
+        IntStream.range(0, cells.cellCount()).parallel().forEach(cell -> {
+            for(int i = cells.start(cell), end = cells.end(cell); i < end; i++) {
+                int v = cells.vertex(i);
+                parent[v] = nearestLower(vertices, cells, v, epsilonSq);
+            }
+        });
+
+        // pointer jumping. Parents only ever point lower, so this settles on the root of each chain
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            int root = parent[v];
+            while(parent[root] != root) {
+                root = parent[root];
+            }
+            parent[v] = root;
+        });
+
+        // roots are kept, in their original order
+        int[] vertexMap = new int[vertexCount];
+        int kept = 0;
+        for(int v = 0; v < vertexCount; v++) {
+            if(parent[v] == v) {
+                vertexMap[v] = kept++;
+            }
+        }
+        double[] weldedVertices = new double[kept * 3];
+        // roots are all numbered by now, so the other vertices can look theirs up in any order
+        IntStream.range(0, vertexCount).parallel().forEach(v -> {
+            if(parent[v] == v) {
+                System.arraycopy(vertices, v * 3, weldedVertices, vertexMap[v] * 3, 3);
+            } else {
+                vertexMap[v] = vertexMap[parent[v]];
+            }
+        });
+
+        // remap faces, dropping those that collapsed
+        int faceCount = faces.length / 3;
+        int[] remapped = new int[faces.length];
+        boolean[] keep = new boolean[faceCount];
+        IntStream.range(0, faceCount).parallel().forEach(face -> {
+            int v1 = vertexMap[faces[face * 3]];
+            int v2 = vertexMap[faces[face * 3 + 1]];
+            int v3 = vertexMap[faces[face * 3 + 2]];
+            remapped[face * 3] = v1;
+            remapped[face * 3 + 1] = v2;
+            remapped[face * 3 + 2] = v3;
+            keep[face] = v1 != v2 && v2 != v3 && v3 != v1;
+        });
+        int[] faceMap = new int[faceCount];
+        int keptFaces = 0;
+        for(int face = 0; face < faceCount; face++) {
+            if(keep[face]) {
+                faceMap[keptFaces++] = face;
+            }
+        }
+        if(keptFaces == faceCount) {
+            return new Welded(weldedVertices, remapped, vertexMap, faceMap);
+        }
+        int[] weldedFaces = new int[keptFaces * 3];
+        int[] keptFaceMap = Arrays.copyOf(faceMap, keptFaces);
+        IntStream.range(0, keptFaces).parallel().forEach(face ->
+                System.arraycopy(remapped, keptFaceMap[face] * 3, weldedFaces, face * 3, 3));
+        return new Welded(weldedVertices, weldedFaces, vertexMap, keptFaceMap);
+    }
+
+    private long cell(double coordinate) {
+        return (long) Math.floor(coordinate / epsilon);
+    }
+
+    private static long cellKey(long cx, long cy, long cz) {
+        // distinct cells may share a key; they just get compared against each other needlessly
+        long key = (cx * 0x9E3779B97F4A7C15L + cy) * 0xC2B2AE3D27D4EB4FL + cz;
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private int nearestLower(double[] vertices, CellTable cells, int v, double epsilonSq) {
+        double x = vertices[v * 3];
+        double y = vertices[v * 3 + 1];
+        double z = vertices[v * 3 + 2];
+        long cx = cell(x);
+        long cy = cell(y);
+        long cz = cell(z);
+        int lowest = v;
+        for(long dx = -1; dx <= 1; dx++) {
+            for(long dy = -1; dy <= 1; dy++) {
+                for(long dz = -1; dz <= 1; dz++) {
+                    int cell = cells.find(cellKey(cx + dx, cy + dy, cz + dz));
+                    if(cell < 0) {
+                        continue;
+                    }
+                    // vertices in a cell are in ascending order, so stop once they are no longer lower
+                    for(int i = cells.start(cell), end = cells.end(cell); i < end; i++) {
+                        int other = cells.vertex(i);
+                        if(other >= lowest) {
+                            break;
+                        }
+                        double ox = vertices[other * 3] - x;
+                        double oy = vertices[other * 3 + 1] - y;
+                        double oz = vertices[other * 3 + 2] - z;
+                        if(ox * ox + oy * oy + oz * oz <= epsilonSq) {
+                            lowest = other;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return lowest;
+    }
+
+    /**
+     * open-addressing table from cell key to the vertices in the cell, stored as compressed rows
+     */
+    private static final class CellTable {
+        private final long[] keys;
+        private final int[] slotCells; // cell ID at each slot, or -1 if the slot is empty
+        private final int mask;
+        private final int[] offsets;
+        private final int[] vertices;
+
+        CellTable(long[] cellKeys) {
+            int capacity = Integer.highestOneBit(Math.max(cellKeys.length * 2, 16) - 1) << 1;
+            keys = new long[capacity];
+            slotCells = new int[capacity];
+            Arrays.fill(slotCells, -1);
+            mask = capacity - 1;
+
+            // assign cell IDs and count the vertices in each
+            int[] cellOf = new int[cellKeys.length];
+            int[] counts = new int[cellKeys.length + 1];
+            int cellCount = 0;
+            for(int v = 0; v < cellKeys.length; v++) {
+                long key = cellKeys[v];
+                int slot = (int) key & mask;
+                while(slotCells[slot] >= 0 && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                if(slotCells[slot] < 0) {
+                    keys[slot] = key;
+                    slotCells[slot] = cellCount++;
+                }
+                cellOf[v] = slotCells[slot];
+                counts[cellOf[v] + 1]++;
+            }
+            offsets = Arrays.copyOf(counts, cellCount + 1);
+            for(int cell = 0; cell < cellCount; cell++) {
+                offsets[cell + 1] += offsets[cell];
+            }
+            // vertices are scattered in order, so each cell's list is ascending
+            vertices = new int[cellKeys.length];
+            int[] fill = Arrays.copyOf(offsets, cellCount);
+            for(int v = 0; v < cellKeys.length; v++) {
+                vertices[fill[cellOf[v]]++] = v;
+            }
+        }
+
+        int find(long key) {
+            for(int slot = (int) key & mask; slotCells[slot] >= 0; slot = (slot + 1) & mask) {
+                if(keys[slot] == key) {
+                    return slotCells[slot];
+                }
+            }
+            return -1;
+        }
+
+        int cellCount() {
+            return offsets.length - 1;
+        }
+
+        int start(int cell) {
+            return offsets[cell];
+        }
+
+        int end(int cell) {
+            return offsets[cell + 1];
+        }
+
+        int vertex(int idx) {
+            return vertices[idx];
+        }
+    }
+
+    /**
+     * result of welding. Indices in the faces refer to the welded vertices
+     */
+    public static final class Welded {
+        private final double[] vertices;
+        private final int[] faces;
+        private final int[] vertexMap;
+        private final int[] faceMap;
+
+        private Welded(double[] vertices, int[] faces, int[] vertexMap, int[] faceMap) {
+            this.vertices = vertices;
+            this.faces = faces;
+            this.vertexMap = vertexMap;
+            this.faceMap = faceMap;
+        }
+
+        public double[] getVertices() {
+            return vertices;
+        }
+
+        public int[] getFaces() {
+            return faces;
+        }
+
+        /**
+         * @return welded vertex ID for each input vertex
+         */
+        public int[] getVertexMap() {
+            return vertexMap;
+        }
+
+        /**
+         * @return input face ID for each welded face
+         */
+        public int[] getFaceMap() {
+            return faceMap;
+        }
+
+        public int vertexCount() {
+            return vertices.length / 3;
+        }
+
+        public int faceCount() {
+            return faces.length / 3;
+        }
+    }
+}
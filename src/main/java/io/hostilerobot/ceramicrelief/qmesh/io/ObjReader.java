@@ -0,0 +1,349 @@
+package io.hostilerobot.ceramicrelief.qmesh.io;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * reads the geometry of Wavefront OBJ files: vertex positions ("v") and faces ("f"). Texture coordinates,
+ * normals, groups, materials and other statements are skipped.
+ *
+ * The file is mapped and split into chunks at line boundaries, and the chunks are parsed in parallel into
+ * per-chunk primitive buffers that are then stitched together. Polygons are triangulated as a fan around their
+ * first vertex. Negative (relative) indices are resolved once every chunk knows how many vertices precede it.
+ */
+public final class ObjReader {
+    private ObjReader() {}
+
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final int CHUNKS_PER_CORE = 8;
+
+    // powers of ten that are exact as doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    /**
+     * reads the file into a new mesh
+     */
+    public static QMesh read(Path path) throws IOException {
+        return read(path, QMesh.builder()).build();
+    }
+
+    /**
+     * reads the file into the builder's vertices and faces
+     * @return into
+     */
+    public static QMesh.Builder read(Path path, QMesh.Builder into) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            Arena arena = Arena.ofShared()) {
+            long size = channel.size();
+            MemorySegment file = size == 0 ? MemorySegment.NULL : channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+
+            // chunk boundaries, each moved forward to just past a newline
+            long chunkBytes = Math.max(MIN_CHUNK_BYTES, size / ((long) Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE));
+            int chunkCount = (int) Math.max(1, (size + chunkBytes - 1) / chunkBytes);
+            long[] bounds = new long[chunkCount + 1];
+            for(int chunk = 1; chunk < chunkCount; chunk++) {
+                bounds[chunk] = Math.max(bounds[chunk - 1], nextLine(file, chunk * chunkBytes, size));
+            }
+            bounds[chunkCount] = size;
+
+            Chunk[] chunks = new Chunk[chunkCount];
+            try {
+                IntStream.range(0, chunkCount).parallel().forEach(chunk ->
+                        chunks[chunk] = new Chunk(file, bounds[chunk], bounds[chunk + 1]).parse());
+            } catch(UncheckedIOException e) {
+                throw new IOException(path + ": " + e.getCause().getMessage(), e.getCause());
+            }
+
+            // stitch the chunks together
+            int[] vertexBase = new int[chunkCount + 1];
+            int[] faceBase = new int[chunkCount + 1];
+            for(int chunk = 0; chunk < chunkCount; chunk++) {
+                vertexBase[chunk + 1] = Math.addExact(vertexBase[chunk], chunks[chunk].vertexSize);
+                faceBase[chunk + 1] = Math.addExact(faceBase[chunk], chunks[chunk].faceSize);
+            }
+            double[] vertices = new double[vertexBase[chunkCount]];
+            int[] faces = new int[faceBase[chunkCount]];
+            IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+                Chunk parsed = chunks[chunk];
+                System.arraycopy(parsed.vertices, 0, vertices, vertexBase[chunk], parsed.vertexSize);
+                System.arraycopy(parsed.faces, 0, faces, faceBase[chunk], parsed.faceSize);
+                // relative indices were stored relative to the start of their chunk
+                int firstVertex = vertexBase[chunk] / 3;
+                for(int i = 0; i < parsed.relativeSize; i++) {
+                    faces[faceBase[chunk] + parsed.relative[i]] += firstVertex;
+                }
+            });
+            return into.vertices(vertices).faces(faces);
+        }
+    }
+
+    private static long nextLine(MemorySegment file, long from, long size) {
+        for(long pos = from; pos < size; pos++) {
+            if(file.get(ValueLayout.JAVA_BYTE, pos) == '\n') {
+                return pos + 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * parses the lines in [start, end) of the file
+     */
+    private static final class Chunk {
+        private final MemorySegment file;
+        private final long start;
+        private final long end;
+        private long pos;
+
+        private double[] vertices = new double[48];
+        private int vertexSize = 0;
+        private int[] faces = new int[48];
+        private int faceSize = 0;
+        // positions in faces that hold an index relative to the first vertex of this chunk
+        private int[] relative = new int[0];
+        private int relativeSize = 0;
+        // polygon being read
+        private int[] polygon = new int[8];
+        private boolean[] polygonRelative = new boolean[8];
+
+        Chunk(MemorySegment file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        Chunk parse() {
+            pos = start;
+            while(pos < end) {
+                skipSpaces();
+                if(pos < end) {
+                    byte first = peek();
+                    if(first == 'v' && isSpace(peek(1))) {
+                        pos++;
+                        parseVertex();
+                    } else if(first == 'f' && isSpace(peek(1))) {
+                        pos++;
+                        parseFace();
+                    }
+                }
+                skipLine();
+            }
+            return this;
+        }
+
+        private void parseVertex() {
+            if(vertexSize + 3 > vertices.length) {
+                vertices = Arrays.copyOf(vertices, vertices.length + (vertices.length >> 1) + 3);
+            }
+            // an optional w coordinate is left for skipLine
+            for(int axis = 0; axis < 3; axis++) {
+                skipSpaces();
+                vertices[vertexSize + axis] = parseDouble();
+            }
+            vertexSize += 3;
+        }
+
+        private void parseFace() {
+            int corners = 0;
+            int readVertices = vertexSize / 3; // vertices read by this chunk so far
+            for(skipSpaces(); pos < end && !isLineEnd(peek()); skipSpaces()) {
+                if(corners == polygon.length) {
+                    polygon = Arrays.copyOf(polygon, corners << 1);
+                    polygonRelative = Arrays.copyOf(polygonRelative, corners << 1);
+                }
+                long tokenStart = pos;
+                long index = parseLong();
+                if(index == 0) {
+                    throw malformed("vertex index 0 in face", tokenStart);
+                } else if(index > 0) {
+                    // OBJ indices start at 1
+                    polygon[corners] = Math.toIntExact(index - 1);
+                    polygonRelative[corners] = false;
+                } else {
+                    // -1 is the most recently read vertex
+                    polygon[corners] = Math.toIntExact(readVertices + index);
+                    polygonRelative[corners] = true;
+                }
+                corners++;
+                // skip texture and normal indices
+                while(pos < end && !isSpace(peek()) && !isLineEnd(peek())) {
+                    pos++;
+                }
+            }
+            if(corners < 3) {
+                throw malformed("face with fewer than 3 vertices", pos);
+            }
+            for(int corner = 2; corner < corners; corner++) {
+                addCorner(0);
+                addCorner(corner - 1);
+                addCorner(corner);
+            }
+        }
+
+        private void addCorner(int corner) {
+            if(faceSize == faces.length) {
+                faces = Arrays.copyOf(faces, faces.length + (faces.length >> 1));
+            }
+            if(polygonRelative[corner]) {
+                if(relativeSize == relative.length) {
+                    relative = Arrays.copyOf(relative, Math.max(16, relativeSize << 1));
+                }
+                relative[relativeSize++] = faceSize;
+            }
+            faces[faceSize++] = polygon[corner];
+        }
+
+        private long parseLong() {
+            boolean negative = false;
+            if(pos < end && (peek() == '-' || peek() == '+')) {
+                negative = peek() == '-';
+                pos++;
+            }
+            long tokenStart = pos;
+            long value = 0;
+            while(pos < end && isDigit(peek())) {
+                value = value * 10 + (peek() - '0');
+                pos++;
+            }
+            if(pos == tokenStart || value > Integer.MAX_VALUE) {
+                throw malformed("bad vertex index", tokenStart);
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * parses a decimal number. Plain numbers that fit in a long mantissa with a small exponent are converted
+         * exactly with one multiply or divide; anything else falls back to {@link Double#parseDouble}
+         */
+        private double parseDouble() {
+            long tokenStart = pos;
+            boolean negative = false;
+            if(pos < end && (peek() == '-' || peek() == '+')) {
+                negative = peek() == '-';
+                pos++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean any = false;
+            while(pos < end && isDigit(peek())) {
+                if(mantissa != 0 || peek() != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (peek() - '0');
+                pos++;
+                any = true;
+            }
+            if(pos < end && peek() == '.') {
+                pos++;
+                while(pos < end && isDigit(peek())) {
+                    if(mantissa != 0 || peek() != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (peek() - '0');
+                    exponent--;
+                    pos++;
+                    any = true;
+                }
+            }
+            if(pos < end && (peek() == 'e' || peek() == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if(pos < end && (peek() == '-' || peek() == '+')) {
+                    negativeExponent = peek() == '-';
+                    pos++;
+                }
+                int written = 0;
+                boolean anyExponent = false;
+                while(pos < end && isDigit(peek())) {
+                    written = Math.min(written * 10 + (peek() - '0'), 100_000);
+                    pos++;
+                    anyExponent = true;
+                }
+                if(!anyExponent) {
+                    return slowParse(tokenStart);
+                }
+                exponent += negativeExponent ? -written : written;
+            }
+            if(!any || (pos < end && !isSpace(peek()) && !isLineEnd(peek()))) {
+                // e.g. "nan", "inf", or hex. Let the JDK decide
+                return slowParse(tokenStart);
+            }
+
+            // mantissa and 10^|exponent| are both exact doubles here, so one rounding gives the correct result
+            if(digits <= 15 && exponent >= -22 && exponent <= 22) {
+                double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+                return negative ? -value : value;
+            }
+            return slowParse(tokenStart);
+        }
+
+        private double slowParse(long tokenStart) {
+            pos = tokenStart;
+            while(pos < end && !isSpace(peek()) && !isLineEnd(peek())) {
+                pos++;
+            }
+            String token = new String(file.asSlice(tokenStart, pos - tokenStart).toArray(ValueLayout.JAVA_BYTE),
+                    StandardCharsets.US_ASCII);
+            try {
+                return Double.parseDouble(token);
+            } catch(NumberFormatException e) {
+                throw malformed("bad coordinate \"" + token + "\"", tokenStart);
+            }
+        }
+
+        private UncheckedIOException malformed(String message, long at) {
+            return new UncheckedIOException(new IOException(message + " at byte " + at));
+        }
+
+        private void skipSpaces() {
+            while(pos < end && isSpace(peek())) {
+                pos++;
+            }
+        }
+
+        private void skipLine() {
+            while(pos < end && peek() != '\n') {
+                pos++;
+            }
+            pos++;
+        }
+
+        private byte peek() {
+            return file.get(ValueLayout.JAVA_BYTE, pos);
+        }
+
+        private byte peek(int ahead) {
+            return pos + ahead < end ? file.get(ValueLayout.JAVA_BYTE, pos + ahead) : (byte) '\n';
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        private static boolean isLineEnd(byte b) {
+            return b == '\n' || b == '\r' || b == '#';
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+    }
+}
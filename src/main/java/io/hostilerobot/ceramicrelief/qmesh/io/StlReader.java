@@ -0,0 +1,92 @@
+package io.hostilerobot.ceramicrelief.qmesh.io;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * reads binary STL files. The file is mapped rather than streamed through a buffer, and triangles are decoded
+ * in parallel straight into flat vertex and index arrays.
+ *
+ * STL stores three vertices per triangle with no sharing, so the mesh should be welded
+ * (see {@link QMesh.Builder#weld(boolean)}) for faces to be connected. {@link #read(Path)} does this.
+ * The per-triangle normal and attribute bytes are ignored; normals are recomputed from the winding.
+ */
+public final class StlReader {
+    private StlReader() {}
+
+    private static final long HEADER_BYTES = 80;
+    private static final long COUNT_BYTES = 4;
+    private static final long TRIANGLE_BYTES = 50; // normal, 3 vertices, attribute byte count
+    private static final long VERTEX_OFFSET = 12;  // skip the normal
+
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt COUNT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * reads and welds the file into a new mesh
+     */
+    public static QMesh read(Path path) throws IOException {
+        return read(path, QMesh.builder().weld(true)).build();
+    }
+
+    /**
+     * reads the file into the builder's vertices and faces. Each triangle gets its own three vertices
+     * @return into
+     */
+    public static QMesh.Builder read(Path path, QMesh.Builder into) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            Arena arena = Arena.ofShared()) {
+            long size = channel.size();
+            if(size < HEADER_BYTES + COUNT_BYTES) {
+                throw new IOException(path + " is too short to be a binary STL file");
+            }
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+            long triangleCount = Integer.toUnsignedLong(file.get(COUNT, HEADER_BYTES));
+            if(size != HEADER_BYTES + COUNT_BYTES + triangleCount * TRIANGLE_BYTES) {
+                if(isAscii(file)) {
+                    throw new IOException(path + " is an ASCII STL file, which is not supported");
+                }
+                throw new IOException(path + " has " + triangleCount + " triangles but is " + size + " bytes");
+            }
+            if(triangleCount * 9 > Integer.MAX_VALUE) {
+                throw new IOException(path + " has too many triangles: " + triangleCount);
+            }
+
+            int triangles = (int) triangleCount;
+            double[] vertices = new double[triangles * 9];
+            int[] faces = new int[triangles * 3];
+            MemorySegment body = file.asSlice(HEADER_BYTES + COUNT_BYTES);
+            IntStream.range(0, triangles).parallel().forEach(triangle -> {
+                long offset = triangle * TRIANGLE_BYTES + VERTEX_OFFSET;
+                int idx = triangle * 9;
+                for(int coordinate = 0; coordinate < 9; coordinate++) {
+                    vertices[idx + coordinate] = body.get(FLOAT, offset + coordinate * FLOAT.byteSize());
+                }
+                faces[triangle * 3] = triangle * 3;
+                faces[triangle * 3 + 1] = triangle * 3 + 1;
+                faces[triangle * 3 + 2] = triangle * 3 + 2;
+            });
+            return into.vertices(vertices).faces(faces);
+        }
+    }
+
+    private static boolean isAscii(MemorySegment file) {
+        byte[] prefix = "solid".getBytes(StandardCharsets.US_ASCII);
+        for(int i = 0; i < prefix.length; i++) {
+            if(file.get(ValueLayout.JAVA_BYTE, i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,28 +1,24 @@
 package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
 
-import com.github.davidmoten.rtree2.Entry;
-import com.github.davidmoten.rtree2.RTree;
-import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.SearchRTree;
-import com.github.davidmoten.rtree2.geometry.internal.GeometryUtil;
+import io.hostilerobot.ceramicrelief.collection.heap.IndexedDoubleHeap;
+import io.hostilerobot.ceramicrelief.qmesh.DihedralRanking;
+import io.hostilerobot.ceramicrelief.qmesh.EdgeTopology;
+import io.hostilerobot.ceramicrelief.qmesh.FaceAdjacency;
 import io.hostilerobot.ceramicrelief.qmesh.QMesh;
 import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
-import io.hostilerobot.ceramicrelief.qmesh.QMeshFace;
-import io.hostilerobot.ceramicrelief.qmesh.QVertex3D;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.Orientation2D;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.SpatialIndex2D;
 import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.Triangle2D;
 import io.hostilerobot.ceramicrelief.texture.projection.FaceMappingInfo;
+import io.hostilerobot.ceramicrelief.texture.projection.ProjectionBudget;
+import io.hostilerobot.ceramicrelief.texture.projection.ProjectionMetrics;
 import io.hostilerobot.ceramicrelief.texture.projection.ProjectionState;
-import io.hostilerobot.ceramicrelief.texture.TEdge;
 import io.hostilerobot.ceramicrelief.texture.TEdgeConnectionPolicy;
 import io.hostilerobot.ceramicrelief.texture.TFace;
 import io.hostilerobot.ceramicrelief.util.Epsilon;
 import javafx.geometry.Point2D;
 import org.apache.commons.math.util.FastMath;
-import org.jgrapht.Graph;
-import org.jgrapht.Graphs;
-import org.jheaps.AddressableHeap;
-import org.jheaps.tree.PairingHeap;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -49,308 +45,290 @@ import java.util.Map;
  */
 public class DFSMeshPartitionTraversal implements MeshPartitionTraversal {
 
-    private static void populateEdge1_2(QMesh mesh, QMeshFace faceToAdd, HeapElem reference) {
-        QVertex3D v2 = mesh.getVertex(faceToAdd.getV2());
-        // we create these vector in the same direction that they are defined
-        // such that they are increasing e.g. 1->2, 2->3, or 3->1
-        // triVector goes from the end of the edgeVector to the new point
-        reference.edgeVector = v2.subtract(mesh.getVertex(faceToAdd.getV1()));
-        reference.triVector = mesh.getVertex(faceToAdd.getV3()).subtract(v2);
-        reference.vertexToPlace = faceToAdd.getV3();
+    // vectors for the candidate in slot, where faceToAdd has the shared edge va -> vb in its winding order
+    // and vc is the vertex to place. We create these vectors in the same direction that they are defined
+    // such that they are increasing e.g. 1->2, 2->3, or 3->1
+    // triVector goes from the end of the edgeVector to the new point
+    private static void populateEdge(QMesh mesh, int va, int vb, int vc, TraversalScratch scratch, int slot) {
+        double bx = mesh.getVertexX(vb);
+        double by = mesh.getVertexY(vb);
+        double bz = mesh.getVertexZ(vb);
+        double[] vectors = scratch.vectors;
+        int base = slot * 6;
+        // edgeVector
+        vectors[base] = bx - mesh.getVertexX(va);
+        vectors[base + 1] = by - mesh.getVertexY(va);
+        vectors[base + 2] = bz - mesh.getVertexZ(va);
+        // triVector
+        vectors[base + 3] = mesh.getVertexX(vc) - bx;
+        vectors[base + 4] = mesh.getVertexY(vc) - by;
+        vectors[base + 5] = mesh.getVertexZ(vc) - bz;
+        scratch.vertexToPlace[slot] = vc;
     }
 
-    private static void populateEdge2_3(QMesh mesh, QMeshFace faceToAdd, HeapElem reference) {
-        QVertex3D v3 = mesh.getVertex(faceToAdd.getV3());
-        reference.edgeVector = v3.subtract(mesh.getVertex(faceToAdd.getV2()));
-        reference.triVector = mesh.getVertex(faceToAdd.getV1()).subtract(v3);
-        reference.vertexToPlace = faceToAdd.getV1();
+    private static void populateEdge1_2(QMesh mesh, int face, TraversalScratch scratch, int slot) {
+        populateEdge(mesh, mesh.getFaceV1(face), mesh.getFaceV2(face), mesh.getFaceV3(face), scratch, slot);
     }
 
-    private static void populateEdge3_1(QMesh mesh, QMeshFace faceToAdd, HeapElem reference) {
-        QVertex3D v1 = mesh.getVertex(faceToAdd.getV1());
-        reference.edgeVector = v1.subtract(mesh.getVertex(faceToAdd.getV3()));
-        reference.triVector = mesh.getVertex(faceToAdd.getV2()).subtract(v1);
-        reference.vertexToPlace = faceToAdd.getV2();
+    private static void populateEdge2_3(QMesh mesh, int face, TraversalScratch scratch, int slot) {
+        populateEdge(mesh, mesh.getFaceV2(face), mesh.getFaceV3(face), mesh.getFaceV1(face), scratch, slot);
     }
 
-    private static void populateTEdge3_1Same(TFace face, HeapElem reference) {
-        reference.isWindingSame = true;
-        reference.oppositeTVertex = face.getV2();
-        reference.edge2d = new TEdge(face.getV1(), face.getV3());
+    private static void populateEdge3_1(QMesh mesh, int face, TraversalScratch scratch, int slot) {
+        populateEdge(mesh, mesh.getFaceV3(face), mesh.getFaceV1(face), mesh.getFaceV2(face), scratch, slot);
     }
-    private static void populateTEdge3_1Diff(TFace face, HeapElem reference) {
-        reference.isWindingSame = false;
-        reference.oppositeTVertex = face.getV2();
-        reference.edge2d = new TEdge(face.getV3(), face.getV1());
+
+    private static void populateTEdge(TraversalScratch scratch, int slot, boolean isWindingSame, int opposite, int edgeV1, int edgeV2) {
+        scratch.windingSame[slot] = isWindingSame;
+        scratch.oppositeTVertex[slot] = opposite;
+        scratch.edge2dV1[slot] = edgeV1;
+        scratch.edge2dV2[slot] = edgeV2;
     }
-    private static void populateTEdge1_2Same(TFace face, HeapElem reference) {
-        reference.isWindingSame = true;
-        reference.oppositeTVertex = face.getV3();
-        reference.edge2d = new TEdge(face.getV2(), face.getV1());
+
+    private static void populateTEdge3_1Same(TFace face, TraversalScratch scratch, int slot) {
+        populateTEdge(scratch, slot, true, face.getV2(), face.getV1(), face.getV3());
     }
-    private static void populateTEdge1_2Diff(TFace face, HeapElem reference) {
-        reference.isWindingSame = false;
-        reference.oppositeTVertex = face.getV3();
-        reference.edge2d = new TEdge(face.getV1(), face.getV2());
+    private static void populateTEdge3_1Diff(TFace face, TraversalScratch scratch, int slot) {
+        populateTEdge(scratch, slot, false, face.getV2(), face.getV3(), face.getV1());
     }
-    private static void populateTEdge2_3Same(TFace face, HeapElem reference) {
-        reference.isWindingSame = true;
-        reference.oppositeTVertex = face.getV1();
-        reference.edge2d = new TEdge(face.getV3(), face.getV2());
+    private static void populateTEdge1_2Same(TFace face, TraversalScratch scratch, int slot) {
+        populateTEdge(scratch, slot, true, face.getV3(), face.getV2(), face.getV1());
     }
-    private static void populateTEdge2_3Diff(TFace face, HeapElem reference) {
-        reference.isWindingSame = false;
-        reference.oppositeTVertex = face.getV1();
-        reference.edge2d = new TEdge(face.getV2(), face.getV3());
+    private static void populateTEdge1_2Diff(TFace face, TraversalScratch scratch, int slot) {
+        populateTEdge(scratch, slot, false, face.getV3(), face.getV1(), face.getV2());
     }
-
-    private static class HeapElem{
-        private boolean isWindingSame; // is the winding the same between the two edges?
-        private int vertexToPlace;
-        private int faceId; // id of the face in 3d we're attempting to place down
-        private int oppositeTVertex; // tVertex on the opposite side from edge2d
-        private QMeshEdge adjacentFace; // edge in 3d that connects to this face (or null if it's the first item)
-        private TEdge edge2d;  // edge in 2d that connects to the face (this is the translation from edge3d to the 2d plain)
-        private QVertex3D edgeVector; // vector that describes the adjacent edge we're laying down
-        private QVertex3D triVector; // vector that describes the new triangle we're laying down
-        private TEdgeConnectionPolicy connectionPolicy;
-        public HeapElem(int faceId) {
-            this.faceId = faceId;
-            edge2d = null;
-            adjacentFace = null;
-        }
-        public HeapElem(int faceId, QMeshEdge adjacentFace) {
-            this.faceId = faceId;
-            this.adjacentFace = adjacentFace;
-        }
-        public boolean canBeConnected() {
-            return connectionPolicy.connected(isWindingSame);
-        }
-        public boolean placeAllVertices() {
-            return edge2d == null;
-        }
-        public int getVertexToPlace() {
-            return vertexToPlace;
-        }
+    private static void populateTEdge2_3Same(TFace face, TraversalScratch scratch, int slot) {
+        populateTEdge(scratch, slot, true, face.getV1(), face.getV3(), face.getV2());
+    }
+    private static void populateTEdge2_3Diff(TFace face, TraversalScratch scratch, int slot) {
+        populateTEdge(scratch, slot, false, face.getV1(), face.getV2(), face.getV3());
     }
 
     // as we traverse the 3d graph, we place down faces that are similar enough in angle to faces that are already down first
     // we break ties by choosing the lowest ID face to be placed
-    // we break ties by choosing the lowest connecting edge in 2d
-    private static class HeapOrder {
-        // constructor should only be utilized when inserting the first item into the heap
-        public HeapOrder(int faceOrder) {
-            this.faceOrder = faceOrder;
-            this.connectingEdge = null;
-            this.theta = -1;
-        }
-        public HeapOrder(int faceOrder, TEdge connectingEdge, double theta) {
-            // faceId, connectingEdge must not be null.
-            this.faceOrder = faceOrder;
-            this.connectingEdge = connectingEdge;
-            this.theta = theta;
-        }
-        private int faceOrder;
-        private double theta; // A . B = ||A|| ||B|| cos(theta)
-        // A . B / ||A|| ||B|| = cos(theta)
-        // dot product of two normals on two faces = cos(theta). 1 if they are parallel
-        // 0 if they are perpendicular. -1 if they are in opposite direction.
-        // therefore, for ordering purposes, we order by -cos(theta) since this is a min-ordered heap
-        // used to break ties.
-        private TEdge connectingEdge; // 2d edge in texture that connects to the face we're attempting to place down (null if there is none)
-        public double getTheta() {
-            return theta;
-        }
-        public int getFaceOrder() {
-            return faceOrder;
-        }
-
-        public TEdge getConnectingEdge() {
-            return connectingEdge;
-        }
+    // we break ties by choosing the lowest connecting edge in 2d, then the lowest slot
+    // theta is -cos(theta) from the dot product of the two normals, so this is a min-ordered heap
+    private static long heapTie(int faceOrder, int edgeV1) {
+        // tVertex IDs are never negative, so this orders by face, then edge
+        return ((long) faceOrder << 32) | edgeV1;
     }
 
-    private static final Comparator<HeapOrder> HEAP_ORDER_COMPARATOR =  Comparator.comparingDouble(HeapOrder::getTheta)
-            .thenComparingInt(HeapOrder::getFaceOrder)
-            .thenComparing(HeapOrder::getConnectingEdge, Comparator.nullsFirst(Comparator.comparingInt(TEdge::getV1).thenComparing(TEdge::getV2)));
-
     /**
      * not-so-elegant solution for finding a common face between two edges and finding where the expected texture coordinates should be
      * (accounting for winding order, etc). Also calculates which vertex on the second face we will be placing down
      *
      * extracts the common edge of the two faces based on comparing the reference IDs of the vertices
      * then it translates it to the edge of the texture coordinates by extracting it from {@param firstFace}, which represents
-     * the coordinates for the first face.
+     * the coordinates for the first face. The result is written to the candidate at slot in scratch
      */
-    private static void prepareForPlacement(QMesh mesh, QMeshFace first, QMeshFace second, TFace firstFace,
-                                            HeapElem reference) {
+    private static void prepareForPlacement(QMesh mesh, int first, int second, TFace firstFace,
+                                            TraversalScratch scratch, int slot) {
+        int f1 = mesh.getFaceV1(first), f2 = mesh.getFaceV2(first), f3 = mesh.getFaceV3(first);
+        int s1 = mesh.getFaceV1(second), s2 = mesh.getFaceV2(second), s3 = mesh.getFaceV3(second);
         // we only need to check currentFace.v1 and currentFace.v2
         // since they're sharing an edge, either one or the other will match
-        if(first.getV1() == second.getV1()) {
-            if(first.getV3() == second.getV2()) { // edge first[1--3] == second[1--2]
-                populateTEdge3_1Same(firstFace, reference);
-                populateEdge1_2(mesh, second, reference);
-            } else if(first.getV2() == second.getV3()) { // edge first[1--2] == second[1--3]
-                populateTEdge1_2Same(firstFace, reference);
-                populateEdge3_1(mesh, second, reference);
+        scratch.vertexToPlace[slot] = -1;
+        if(f1 == s1) {
+            if(f3 == s2) { // edge first[1--3] == second[1--2]
+                populateTEdge3_1Same(firstFace, scratch, slot);
+                populateEdge1_2(mesh, second, scratch, slot);
+            } else if(f2 == s3) { // edge first[1--2] == second[1--3]
+                populateTEdge1_2Same(firstFace, scratch, slot);
+                populateEdge3_1(mesh, second, scratch, slot);
             } // opposite windings
-            else if(first.getV2() == second.getV2()) { // edge first[1--2] == second[1--2]
-                populateTEdge1_2Diff(firstFace, reference);
-                populateEdge1_2(mesh, second, reference);
-            } else if(first.getV3() == second.getV3()) { // edge first[1--3] == second[1--3]
-                populateTEdge3_1Diff(firstFace, reference);
-                populateEdge3_1(mesh, second, reference);
+            else if(f2 == s2) { // edge first[1--2] == second[1--2]
+                populateTEdge1_2Diff(firstFace, scratch, slot);
+                populateEdge1_2(mesh, second, scratch, slot);
+            } else if(f3 == s3) { // edge first[1--3] == second[1--3]
+                populateTEdge3_1Diff(firstFace, scratch, slot);
+                populateEdge3_1(mesh, second, scratch, slot);
             }
-        } else if(first.getV1() == second.getV2()) {
-            if(first.getV2() == second.getV1()) { // edge first[1--2] == second[2--1]
-                populateTEdge1_2Same(firstFace, reference);
-                populateEdge1_2(mesh, second, reference);
-            } else if(first.getV3() == second.getV3()) { // edge first[1--3] == second[2--3]
-                populateTEdge3_1Same(firstFace, reference);
-                populateEdge2_3(mesh, second, reference);
+        } else if(f1 == s2) {
+            if(f2 == s1) { // edge first[1--2] == second[2--1]
+                populateTEdge1_2Same(firstFace, scratch, slot);
+                populateEdge1_2(mesh, second, scratch, slot);
+            } else if(f3 == s3) { // edge first[1--3] == second[2--3]
+                populateTEdge3_1Same(firstFace, scratch, slot);
+                populateEdge2_3(mesh, second, scratch, slot);
             } // different winding conditions
-            else if(first.getV2() == second.getV3()) { // edge first[1--2] == second[2--3]
-                populateTEdge1_2Diff(firstFace, reference);
-                populateEdge2_3(mesh, second, reference);
-            } else if(first.getV3() == second.getV1()) { // edge first[1--3] == second[2--1]
-                populateTEdge3_1Diff(firstFace, reference);
-                populateEdge1_2(mesh, second, reference);
+            else if(f2 == s3) { // edge first[1--2] == second[2--3]
+                populateTEdge1_2Diff(firstFace, scratch, slot);
+                populateEdge2_3(mesh, second, scratch, slot);
+            } else if(f3 == s1) { // edge first[1--3] == second[2--1]
+                populateTEdge3_1Diff(firstFace, scratch, slot);
+                populateEdge1_2(mesh, second, scratch, slot);
             }
-        } else if(first.getV1() == second.getV3()) {
-            if(first.getV2() == second.getV2()) { // edge first[1--2] == second[3--2]
-                populateTEdge1_2Same(firstFace, reference);
-                populateEdge2_3(mesh, second, reference);
-            } else if(first.getV3() == second.getV1()) { // edge first[1--3] == second[3--1]
-                populateTEdge3_1Same(firstFace, reference);
-                populateEdge3_1(mesh, second, reference);
+        } else if(f1 == s3) {
+            if(f2 == s2) { // edge first[1--2] == second[3--2]
+                populateTEdge1_2Same(firstFace, scratch, slot);
+                populateEdge2_3(mesh, second, scratch, slot);
+            } else if(f3 == s1) { // edge first[1--3] == second[3--1]
+                populateTEdge3_1Same(firstFace, scratch, slot);
+                populateEdge3_1(mesh, second, scratch, slot);
             } // opposite windings
-            else if(first.getV2() == second.getV1()) { // edge first[1--2] == second[3--1]
-                populateTEdge1_2Diff(firstFace, reference);
-                populateEdge3_1(mesh, second, reference);
-            } else if(first.getV3() == second.getV2()) { // edge first[1--3] == second[3--2]
-                populateTEdge3_1Diff(firstFace, reference);
-                populateEdge2_3(mesh, second, reference);
+            else if(f2 == s1) { // edge first[1--2] == second[3--1]
+                populateTEdge1_2Diff(firstFace, scratch, slot);
+                populateEdge3_1(mesh, second, scratch, slot);
+            } else if(f3 == s2) { // edge first[1--3] == second[3--2]
+                populateTEdge3_1Diff(firstFace, scratch, slot);
+                populateEdge2_3(mesh, second, scratch, slot);
             }
-        } else if(first.getV2() == second.getV1()) {
-            if(first.getV3() == second.getV3()) { // edge first[2--3] == second[1--3]
-                populateTEdge2_3Same(firstFace, reference);
-                populateEdge3_1(mesh, second, reference);
+        } else if(f2 == s1) {
+            if(f3 == s3) { // edge first[2--3] == second[1--3]
+                populateTEdge2_3Same(firstFace, scratch, slot);
+                populateEdge3_1(mesh, second, scratch, slot);
             } // opposite winding
-            else if(first.getV3() == second.getV2()) { // edge first[2--3] == second[1--2]
-                populateTEdge2_3Diff(firstFace, reference);
-                populateEdge1_2(mesh, second, reference);
+            else if(f3 == s2) { // edge first[2--3] == second[1--2]
+                populateTEdge2_3Diff(firstFace, scratch, slot);
+                populateEdge1_2(mesh, second, scratch, slot);
             }
-        } else if(first.getV2() == second.getV2()) {
-            if(first.getV3() == second.getV1()) { // edge first[2--3] == second[2--1]
-                populateTEdge2_3Same(firstFace, reference);
-                populateEdge1_2(mesh, second, reference);
+        } else if(f2 == s2) {
+            if(f3 == s1) { // edge first[2--3] == second[2--1]
+                populateTEdge2_3Same(firstFace, scratch, slot);
+                populateEdge1_2(mesh, second, scratch, slot);
             } // opposite winding
-            else if(first.getV3() == second.getV3()) { // edge first[2--3] == second[2--3]
-                populateTEdge2_3Diff(firstFace, reference);
-                populateEdge2_3(mesh, second, reference);
+            else if(f3 == s3) { // edge first[2--3] == second[2--3]
+                populateTEdge2_3Diff(firstFace, scratch, slot);
+                populateEdge2_3(mesh, second, scratch, slot);
             }
-        } else if(first.getV2() == second.getV3()) {
-            if(first.getV3() == second.getV2()) { // edge first[2--3] == second[3--2]
-                populateTEdge2_3Same(firstFace, reference);
-                populateEdge2_3(mesh, second, reference);
+        } else if(f2 == s3) {
+            if(f3 == s2) { // edge first[2--3] == second[3--2]
+                populateTEdge2_3Same(firstFace, scratch, slot);
+                populateEdge2_3(mesh, second, scratch, slot);
             } // opposite winding
-            else if(first.getV3() == second.getV1()) { // edge first[2--3] == second[3--1]
-                populateTEdge2_3Diff(firstFace, reference);
-                populateEdge3_1(mesh, second, reference);
+            else if(f3 == s1) { // edge first[2--3] == second[3--1]
+                populateTEdge2_3Diff(firstFace, scratch, slot);
+                populateEdge3_1(mesh, second, scratch, slot);
             }
         }
         // these should be set by the end
-        assert reference.edge2d != null && reference.edgeVector != null && reference.triVector != null;
+        assert scratch.vertexToPlace[slot] >= 0;
     }
 
-    private static void prepareConnectionPolicy(
-            HeapElem reference,
+    private static TEdgeConnectionPolicy prepareConnectionPolicy(
+            TraversalScratch scratch, int slot,
             Map<QMeshEdge, TEdgeConnectionPolicy> edgeConnectionPolicy) {
         // populate policy: set it to default if it's not already defined
-        reference.connectionPolicy = edgeConnectionPolicy.computeIfAbsent(reference.adjacentFace,
-                k -> TEdgeConnectionPolicy.getDefaultPolicy(reference.isWindingSame));
-        assert reference.connectionPolicy != null; // policy should be set too.
+        QMeshEdge edge = scratch.edge(slot);
+        TEdgeConnectionPolicy policy = edgeConnectionPolicy.get(edge);
+        if(policy == null) {
+            policy = TEdgeConnectionPolicy.getDefaultPolicy(scratch.windingSame[slot]);
+            edgeConnectionPolicy.put(edge, policy);
+        }
+        return policy;
     }
 
 
     @Override
     public ProjectedTextureInfo projectSubset(int initialFace, ProjectionState projectionState) {
+        // a traversal on its own gets its own working state. A session shares it between traversals
+        return projectSubset(initialFace, projectionState, new TraversalScratch());
+    }
+
+    /**
+     * @return traversal that keeps its candidate buffers and overlap index between traversals,
+     *         so only its first traversal of a mesh allocates them
+     */
+    @Override
+    public MeshPartitionTraversal session() {
+        TraversalScratch scratch = new TraversalScratch();
+        return (initialFace, projectionState) -> projectSubset(initialFace, projectionState, scratch);
+    }
+
+    ProjectedTextureInfo projectSubset(int initialFace, ProjectionState projectionState, TraversalScratch scratch) {
         return traverse(initialFace, projectionState.getMesh(),
                 projectionState.getProjection().getTFaces(),
                 projectionState.getProjection().getTVertices(),
                 projectionState.getProjection().getFaceMapping(),
-                projectionState.getConnections());
+                projectionState.getConnections(),
+                projectionState.getBudget(),
+                projectionState.getMetrics(),
+                scratch);
     }
 
     private ProjectedTextureInfo traverse(int initialMeshFace, QMesh backingMesh,
                                           List<TFace> tFaces, List<Point2D> tVertices,
                                           FaceMappingInfo faceMapping,
-                                          Map<QMeshEdge, TEdgeConnectionPolicy> edgeConnectionPolicy) {
+                                          Map<QMeshEdge, TEdgeConnectionPolicy> edgeConnectionPolicy,
+                                          ProjectionBudget budget, ProjectionMetrics metrics,
+                                          TraversalScratch scratch) {
 
         ProjectedTextureInfo result = new ProjectedTextureInfo();
+        FaceAdjacency connectivity = backingMesh.getAdjacency();
+        EdgeTopology topology = backingMesh.getEdgeTopology();
+        // normals for the whole mesh are computed in one batch rather than one face at a time in the loop
+        backingMesh.computeNormals();
+        // so is the ranking between each pair of adjacent faces, which is kept by the mesh between projections
+        DihedralRanking ranking = backingMesh.getDihedralRanking();
+        // candidates are kept in primitive arrays per adjacency slot rather than as objects on the heap
+        scratch.prepare(connectivity, backingMesh.vertexCount());
+        double[] vectors = scratch.vectors;
+        IndexedDoubleHeap heap = scratch.heap;
+        int initialSlot = scratch.initialSlot();
         // way to test for intersection among 3d triangles in a 2d plane
         // start with an empty intersection test each time we begin traversing the mesh.
-        RTree<TFace, Triangle2D> intersectionTest = RTree.create();
-        PairingHeap<HeapOrder, HeapElem> heap = new PairingHeap<>(HEAP_ORDER_COMPARATOR);
-        Graph<Integer, QMeshEdge> connectivity = backingMesh.getMeshConnectivity();
+        SpatialIndex2D intersectionTest = scratch.index;
+
+        scratch.beginTraversal();
+
+        // counted locally and added to the metrics once at the end
+        TraversalEvent event = new TraversalEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long visitsBefore = intersectionTest.visitCount();
+        int queued = 1;
+        int dropped = 0;
+        int rejected = 0;
 
         // add an initial element
-        HeapOrder initialOrder = new HeapOrder(initialMeshFace);
-        HeapElem initialElem = new HeapElem(initialMeshFace);
-        heap.insert(initialOrder, initialElem);
+        heap.insert(initialSlot, -1, heapTie(initialMeshFace, 0));
 
         while(!heap.isEmpty()) {
             // get an item off the heap
-            AddressableHeap.Handle<HeapOrder, HeapElem> item = heap.deleteMin();
-            HeapElem elem = item.getValue();
-            int currentMeshFaceId = elem.faceId;
-
-            // we already placed this item from the heap.
-            // note we may have duplicates of the 3d face in the heap if we add it along different connecting edges
-            if(faceMapping.isFacePlacedOnTexture(currentMeshFaceId)) {
-                continue;
-            }
+            int slot = heap.poll();
+            boolean placeAllVertices = slot == initialSlot; // true for the first triangle, which has no edge to connect to
+            int currentMeshFaceId = placeAllVertices ? initialMeshFace : connectivity.neighbor(slot);
+            // a face may still be queued along other edges, and those candidates are dropped once it's placed.
+            // so nothing popped from the heap is already placed
+            assert !faceMapping.isFacePlacedOnTexture(currentMeshFaceId);
 
-            QMeshFace faceToPlace = backingMesh.getFace(currentMeshFaceId);
+            int faceV1 = backingMesh.getFaceV1(currentMeshFaceId);
+            int faceV2 = backingMesh.getFaceV2(currentMeshFaceId);
+            int faceV3 = backingMesh.getFaceV3(currentMeshFaceId);
 
-            TEdge adjacentEdge2d = elem.edge2d;
-
-            Point2D insertedPoint = null; // non-null if this isn't the first inserted triangle
-            Point2D p1, p2, p3; // three points we will place down (and test against existing items in the RTree
+            Point2D p1, p2, p3; // three points we will place down (and test against existing items in the index
+            // p3 is the inserted point if this isn't the first inserted triangle
+            int commonTVertex = -1; // existing texture vertex that p3 is merged with, if any
 
             // project the triangle onto the 2d plane, preserving the length of the sides
             // calculation is mostly the same between placing the first triangle and placing subsequent triangles
             {
-                QVertex3D vertex1 = null;
-                QVertex3D v12;
-                if(!elem.placeAllVertices()) {
-                    assert faceMapping.isFacePlacedOnTexture(elem.adjacentFace.getOtherFace(currentMeshFaceId));
+                double v12x, v12y, v12z;
+                if(!placeAllVertices) {
+                    assert faceMapping.isFacePlacedOnTexture(scratch.fromFace[slot]);
                     // the existing face must already be placed on the texture.
-
-                    assert elem.canBeConnected(); // we should only add edges to the heap that can be connected
                     // this lines up with p1 -> p2
-                    v12 = elem.edgeVector;
+                    int base = slot * 6;
+                    v12x = vectors[base];
+                    v12y = vectors[base + 1];
+                    v12z = vectors[base + 2];
                 } else {
-                    vertex1 = backingMesh.getVertex(faceToPlace.getV1());
-                    QVertex3D vertex2 = backingMesh.getVertex(faceToPlace.getV2());
-                    v12 = vertex2.subtract(vertex1);
+                    v12x = backingMesh.getVertexX(faceV2) - backingMesh.getVertexX(faceV1);
+                    v12y = backingMesh.getVertexY(faceV2) - backingMesh.getVertexY(faceV1);
+                    v12z = backingMesh.getVertexZ(faceV2) - backingMesh.getVertexZ(faceV1);
                 }
 
-                double len12 = v12.length();
+                double len12 = Math.sqrt(v12x*v12x + v12y*v12y + v12z*v12z);
 
                 // X in unit vector
-                double u12x = v12.getX() / len12;
-                double u12y = v12.getY() / len12;
-                double u12z = v12.getZ() / len12;
-
-                // Z in orthonormal basis
-                QVertex3D normal = backingMesh.getNormal(currentMeshFaceId);
-                double lenNormal = normal.length();
+                double u12x = v12x / len12;
+                double u12y = v12y / len12;
+                double u12z = v12z / len12;
 
-                // Z in unit vector
-                double uNormalx = normal.getX() / lenNormal;
-                double uNormaly = normal.getY() / lenNormal;
-                double uNormalz = normal.getZ() / lenNormal;
+                // Z in unit vector, which is the precomputed unit normal
+                double uNormalx = backingMesh.getUnitNormalX(currentMeshFaceId);
+                double uNormaly = backingMesh.getUnitNormalY(currentMeshFaceId);
+                double uNormalz = backingMesh.getUnitNormalZ(currentMeshFaceId);
 
                 // Y in orthonormal basis, where Y = X x Z
                 // this is already a unit vector, as X and Z are units.
@@ -358,32 +336,28 @@ public class DFSMeshPartitionTraversal implements MeshPartitionTraversal {
                 double yC = (u12z*uNormalx) - (u12x*uNormalz);
                 double zC = (u12x*uNormaly) - (u12y*uNormalx);
 
-                QVertex3D v31;
-                if(!elem.placeAllVertices()) {
-                    v31 = elem.triVector;
+                double v31x, v31y, v31z;
+                if(!placeAllVertices) {
+                    int base = slot * 6;
+                    v31x = vectors[base + 3];
+                    v31y = vectors[base + 4];
+                    v31z = vectors[base + 5];
                 } else {
-                    // we can reuse v12, as we don't need to use it any longer
-                    QVertex3D vertex3 = backingMesh.getVertex(faceToPlace.getV3());
-                    QVertex3D.subtract(vertex1, vertex3, v12);
-                    v31 = v12;
+                    v31x = backingMesh.getVertexX(faceV1) - backingMesh.getVertexX(faceV3);
+                    v31y = backingMesh.getVertexY(faceV1) - backingMesh.getVertexY(faceV3);
+                    v31z = backingMesh.getVertexZ(faceV1) - backingMesh.getVertexZ(faceV3);
                 }
 
                 // first vertex is at (0,0), second is at (len12, 0), third is at (t3x, t3y)
                 // where t3x = (v1 - v3) . unit(X), t3y = (v1 - v3) . unit(Y)
-                double t3x, t3y;
-                {
-                    double v31x = v31.getX();
-                    double v31y = v31.getY();
-                    double v31z = v31.getZ();
-                    t3x = u12x*v31x + u12y*v31y + u12z*v31z;
-                    t3y = xC*v31x + yC*v31y + zC*v31z;
-                }
+                double t3x = u12x*v31x + u12y*v31y + u12z*v31z;
+                double t3y = xC*v31x + yC*v31y + zC*v31z;
 
-                if(!elem.placeAllVertices()) {
+                if(!placeAllVertices) {
                     // new triangle shares an edge with an existing triangle in the texture, defined by p1p2.
-                    p1 = tVertices.get(adjacentEdge2d.getV1());
+                    p1 = tVertices.get(scratch.edge2dV1[slot]);
 
-                    p2 = tVertices.get(adjacentEdge2d.getV2());
+                    p2 = tVertices.get(scratch.edge2dV2[slot]);
 
                     // 2d vector from p1 to p2
                     double p1p2x = p2.getX() - p1.getX();
@@ -407,23 +381,28 @@ public class DFSMeshPartitionTraversal implements MeshPartitionTraversal {
                     // this is the vector p1p3
                     double p1p3x = jx - kx;
                     double p1p3y = jy + ky;
-                    Point2D opposite = tVertices.get(elem.oppositeTVertex);
-                    // opposite side test: see if p1p3 is on the opposite side of p1p2 from elem.oppositeTVertex
-                    // this is done by using sign(p1p2 x p1p3) != sign(p1p2 x p1opposite)
-                    double p1oppositex = opposite.getX() - p1.getX();
-                    double p1oppositey = opposite.getY() - p1.getY();
-
-                    double cross12_13 = p1p2x * p1p3y - p1p2y * p1p3x;
-                    double cross12_1opposite = p1p2x * p1oppositey - p1p2y * p1oppositex;
-
-                    if(FastMath.signum(cross12_13) != FastMath.signum(cross12_1opposite)) {
-                        p3 = new Point2D(p1.getX() + p1p3x, p1.getY() + p1p3y);
-                    } else {
+                    Point2D opposite = tVertices.get(scratch.oppositeTVertex[slot]);
+                    // opposite side test: see if p3 is on the opposite side of p1p2 from elem.oppositeTVertex
+                    // this is done by using sign(p1p2 x p1p3) != sign(p1p2 x p1opposite), with exact signs.
+                    // we test the point as it will be placed, so a face that is nearly in line with p1p2 still lands on the right side
+                    double p3x = p1.getX() + p1p3x;
+                    double p3y = p1.getY() + p1p3y;
+                    double side3 = Orientation2D.orient2d(p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3x, p3y);
+                    double sideOpposite = Orientation2D.orient2d(p1.getX(), p1.getY(), p2.getX(), p2.getY(), opposite.getX(), opposite.getY());
+
+                    if(FastMath.signum(side3) == FastMath.signum(sideOpposite)) {
                         // choose the opposite direction so it can lay flat, away from oppositeTVertex on the texture plane
-                        p3 = new Point2D(p1.getX() + jx + kx, p1.getY() + jy - ky);
+                        p3x = p1.getX() + jx + kx;
+                        p3y = p1.getY() + jy - ky;
                     }
 
-                    insertedPoint = p3;
+                    // if this 3d vertex is already on the texture very close to p3, we reuse that point.
+                    // it is looked up before the overlap test so we test the triangle that is actually placed, which shares
+                    // its points exactly with the faces around it
+                    // faces from other traversals are laid out separately (possibly at the same time on another thread),
+                    // so we only consolidate with vertices placed by this one.
+                    commonTVertex = scratch.nearestTVertex(scratch.vertexToPlace[slot], p3x, p3y, Epsilon.epsilonSq());
+                    p3 = commonTVertex < 0 ? new Point2D(p3x, p3y) : tVertices.get(commonTVertex);
 
                     // note : we should not care about the connectionPolicy to determine the direction
                     // if the edges have opposite windings and is not mirrored, it wouldn't be added to the heap anyway
@@ -441,62 +420,29 @@ public class DFSMeshPartitionTraversal implements MeshPartitionTraversal {
             Triangle2D newTriangle = new Triangle2D(//insertedPoint,
                     p1, p2, p3);
 
-            Iterable<Entry<TFace, Triangle2D>> entries = SearchRTree.search(intersectionTest, newTriangle);
-            if(entries.iterator().hasNext()) {
+            if(intersectionTest.anyIntersects(newTriangle)) {
                 // there is an intersection with the new triangle we're attempting to place down
                 // (we don't exactly care with what triangle)
                 // therefore we don't try to place down this triangle as it would overlap, and we continue with the next item in the heap
+                rejected++;
                 continue;
             }
 
             // otherwise place this face down.
             // add the new 2d vertex to our list and link it up with newFace
-            // we search other adjacent faces, see if they are already on the texture map, and get the relevant coordinates if so.
+            // if the 3d vertex is already on the texture map, p3 was merged with it above and we reuse its index.
             TFace newFace;
-            if(!elem.placeAllVertices()) {
-                Integer commonTVertex = null;
-                double currentMinDistance = 0; // set this for java compiler. However this is guaranteed to be set before it is read from.
-                for(QMeshEdge outgoing : connectivity.iterables().edgesOf(currentMeshFaceId)) {
-                    int otherMeshFaceId = Graphs.getOppositeVertex(connectivity, outgoing, currentMeshFaceId);
-                    // graph connection from otherFaceId to currentFaceId
-                    if(faceMapping.isFacePlacedOnTexture(otherMeshFaceId)) {
-                        TFace adjacentTexture = tFaces.get(faceMapping.getTFace(otherMeshFaceId));
-
-                        // if the neighboring face is already placed on the texture, we may can consolidate the
-                        // new point to an existing one if they're very close together
-                        QMeshFace adjacentFace = backingMesh.getFace(otherMeshFaceId);
-                        // find vertex in common with insertedPoint
-
-                        int adjacentTIndex;
-                        if(adjacentFace.getV1() == elem.getVertexToPlace()) {
-                            adjacentTIndex = adjacentTexture.getV1();
-                        } else if(adjacentFace.getV2() == elem.getVertexToPlace()) {
-                            adjacentTIndex = adjacentTexture.getV2();
-                        } else if(adjacentFace.getV3() == elem.getVertexToPlace()) {
-                            adjacentTIndex = adjacentTexture.getV3();
-                        } else{
-                            continue;
-                        }
-
-                        Point2D adjacentTVertex = tVertices.get(adjacentTIndex);
-                        double currentDistance = GeometryUtil.distanceSquared(adjacentTVertex.getX(), adjacentTVertex.getY(),
-                                insertedPoint.getX(), insertedPoint.getY());
-                        // ensure that the common vertex that we find is actually close to the new 2d vertex we're attempting to lay down
-                        if((commonTVertex == null && currentDistance <= Epsilon.epsilonSq())
-                                || (commonTVertex != null && currentDistance < currentMinDistance)) {
-                            commonTVertex = adjacentTIndex;
-                            currentMinDistance = currentDistance;
-                        }
-                    }
-                }
+            if(!placeAllVertices) {
+                int vertexToPlace = scratch.vertexToPlace[slot];
 
                 int newIndex;
-                if(commonTVertex == null) {
+                if(commonTVertex < 0) {
                     // we did not find a vertex that is already on the 2d texture map
                     // thus we add a new point to our array.
                     newIndex = tVertices.size();
-                    tVertices.add(insertedPoint);
-                    result.addPoint(insertedPoint);
+                    tVertices.add(p3);
+                    result.addPoint(p3);
+                    scratch.addTVertex(vertexToPlace, newIndex, p3.getX(), p3.getY());
                 } else {
                     // we found a vertex that is already on the 2d texture map
                     // so we have it map to an existing item in our array.
@@ -504,20 +450,16 @@ public class DFSMeshPartitionTraversal implements MeshPartitionTraversal {
                 }
 
                 // we ensure that v1, v2, and v3 are defined in the original order as in IMesh.
-                if(elem.getVertexToPlace() == faceToPlace.getV1()) {
-                    newFace = new TFace(newIndex,
-                            adjacentEdge2d.getV1(),
-                            adjacentEdge2d.getV2());
-                } else if(elem.getVertexToPlace() == faceToPlace.getV2()) {
-                    newFace = new TFace(adjacentEdge2d.getV2(),
-                            newIndex,
-                            adjacentEdge2d.getV1());
-                } else if(elem.getVertexToPlace() == faceToPlace.getV3()) {
-                    newFace = new TFace(adjacentEdge2d.getV1(),
-                            adjacentEdge2d.getV2(),
-                            newIndex);
+                int edgeV1 = scratch.edge2dV1[slot];
+                int edgeV2 = scratch.edge2dV2[slot];
+                if(vertexToPlace == faceV1) {
+                    newFace = new TFace(newIndex, edgeV1, edgeV2);
+                } else if(vertexToPlace == faceV2) {
+                    newFace = new TFace(edgeV2, newIndex, edgeV1);
+                } else if(vertexToPlace == faceV3) {
+                    newFace = new TFace(edgeV1, edgeV2, newIndex);
                 } else {
-                    throw new IllegalStateException(elem.getVertexToPlace() + " not in " + faceToPlace);
+                    throw new IllegalStateException(vertexToPlace + " not in " + backingMesh.getFace(currentMeshFaceId));
                 }
 
             } else {
@@ -532,35 +474,54 @@ public class DFSMeshPartitionTraversal implements MeshPartitionTraversal {
                 tVertices.add(p2);
                 tVertices.add(p3);
                 result.addPoints(p1, p2, p3);
+                scratch.addTVertex(faceV1, tri1, p1.getX(), p1.getY());
+                scratch.addTVertex(faceV2, tri1 + 1, p2.getX(), p2.getY());
+                scratch.addTVertex(faceV3, tri1 + 2, p3.getX(), p3.getY());
             }
 
             // add the new face to our list of faces
             int newTFaceId = tFaces.size();
             faceMapping.setTFace(currentMeshFaceId, newTFaceId); // update our mapping
+            scratch.markPlaced(currentMeshFaceId);
             tFaces.add(newFace);
             result.incrementFaceCount();
-            intersectionTest = intersectionTest.add(newFace, newTriangle);
+            intersectionTest.insert(newTriangle);
+            // drop the other candidates for this face, reached from its other placed neighbors
+            for(int adjacentSlot = connectivity.start(currentMeshFaceId), end = connectivity.end(currentMeshFaceId); adjacentSlot < end; adjacentSlot++) {
+                int otherMeshFaceId = connectivity.neighbor(adjacentSlot);
+                if(scratch.isPlaced(otherMeshFaceId) && heap.remove(connectivity.slotOf(otherMeshFaceId, currentMeshFaceId))) {
+                    dropped++;
+                }
+            }
+
+            // stop once the budget runs out. The first face is always placed, so later traversals each place one face
+            // without looking at its neighbors, and every face still ends up in a partition
+            if(budget.isExhausted()) {
+                result.markIncomplete();
+                break;
+            }
 
             // run through the edges that connect to the current one
-            for(QMeshEdge edge : connectivity.iterables().edgesOf(currentMeshFaceId)) {
+            for(int otherSlot = connectivity.start(currentMeshFaceId), end = connectivity.end(currentMeshFaceId); otherSlot < end; otherSlot++) {
                 // id of the other face
-                int otherMeshFaceId = Graphs.getOppositeVertex(connectivity, edge, currentMeshFaceId);
+                int otherMeshFaceId = connectivity.neighbor(otherSlot);
                 // this face is already placed on the texture. We don't process it.
                 if(faceMapping.isFacePlacedOnTexture(otherMeshFaceId))
                     continue;
-                QMeshFace currentFace = backingMesh.getFace(currentMeshFaceId);
-                QMeshFace otherFace = backingMesh.getFace(otherMeshFaceId);
+                // more than two faces meet on this edge, so there's no single way to unfold across it. Treat it as a seam
+                if(!topology.isManifold() && topology.isNonManifold(topology.sharedEdge(currentMeshFaceId, otherMeshFaceId)))
+                    continue;
 
                 // traverse to the new face (eventually) by putting it onto the heap
-                HeapElem newElem = new HeapElem(otherMeshFaceId, edge);
-                prepareForPlacement(backingMesh, currentFace, otherFace, newFace, newElem); // populate information for the HeapElem so it can be placed on the 2d texture
-                prepareConnectionPolicy(newElem, edgeConnectionPolicy);
+                scratch.fromFace[otherSlot] = currentMeshFaceId;
+                prepareForPlacement(backingMesh, currentMeshFaceId, otherMeshFaceId, newFace, scratch, otherSlot); // populate information so it can be placed on the 2d texture
+                TEdgeConnectionPolicy policy = prepareConnectionPolicy(scratch, otherSlot, edgeConnectionPolicy);
 
-                // populate HeapElem such that we map edge3d to the appropriate edge2d, following winding orders
+                // populate the candidate such that we map edge3d to the appropriate edge2d, following winding orders
 
                 // if this face inherently can't be connected (e.g. by defined winding rules, or from user specification)
                 // then we don't add it to the heap or place it in the same tiling
-                if(!newElem.canBeConnected()) {
+                if(!policy.connected(scratch.windingSame[otherSlot])) {
                     continue;
                 }
 
@@ -569,23 +530,27 @@ public class DFSMeshPartitionTraversal implements MeshPartitionTraversal {
                 // (B - A) x (C - B) = normalCurrent
                 // (E - D) x (F - E) = normalOther
                 // normalCurrent . normalOther = ||normalCurrent|| * ||normalOther|| cos(theta)
-                double ranking = getRanking(backingMesh, currentMeshFaceId, otherMeshFaceId);
-                HeapOrder newElemOrder = new HeapOrder(otherMeshFaceId,
-                        newElem.edge2d, ranking);
-
-                heap.insert(newElemOrder, newElem);
+                // ranked by -cos(theta), which has the desired effect of being the highest value at theta PI and -PI,
+                // and lowest value at theta 0
+                heap.insert(otherSlot, ranking.rank(otherSlot), heapTie(otherMeshFaceId, scratch.edge2dV1[otherSlot]));
+                queued++;
             }
         }
-        return result;
-    }
 
-    private static double getRanking(QMesh mesh, int currentFace, int otherFace) {
-        // simpler method: return -cos(theta), which is calculated from the dot product of the two normals
-        QVertex3D n1 = mesh.getNormal(currentFace);
-        QVertex3D n2 = mesh.getNormal(otherFace);
-        double dotProd = n1.dot(n2);
-        double vectorLength = Math.sqrt(n1.dot(n1) * n2.dot(n2));
-        // return -cosTheta. This has the desired effect of being the highest value at theta PI and -PI, and lowest value at theta 0
-        return -(dotProd / vectorLength);
+        long visits = intersectionTest.visitCount() - visitsBefore;
+        metrics.recordTraversal(result.getTFaceCount(), queued, dropped, rejected, visits,
+                System.nanoTime() - start, result.isComplete());
+        event.end();
+        if(event.shouldCommit()) {
+            event.initialFace = initialMeshFace;
+            event.facesPlaced = result.getTFaceCount();
+            event.candidatesQueued = queued;
+            event.candidatesDropped = dropped;
+            event.overlapRejections = rejected;
+            event.indexVisits = visits;
+            event.complete = result.isComplete();
+            event.commit();
+        }
+        return result;
     }
 }
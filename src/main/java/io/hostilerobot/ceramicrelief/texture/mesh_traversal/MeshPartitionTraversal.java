@@ -10,4 +10,12 @@ public interface MeshPartitionTraversal {
             // inputs
             int initialFace,
             ProjectionState projectionState);
+
+    /**
+     * @return traversal for one projection on one thread. It may keep working state between its traversals,
+     *         which is released along with it once the projection is done. A traversal with no such state returns itself
+     */
+    default MeshPartitionTraversal session() {
+        return this;
+    }
 }
@@ -0,0 +1,168 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
+
+import io.hostilerobot.ceramicrelief.qmesh.EdgeTopology;
+import io.hostilerobot.ceramicrelief.qmesh.FaceAdjacency;
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
+import io.hostilerobot.ceramicrelief.texture.TEdgeConnectionPolicy;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * groups the faces of a mesh into components that a traversal could possibly connect in 2d.
+ *
+ * Two adjacent faces are in the same component if the connection policy of their edge connects them for their winding,
+ * and their edge is manifold. A traversal never crosses between components, so components can be projected
+ * independently. Components are numbered by their lowest face, and the faces of each are listed in ascending order.
+ */
+final class PartitionComponents {
+    private final int[] componentOf;
+    private final int[] offsets; // faces of component c are faces[offsets[c]] ... faces[offsets[c + 1] - 1]
+    private final int[] faces;
+
+    private PartitionComponents(int[] componentOf, int[] offsets, int[] faces) {
+        this.componentOf = componentOf;
+        this.offsets = offsets;
+        this.faces = faces;
+    }
+
+    /**
+     * finds the components of mesh. Each edge between two adjacent faces that has no policy yet is given the default
+     * policy for its winding, so afterwards connections is only read during traversal
+     */
+    static PartitionComponents of(QMesh mesh, Map<QMeshEdge, TEdgeConnectionPolicy> connections) {
+        FaceAdjacency adjacency = mesh.getAdjacency();
+        EdgeTopology topology = mesh.getEdgeTopology();
+        int faceCount = adjacency.faceCount();
+
+        // union-find where the root of each set is its lowest face
+        int[] parent = new int[faceCount];
+        for(int face = 0; face < faceCount; face++) {
+            parent[face] = face;
+        }
+        for(int face = 0; face < faceCount; face++) {
+            for(int slot = adjacency.start(face), end = adjacency.end(face); slot < end; slot++) {
+                int other = adjacency.neighbor(slot);
+                if(other < face) {
+                    continue; // visit each pair once
+                }
+                // the traversal treats non-manifold edges as seams
+                if(!topology.isManifold() && topology.isNonManifold(topology.sharedEdge(face, other))) {
+                    continue;
+                }
+                boolean sameWinding = sameWinding(mesh, face, other);
+                QMeshEdge edge = new QMeshEdge(face, other);
+                TEdgeConnectionPolicy policy = connections.get(edge);
+                if(policy == null) {
+                    policy = TEdgeConnectionPolicy.getDefaultPolicy(sameWinding);
+                    connections.put(edge, policy);
+                }
+                if(policy.connected(sameWinding)) {
+                    union(parent, face, other);
+                }
+            }
+        }
+
+        // number components in order of their lowest face. A root is always lower than the rest of its set
+        int[] componentOf = new int[faceCount];
+        int componentCount = 0;
+        for(int face = 0; face < faceCount; face++) {
+            int root = find(parent, face);
+            componentOf[face] = root == face ? componentCount++ : componentOf[root];
+        }
+        int[] offsets = new int[componentCount + 1];
+        for(int face = 0; face < faceCount; face++) {
+            offsets[componentOf[face] + 1]++;
+        }
+        for(int component = 0; component < componentCount; component++) {
+            offsets[component + 1] += offsets[component];
+        }
+        int[] faces = new int[faceCount];
+        int[] fill = parent; // no longer needed
+        System.arraycopy(offsets, 0, fill, 0, componentCount);
+        for(int face = 0; face < faceCount; face++) {
+            faces[fill[componentOf[face]]++] = face;
+        }
+        return new PartitionComponents(componentOf, offsets, faces);
+    }
+
+    /**
+     * @return true if first and second go around their shared edge in opposite directions, i.e. they are wound the same way
+     */
+    static boolean sameWinding(QMesh mesh, int first, int second) {
+        int f1 = mesh.getFaceV1(first);
+        int f2 = mesh.getFaceV2(first);
+        int f3 = mesh.getFaceV3(first);
+        return hasEdge(mesh, second, f2, f1)
+                || hasEdge(mesh, second, f3, f2)
+                || hasEdge(mesh, second, f1, f3);
+    }
+
+    // true if face has the directed edge from -> to in its winding order
+    private static boolean hasEdge(QMesh mesh, int face, int from, int to) {
+        int v1 = mesh.getFaceV1(face);
+        int v2 = mesh.getFaceV2(face);
+        int v3 = mesh.getFaceV3(face);
+        return (v1 == from && v2 == to) || (v2 == from && v3 == to) || (v3 == from && v1 == to);
+    }
+
+    private static int find(int[] parent, int face) {
+        while(parent[face] != face) {
+            parent[face] = parent[parent[face]]; // path halving
+            face = parent[face];
+        }
+        return face;
+    }
+
+    private static void union(int[] parent, int face1, int face2) {
+        int root1 = find(parent, face1);
+        int root2 = find(parent, face2);
+        if(root1 < root2) {
+            parent[root2] = root1;
+        } else if(root2 < root1) {
+            parent[root1] = root2;
+        }
+    }
+
+    int componentCount() {
+        return offsets.length - 1;
+    }
+
+    int componentOf(int face) {
+        return componentOf[face];
+    }
+
+    int start(int component) {
+        return offsets[component];
+    }
+
+    int end(int component) {
+        return offsets[component + 1];
+    }
+
+    int face(int idx) {
+        return faces[idx];
+    }
+
+    /**
+     * splits the components into consecutive runs of about targetFaces faces each, so many small components
+     * can be projected together as one task
+     * @return boundaries of each run: run r is components [runs[r], runs[r + 1])
+     */
+    int[] runs(int targetFaces) {
+        int componentCount = componentCount();
+        int[] runs = new int[componentCount + 2];
+        int runCount = 0;
+        int runFaces = 0;
+        for(int component = 0; component < componentCount; component++) {
+            if(runFaces >= targetFaces) {
+                runs[++runCount] = component;
+                runFaces = 0;
+            }
+            runFaces += end(component) - start(component);
+        }
+        runs[++runCount] = componentCount;
+        return Arrays.copyOf(runs, runCount + 1);
+    }
+}
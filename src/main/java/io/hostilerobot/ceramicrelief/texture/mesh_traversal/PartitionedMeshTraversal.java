@@ -1,34 +1,208 @@
 package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
 
 import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.texture.TFace;
+import io.hostilerobot.ceramicrelief.texture.projection.FaceMappingInfo;
 import io.hostilerobot.ceramicrelief.texture.projection.ProjectionState;
 import io.hostilerobot.ceramicrelief.texture.projection.MeshProjectionResult;
+import javafx.geometry.Point2D;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Represents functionality to project a 3d mesh in partitions. It does so by projecting the first face "f"
  * and all faces that are in the same set as the first. Then it finds the next face "f" that has not been projected yet
  * and projects that, and so on.
+ *
+ * Faces in different {@link PartitionComponents components} can never be placed by the same traversal, so the components
+ * are projected in parallel, each into its own lists. The partitions are then merged in order of their first face, which
+ * numbers faces and vertices exactly as if the faces were projected one after another on one thread.
+ * This relies on the projector only crossing edges whose connection policy connects them.
+ *
+ * Once the {@link ProjectionState#getBudget() budget} runs out, the projector places only the first face of each traversal,
+ * so the faces left over each become their own partition.
  */
 public class PartitionedMeshTraversal {
+    // components are grouped into tasks of at least this many faces, so tiny parts don't each pay for a task
+    private static final int MIN_TASK_FACES = 4096;
+
     private final MeshPartitionTraversal projector;
     public PartitionedMeshTraversal(MeshPartitionTraversal projector) {
         this.projector = projector;
     }
 
+    // one traversal: where it started, and where its faces and vertices are in the task's lists
+    private static final class Partition {
+        private final int initialFace;
+        private final ProjectedTextureInfo info;
+        private final int task;
+        private final int tFaceStart;
+        private final int tVertexStart;
+        private int mergedTFaceStart;
+
+        private Partition(int initialFace, ProjectedTextureInfo info, int task, int tFaceStart, int tVertexStart) {
+            this.initialFace = initialFace;
+            this.info = info;
+            this.task = task;
+            this.tFaceStart = tFaceStart;
+            this.tVertexStart = tVertexStart;
+        }
+    }
+
     public List<ProjectedTextureInfo> projectAll(ProjectionState projectionState) {
+        PartitionedProjectionEvent event = new PartitionedProjectionEvent();
+        event.begin();
         QMesh mesh = projectionState.getMesh();
-        List<ProjectedTextureInfo> traversals = new ArrayList<>();
         MeshProjectionResult projection = projectionState.getProjection();
-        mesh.getFaces().forEachOrdered(id -> {
-            if(projection.getFaceMapping().isFacePlacedOnTexture(id))
-                return;
-            traversals.add(projector.projectSubset(id, projectionState));
-        });
+        PartitionComponents components = PartitionComponents.of(mesh, projectionState.getConnections());
+        int targetFaces = Math.max(MIN_TASK_FACES, mesh.faceCount() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        int[] runs = components.runs(targetFaces);
+        int taskCount = runs.length - 1;
+
+        List<ProjectedTextureInfo> traversals;
+        if(taskCount <= 1) {
+            traversals = new ArrayList<>();
+            MeshPartitionTraversal session = projector.session();
+            mesh.getFaces().forEachOrdered(id -> {
+                if(projection.getFaceMapping().isFacePlacedOnTexture(id))
+                    return;
+                traversals.add(session.projectSubset(id, projectionState));
+            });
+        } else {
+            traversals = projectParallel(projectionState, components, runs);
+        }
 
         // assert that all faces from this mesh are placed on the texture.
         assert mesh.getFaces().allMatch(projection.getFaceMapping()::isFacePlacedOnTexture);
+        event.end();
+        if(event.shouldCommit()) {
+            event.faceCount = mesh.faceCount();
+            event.componentCount = components.componentCount();
+            event.taskCount = taskCount;
+            event.partitionCount = traversals.size();
+            event.commit();
+        }
+        return traversals;
+    }
+
+    /**
+     * projects each of the given faces that isn't placed yet, in the given order, e.g. to redo part of an earlier projection.
+     * Faces that are already placed are kept as they are, and no traversal crosses into them
+     */
+    public List<ProjectedTextureInfo> projectFaces(ProjectionState projectionState, int[] faces) {
+        FaceMappingInfo faceMapping = projectionState.getProjection().getFaceMapping();
+        List<ProjectedTextureInfo> traversals = new ArrayList<>();
+        MeshPartitionTraversal session = projector.session();
+        for(int face : faces) {
+            if(faceMapping.isFacePlacedOnTexture(face))
+                continue;
+            traversals.add(session.projectSubset(face, projectionState));
+        }
+        return traversals;
+    }
+
+    private List<ProjectedTextureInfo> projectParallel(ProjectionState projectionState, PartitionComponents components, int[] runs) {
+        // a frozen mesh has every lookup built up front, so traversals on other threads only read it.
+        // The mesh keeps its snapshot until it's edited, so projecting it again doesn't freeze it again.
+        // connections are only read too, as every edge already has a policy
+        QMesh mesh = projectionState.getMesh().freeze();
+        MeshProjectionResult projection = projectionState.getProjection();
+        FaceMappingInfo faceMapping = projection.getFaceMapping();
+        int taskCount = runs.length - 1;
+
+        // each task places its faces into its own lists. faceMapping is shared, as tasks place different faces,
+        // and maps to the task's own list until the results are merged
+        MeshProjectionResult[] results = new MeshProjectionResult[taskCount];
+        @SuppressWarnings("unchecked")
+        List<Partition>[] partitions = new List[taskCount];
+        // faces of each task that weren't placed before this projection, and so are placed by the task
+        int[][] newFaces = new int[taskCount][];
+        // a session is handed from one task to the next rather than made per task,
+        // so there are only as many as there are tasks running at once. They're all dropped after this projection
+        Queue<MeshPartitionTraversal> sessions = new ConcurrentLinkedQueue<>();
+        IntStream.range(0, taskCount).parallel().forEach(task -> {
+            MeshPartitionTraversal session = sessions.poll();
+            if(session == null) {
+                session = projector.session();
+            }
+            // the faces of a task's components are next to each other, in component order
+            int start = components.start(runs[task]);
+            int end = components.start(runs[task + 1]);
+            int[] unplaced = new int[end - start];
+            int unplacedCount = 0;
+            for(int idx = start; idx < end; idx++) {
+                int face = components.face(idx);
+                if(!faceMapping.isFacePlacedOnTexture(face)) {
+                    unplaced[unplacedCount++] = face;
+                }
+            }
+            MeshProjectionResult result = new MeshProjectionResult(unplacedCount, unplacedCount, faceMapping);
+            ProjectionState state = new ProjectionState(mesh, result, projectionState.getConnections(),
+                    projectionState.getBudget(), projectionState.getMetrics());
+            List<Partition> placed = new ArrayList<>();
+            for(int idx = 0; idx < unplacedCount; idx++) {
+                int face = unplaced[idx];
+                if(faceMapping.isFacePlacedOnTexture(face))
+                    continue;
+                int tFaceStart = result.getTFaces().size();
+                int tVertexStart = result.getTVertices().size();
+                placed.add(new Partition(face, session.projectSubset(face, state), task, tFaceStart, tVertexStart));
+            }
+            sessions.add(session);
+            results[task] = result;
+            partitions[task] = placed;
+            newFaces[task] = Arrays.copyOf(unplaced, unplacedCount);
+        });
+
+        // merge in order of each partition's first face, which is the order they would be projected in on one thread
+        List<Partition> ordered = new ArrayList<>();
+        for(List<Partition> placed : partitions) {
+            ordered.addAll(placed);
+        }
+        if(ordered.isEmpty()) {
+            return List.of();
+        }
+        ordered.sort(Comparator.comparingInt(partition -> partition.initialFace));
+
+        List<TFace> tFaces = projection.getTFaces();
+        List<Point2D> tVertices = projection.getTVertices();
+        List<ProjectedTextureInfo> traversals = new ArrayList<>(ordered.size());
+        for(Partition partition : ordered) {
+            MeshProjectionResult result = results[partition.task];
+            int faceCount = partition.info.getTFaceCount();
+            int vertexCount = partition.info.getTVertexCount();
+            // a traversal only refers to its own vertices, so they all move by the same amount
+            int shift = tVertices.size() - partition.tVertexStart;
+            partition.mergedTFaceStart = tFaces.size();
+            tVertices.addAll(result.getTVertices().subList(partition.tVertexStart, partition.tVertexStart + vertexCount));
+            for(TFace face : result.getTFaces().subList(partition.tFaceStart, partition.tFaceStart + faceCount)) {
+                tFaces.add(shift == 0 ? face : new TFace(face.getV1() + shift, face.getV2() + shift, face.getV3() + shift));
+            }
+            traversals.add(partition.info);
+        }
+
+        // point faceMapping at the merged faces. Faces placed before this projection already point at them
+        IntStream.range(0, taskCount).parallel().forEach(task -> {
+            List<Partition> placed = partitions[task];
+            for(int face : newFaces[task]) {
+                int local = faceMapping.getTFace(face);
+                int low = 0;
+                int high = placed.size() - 1;
+                while(low < high) {
+                    int mid = (low + high + 1) >>> 1;
+                    if(placed.get(mid).tFaceStart <= local) {
+                        low = mid;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                Partition partition = placed.get(low);
+                faceMapping.setTFace(face, partition.mergedTFaceStart + local - partition.tFaceStart);
+            }
+        });
         return traversals;
     }
 }
@@ -0,0 +1,26 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * flight recorder event for projecting every partition of a mesh in {@link PartitionedMeshTraversal}
+ */
+@Name("io.hostilerobot.ceramicrelief.PartitionedProjection")
+@Label("Partitioned Projection")
+@Category({"Ceramic Relief", "Projection"})
+final class PartitionedProjectionEvent extends Event {
+    @Label("Faces")
+    int faceCount;
+
+    @Label("Components")
+    int componentCount;
+
+    @Label("Tasks")
+    int taskCount;
+
+    @Label("Partitions")
+    int partitionCount;
+}
@@ -8,6 +8,8 @@ public class ProjectedTextureInfo {
     private int tVertexCount = 0;
     // if null, no points added yet (empty bounding box)
     private BoundingBox2D bounds = null;
+    // false if the traversal was stopped early, while there were still faces it could try to place
+    private boolean complete = true;
 
     ProjectedTextureInfo(){}
 
@@ -23,6 +25,14 @@ public class ProjectedTextureInfo {
         return tVertexCount;
     }
 
+    public boolean isComplete() {
+        return complete;
+    }
+
+    void markIncomplete() {
+        complete = false;
+    }
+
     void addPoint(Point2D point) {
         if(bounds == null) {
             bounds = BoundingBox2D.fromPoint(point);
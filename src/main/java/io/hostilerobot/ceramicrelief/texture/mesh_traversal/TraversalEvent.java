@@ -0,0 +1,40 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * flight recorder event for laying out one partition in {@link DFSMeshPartitionTraversal}
+ */
+@Name("io.hostilerobot.ceramicrelief.Traversal")
+@Label("Partition Traversal")
+@Category({"Ceramic Relief", "Projection"})
+@Description("Places one partition of a mesh onto the texture plane")
+final class TraversalEvent extends Event {
+    @Label("Initial Face")
+    int initialFace;
+
+    @Label("Faces Placed")
+    int facesPlaced;
+
+    @Label("Candidates Queued")
+    int candidatesQueued;
+
+    @Label("Candidates Dropped")
+    @Description("Queued faces that were placed through another edge first")
+    int candidatesDropped;
+
+    @Label("Overlap Rejections")
+    int overlapRejections;
+
+    @Label("Index Visits")
+    @Description("Nodes, cells and triangles looked at by overlap queries")
+    long indexVisits;
+
+    @Label("Complete")
+    @Description("False if the traversal was cut short by its budget")
+    boolean complete;
+}
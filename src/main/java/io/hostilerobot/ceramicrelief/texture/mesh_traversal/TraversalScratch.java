@@ -0,0 +1,184 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
+
+import io.hostilerobot.ceramicrelief.collection.heap.IndexedDoubleHeap;
+import io.hostilerobot.ceramicrelief.qmesh.FaceAdjacency;
+import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.SpatialIndex2D;
+
+import java.util.Arrays;
+
+/**
+ * reusable working state for {@link DFSMeshPartitionTraversal}, so placing faces doesn't allocate per step.
+ *
+ * A candidate is a face we may place next, reached across the edge it shares with a face that is already placed.
+ * Each candidate is stored at the adjacency slot from the placed face to the candidate, so the buffers are flat arrays
+ * over {@link FaceAdjacency#slotCount()}. A slot is filled at most once per traversal, as each face is placed at most once.
+ *
+ * Candidates are ordered by an indexed heap over slots, so each (face, edge) candidate is queued at most once and
+ * can be dropped when its face is placed through another edge. Slot {@link #initialSlot()} holds the first face.
+ *
+ * The texture vertices placed so far are listed per 3d vertex, so a new vertex can be merged with an existing one at
+ * the same spot without looking through the faces around it.
+ *
+ * One instance is made per {@link MeshPartitionTraversal#session() session}, which is used by one thread for one projection
+ * and dropped with it. The policy keys and the overlap index are kept across traversals of the same adjacency,
+ * so only the first traversal of a session allocates them
+ */
+final class TraversalScratch {
+    // adjacency the policy keys were made for
+    private FaceAdjacency adjacency;
+
+    int[] fromFace = new int[0];        // placed face the candidate is reached from
+    int[] vertexToPlace = new int[0];   // 3d vertex of the candidate that is not on the shared edge
+    int[] oppositeTVertex = new int[0]; // tVertex of the placed face on the opposite side of the shared edge
+    int[] edge2dV1 = new int[0];        // shared edge in 2d, in the direction the candidate is laid down
+    int[] edge2dV2 = new int[0];
+    boolean[] windingSame = new boolean[0];
+    // 6 per slot: the shared edge in 3d, then the vector from the end of the shared edge to vertexToPlace
+    double[] vectors = new double[0];
+
+    private QMeshEdge[] edges = new QMeshEdge[0];
+    // per face: the traversal that placed it, so we can tell our faces apart from those placed by other traversals
+    private int[] placedStamps = new int[0];
+    // only ever counts up, all stamps are cleared when it wraps around
+    private int stamp = 0;
+    // per 3d vertex: the traversal that last listed a texture vertex for it, and the head of that list
+    private int[] vertexStamps = new int[0];
+    private int[] vertexHeads = new int[0];
+    // lists of texture vertices placed by the current traversal, with their positions
+    private int[] tVertices = new int[16];
+    private double[] tVertexX = new double[16];
+    private double[] tVertexY = new double[16];
+    private int[] tVertexNext = new int[16];
+    private int tVertexCount = 0;
+    // candidate slots ordered by ranking, then face and 2d edge. Empty between traversals
+    IndexedDoubleHeap heap = new IndexedDoubleHeap(1);
+    // triangles placed by the current traversal, picked by mesh size and emptied for each traversal
+    SpatialIndex2D index;
+
+    /**
+     * sizes this for adjacency over vertexCount vertices
+     */
+    void prepare(FaceAdjacency adjacency, int vertexCount) {
+        prepareSlots(adjacency);
+        if(vertexStamps.length < vertexCount) {
+            // stamps start at 1, so fresh zeroed arrays have nothing listed
+            vertexStamps = new int[vertexCount];
+            vertexHeads = new int[vertexCount];
+        }
+        heap.clear(); // in case an earlier traversal of this session stopped partway
+    }
+
+    private void prepareSlots(FaceAdjacency adjacency) {
+        if(this.adjacency == adjacency) {
+            return;
+        }
+        this.adjacency = adjacency;
+        index = SpatialIndex2D.forFaceCount(adjacency.faceCount());
+        if(placedStamps.length < adjacency.faceCount()) {
+            // the stamp carries on rather than starting over, so it can't match what an earlier mesh left in vertexStamps
+            placedStamps = new int[adjacency.faceCount()];
+        }
+        int slots = adjacency.slotCount();
+        if(fromFace.length < slots) {
+            int capacity = Math.max(slots, fromFace.length + (fromFace.length >> 1));
+            fromFace = new int[capacity];
+            vertexToPlace = new int[capacity];
+            oppositeTVertex = new int[capacity];
+            edge2dV1 = new int[capacity];
+            edge2dV2 = new int[capacity];
+            windingSame = new boolean[capacity];
+            vectors = new double[capacity * 6];
+            edges = new QMeshEdge[capacity];
+            heap = new IndexedDoubleHeap(capacity + 1);
+        } else {
+            // keys from another mesh don't line up with this one
+            Arrays.fill(edges, null);
+        }
+    }
+
+    /**
+     * @return key in the connection policy map for the 3d edge from fromFace[slot] to the face in slot
+     */
+    QMeshEdge edge(int slot) {
+        QMeshEdge edge = edges[slot];
+        if(edge == null) {
+            edge = new QMeshEdge(fromFace[slot], adjacency.neighbor(slot));
+            edges[slot] = edge;
+        }
+        return edge;
+    }
+
+    /**
+     * starts a new traversal, after which no face counts as placed by it
+     */
+    void beginTraversal() {
+        index.clear();
+        if(++stamp == 0) {
+            Arrays.fill(placedStamps, 0);
+            Arrays.fill(vertexStamps, 0);
+            stamp = 1;
+        }
+        tVertexCount = 0;
+    }
+
+    void markPlaced(int face) {
+        placedStamps[face] = stamp;
+    }
+
+    /**
+     * @return true if face was placed by the current traversal
+     */
+    boolean isPlaced(int face) {
+        return placedStamps[face] == stamp;
+    }
+
+    /**
+     * lists tVertex at (x, y) as a placement of the 3d vertex meshVertex in the current traversal
+     */
+    void addTVertex(int meshVertex, int tVertex, double x, double y) {
+        int entry = tVertexCount++;
+        if(entry == tVertices.length) {
+            int capacity = entry << 1;
+            tVertices = Arrays.copyOf(tVertices, capacity);
+            tVertexX = Arrays.copyOf(tVertexX, capacity);
+            tVertexY = Arrays.copyOf(tVertexY, capacity);
+            tVertexNext = Arrays.copyOf(tVertexNext, capacity);
+        }
+        tVertices[entry] = tVertex;
+        tVertexX[entry] = x;
+        tVertexY[entry] = y;
+        tVertexNext[entry] = vertexStamps[meshVertex] == stamp ? vertexHeads[meshVertex] : -1;
+        vertexStamps[meshVertex] = stamp;
+        vertexHeads[meshVertex] = entry;
+    }
+
+    /**
+     * @return the texture vertex of meshVertex placed by the current traversal that is closest to (x, y)
+     *         and at most sqrt(maxDistanceSq) away, or -1 if there is none
+     */
+    int nearestTVertex(int meshVertex, double x, double y, double maxDistanceSq) {
+        if(vertexStamps[meshVertex] != stamp) {
+            return -1;
+        }
+        int nearest = -1;
+        double nearestDistanceSq = maxDistanceSq;
+        for(int entry = vertexHeads[meshVertex]; entry >= 0; entry = tVertexNext[entry]) {
+            double dx = tVertexX[entry] - x;
+            double dy = tVertexY[entry] - y;
+            double distanceSq = dx * dx + dy * dy;
+            if(distanceSq <= nearestDistanceSq) {
+                nearest = tVertices[entry];
+                nearestDistanceSq = distanceSq;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @return heap ID for the first face of a traversal, which isn't reached through any slot
+     */
+    int initialSlot() {
+        return adjacency.slotCount();
+    }
+}
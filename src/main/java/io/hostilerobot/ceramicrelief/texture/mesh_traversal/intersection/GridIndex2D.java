@@ -0,0 +1,255 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import java.util.Arrays;
+
+/**
+ * uniform hash grid of triangles. Each triangle is listed in every cell its bounds overlap, and a query only tests
+ * triangles in the cells under its own bounds. Cells are kept in an open-addressing table keyed by cell coordinates,
+ * so the plane doesn't need known bounds up front.
+ *
+ * Works best when triangles are of similar size, as in most meshes. If no cell size is given, it is taken from the
+ * first triangle inserted. Triangles that would cover too many cells are kept in a separate list that every query tests.
+ */
+public final class GridIndex2D implements SpatialIndex2D {
+    // a triangle or query covering more cells than this is handled without the grid
+    private static final int MAX_CELLS = 64;
+
+    private final double fixedCellSize; // 0 to pick from the first triangle
+    private double inverseCellSize;
+
+    private final TriangleBatch2D triangles = new TriangleBatch2D();
+    // when each triangle was last gathered, so a triangle in many cells is only tested once per query
+    private int[] testedStamps = new int[16];
+    private int stamp = 0;
+    // triangles gathered from the cells under a query, tested together
+    private int[] bucket = new int[64];
+    private int bucketCount = 0;
+    private long visits = 0;
+
+    // open addressing from cell key to the head of its list of entries. Unused cells have a head of -1
+    private long[] cellKeys = new long[64];
+    private int[] cellHeads = new int[64];
+    private int[] usedCells = new int[32]; // table slots in use, so clear() only resets those
+    private int cellCount = 0;
+
+    // singly linked lists of triangles per cell
+    private int[] entryTriangles = new int[64];
+    private int[] entryNext = new int[64];
+    private int entryCount = 0;
+
+    // triangles too large for the grid
+    private int[] oversized = new int[8];
+    private int oversizedCount = 0;
+
+    public GridIndex2D() {
+        this(0);
+    }
+
+    /**
+     * @param cellSize width and height of each cell, or 0 to size cells to the first triangle inserted
+     */
+    public GridIndex2D(double cellSize) {
+        if(cellSize < 0 || !Double.isFinite(cellSize)) {
+            throw new IllegalArgumentException("cell size must be finite and non-negative: " + cellSize);
+        }
+        this.fixedCellSize = cellSize;
+        this.inverseCellSize = cellSize > 0 ? 1 / cellSize : 0;
+        Arrays.fill(cellHeads, -1);
+    }
+
+    @Override
+    public void insert(Triangle2D triangle) {
+        if(inverseCellSize == 0) {
+            // a couple of triangles across, so most triangles land in one to four cells
+            double extent = Math.max(triangle.x2() - triangle.x1(), triangle.y2() - triangle.y1());
+            inverseCellSize = 1 / (2 * extent);
+            if(!(inverseCellSize > 0 && Double.isFinite(inverseCellSize))) {
+                inverseCellSize = 1; // degenerate first triangle
+            }
+        }
+        int id = triangles.add(triangle);
+        if(id == testedStamps.length) {
+            testedStamps = Arrays.copyOf(testedStamps, id << 1);
+        }
+        testedStamps[id] = stamp;
+
+        long minCX = cell(triangle.x1());
+        long minCY = cell(triangle.y1());
+        long maxCX = cell(triangle.x2());
+        long maxCY = cell(triangle.y2());
+        if(tooManyCells(minCX, minCY, maxCX, maxCY)) {
+            if(oversizedCount == oversized.length) {
+                oversized = Arrays.copyOf(oversized, oversizedCount << 1);
+            }
+            oversized[oversizedCount++] = id;
+            return;
+        }
+        // count up offsets rather than cells, as cells can be at the very end of the range of a long
+        for(long dx = 0, spanX = maxCX - minCX; dx <= spanX; dx++) {
+            for(long dy = 0, spanY = maxCY - minCY; dy <= spanY; dy++) {
+                addEntry(cellSlot(cellKey(minCX + dx, minCY + dy)), id);
+            }
+        }
+    }
+
+    @Override
+    public boolean anyIntersects(Triangle2D triangle) {
+        int size = triangles.size();
+        if(size == 0) {
+            return false;
+        }
+        long minCX = cell(triangle.x1());
+        long minCY = cell(triangle.y1());
+        long maxCX = cell(triangle.x2());
+        long maxCY = cell(triangle.y2());
+        if(tooManyCells(minCX, minCY, maxCX, maxCY)) {
+            // cheaper to check everything than to walk that many cells
+            visits += size;
+            return triangles.anyIntersects(triangle, 0, size);
+        }
+        if(++stamp == 0) {
+            Arrays.fill(testedStamps, 0, size, 0);
+            stamp = 1;
+        }
+        bucketCount = 0;
+        for(int i = 0; i < oversizedCount; i++) {
+            gather(oversized[i]);
+        }
+        for(long dx = 0, spanX = maxCX - minCX; dx <= spanX; dx++) {
+            for(long dy = 0, spanY = maxCY - minCY; dy <= spanY; dy++) {
+                visits++;
+                int slot = findCell(cellKey(minCX + dx, minCY + dy));
+                if(slot < 0) {
+                    continue;
+                }
+                for(int entry = cellHeads[slot]; entry >= 0; entry = entryNext[entry]) {
+                    gather(entryTriangles[entry]);
+                }
+            }
+        }
+        visits += bucketCount;
+        return triangles.anyIntersects(triangle, bucket, 0, bucketCount);
+    }
+
+    // adds the indexed triangle id to the triangles to test, unless it was already added in this query
+    private void gather(int id) {
+        if(testedStamps[id] == stamp) {
+            return;
+        }
+        testedStamps[id] = stamp;
+        if(bucketCount == bucket.length) {
+            bucket = Arrays.copyOf(bucket, bucketCount << 1);
+        }
+        bucket[bucketCount++] = id;
+    }
+
+    @Override
+    public int size() {
+        return triangles.size();
+    }
+
+    @Override
+    public long visitCount() {
+        return visits;
+    }
+
+    @Override
+    public void clear() {
+        triangles.clear();
+        for(int i = 0; i < cellCount; i++) {
+            cellHeads[usedCells[i]] = -1;
+        }
+        cellCount = 0;
+        entryCount = 0;
+        oversizedCount = 0;
+        // the next partition may be at a different scale
+        inverseCellSize = fixedCellSize > 0 ? 1 / fixedCellSize : 0;
+    }
+
+    private long cell(double coordinate) {
+        return (long) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private static boolean tooManyCells(long minCX, long minCY, long maxCX, long maxCY) {
+        // in doubles, as a huge or far off triangle can overflow the cell counts
+        return ((double) maxCX - minCX + 1) * ((double) maxCY - minCY + 1) > MAX_CELLS;
+    }
+
+    private static long cellKey(long cx, long cy) {
+        // distinct cells may share a key far apart; their triangles are just tested needlessly
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+
+    private static int mix(long key) {
+        // murmur3 finalizer, so neighboring cells don't land in neighboring slots
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe53b5a59L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int findCell(long key) {
+        int mask = cellKeys.length - 1;
+        for(int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if(cellHeads[slot] < 0) {
+                return -1;
+            } else if(cellKeys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    // slot of the cell with the given key, adding it if absent
+    private int cellSlot(long key) {
+        if((cellCount + 1) * 2 > cellKeys.length) {
+            grow();
+        }
+        int mask = cellKeys.length - 1;
+        for(int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            if(cellHeads[slot] < 0) {
+                cellKeys[slot] = key;
+                if(cellCount == usedCells.length) {
+                    usedCells = Arrays.copyOf(usedCells, cellCount << 1);
+                }
+                usedCells[cellCount++] = slot;
+                return slot;
+            } else if(cellKeys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        int[] oldUsed = usedCells;
+        int oldCount = cellCount;
+        cellKeys = new long[oldKeys.length << 1];
+        cellHeads = new int[oldKeys.length << 1];
+        usedCells = new int[oldUsed.length << 1];
+        Arrays.fill(cellHeads, -1);
+        int mask = cellKeys.length - 1;
+        for(int i = 0; i < oldCount; i++) {
+            int old = oldUsed[i];
+            int slot = mix(oldKeys[old]) & mask;
+            while(cellHeads[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            cellKeys[slot] = oldKeys[old];
+            cellHeads[slot] = oldHeads[old];
+            usedCells[i] = slot;
+        }
+    }
+
+    private void addEntry(int slot, int id) {
+        if(entryCount == entryTriangles.length) {
+            entryTriangles = Arrays.copyOf(entryTriangles, entryCount << 1);
+            entryNext = Arrays.copyOf(entryNext, entryCount << 1);
+        }
+        entryTriangles[entryCount] = id;
+        entryNext[entryCount] = cellHeads[slot];
+        cellHeads[slot] = entryCount++;
+    }
+}
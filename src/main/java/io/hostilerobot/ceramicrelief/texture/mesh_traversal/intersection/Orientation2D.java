@@ -0,0 +1,214 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+/**
+ * orientation of three points, with an exact sign.
+ *
+ * This is the adaptive orient2d predicate from Shewchuk, "Adaptive Precision Floating-Point Arithmetic and Fast Robust
+ * Geometric Predicates". The determinant is first worked out in plain doubles along with a bound on its rounding error.
+ * Only when the error could flip the sign do we redo it more precisely, in stages, ending with exact arithmetic on
+ * expansions (sums of doubles that don't overlap). Almost every call is settled by the first stage,
+ * so it costs little more than the plain cross product.
+ *
+ * The error bounds assume doubles round to nearest, and that nothing underflows.
+ */
+public final class Orientation2D {
+    private Orientation2D(){}
+
+    private static final double EPSILON = 0x1p-53; // half an ulp of 1.0
+    private static final double SPLITTER = 0x1p27 + 1.0; // splits a double into two halves of 26 bits
+
+    private static final double RESULT_ERROR_BOUND = (3.0 + 8.0 * EPSILON) * EPSILON;
+    // bounds on the error of each stage, relative to |left| + |right| of the plain determinant.
+    // The first is also used by TriangleBatch2D, to filter whole vectors of lanes at once
+    static final double ERROR_BOUND_A = (3.0 + 16.0 * EPSILON) * EPSILON;
+    private static final double ERROR_BOUND_B = (2.0 + 12.0 * EPSILON) * EPSILON;
+    private static final double ERROR_BOUND_C = (9.0 + 64.0 * EPSILON) * EPSILON * EPSILON;
+
+    /**
+     * @return positive if a, b, c are in counterclockwise order, negative if clockwise, and zero if they're in a line.
+     *         The sign is exact, and the value is roughly twice the signed area of the triangle
+     */
+    public static double orient2d(double ax, double ay, double bx, double by, double cx, double cy) {
+        double left = (ax - cx) * (by - cy);
+        double right = (ay - cy) * (bx - cx);
+        double det = left - right;
+        // one check in place of Shewchuk's branches on the signs of left and right, which don't predict well.
+        // If the signs differ then det is about sum and well past the bound, and if either is zero then det is exact
+        double sum = Math.abs(left) + Math.abs(right);
+        if(Math.abs(det) >= ERROR_BOUND_A * sum) {
+            return det;
+        }
+        return orient2dAdapt(ax, ay, bx, by, cx, cy, sum);
+    }
+
+    private static double orient2dAdapt(double ax, double ay, double bx, double by, double cx, double cy, double sum) {
+        double acx = ax - cx;
+        double bcx = bx - cx;
+        double acy = ay - cy;
+        double bcy = by - cy;
+
+        // B = acx * bcy - acy * bcx exactly, as a 4 part expansion
+        double[] b = new double[4];
+        twoTwoDiff(acx * bcy, productTail(acx, bcy, acx * bcy),
+                acy * bcx, productTail(acy, bcx, acy * bcx), b);
+        double det = b[0] + b[1] + b[2] + b[3];
+        double bound = ERROR_BOUND_B * sum;
+        if(det >= bound || -det >= bound) {
+            return det;
+        }
+
+        // whatever was lost working out the differences
+        double acxTail = diffTail(ax, cx, acx);
+        double bcxTail = diffTail(bx, cx, bcx);
+        double acyTail = diffTail(ay, cy, acy);
+        double bcyTail = diffTail(by, cy, bcy);
+        if(acxTail == 0.0 && acyTail == 0.0 && bcxTail == 0.0 && bcyTail == 0.0) {
+            // the differences were exact, so B is the exact determinant
+            return det;
+        }
+
+        bound = ERROR_BOUND_C * sum + RESULT_ERROR_BOUND * Math.abs(det);
+        det += (acx * bcyTail + bcy * acxTail) - (acy * bcxTail + bcx * acyTail);
+        if(det >= bound || -det >= bound) {
+            return det;
+        }
+
+        // exact: B plus each of the cross terms of the tails
+        double[] u = new double[4];
+        double[] c1 = new double[8];
+        double[] c2 = new double[12];
+        double[] d = new double[16];
+        twoTwoDiff(acxTail * bcy, productTail(acxTail, bcy, acxTail * bcy),
+                acyTail * bcx, productTail(acyTail, bcx, acyTail * bcx), u);
+        int c1Length = sum(b, 4, u, 4, c1);
+        twoTwoDiff(acx * bcyTail, productTail(acx, bcyTail, acx * bcyTail),
+                acy * bcxTail, productTail(acy, bcxTail, acy * bcxTail), u);
+        int c2Length = sum(c1, c1Length, u, 4, c2);
+        twoTwoDiff(acxTail * bcyTail, productTail(acxTail, bcyTail, acxTail * bcyTail),
+                acyTail * bcxTail, productTail(acyTail, bcxTail, acyTail * bcxTail), u);
+        int dLength = sum(c2, c2Length, u, 4, d);
+        // the largest part of an expansion has its sign
+        return d[dLength - 1];
+    }
+
+    // roundoff of a - b, given x = a - b in doubles
+    private static double diffTail(double a, double b, double x) {
+        double bVirtual = a - x;
+        double aVirtual = x + bVirtual;
+        double bRound = bVirtual - b;
+        double aRound = a - aVirtual;
+        return aRound + bRound;
+    }
+
+    // roundoff of a * b, given x = a * b in doubles
+    private static double productTail(double a, double b, double x) {
+        double c = SPLITTER * a;
+        double aHi = c - (c - a);
+        double aLo = a - aHi;
+        c = SPLITTER * b;
+        double bHi = c - (c - b);
+        double bLo = b - bHi;
+        double err1 = x - aHi * bHi;
+        double err2 = err1 - aLo * bHi;
+        double err3 = err2 - aHi * bLo;
+        return aLo * bLo - err3;
+    }
+
+    // (a1 + a0) - (b1 + b0) exactly, into out from the smallest part up
+    private static void twoTwoDiff(double a1, double a0, double b1, double b0, double[] out) {
+        // (a1 + a0) - b0
+        double i = a0 - b0;
+        out[0] = diffTail(a0, b0, i);
+        double j = a1 + i;
+        double zero = sumTail(a1, i, j);
+        // (j + zero) - b1
+        i = zero - b1;
+        out[1] = diffTail(zero, b1, i);
+        out[3] = j + i;
+        out[2] = sumTail(j, i, out[3]);
+    }
+
+    // roundoff of a + b, given x = a + b in doubles
+    private static double sumTail(double a, double b, double x) {
+        double bVirtual = x - a;
+        double aVirtual = x - bVirtual;
+        double bRound = b - bVirtual;
+        double aRound = a - aVirtual;
+        return aRound + bRound;
+    }
+
+    /**
+     * adds the expansions e and f into h, dropping zeros
+     *
+     * @return length of h
+     */
+    private static int sum(double[] e, int eLength, double[] f, int fLength, double[] h) {
+        double eNow = e[0];
+        double fNow = f[0];
+        int eIdx = 0;
+        int fIdx = 0;
+        double q;
+        // take the parts of e and f in order of magnitude
+        if((fNow > eNow) == (fNow > -eNow)) {
+            q = eNow;
+            eNow = ++eIdx < eLength ? e[eIdx] : 0.0;
+        } else {
+            q = fNow;
+            fNow = ++fIdx < fLength ? f[fIdx] : 0.0;
+        }
+        int hIdx = 0;
+        double qNew, hh;
+        if(eIdx < eLength && fIdx < fLength) {
+            if((fNow > eNow) == (fNow > -eNow)) {
+                qNew = eNow + q;
+                hh = q - (qNew - eNow);
+                eNow = ++eIdx < eLength ? e[eIdx] : 0.0;
+            } else {
+                qNew = fNow + q;
+                hh = q - (qNew - fNow);
+                fNow = ++fIdx < fLength ? f[fIdx] : 0.0;
+            }
+            q = qNew;
+            if(hh != 0.0) {
+                h[hIdx++] = hh;
+            }
+            while(eIdx < eLength && fIdx < fLength) {
+                if((fNow > eNow) == (fNow > -eNow)) {
+                    qNew = q + eNow;
+                    hh = sumTail(q, eNow, qNew);
+                    eNow = ++eIdx < eLength ? e[eIdx] : 0.0;
+                } else {
+                    qNew = q + fNow;
+                    hh = sumTail(q, fNow, qNew);
+                    fNow = ++fIdx < fLength ? f[fIdx] : 0.0;
+                }
+                q = qNew;
+                if(hh != 0.0) {
+                    h[hIdx++] = hh;
+                }
+            }
+        }
+        while(eIdx < eLength) {
+            qNew = q + eNow;
+            hh = sumTail(q, eNow, qNew);
+            eNow = ++eIdx < eLength ? e[eIdx] : 0.0;
+            q = qNew;
+            if(hh != 0.0) {
+                h[hIdx++] = hh;
+            }
+        }
+        while(fIdx < fLength) {
+            qNew = q + fNow;
+            hh = sumTail(q, fNow, qNew);
+            fNow = ++fIdx < fLength ? f[fIdx] : 0.0;
+            q = qNew;
+            if(hh != 0.0) {
+                h[hIdx++] = hh;
+            }
+        }
+        if(q != 0.0 || hIdx == 0) {
+            h[hIdx++] = q;
+        }
+        return hIdx;
+    }
+}
@@ -0,0 +1,256 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import java.util.Arrays;
+
+/**
+ * region quadtree of triangles. Each triangle is kept at the deepest node whose square fully contains its bounds,
+ * so it is listed once, and a node splits into quadrants once it holds more than {@link #SPLIT_SIZE} triangles.
+ * The root starts around the first triangle and doubles outwards whenever a triangle lands outside of it,
+ * so the plane doesn't need known bounds up front. Triangles whose bounds no square can hold, such as NaN bounds from
+ * a degenerate face, are kept in a separate list that every query tests.
+ *
+ * Nodes and their triangle lists are flat arrays, so inserting allocates nothing once they have grown.
+ */
+public final class QuadTreeIndex2D implements SpatialIndex2D {
+    private static final int SPLIT_SIZE = 8;
+    private static final int MAX_DEPTH = 24;
+    // past this the root would overflow if it doubled again
+    private static final double MAX_ROOT_SIZE = 0x1p1000;
+
+    private final TriangleBatch2D triangles = new TriangleBatch2D();
+    private int[] next = new int[16]; // next triangle in the same node, or -1
+
+    // node squares, children (4 per node, -1 for a leaf), and triangle lists
+    private double[] nodeMinX = new double[16];
+    private double[] nodeMinY = new double[16];
+    private double[] nodeSize = new double[16];
+    private int[] nodeChildren = new int[64];
+    private int[] nodeHead = new int[16];
+    private int[] nodeCount = new int[16];
+    private int[] nodeDepth = new int[16];
+    private int nodes = 0;
+    private int root = -1;
+
+    // triangles kept outside of the tree
+    private int[] unbounded = new int[4];
+    private int unboundedCount = 0;
+
+    private int[] stack = new int[64];
+    private int[] bucket = new int[SPLIT_SIZE + 1]; // triangles of the node being tested
+    private long visits = 0;
+
+    @Override
+    public void insert(Triangle2D triangle) {
+        int id = triangles.add(triangle);
+        if(id == next.length) {
+            next = Arrays.copyOf(next, id << 1);
+        }
+        double minX = triangle.x1(), minY = triangle.y1(), maxX = triangle.x2(), maxY = triangle.y2();
+        if(!(Double.isFinite(minX) && Double.isFinite(minY) && Double.isFinite(maxX) && Double.isFinite(maxY))) {
+            // no root would ever contain these, however far it grew
+            addUnbounded(id);
+            return;
+        }
+
+        if(root < 0) {
+            double extent = Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL);
+            // room for a few triangles in each direction before the root has to grow
+            double half = 4 * extent;
+            root = newNode((minX + maxX) / 2 - half, (minY + maxY) / 2 - half, 2 * half, 0);
+        }
+        while(!contains(root, minX, minY, maxX, maxY)) {
+            if(nodeSize[root] >= MAX_ROOT_SIZE) {
+                addUnbounded(id);
+                return;
+            }
+            growRoot(minX, minY);
+        }
+
+        int node = root;
+        while(true) {
+            int child = nodeChildren[node * 4] >= 0 ? childContaining(node, minX, minY, maxX, maxY) : -1;
+            if(child < 0) {
+                break;
+            }
+            node = child;
+        }
+        next[id] = nodeHead[node];
+        nodeHead[node] = id;
+        if(++nodeCount[node] > SPLIT_SIZE && nodeChildren[node * 4] < 0 && nodeDepth[node] < MAX_DEPTH) {
+            split(node);
+        }
+    }
+
+    @Override
+    public boolean anyIntersects(Triangle2D triangle) {
+        if(unboundedCount > 0) {
+            visits += unboundedCount;
+            if(triangles.anyIntersects(triangle, unbounded, 0, unboundedCount)) {
+                return true;
+            }
+        }
+        if(root < 0) {
+            return false;
+        }
+        double minX = triangle.x1(), minY = triangle.y1(), maxX = triangle.x2(), maxY = triangle.y2();
+        int top = 0;
+        stack[top++] = root;
+        while(top > 0) {
+            int node = stack[--top];
+            visits++;
+            double size = nodeSize[node];
+            if(nodeMinX[node] > maxX || nodeMinX[node] + size < minX
+                    || nodeMinY[node] > maxY || nodeMinY[node] + size < minY) {
+                continue;
+            }
+            // gather the node's list so it can go through the batch test at once
+            int count = nodeCount[node];
+            if(count > bucket.length) {
+                bucket = new int[Math.max(count, bucket.length << 1)];
+            }
+            int filled = 0;
+            for(int id = nodeHead[node]; id >= 0; id = next[id]) {
+                bucket[filled++] = id;
+            }
+            visits += filled;
+            if(triangles.anyIntersects(triangle, bucket, 0, filled)) {
+                return true;
+            }
+            if(nodeChildren[node * 4] >= 0) {
+                if(top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length << 1);
+                }
+                for(int quadrant = 0; quadrant < 4; quadrant++) {
+                    stack[top++] = nodeChildren[node * 4 + quadrant];
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return triangles.size();
+    }
+
+    @Override
+    public long visitCount() {
+        return visits;
+    }
+
+    @Override
+    public void clear() {
+        triangles.clear();
+        nodes = 0;
+        root = -1;
+        unboundedCount = 0;
+    }
+
+    private void addUnbounded(int id) {
+        if(unboundedCount == unbounded.length) {
+            unbounded = Arrays.copyOf(unbounded, unboundedCount << 1);
+        }
+        unbounded[unboundedCount++] = id;
+    }
+
+    private int newNode(double minX, double minY, double size, int depth) {
+        int node = nodes++;
+        if(node == nodeMinX.length) {
+            int capacity = node << 1;
+            nodeMinX = Arrays.copyOf(nodeMinX, capacity);
+            nodeMinY = Arrays.copyOf(nodeMinY, capacity);
+            nodeSize = Arrays.copyOf(nodeSize, capacity);
+            nodeChildren = Arrays.copyOf(nodeChildren, capacity * 4);
+            nodeHead = Arrays.copyOf(nodeHead, capacity);
+            nodeCount = Arrays.copyOf(nodeCount, capacity);
+            nodeDepth = Arrays.copyOf(nodeDepth, capacity);
+        }
+        nodeMinX[node] = minX;
+        nodeMinY[node] = minY;
+        nodeSize[node] = size;
+        Arrays.fill(nodeChildren, node * 4, node * 4 + 4, -1);
+        nodeHead[node] = -1;
+        nodeCount[node] = 0;
+        nodeDepth[node] = depth;
+        return node;
+    }
+
+    private boolean contains(int node, double minX, double minY, double maxX, double maxY) {
+        double size = nodeSize[node];
+        return nodeMinX[node] <= minX && maxX <= nodeMinX[node] + size
+                && nodeMinY[node] <= minY && maxY <= nodeMinY[node] + size;
+    }
+
+    // quadrant of node that fully contains the bounds, or -1 if they straddle the middle
+    private int childContaining(int node, double minX, double minY, double maxX, double maxY) {
+        double half = nodeSize[node] / 2;
+        double midX = nodeMinX[node] + half;
+        double midY = nodeMinY[node] + half;
+        int quadrant;
+        if(maxX <= midX) {
+            quadrant = 0;
+        } else if(minX >= midX) {
+            quadrant = 1;
+        } else {
+            return -1;
+        }
+        if(minY >= midY) {
+            quadrant += 2;
+        } else if(maxY > midY) {
+            return -1;
+        }
+        return nodeChildren[node * 4 + quadrant];
+    }
+
+    // quadrants are numbered 0: low x, low y. 1: high x, low y. 2: low x, high y. 3: high x, high y
+    private void createChildren(int node) {
+        double half = nodeSize[node] / 2;
+        double minX = nodeMinX[node];
+        double minY = nodeMinY[node];
+        int depth = nodeDepth[node] + 1;
+        // newNode may grow nodeChildren, so don't hold on to it across calls
+        int c0 = newNode(minX, minY, half, depth);
+        int c1 = newNode(minX + half, minY, half, depth);
+        int c2 = newNode(minX, minY + half, half, depth);
+        int c3 = newNode(minX + half, minY + half, half, depth);
+        nodeChildren[node * 4] = c0;
+        nodeChildren[node * 4 + 1] = c1;
+        nodeChildren[node * 4 + 2] = c2;
+        nodeChildren[node * 4 + 3] = c3;
+    }
+
+    // moves the triangles of a full leaf down into its quadrants, where they fit
+    private void split(int node) {
+        createChildren(node);
+        int id = nodeHead[node];
+        nodeHead[node] = -1;
+        nodeCount[node] = 0;
+        while(id >= 0) {
+            int following = next[id];
+            int child = childContaining(node, triangles.minX(id), triangles.minY(id), triangles.maxX(id), triangles.maxY(id));
+            int target = child >= 0 ? child : node;
+            next[id] = nodeHead[target];
+            nodeHead[target] = id;
+            nodeCount[target]++;
+            id = following;
+        }
+    }
+
+    // doubles the root towards (x, y), keeping the old root as one of its quadrants
+    private void growRoot(double x, double y) {
+        int old = root;
+        double size = nodeSize[old];
+        // grow left or down if the point is on that side, so the old root ends up in the opposite quadrant
+        boolean growLeft = x < nodeMinX[old];
+        boolean growDown = y < nodeMinY[old];
+        double minX = growLeft ? nodeMinX[old] - size : nodeMinX[old];
+        double minY = growDown ? nodeMinY[old] - size : nodeMinY[old];
+        int newRoot = newNode(minX, minY, 2 * size, 0);
+        createChildren(newRoot);
+        int quadrant = (growLeft ? 1 : 0) + (growDown ? 2 : 0);
+        // swap the old root in for the fresh quadrant it replaces. That quadrant is left unused
+        nodeChildren[newRoot * 4 + quadrant] = old;
+        root = newRoot;
+        // depth only limits splitting, so leaving the old subtree's depths as they are just lets it split a bit deeper
+    }
+}
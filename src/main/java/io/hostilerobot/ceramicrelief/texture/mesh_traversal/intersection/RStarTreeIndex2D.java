@@ -0,0 +1,373 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import java.util.Arrays;
+
+/**
+ * R*-tree of triangles, stored in flat arrays.
+ *
+ * Inserts pick subtrees by least overlap enlargement just above the leaves and least area enlargement further up,
+ * and full nodes are split along the axis with the smallest total margin, at the distribution with the least overlap.
+ * Forced reinsertion is left out: the traversal only ever inserts, and its triangles arrive in a spatially
+ * coherent order, so the tree stays well shaped without it.
+ *
+ * Triangles whose bounds aren't finite, such as NaN bounds from a degenerate face, are kept out of the tree, as they
+ * would spread into the bounds of every node above them. They are kept in a separate list that every query tests.
+ */
+public final class RStarTreeIndex2D implements SpatialIndex2D {
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+    // a node holds one extra entry while it overflows, right before it is split
+    private static final int STRIDE = MAX_ENTRIES + 1;
+
+    private final TriangleBatch2D triangles = new TriangleBatch2D();
+
+    // entries of node n are entries[n * STRIDE] ... entries[n * STRIDE + counts[n] - 1],
+    // which are triangle IDs for a leaf and node IDs otherwise
+    private int[] entries = new int[16 * STRIDE];
+    private int[] counts = new int[16];
+    private boolean[] leaf = new boolean[16];
+    private double[] minX = new double[16];
+    private double[] minY = new double[16];
+    private double[] maxX = new double[16];
+    private double[] maxY = new double[16];
+    private int nodes = 0;
+    private int root = -1;
+    private int height = 0;
+
+    // triangles kept outside of the tree
+    private int[] unbounded = new int[4];
+    private int unboundedCount = 0;
+
+    private int[] path = new int[16];
+    private int[] stack = new int[64];
+    private long visits = 0;
+
+    // split workspace: bounds of the overflowing entries, and two orderings of them
+    private final int[] splitEntries = new int[STRIDE];
+    private final double[] splitMinX = new double[STRIDE];
+    private final double[] splitMinY = new double[STRIDE];
+    private final double[] splitMaxX = new double[STRIDE];
+    private final double[] splitMaxY = new double[STRIDE];
+    private final int[] order = new int[STRIDE];
+    private final int[] bestOrder = new int[STRIDE];
+
+    @Override
+    public void insert(Triangle2D triangle) {
+        int id = triangles.add(triangle);
+        double x1 = triangle.x1(), y1 = triangle.y1(), x2 = triangle.x2(), y2 = triangle.y2();
+        if(!(Double.isFinite(x1) && Double.isFinite(y1) && Double.isFinite(x2) && Double.isFinite(y2))) {
+            if(unboundedCount == unbounded.length) {
+                unbounded = Arrays.copyOf(unbounded, unboundedCount << 1);
+            }
+            unbounded[unboundedCount++] = id;
+            return;
+        }
+
+        if(root < 0) {
+            root = newNode(true);
+            height = 1;
+        }
+        // walk down to a leaf, remembering the path so we can fix up bounds and splits on the way back
+        if(path.length < height) {
+            path = new int[height << 1];
+        }
+        int node = root;
+        for(int level = 0; level < height - 1; level++) {
+            path[level] = node;
+            node = chooseSubtree(node, x1, y1, x2, y2);
+        }
+        path[height - 1] = node;
+
+        int sibling = addEntry(node, id, x1, y1, x2, y2);
+        for(int level = height - 2; level >= 0; level--) {
+            int parent = path[level];
+            // the triangle may have stayed on either side of a split below, so always cover it
+            extend(parent, x1, y1, x2, y2);
+            if(sibling >= 0) {
+                sibling = addEntry(parent, sibling, minX[sibling], minY[sibling], maxX[sibling], maxY[sibling]);
+            }
+        }
+        if(sibling >= 0) {
+            // the root split, so the tree grows a level
+            int oldRoot = root;
+            root = newNode(false);
+            addEntry(root, oldRoot, minX[oldRoot], minY[oldRoot], maxX[oldRoot], maxY[oldRoot]);
+            addEntry(root, sibling, minX[sibling], minY[sibling], maxX[sibling], maxY[sibling]);
+            height++;
+        }
+    }
+
+    @Override
+    public boolean anyIntersects(Triangle2D triangle) {
+        if(unboundedCount > 0) {
+            visits += unboundedCount;
+            if(triangles.anyIntersects(triangle, unbounded, 0, unboundedCount)) {
+                return true;
+            }
+        }
+        if(root < 0) {
+            return false;
+        }
+        double x1 = triangle.x1(), y1 = triangle.y1(), x2 = triangle.x2(), y2 = triangle.y2();
+        int top = 0;
+        stack[top++] = root;
+        while(top > 0) {
+            int node = stack[--top];
+            visits++;
+            int base = node * STRIDE;
+            int count = counts[node];
+            if(leaf[node]) {
+                // the whole leaf goes through the batch test, as a leaf's entries are already a list of triangle IDs
+                visits += count;
+                if(triangles.anyIntersects(triangle, entries, base, base + count)) {
+                    return true;
+                }
+            } else {
+                if(top + count > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length << 1, top + count));
+                }
+                for(int idx = 0; idx < count; idx++) {
+                    int child = entries[base + idx];
+                    if(minX[child] <= x2 && x1 <= maxX[child] && minY[child] <= y2 && y1 <= maxY[child]) {
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return triangles.size();
+    }
+
+    @Override
+    public long visitCount() {
+        return visits;
+    }
+
+    @Override
+    public void clear() {
+        triangles.clear();
+        nodes = 0;
+        root = -1;
+        height = 0;
+        unboundedCount = 0;
+    }
+
+    private int newNode(boolean isLeaf) {
+        int node = nodes++;
+        if(node == counts.length) {
+            int capacity = node << 1;
+            entries = Arrays.copyOf(entries, capacity * STRIDE);
+            counts = Arrays.copyOf(counts, capacity);
+            leaf = Arrays.copyOf(leaf, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+        }
+        counts[node] = 0;
+        leaf[node] = isLeaf;
+        minX[node] = Double.POSITIVE_INFINITY;
+        minY[node] = Double.POSITIVE_INFINITY;
+        maxX[node] = Double.NEGATIVE_INFINITY;
+        maxY[node] = Double.NEGATIVE_INFINITY;
+        return node;
+    }
+
+    private void extend(int node, double x1, double y1, double x2, double y2) {
+        minX[node] = Math.min(minX[node], x1);
+        minY[node] = Math.min(minY[node], y1);
+        maxX[node] = Math.max(maxX[node], x2);
+        maxY[node] = Math.max(maxY[node], y2);
+    }
+
+    /**
+     * adds an entry with the given bounds to node, splitting it if it overflows
+     * @return the new sibling of node if it was split, otherwise -1
+     */
+    private int addEntry(int node, int entry, double x1, double y1, double x2, double y2) {
+        entries[node * STRIDE + counts[node]++] = entry;
+        extend(node, x1, y1, x2, y2);
+        return counts[node] > MAX_ENTRIES ? split(node) : -1;
+    }
+
+    private int chooseSubtree(int node, double x1, double y1, double x2, double y2) {
+        int base = node * STRIDE;
+        int count = counts[node];
+        boolean aboveLeaves = leaf[entries[base]];
+        int best = -1;
+        double bestOverlap = Double.POSITIVE_INFINITY;
+        double bestEnlargement = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for(int idx = 0; idx < count; idx++) {
+            int child = entries[base + idx];
+            double area = area(minX[child], minY[child], maxX[child], maxY[child]);
+            double ex1 = Math.min(minX[child], x1), ey1 = Math.min(minY[child], y1);
+            double ex2 = Math.max(maxX[child], x2), ey2 = Math.max(maxY[child], y2);
+            double enlargement = area(ex1, ey1, ex2, ey2) - area;
+            double overlap = 0;
+            if(aboveLeaves) {
+                // how much more this child would overlap its siblings if it took the entry
+                for(int other = 0; other < count; other++) {
+                    if(other == idx) {
+                        continue;
+                    }
+                    int sibling = entries[base + other];
+                    overlap += overlap(ex1, ey1, ex2, ey2, minX[sibling], minY[sibling], maxX[sibling], maxY[sibling])
+                            - overlap(minX[child], minY[child], maxX[child], maxY[child],
+                                      minX[sibling], minY[sibling], maxX[sibling], maxY[sibling]);
+                }
+            }
+            if(overlap < bestOverlap
+                    || (overlap == bestOverlap && (enlargement < bestEnlargement
+                        || (enlargement == bestEnlargement && area < bestArea)))) {
+                best = child;
+                bestOverlap = overlap;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * splits an overflowing node in two, keeping the first group in node
+     * @return the node holding the second group
+     */
+    private int split(int node) {
+        int base = node * STRIDE;
+        boolean isLeaf = leaf[node];
+        for(int idx = 0; idx < STRIDE; idx++) {
+            int entry = entries[base + idx];
+            splitEntries[idx] = entry;
+            if(isLeaf) {
+                splitMinX[idx] = triangles.minX(entry);
+                splitMinY[idx] = triangles.minY(entry);
+                splitMaxX[idx] = triangles.maxX(entry);
+                splitMaxY[idx] = triangles.maxY(entry);
+            } else {
+                splitMinX[idx] = minX[entry];
+                splitMinY[idx] = minY[entry];
+                splitMaxX[idx] = maxX[entry];
+                splitMaxY[idx] = maxY[entry];
+            }
+        }
+
+        // axis with the least total margin over all distributions, sorted by either lower or upper bounds
+        double xMargin = sortAndMargin(splitMinX, splitMaxX) + sortAndMargin(splitMaxX, splitMinX);
+        double yMargin = sortAndMargin(splitMinY, splitMaxY) + sortAndMargin(splitMaxY, splitMinY);
+        boolean alongX = xMargin <= yMargin;
+        double[] lower = alongX ? splitMinX : splitMinY;
+        double[] upper = alongX ? splitMaxX : splitMaxY;
+
+        // then the distribution along it with the least overlap, then the least area
+        int bestSplit = -1;
+        double bestOverlap = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for(int sort = 0; sort < 2; sort++) {
+            if(sort == 0) {
+                sortBy(lower, upper);
+            } else {
+                sortBy(upper, lower);
+            }
+            for(int k = MIN_ENTRIES; k <= STRIDE - MIN_ENTRIES; k++) {
+                double ax1 = Double.POSITIVE_INFINITY, ay1 = Double.POSITIVE_INFINITY;
+                double ax2 = Double.NEGATIVE_INFINITY, ay2 = Double.NEGATIVE_INFINITY;
+                double bx1 = Double.POSITIVE_INFINITY, by1 = Double.POSITIVE_INFINITY;
+                double bx2 = Double.NEGATIVE_INFINITY, by2 = Double.NEGATIVE_INFINITY;
+                for(int idx = 0; idx < STRIDE; idx++) {
+                    int entry = order[idx];
+                    if(idx < k) {
+                        ax1 = Math.min(ax1, splitMinX[entry]);
+                        ay1 = Math.min(ay1, splitMinY[entry]);
+                        ax2 = Math.max(ax2, splitMaxX[entry]);
+                        ay2 = Math.max(ay2, splitMaxY[entry]);
+                    } else {
+                        bx1 = Math.min(bx1, splitMinX[entry]);
+                        by1 = Math.min(by1, splitMinY[entry]);
+                        bx2 = Math.max(bx2, splitMaxX[entry]);
+                        by2 = Math.max(by2, splitMaxY[entry]);
+                    }
+                }
+                double overlap = overlap(ax1, ay1, ax2, ay2, bx1, by1, bx2, by2);
+                double area = area(ax1, ay1, ax2, ay2) + area(bx1, by1, bx2, by2);
+                if(overlap < bestOverlap || (overlap == bestOverlap && area < bestArea)) {
+                    bestSplit = k;
+                    bestOverlap = overlap;
+                    bestArea = area;
+                    System.arraycopy(order, 0, bestOrder, 0, STRIDE);
+                }
+            }
+        }
+
+        int sibling = newNode(isLeaf);
+        // newNode may have grown the node arrays, which is fine as we only index into them from here on
+        counts[node] = 0;
+        minX[node] = Double.POSITIVE_INFINITY;
+        minY[node] = Double.POSITIVE_INFINITY;
+        maxX[node] = Double.NEGATIVE_INFINITY;
+        maxY[node] = Double.NEGATIVE_INFINITY;
+        for(int idx = 0; idx < STRIDE; idx++) {
+            int entry = bestOrder[idx];
+            int target = idx < bestSplit ? node : sibling;
+            entries[target * STRIDE + counts[target]++] = splitEntries[entry];
+            extend(target, splitMinX[entry], splitMinY[entry], splitMaxX[entry], splitMaxY[entry]);
+        }
+        return sibling;
+    }
+
+    // sorts the overflowing entries into order by key, then tie. Both arrays are indexed by entry
+    private void sortBy(double[] key, double[] tie) {
+        for(int idx = 0; idx < STRIDE; idx++) {
+            order[idx] = idx;
+        }
+        // insertion sort, as there are only ever STRIDE entries
+        for(int idx = 1; idx < STRIDE; idx++) {
+            int entry = order[idx];
+            int pos = idx - 1;
+            while(pos >= 0 && (key[order[pos]] > key[entry]
+                    || (key[order[pos]] == key[entry] && tie[order[pos]] > tie[entry]))) {
+                order[pos + 1] = order[pos];
+                pos--;
+            }
+            order[pos + 1] = entry;
+        }
+    }
+
+    // sorts by key, then sums the margins of both groups over every distribution
+    private double sortAndMargin(double[] key, double[] tie) {
+        sortBy(key, tie);
+        double margin = 0;
+        for(int k = MIN_ENTRIES; k <= STRIDE - MIN_ENTRIES; k++) {
+            margin += groupMargin(0, k) + groupMargin(k, STRIDE);
+        }
+        return margin;
+    }
+
+    private double groupMargin(int from, int to) {
+        double x1 = Double.POSITIVE_INFINITY, y1 = Double.POSITIVE_INFINITY;
+        double x2 = Double.NEGATIVE_INFINITY, y2 = Double.NEGATIVE_INFINITY;
+        for(int idx = from; idx < to; idx++) {
+            int entry = order[idx];
+            x1 = Math.min(x1, splitMinX[entry]);
+            y1 = Math.min(y1, splitMinY[entry]);
+            x2 = Math.max(x2, splitMaxX[entry]);
+            y2 = Math.max(y2, splitMaxY[entry]);
+        }
+        return (x2 - x1) + (y2 - y1);
+    }
+
+    private static double area(double x1, double y1, double x2, double y2) {
+        return (x2 - x1) * (y2 - y1);
+    }
+
+    private static double overlap(double ax1, double ay1, double ax2, double ay2,
+                                  double bx1, double by1, double bx2, double by2) {
+        double width = Math.min(ax2, bx2) - Math.max(ax1, bx1);
+        double height = Math.min(ay2, by2) - Math.max(ay1, by1);
+        return width > 0 && height > 0 ? width * height : 0;
+    }
+}
@@ -0,0 +1,51 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+/**
+ * mutable set of triangles on the texture plane, built for the traversal's "insert a triangle / does anything
+ * overlap this one?" workload.
+ *
+ * Unlike the immutable RTree, inserting changes the index in place rather than copying a path of nodes, and
+ * {@link #clear()} keeps the allocated space so one index can be reused for every partition.
+ * Overlap is {@link Triangle2D#intersects(Triangle2D)}, so triangles that only share an edge don't overlap.
+ */
+public interface SpatialIndex2D {
+    // meshes up to this many faces use a R*-tree
+    int RTREE_MAX_FACES = 2048;
+    // meshes up to this many faces use a quadtree, larger ones a grid
+    int QUADTREE_MAX_FACES = 65536;
+
+    void insert(Triangle2D triangle);
+
+    /**
+     * @return true if any triangle in the index overlaps triangle. Stops at the first one found
+     */
+    boolean anyIntersects(Triangle2D triangle);
+
+    int size();
+
+    /**
+     * @return number of nodes, cells and triangles queries have looked at since this index was created.
+     *         It isn't reset by {@link #clear()}, so it can be read before and after a batch of queries
+     */
+    long visitCount();
+
+    /**
+     * removes every triangle, keeping the allocated space
+     */
+    void clear();
+
+    /**
+     * picks an index for partitions of a mesh with the given number of faces.
+     * Small meshes use a R*-tree, which has no tuning to get wrong. Medium meshes use a quadtree, which is cheaper to
+     * insert into. Large meshes use a hash grid, where inserts and queries only touch the few cells under a triangle
+     */
+    static SpatialIndex2D forFaceCount(int faceCount) {
+        if(faceCount <= RTREE_MAX_FACES) {
+            return new RStarTreeIndex2D();
+        } else if(faceCount <= QUADTREE_MAX_FACES) {
+            return new QuadTreeIndex2D();
+        } else {
+            return new GridIndex2D();
+        }
+    }
+}
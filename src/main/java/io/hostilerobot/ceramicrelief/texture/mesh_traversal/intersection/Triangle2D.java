@@ -3,9 +3,7 @@ package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
 import com.github.davidmoten.rtree2.geometry.Geometry;
 import com.github.davidmoten.rtree2.geometry.Rectangle;
 import com.github.davidmoten.rtree2.geometry.internal.RectangleDouble;
-import io.hostilerobot.ceramicrelief.util.Epsilon;
 import javafx.geometry.Point2D;
-import org.apache.commons.math.util.FastMath;
 
 /**
  * take two on triangle intersection
@@ -17,260 +15,139 @@ import org.apache.commons.math.util.FastMath;
  * outer area, and seeing if the cross product from that line to each of the three points are in the same direction.
  * This would need to be done in both directions
  *
- * Since this is for use in an RTree, we may precompute some values to speed up each test significantly.
+ * So for each side of either triangle, we check whether all three points of the other triangle are on the outside of
+ * that side, or on it. If any side divides them then they don't intersect, and if none does then their insides overlap.
+ * Triangles that only touch, such as two faces sharing an edge in a texture, don't intersect.
  *
- * We precompute a matrix that normalizes this triangle to (0,0), (0,1), (1, 0)
- * This is some transformation matrix X.
- * Then we can apply the transformation X to a different triangle to put it in that basis.
- * Then, we simply need to check that all points of the new triangle have x < 0, y < 0, or x + y > 1
+ * Which side of a line a point is on is the sign of a cross product, and that sign is worked out exactly by
+ * {@link Orientation2D}, so the test is the same at any scale and needs no tolerance. Points that are in a line with a side,
+ * such as the shared points of neighboring faces, are told apart from points just past it.
+ * Which way the points wind is worked out on first use rather than up front, and only the points and bounds are kept inline,
+ * so a triangle that sits in an index takes little room.
  *
- *  A transformation has the form
- *
- *  [ x' ]     =  [ a b ]  [ x ]  + [ e ]
- *  [ y' ]        [ c d ]  [ y ]    [ f ]
- *
- *  Which we can describe as
- *  [ x' ]         [ a b e ]    [ x ]
- *  [ y' ]     =   [ c d f ]  * [ y ]
- *  [ 1  ]         [ 0 0 1 ]    [ 1 ]
- *
- *  We can build a system of equations for our three point
- *  [ 0  1  0 ]     [ a b e ]    [ x_1 x_2 x_3 ]
- *  [ 0  0  1 ]  =  [ c d f ] *  [ y_1 y_2 y_3 ]
- *  [ 1  1  1 ]     [ 0 0 1 ]    [  1   1   1  ]
- *
- *  Or A = X * T
- *
- *  We can invert to get
- *
- *  A * T^-1 = X * T * T^-1
- *  A * T^-1 = X
- *
- *  So we precompute X = A * T^-1, then when we're comparing to another triangle T2 we just multiple
- *  X * T2 = T2', and check the system of equations
+ * A triangle whose points are in a line has no inside, so none of its sides divides anything. It still intersects
+ * a triangle that it crosses.
  */
 public class Triangle2D implements Rectangle {
-    // bounding box
-    private Rectangle bounds = null;
-
-    // transformation matrix
-    private double a, b, e,
-                   c, d, f;
-    //             0, 0, 1    (implicitly)
+    // points of this triangle, also read by TriangleBatch2D
+    final double v1x, v1y, v2x, v2y, v3x, v3y;
 
-    // for testing if a point is in this triangle
-    private double pointInTriU1x, pointInTriU1y, pointInTriU2,
-        pointInTriV1x, pointInTriV1y, pointInTriV2;
+    // bounding box
+    private final double minX, minY, maxX, maxY;
 
-    // points of this triangle
-    private Point2D v1, v2, v3;
+    // which way the points wind, or UNKNOWN until the first test works it out. Every thread works out the same value,
+    // and an int is written whole, so a triangle may be shared before then
+    private static final int UNKNOWN = 2;
+    private int orientation = UNKNOWN;
 
-    private void computeMinRectangleBounds(Point2D v1, Point2D v2, Point2D v3) {
-        double minX;
-        double maxX;
-        if(v1.getX() < v2.getX()) {
-            minX = v1.getX();
-            maxX = v2.getX();
-        } else {
-            minX = v2.getX();
-            maxX = v1.getX();
-        }
-        minX = Math.min(minX, v3.getX());
-        maxX = Math.max(maxX, v3.getX());
-
-        double minY;
-        double maxY;
-        if(v1.getY() < v2.getY()) {
-            minY = v1.getY();
-            maxY = v2.getY();
-        } else {
-            minY = v2.getY();
-            maxY = v1.getY();
+    public Triangle2D(Point2D v1, Point2D v2, Point2D v3) {
+        this(v1.getX(), v1.getY(), v2.getX(), v2.getY(), v3.getX(), v3.getY());
+    }
+
+    public Triangle2D(double v1x, double v1y, double v2x, double v2y, double v3x, double v3y) {
+        this.v1x = v1x;
+        this.v1y = v1y;
+        this.v2x = v2x;
+        this.v2y = v2y;
+        this.v3x = v3x;
+        this.v3y = v3y;
+        this.minX = Math.min(Math.min(v1x, v2x), v3x);
+        this.minY = Math.min(Math.min(v1y, v2y), v3y);
+        this.maxX = Math.max(Math.max(v1x, v2x), v3x);
+        this.maxY = Math.max(Math.max(v1y, v2y), v3y);
+    }
+
+    /**
+     * @return 1 if the points wind counterclockwise, -1 if clockwise, and 0 if they are in a line.
+     *         Worked out on the first call. Also read by TriangleBatch2D
+     */
+    int orientation() {
+        int result = orientation;
+        if(result == UNKNOWN) {
+            result = (int) Math.signum(Orientation2D.orient2d(v1x, v1y, v2x, v2y, v3x, v3y));
+            orientation = result;
         }
-        minY = Math.min(minY, v3.getY());
-        maxY = Math.max(maxY, v3.getY());
-
-        bounds = RectangleDouble.create(minX, minY, maxX, maxY);
+        return result;
     }
 
-    private void computePointInTest(Point2D a, Point2D b, Point2D c) {
-        double v0x = a.getX() - c.getX();
-        double v0y = a.getY() - c.getY();
-        double v1x = b.getX() - c.getX();
-        double v1y = b.getY() - c.getY();
-        double v0v0 = v0x*v0x + v0y*v0y;
-        double v1v1 = v1x*v1x + v1y*v1y;
-        double v0v1 = v0x*v1x + v0y*v1y;
-        // denom is only 0 if (v0 . v0)(v1 . v1) == (v0 . v1)^2
-        // this would mean ||v0||^2 ||v1||^2 == (||v0|| ||v1|| cos(theta))^2
-        // which would imply theta == 0, meaning there is no angle between the two vecors (no area triangle)
-        double denom = v0v0*v1v1 - v0v1*v0v1;
-        denom = denom < Epsilon.epsilon() ? 0.0 : denom; // if denom is effectively zero then we just let the values U1, U2, V1, V2 go infinite
-        // this will effectively make all point-in-triangle tests return false on this triangle
-
-        // calculating values for U
-        double U1x = (v1v1*v0x - v0v1*v1x);
-        double U1y = (v1v1*v0y - v0v1*v1y);
-        double U2 = c.getX()*U1x + c.getY()*U1y;
-        pointInTriU1x = U1x/denom;
-        pointInTriU1y = U1y/denom;
-        pointInTriU2 = U2/denom;
-
-        // calculating values for V
-        double V1x = v0v0*v1x - v0v1*v0x;
-        double V1y = v0v0*v1y - v0v1*v0y;
-        double V2 = c.getX()*V1x + c.getY()*V1y;
-        pointInTriV1x = V1x/denom;
-        pointInTriV1y = V1y/denom;
-        pointInTriV2 = V2/denom;
-        // v2 = u * v0 + v * v1
-        // v0 = C - A
-        // v1 = B - A
-        // v2 = point - A
-        // u = ((v1.v1)(v2.v0)-(v1.v0)(v2.v1)) / ((v0.v0)(v1.v1) - (v0.v1)(v1.v0))
-        //      (v1x*v1x + v1y*v1y)(v2x*v0x + v2y*v0y) - (v1x*v0x + v1y*v0y)(v2x*v1x + v2y*v1y)
-        //      v2.((v1.v1)(v0)-(v1.v0)(v1))
-        //      v2.((v1x*v1x + v1y*v1y)(v0)-(v1x*v0x + v1y*v0y)(v1))
-        //      v2x*((v1x*v1x + v1y*v1y)(v0x)-(v1x*v0x + v1y*v0y)(v1x)) + v2y*((v1x*v1x + v1y*v1y)(v0y)-(v1x*v0x + v1y*v0y)(v1y))
-        //      v2x*U1x + v2y*U1y
-        //      (pointx - Ax)*U1x + (pointy - Ay)*U1y
-        //      pointx*U1x + pointy*U1y - Ax*U1x - Ay*U1y
-        //      U2 = Ax*U1x + Ay*U1y
-        // v = ((v0.v0)(v2.v1)-(v0.v1)(v2.v0)) / ((v0.v0)(v1.v1) - (v0.v1)(v1.v0))
-        //     v2.((v0.v0)v1 - (v0.v1)v0)
-        //     v2x((v0x*v0x + v0y*v0y)v1x - (v0x*v1x + v0y*v1y)v0x) + v2y((v0x*v0x + v0y*v0y)v1y - (v0x*v1x + v0y*v1y)v0y)
-        //     (pointx - Ax)*V1x + (pointy - Ay)*V1y
-        //     pointx*V1x + pointy*V1y - Ax*V1x - Ay*V1y
-        //     V2 = Ax*V1x + Ay*V1y
-    }
-
-    private void computeNormalizationMatrix(Point2D a, Point2D b, Point2D c) {
-        // denominator of the transformation matrix
-        // (aX*bY - aX*cY - bX*aY + bX*cY + cX*aY - cX*bY)
-        // this is zero if and only if these three are in a line
-        double denom = (a.getX()*b.getY() - a.getX()*c.getY() - b.getX()*a.getY() + b.getX()*c.getY() + c.getX()*a.getY() - c.getX()*b.getY());
-        // also, how do we transform something that is a line?
-        if(Epsilon.isZero(denom)) {
-            denom = 0.0;
+    private boolean inTriangle(double xPos, double yPos) {
+        int orientation = orientation();
+        return orientation != 0
+                && inside(orientation, v1x, v1y, v2x, v2y, xPos, yPos)
+                && inside(orientation, v2x, v2y, v3x, v3y, xPos, yPos)
+                && inside(orientation, v3x, v3y, v1x, v1y, xPos, yPos);
+    }
+
+    /**
+     * @return true if the triangles (a1, a2, a3) and (b1, b2, b3), whose points wind the ways given, have overlapping insides.
+     *         Shared with TriangleBatch2D, for the triangles its filter can't settle
+     */
+    static boolean overlaps(int aOrientation, double a1x, double a1y, double a2x, double a2y, double a3x, double a3y,
+                            int bOrientation, double b1x, double b1y, double b2x, double b2y, double b3x, double b3y) {
+        return !divides(aOrientation, a1x, a1y, a2x, a2y, a3x, a3y, b1x, b1y, b2x, b2y, b3x, b3y)
+                && !divides(bOrientation, b1x, b1y, b2x, b2y, b3x, b3y, a1x, a1y, a2x, a2y, a3x, a3y);
+    }
+
+    // true if a side of the triangle (a, b, c) has all of u, v, w on its outside, or on it
+    private static boolean divides(int orientation, double ax, double ay, double bx, double by, double cx, double cy,
+                                   double ux, double uy, double vx, double vy, double wx, double wy) {
+        if(orientation == 0) {
+            return false;
         }
-
-        /*
-                    [ a | b | e ]
-        transform = [ c | d | f ]
-                    [ 0 | 0 | 1 ]
-
-                              [ (cY - aY) | (aX - cX) | (cX aY - aX cY) ]
-        transform = 1/denom * [ (aY - bY) | (bX - aX) | (aX bY - bX aY) ]
-                              [     0     |     0     |        1        ]
-         */
-
-        this.a = (c.getY() - a.getY())/denom;
-        this.b = (a.getX() - c.getX())/denom;
-        this.c = (a.getY() - b.getY())/denom;
-        this.d = (b.getX() - a.getX())/denom;
-        this.e = (c.getX()*a.getY() - a.getX()*c.getY())/denom;
-        this.f = (a.getX()*b.getY() - b.getX()*a.getY())/denom;
+        return (outside(orientation, ax, ay, bx, by, ux, uy) && outside(orientation, ax, ay, bx, by, vx, vy) && outside(orientation, ax, ay, bx, by, wx, wy))
+                || (outside(orientation, bx, by, cx, cy, ux, uy) && outside(orientation, bx, by, cx, cy, vx, vy) && outside(orientation, bx, by, cx, cy, wx, wy))
+                || (outside(orientation, cx, cy, ax, ay, ux, uy) && outside(orientation, cx, cy, ax, ay, vx, vy) && outside(orientation, cx, cy, ax, ay, wx, wy));
     }
 
-    private void precompute(Point2D v1, Point2D v2, Point2D v3) {
-        // compute min rectangle bounds
-        computeMinRectangleBounds(v1, v2, v3);
-        // compute values so testing if a point is in the triangle is a simple translation
-        computePointInTest(v1, v2, v3);
-        // compute a normalization matrix
-        computeNormalizationMatrix(v1, v2, v3);
-
-        this.v1 = v1;
-        this.v2 = v2;
-        this.v3 = v3;
+    // true if (x, y) is strictly on the inner side of the side from p to q of a triangle winding the given way
+    private static boolean inside(int orientation, double px, double py, double qx, double qy, double x, double y) {
+        return Orientation2D.orient2d(px, py, qx, qy, x, y) * orientation > 0.0;
     }
 
-
-    public Triangle2D(Point2D v1, Point2D v2, Point2D v3) {
-        precompute(v1, v2, v3);
+    // true if (x, y) is on the outer side of the side from p to q, or on it. Not the same as !inside,
+    // as a point that isn't a number is neither, and so never lets a side divide
+    private static boolean outside(int orientation, double px, double py, double qx, double qy, double x, double y) {
+        return Orientation2D.orient2d(px, py, qx, qy, x, y) * orientation <= 0.0;
     }
 
-    private boolean inTriangle(double xPos, double yPos) {
-        double u = pointInTriU1x*xPos + pointInTriU1y*yPos - pointInTriU2;
-        double v = pointInTriV1x*xPos + pointInTriV1y*yPos - pointInTriV2;
-        return Epsilon.betweenZeroOneExclusive(u) && Epsilon.betweenZeroOneExclusive(v) && Epsilon.betweenZeroOneExclusive(u + v);
+    // true if all four corners of the box are on the outside of the side from p to q, or on it
+    private static boolean dividesBox(int orientation, double px, double py, double qx, double qy, double minX, double minY, double maxX, double maxY) {
+        return outside(orientation, px, py, qx, qy, minX, minY) && outside(orientation, px, py, qx, qy, maxX, minY)
+                && outside(orientation, px, py, qx, qy, minX, maxY) && outside(orientation, px, py, qx, qy, maxX, maxY);
     }
 
-
-    @SuppressWarnings("BooleanMethodIsAlwaysInverted")
-    // this warning is a bit silly, since inverting the method would not be right
-    // we don't test for an intersection, rather we test for conditions where we know there won't be one.
-    // if this were inverted, returning true would not imply the existence of an intersection!
-    private static boolean hasNoIntersection(Triangle2D t1, Triangle2D t2) {
-        // map triangle to our coordinates
-        //         t2'                t1             t2
-        //  [ x1'  x2'  x3' ]     [ a b e ]    [ x_1 x_2 x_3 ]
-        //  [ y1'  y2'  y3' ]  =  [ c d f ] *  [ y_1 y_2 y_3 ]
-        //  [  1    1    1  ]     [ 0 0 1 ]    [  1   1   1  ]
-
-        double x1 = t1.a * t2.v1.getX() + t1.b * t2.v1.getY() + t1.e;
-        double y1 = t1.c * t2.v1.getX() + t1.d * t2.v1.getY() + t1.f;
-        double x2 = t1.a * t2.v2.getX() + t1.b * t2.v2.getY() + t1.e;
-        double y2 = t1.c * t2.v2.getX() + t1.d * t2.v2.getY() + t1.f;
-        double x3 = t1.a * t2.v3.getX() + t1.b * t2.v3.getY() + t1.e;
-        double y3 = t1.c * t2.v3.getX() + t1.d * t2.v3.getY() + t1.f;
-
-        return  // transformed triangle: all points below x axis, does not intersect
-                (Epsilon.lessThanZeroInclusive(x1) && Epsilon.lessThanZeroInclusive(x2) && Epsilon.lessThanZeroInclusive(x3))
-                // transformed triangle: all points below y axis, does not intersect
-                || (Epsilon.lessThanZeroInclusive(y1) && Epsilon.lessThanZeroInclusive(y2) && Epsilon.lessThanZeroInclusive(y3))
-                // transformed triangle: all points above y = 1 - x line, does not intersect
-                || (Epsilon.greaterThanOneInclusive(x1 + y1) && Epsilon.greaterThanOneInclusive(x2 + y2) && Epsilon.greaterThanOneInclusive(x3 + y3));
-    }
-
-    private boolean testRectangle(Point2D a, Point2D b, Rectangle rectangle) {
-        double posX = a.getX();
-        double posY = a.getY();
-        double lenX = b.getX() - a.getX();
-        double lenY = b.getY() - a.getY();
-        if(Epsilon.lessThanZeroInclusive(FastMath.abs(lenX))) {
-            // prevent divide by zero errors if we have a vertical line
-            if(rectangle.x1() < posX && posX < rectangle.x2() && // vertical line at x is in x range of rectangle
-                    overlapRange(posY, lenY, rectangle.y1(), rectangle.y2())) { // if the y values are also in range
-                return true;
-            }
+    @Override
+    public boolean intersects(Rectangle rectangle) {
+        if (rectangle instanceof Triangle2D triangle) {
+            return intersects(triangle);
         } else {
-            // otherwise, we find the y values that this line will intersect at
-            double m = lenY/lenX;
-            double y0 = posY + m * (rectangle.x1() - posX);
-            double y1 = posY + m * (rectangle.x2() - posX);
-
-            return overlapRange(y0, y1 - y0, rectangle.y1(), rectangle.y2());
+            return intersectsBounds(rectangle.x1(), rectangle.y1(), rectangle.x2(), rectangle.y2());
         }
-        return false;
     }
 
-    private static boolean overlapRange(double start, double direction, double rangeMin, double rangeMax) {
-        // checks if (start, start + direction) is within the range of (rangeMin, rangeMax)
-        if(direction > 0) {
-            // no overlap: start > rangeMax || start + direction < rangeMin
-            return rangeMax >= start && start + direction >= rangeMin;
-        } else {
-            return rangeMax + direction >= start && start >=rangeMin;
-        }
+    public boolean intersects(Triangle2D triangle) {
+        return boundsOverlap(triangle.minX, triangle.minY, triangle.maxX, triangle.maxY)
+                && overlaps(orientation(), v1x, v1y, v2x, v2y, v3x, v3y,
+                        triangle.orientation(), triangle.v1x, triangle.v1y, triangle.v2x, triangle.v2y, triangle.v3x, triangle.v3y);
     }
 
-    @Override
-    public boolean intersects(Rectangle rectangle) {
-        if (rectangle instanceof Triangle2D triangle) {
-            return !hasNoIntersection(this, triangle) &&
-                    !hasNoIntersection(triangle, this);
-        } else {
-            // otherwise, use the following method: https://seblee.me/2009/05/super-fast-trianglerectangle-intersection-test/
-            // lines are {POS_SOURCE_X, POS_SOURCE_Y} + {VAL_LEN_X, VAL_LEN_Y} * u
-            return testRectangle(v1, v3, rectangle) ||
-                    testRectangle(v1, v2, rectangle) ||
-                    testRectangle(v2, v3, rectangle) ||
-                    // final test:
-                    // point from the rectangle. check if it's in bounds of this triangle. If it is,
-                    // then the rectangle is entirely contained within this triangle
-                    inTriangle(rectangle.x1(), rectangle.y1());
+    /**
+     * same as {@link #intersects(Rectangle)} for a box that isn't a triangle, without needing a {@link Rectangle}
+     */
+    public boolean intersectsBounds(double minX, double minY, double maxX, double maxY) {
+        // the sides of the box are dividing lines along the axes, so they're covered by the bounds.
+        // Then it's only the sides of this triangle that are left to check
+        if(!boundsOverlap(minX, minY, maxX, maxY)) {
+            return false;
         }
+        int orientation = orientation();
+        return orientation == 0 || !(dividesBox(orientation, v1x, v1y, v2x, v2y, minX, minY, maxX, maxY)
+                || dividesBox(orientation, v2x, v2y, v3x, v3y, minX, minY, maxX, maxY)
+                || dividesBox(orientation, v3x, v3y, v1x, v1y, minX, minY, maxX, maxY));
+    }
+
+    private boolean boundsOverlap(double minX, double minY, double maxX, double maxY) {
+        return minX <= this.maxX && this.minX <= maxX && minY <= this.maxY && this.minY <= maxY;
     }
 
     @Override
@@ -283,27 +160,28 @@ public class Triangle2D implements Rectangle {
 
     @Override
     public Rectangle mbr() {
-        return bounds;
+        // made on request rather than kept, as only the rtree2 RTree asks for it
+        return RectangleDouble.create(minX, minY, maxX, maxY);
     }
 
     @Override
     public double x1() {
-        return bounds.x1();
+        return minX;
     }
 
     @Override
     public double y1() {
-        return bounds.y1();
+        return minY;
     }
 
     @Override
     public double x2() {
-        return bounds.x2();
+        return maxX;
     }
 
     @Override
     public double y2() {
-        return bounds.y2();
+        return maxY;
     }
 
     @Override
@@ -0,0 +1,341 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * triangles stored as flat coordinate arrays, so one query triangle can be tested against many of them at once.
+ *
+ * Each triangle keeps its points, its bounds, and which way its points wind. A query is tested against a run of triangles
+ * a vector of lanes at a time, checking the sides of both against the points of the other as in
+ * {@link Triangle2D#intersects(Triangle2D)}. Each side check is the first, floating point stage of
+ * {@link Orientation2D#orient2d}, with its error bound, so most lanes are settled without leaving the vectors.
+ * A lane that the bound can't settle is given to the exact scalar test. So a triangle counts as overlapping exactly when
+ * its bounds overlap the query's and the scalar test agrees.
+ *
+ * Triangles are numbered in the order they are added, and can be tested either as a range of IDs or through a list of
+ * IDs, such as the triangles of one index node.
+ */
+public final class TriangleBatch2D {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private int size = 0;
+    private double[] x1 = new double[16], y1 = new double[16];
+    private double[] x2 = new double[16], y2 = new double[16];
+    private double[] x3 = new double[16], y3 = new double[16];
+    // 1, -1 or 0 as in Triangle2D, kept as doubles so lanes can be multiplied by it
+    private double[] orientation = new double[16];
+    private double[] minX = new double[16], minY = new double[16];
+    private double[] maxX = new double[16], maxY = new double[16];
+    private final Query query = new Query();
+
+    /**
+     * @return ID of the added triangle
+     */
+    public int add(Triangle2D triangle) {
+        int id = size++;
+        if(id == x1.length) {
+            grow(id << 1);
+        }
+        x1[id] = triangle.v1x;
+        y1[id] = triangle.v1y;
+        x2[id] = triangle.v2x;
+        y2[id] = triangle.v2y;
+        x3[id] = triangle.v3x;
+        y3[id] = triangle.v3y;
+        orientation[id] = triangle.orientation();
+        minX[id] = triangle.x1();
+        minY[id] = triangle.y1();
+        maxX[id] = triangle.x2();
+        maxY[id] = triangle.y2();
+        return id;
+    }
+
+    private void grow(int capacity) {
+        x1 = Arrays.copyOf(x1, capacity);
+        y1 = Arrays.copyOf(y1, capacity);
+        x2 = Arrays.copyOf(x2, capacity);
+        y2 = Arrays.copyOf(y2, capacity);
+        x3 = Arrays.copyOf(x3, capacity);
+        y3 = Arrays.copyOf(y3, capacity);
+        orientation = Arrays.copyOf(orientation, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * removes every triangle, keeping the allocated space
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    // bounds of triangle id, for indexes that sort triangles by them
+    double minX(int id) {
+        return minX[id];
+    }
+
+    double minY(int id) {
+        return minY[id];
+    }
+
+    double maxX(int id) {
+        return maxX[id];
+    }
+
+    double maxY(int id) {
+        return maxY[id];
+    }
+
+    /**
+     * @return true if query overlaps any triangle with an ID in [from, to)
+     */
+    public boolean anyIntersects(Triangle2D query, int from, int to) {
+        return firstIntersecting(query, from, to) >= 0;
+    }
+
+    /**
+     * @return true if query overlaps any of the triangles ids[from] ... ids[to - 1]
+     */
+    public boolean anyIntersects(Triangle2D query, int[] ids, int from, int to) {
+        return firstIntersecting(query, ids, from, to) >= 0;
+    }
+
+    /**
+     * @return the lowest ID in [from, to) of a triangle that overlaps query, or -1 if there is none
+     */
+    public int firstIntersecting(Triangle2D query, int from, int to) {
+        if(from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") of " + size);
+        }
+        return firstIntersecting(this.query.set(query), null, from, to);
+    }
+
+    /**
+     * @return the first of ids[from] ... ids[to - 1] whose triangle overlaps query, or -1 if there is none
+     */
+    public int firstIntersecting(Triangle2D query, int[] ids, int from, int to) {
+        return firstIntersecting(this.query.set(query), ids, from, to);
+    }
+
+
+    // tests the IDs in [from, to) if ids is null, and ids[from] ... ids[to - 1] otherwise
+    private int firstIntersecting(Query q, int[] ids, int from, int to) {
+        int idx = from;
+        for(int upper = from + SPECIES.loopBound(to - from); idx < upper; idx += SPECIES.length()) {
+            // bounds first, so the points are only loaded for lanes that could overlap
+            long hits = q.boundsOverlap(this, ids, idx);
+            if(hits == 0) {
+                continue;
+            }
+            q.unsure = 0;
+            hits &= ~q.separatedByQuery(this, ids, idx);
+            if(hits == 0) {
+                continue;
+            }
+            hits &= ~q.separatedByTriangles(this, ids, idx);
+            // no side divides the lanes left, so they overlap, other than those the filter wasn't sure of
+            for(; hits != 0; hits &= hits - 1) {
+                int lane = idx + Long.numberOfTrailingZeros(hits);
+                int id = ids == null ? lane : ids[lane];
+                if((q.unsure & Long.lowestOneBit(hits)) == 0 || q.overlaps(this, id)) {
+                    return id;
+                }
+            }
+        }
+        for(; idx < to; idx++) {
+            int id = ids == null ? idx : ids[idx];
+            if(q.overlaps(this, id)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * the query triangle, and the state of the side checks of the current lanes. One is kept per batch and refilled for
+     * each call, as an index makes one call per node it visits.
+     *
+     * A side from p to q is checked against a point u as orient2d(u, p, q), which has the same sign as orient2d(p, q, u)
+     * but works out p - q only once per side. Multiplied by the orientation of the triangle the side belongs to,
+     * it is positive for points on the inside. A point is settled as inside or outside when the result is past the error
+     * bound, and a lane is settled once some side has all three points outside, or every side has a point inside.
+     *
+     * Each vector step is its own method that calls nothing but the Vector API, and hands back its lanes as bits.
+     * The Vector API expands into a lot of code, so the JIT can run out of room for inlining within one big loop, and any
+     * vector passed to a method it doesn't inline is boxed. Passing only bits between steps means a step that isn't
+     * inlined is just a call
+     */
+    private static final class Query {
+        private double minX, minY, maxX, maxY;
+        private double x1, y1, x2, y2, x3, y3;
+        private int orientation;
+        // p - q of each side of the query, from v1 to v2, v2 to v3 and v3 to v1, times the orientation
+        private double dx1, dy1, dx2, dy2, dx3, dy3;
+        // per side of the query: lanes with every point checked so far outside, and lanes with a point inside
+        private long outside1, outside2, outside3;
+        private long inside1, inside2, inside3;
+        // lanes with a side the filter couldn't settle, left for the exact test
+        private long unsure;
+
+        private Query set(Triangle2D query) {
+            minX = query.x1();
+            minY = query.y1();
+            maxX = query.x2();
+            maxY = query.y2();
+            x1 = query.v1x;
+            y1 = query.v1y;
+            x2 = query.v2x;
+            y2 = query.v2y;
+            x3 = query.v3x;
+            y3 = query.v3y;
+            orientation = query.orientation();
+            dx1 = (x1 - x2) * orientation;
+            dy1 = (y1 - y2) * orientation;
+            dx2 = (x2 - x3) * orientation;
+            dy2 = (y2 - y3) * orientation;
+            dx3 = (x3 - x1) * orientation;
+            dy3 = (y3 - y1) * orientation;
+            return this;
+        }
+
+        // lanes whose triangle's bounds overlap the query's, as bits
+        private long boundsOverlap(TriangleBatch2D batch, int[] ids, int idx) {
+            DoubleVector tMinX, tMinY, tMaxX, tMaxY;
+            if(ids == null) {
+                tMinX = DoubleVector.fromArray(SPECIES, batch.minX, idx);
+                tMinY = DoubleVector.fromArray(SPECIES, batch.minY, idx);
+                tMaxX = DoubleVector.fromArray(SPECIES, batch.maxX, idx);
+                tMaxY = DoubleVector.fromArray(SPECIES, batch.maxY, idx);
+            } else {
+                tMinX = DoubleVector.fromArray(SPECIES, batch.minX, 0, ids, idx);
+                tMinY = DoubleVector.fromArray(SPECIES, batch.minY, 0, ids, idx);
+                tMaxX = DoubleVector.fromArray(SPECIES, batch.maxX, 0, ids, idx);
+                tMaxY = DoubleVector.fromArray(SPECIES, batch.maxY, 0, ids, idx);
+            }
+            return tMinX.compare(VectorOperators.LE, maxX)
+                    .and(tMaxX.compare(VectorOperators.GE, minX))
+                    .and(tMinY.compare(VectorOperators.LE, maxY))
+                    .and(tMaxY.compare(VectorOperators.GE, minY))
+                    .toLong();
+        }
+
+        // lanes with all three points outside a side of the query, as bits
+        private long separatedByQuery(TriangleBatch2D batch, int[] ids, int idx) {
+            if(orientation == 0) {
+                // a query in a line has no inside, so its sides divide nothing
+                return 0L;
+            }
+            outside1 = outside2 = outside3 = -1L;
+            inside1 = inside2 = inside3 = 0L;
+            sidesOfQuery(batch.x1, batch.y1, ids, idx);
+            sidesOfQuery(batch.x2, batch.y2, ids, idx);
+            sidesOfQuery(batch.x3, batch.y3, ids, idx);
+            long separated = outside1 | outside2 | outside3;
+            unsure |= ~separated & ~((outside1 | inside1) & (outside2 | inside2) & (outside3 | inside3));
+            return separated;
+        }
+
+        // checks one point of each lane against the three sides of the query
+        private void sidesOfQuery(double[] xs, double[] ys, int[] ids, int idx) {
+            DoubleVector ux, uy;
+            if(ids == null) {
+                ux = DoubleVector.fromArray(SPECIES, xs, idx);
+                uy = DoubleVector.fromArray(SPECIES, ys, idx);
+            } else {
+                ux = DoubleVector.fromArray(SPECIES, xs, 0, ids, idx);
+                uy = DoubleVector.fromArray(SPECIES, ys, 0, ids, idx);
+            }
+            // side v1 to v2
+            DoubleVector left = ux.sub(x2).mul(dy1), right = uy.sub(y2).mul(dx1);
+            DoubleVector det = left.sub(right), err = left.abs().add(right.abs()).mul(Orientation2D.ERROR_BOUND_A);
+            outside1 &= det.add(err).compare(VectorOperators.LE, 0.0).toLong();
+            inside1 |= det.sub(err).compare(VectorOperators.GT, 0.0).toLong();
+            // side v2 to v3
+            left = ux.sub(x3).mul(dy2);
+            right = uy.sub(y3).mul(dx2);
+            det = left.sub(right);
+            err = left.abs().add(right.abs()).mul(Orientation2D.ERROR_BOUND_A);
+            outside2 &= det.add(err).compare(VectorOperators.LE, 0.0).toLong();
+            inside2 |= det.sub(err).compare(VectorOperators.GT, 0.0).toLong();
+            // side v3 to v1
+            left = ux.sub(x1).mul(dy3);
+            right = uy.sub(y1).mul(dx3);
+            det = left.sub(right);
+            err = left.abs().add(right.abs()).mul(Orientation2D.ERROR_BOUND_A);
+            outside3 &= det.add(err).compare(VectorOperators.LE, 0.0).toLong();
+            inside3 |= det.sub(err).compare(VectorOperators.GT, 0.0).toLong();
+        }
+
+        // lanes whose triangle has a side with all three points of the query outside it, as bits
+        private long separatedByTriangles(TriangleBatch2D batch, int[] ids, int idx) {
+            return sideOfTriangles(batch, ids, idx, batch.x1, batch.y1, batch.x2, batch.y2)
+                    | sideOfTriangles(batch, ids, idx, batch.x2, batch.y2, batch.x3, batch.y3)
+                    | sideOfTriangles(batch, ids, idx, batch.x3, batch.y3, batch.x1, batch.y1);
+        }
+
+        // checks the three points of the query against the side from p to q of each lane
+        private long sideOfTriangles(TriangleBatch2D batch, int[] ids, int idx, double[] pxs, double[] pys, double[] qxs, double[] qys) {
+            DoubleVector px, py, qx, qy, s;
+            if(ids == null) {
+                px = DoubleVector.fromArray(SPECIES, pxs, idx);
+                py = DoubleVector.fromArray(SPECIES, pys, idx);
+                qx = DoubleVector.fromArray(SPECIES, qxs, idx);
+                qy = DoubleVector.fromArray(SPECIES, qys, idx);
+                s = DoubleVector.fromArray(SPECIES, batch.orientation, idx);
+            } else {
+                px = DoubleVector.fromArray(SPECIES, pxs, 0, ids, idx);
+                py = DoubleVector.fromArray(SPECIES, pys, 0, ids, idx);
+                qx = DoubleVector.fromArray(SPECIES, qxs, 0, ids, idx);
+                qy = DoubleVector.fromArray(SPECIES, qys, 0, ids, idx);
+                s = DoubleVector.fromArray(SPECIES, batch.orientation, 0, ids, idx);
+            }
+            DoubleVector dx = px.sub(qx).mul(s), dy = py.sub(qy).mul(s);
+            // q - u rather than u - q, so det is the negation: outside at or above err, inside below -err
+            DoubleVector left = qx.sub(x1).mul(dy), right = qy.sub(y1).mul(dx);
+            DoubleVector det = left.sub(right), err = left.abs().add(right.abs()).mul(Orientation2D.ERROR_BOUND_A);
+            VectorMask<Double> outside = det.sub(err).compare(VectorOperators.GE, 0.0);
+            VectorMask<Double> inside = det.add(err).compare(VectorOperators.LT, 0.0);
+            left = qx.sub(x2).mul(dy);
+            right = qy.sub(y2).mul(dx);
+            det = left.sub(right);
+            err = left.abs().add(right.abs()).mul(Orientation2D.ERROR_BOUND_A);
+            outside = outside.and(det.sub(err).compare(VectorOperators.GE, 0.0));
+            inside = inside.or(det.add(err).compare(VectorOperators.LT, 0.0));
+            left = qx.sub(x3).mul(dy);
+            right = qy.sub(y3).mul(dx);
+            det = left.sub(right);
+            err = left.abs().add(right.abs()).mul(Orientation2D.ERROR_BOUND_A);
+            outside = outside.and(det.sub(err).compare(VectorOperators.GE, 0.0));
+            inside = inside.or(det.add(err).compare(VectorOperators.LT, 0.0));
+            // a triangle in a line has no inside, so the side divides nothing
+            VectorMask<Double> flat = s.compare(VectorOperators.EQ, 0.0);
+            outside = outside.andNot(flat);
+            unsure |= ~outside.or(inside).or(flat).toLong();
+            return outside.toLong();
+        }
+
+        /**
+         * @return true if triangle id of batch overlaps the query, for the lanes left over after the vectors
+         *         and those the filter couldn't settle
+         */
+        private boolean overlaps(TriangleBatch2D batch, int id) {
+            // written as the overlap rather than its opposite, so NaN bounds don't overlap anything, as in the vectors
+            if(!(batch.minX[id] <= maxX && batch.maxX[id] >= minX && batch.minY[id] <= maxY && batch.maxY[id] >= minY)) {
+                return false;
+            }
+            return Triangle2D.overlaps(orientation, x1, y1, x2, y2, x3, y3,
+                    (int) batch.orientation[id], batch.x1[id], batch.y1[id], batch.x2[id], batch.y2[id], batch.x3[id], batch.y3[id]);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.hostilerobot.ceramicrelief.texture.post_processing;
 
+import io.hostilerobot.ceramicrelief.qmesh.FaceAdjacency;
 import io.hostilerobot.ceramicrelief.qmesh.QMesh;
 import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
 import io.hostilerobot.ceramicrelief.qmesh.QMeshFace;
@@ -19,18 +20,18 @@ class GenerateTextureGraph {
         QMesh mesh = projectionState.getMesh();
         MeshProjectionResult projection = projectionState.getProjection();
         FaceMappingInfo faceMapping = projection.getFaceMapping(); // map mesh face to tface.
-        Graph<Integer, QMeshEdge> graph = mesh.getMeshConnectivity();
+        FaceAdjacency adjacency = mesh.getAdjacency();
         Graph<TFace, EdgeInfo> textureConnections = projection.getTextureConnections();
         // note: suppose we have a face in 3d (A, B, C) that is projected onto 2d (tA, tB, tC)
         // then A -> tA, B -> tB, C -> tC from our traversal, since we ensure the order.
-        for(int meshFaceSourceId : graph.iterables().vertices()) {
+        for(int meshFaceSourceId = 0; meshFaceSourceId < adjacency.faceCount(); meshFaceSourceId++) {
             int tFaceSourceId = faceMapping.getTFace(meshFaceSourceId);
             TFace tFaceSource = projection.getTFaces().get(tFaceSourceId);
             textureConnections.addVertex(tFaceSource); // ensure this vertex exists
 
             QMeshFace meshFaceSource = mesh.getFace(meshFaceSourceId);
-            for(QMeshEdge meshEdge : graph.iterables().edgesOf(meshFaceSourceId)) {
-                int meshFaceDestId = meshEdge.getOtherFace(meshFaceSourceId);
+            for(int slot = adjacency.start(meshFaceSourceId), end = adjacency.end(meshFaceSourceId); slot < end; slot++) {
+                int meshFaceDestId = adjacency.neighbor(slot);
                 // run through adjacent faces
                 int tFaceDestId = faceMapping.getTFace(meshFaceDestId);
                 TFace tFaceDest = projection.getTFaces().get(tFaceDestId);
@@ -121,6 +122,7 @@ class GenerateTextureGraph {
                 assert sourceEdge != null && destEdge != null;
 
                 // get the policy we will use
+                QMeshEdge meshEdge = new QMeshEdge(meshFaceSourceId, meshFaceDestId);
                 TEdgeConnectionPolicy connectionPolicy = projectionState.getConnections().get(meshEdge);
                 // add the edge to the texture graph
                 EdgeInfo edge = new EdgeInfo(sourceEdge, destEdge, connectionPolicy, meshEdge);
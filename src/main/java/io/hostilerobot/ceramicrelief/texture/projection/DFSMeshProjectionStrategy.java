@@ -23,4 +23,16 @@ public class DFSMeshProjectionStrategy implements MeshProjectionStrategy{
     public MeshProjectionResult project(QMesh backingMesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy) {
         return strat.project(backingMesh, initialPolicy);
     }
+
+    @Override
+    public MeshProjectionResult project(QMesh backingMesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy,
+                                        ProjectionBudget budget) {
+        return strat.project(backingMesh, initialPolicy, budget);
+    }
+
+    @Override
+    public MeshProjectionResult reproject(QMesh backingMesh, MeshProjectionResult previous,
+                                          Map<QMeshEdge, TEdgeConnectionPolicy> policyDelta) {
+        return strat.reproject(backingMesh, previous, policyDelta);
+    }
 }
@@ -4,6 +4,7 @@ import io.hostilerobot.ceramicrelief.collection.TransformList;
 import io.hostilerobot.ceramicrelief.qmesh.QMesh;
 import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
 import io.hostilerobot.ceramicrelief.texture.TEdgeConnectionPolicy;
+import io.hostilerobot.ceramicrelief.texture.TFace;
 import io.hostilerobot.ceramicrelief.texture.mesh_traversal.BoundingBox2D;
 import io.hostilerobot.ceramicrelief.texture.mesh_traversal.MeshPartitionTraversal;
 import io.hostilerobot.ceramicrelief.texture.mesh_traversal.ProjectedTextureInfo;
@@ -12,12 +13,19 @@ import io.hostilerobot.ceramicrelief.texture.packing.BoxPacker2D;
 import io.hostilerobot.ceramicrelief.texture.post_processing.ProjectionCompositionUtil;
 import javafx.geometry.Point2D;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * represents a projection strategy that projects a 3d mesh into 2d by using separate components.
  * It projects some disjoint subset of the mesh, then finally combines them into one holistic plane using box packing
+ *
+ * When reprojecting, only the partitions with a changed edge or a moved face are traversed again. The other partitions
+ * keep their place in the texture, and the new ones are packed next to them.
  */
 public class DisjointMeshProjectionStrategy implements MeshProjectionStrategy{
     private final PartitionedMeshTraversal projectAllFaces;
@@ -30,18 +38,188 @@ public class DisjointMeshProjectionStrategy implements MeshProjectionStrategy{
 
     @Override
     public MeshProjectionResult project(QMesh mesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy) {
+        return project(mesh, initialPolicy, ProjectionBudget.unlimited());
+    }
+
+    @Override
+    public MeshProjectionResult project(QMesh mesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy,
+                                        ProjectionBudget budget) {
         // initial state. Only used internally
-        ProjectionState state = new ProjectionState(mesh, initialPolicy);
+        ProjectionState state = new ProjectionState(mesh, initialPolicy, budget);
         // project all subsets of the mesh
+        PhaseTimer timer = new PhaseTimer(ProjectionMetrics.Phase.TRAVERSE);
         List<ProjectedTextureInfo> textures = projectAllFaces.projectAll(state);
+        timer.end(state, textures.size(), false);
         // find a packing for the individual mesh projections
+        timer = new PhaseTimer(ProjectionMetrics.Phase.PACK);
         List<BoundingBox2D> boundingBoxes = new TransformList<>(textures, ProjectedTextureInfo::getBounds);
         List<Point2D> packing = packBoxes.pack(boundingBoxes);
         // pack the individual mesh components
         ProjectionCompositionUtil.translateProjections(textures, packing, state.getProjection().getTVertices());
+        timer.end(state, textures.size(), false);
         // create a texture graph
+        timer = new PhaseTimer(ProjectionMetrics.Phase.GRAPH);
         ProjectionCompositionUtil.generateTextureGraph(state);
+        timer.end(state, textures.size(), false);
         // return the result.
+        state.getProjection().complete(state, textures);
         return state.getProjection();
     }
+
+    @Override
+    public MeshProjectionResult reproject(QMesh mesh, MeshProjectionResult previous,
+                                          Map<QMeshEdge, TEdgeConnectionPolicy> policyDelta) {
+        if(!previous.isComplete()) {
+            throw new IllegalArgumentException("previous projection is not complete");
+        }
+        int faceCount = mesh.faceCount();
+        if(previous.getTFaces().size() != faceCount) {
+            // faces were added since, so the old partitions don't line up with the mesh anymore
+            return MeshProjectionStrategy.super.reproject(mesh, previous, policyDelta);
+        }
+
+        // where each old partition's faces and vertices start
+        List<ProjectedTextureInfo> partitions = previous.getPartitions();
+        int partitionCount = partitions.size();
+        int[] tFaceStarts = new int[partitionCount + 1];
+        int[] tVertexStarts = new int[partitionCount + 1];
+        for(int idx = 0; idx < partitionCount; idx++) {
+            tFaceStarts[idx + 1] = tFaceStarts[idx] + partitions.get(idx).getTFaceCount();
+            tVertexStarts[idx + 1] = tVertexStarts[idx] + partitions.get(idx).getTVertexCount();
+        }
+        FaceMappingInfo previousMapping = previous.getFaceMapping();
+        int[] partitionOf = new int[faceCount];
+        for(int face = 0; face < faceCount; face++) {
+            partitionOf[face] = partitionOf(tFaceStarts, previousMapping.getTFace(face));
+        }
+
+        // partitions on either side of a changed edge may now split or join, and moved faces may now overlap
+        Map<QMeshEdge, TEdgeConnectionPolicy> connections = new HashMap<>(previous.getConnections());
+        boolean[] affected = new boolean[partitionCount];
+        boolean anyAffected = false;
+        for(Map.Entry<QMeshEdge, TEdgeConnectionPolicy> change : policyDelta.entrySet()) {
+            QMeshEdge edge = change.getKey();
+            if(edge.getFace1() < 0 || edge.getFace1() >= faceCount || edge.getFace2() < 0 || edge.getFace2() >= faceCount) {
+                throw new IllegalArgumentException("edge " + edge + " is not in the mesh");
+            }
+            TEdgeConnectionPolicy old = connections.put(edge, change.getValue());
+            if(!Objects.equals(old, change.getValue())) {
+                affected[partitionOf[edge.getFace1()]] = true;
+                affected[partitionOf[edge.getFace2()]] = true;
+                anyAffected = true;
+            }
+        }
+        int[] moved = mesh.getChangedFaces(previous.getMeshVersion()).toArray();
+        for(int face : moved) {
+            affected[partitionOf[face]] = true;
+        }
+        if(!anyAffected && moved.length == 0) {
+            return previous;
+        }
+
+        MeshProjectionResult result = new MeshProjectionResult(faceCount, mesh.vertexCount());
+        ProjectionState state = new ProjectionState(mesh, result, connections);
+        List<TFace> tFaces = result.getTFaces();
+        List<Point2D> tVertices = result.getTVertices();
+
+        // copy over the partitions we keep, which are already in place in the texture
+        List<ProjectedTextureInfo> kept = new ArrayList<>();
+        int[] shiftedTFaceStarts = new int[partitionCount];
+        double keptMaxX = Double.NEGATIVE_INFINITY;
+        for(int idx = 0; idx < partitionCount; idx++) {
+            if(affected[idx]) {
+                continue;
+            }
+            int shift = tVertices.size() - tVertexStarts[idx];
+            shiftedTFaceStarts[idx] = tFaces.size();
+            for(Point2D vertex : previous.getTVertices().subList(tVertexStarts[idx], tVertexStarts[idx + 1])) {
+                tVertices.add(vertex);
+                keptMaxX = Math.max(keptMaxX, vertex.getX());
+            }
+            for(TFace face : previous.getTFaces().subList(tFaceStarts[idx], tFaceStarts[idx + 1])) {
+                tFaces.add(shift == 0 ? face : new TFace(face.getV1() + shift, face.getV2() + shift, face.getV3() + shift));
+            }
+            kept.add(partitions.get(idx));
+        }
+        FaceMappingInfo faceMapping = result.getFaceMapping();
+        int retraversedCount = 0;
+        int[] retraversed = new int[faceCount];
+        for(int face = 0; face < faceCount; face++) {
+            int partition = partitionOf[face];
+            if(affected[partition]) {
+                retraversed[retraversedCount++] = face;
+            } else {
+                faceMapping.setTFace(face, shiftedTFaceStarts[partition] + previousMapping.getTFace(face) - tFaceStarts[partition]);
+            }
+        }
+
+        // traverse the faces of the affected partitions again. They can't cross into the partitions we kept
+        int keptVertexCount = tVertices.size();
+        PhaseTimer timer = new PhaseTimer(ProjectionMetrics.Phase.TRAVERSE);
+        List<ProjectedTextureInfo> textures = projectAllFaces.projectFaces(state, Arrays.copyOf(retraversed, retraversedCount));
+        timer.end(state, textures.size(), true);
+
+        // pack only the new partitions, to the side of the ones that stayed in place
+        timer = new PhaseTimer(ProjectionMetrics.Phase.PACK);
+        List<BoundingBox2D> boundingBoxes = new TransformList<>(textures, ProjectedTextureInfo::getBounds);
+        List<Point2D> packing = packBoxes.pack(boundingBoxes);
+        if(!kept.isEmpty()) {
+            List<Point2D> beside = new ArrayList<>(packing.size());
+            for(Point2D topLeft : packing) {
+                beside.add(topLeft.add(keptMaxX, 0));
+            }
+            packing = beside;
+        }
+        ProjectionCompositionUtil.translateProjections(textures, packing, tVertices.subList(keptVertexCount, tVertices.size()));
+        timer.end(state, textures.size(), true);
+        timer = new PhaseTimer(ProjectionMetrics.Phase.GRAPH);
+        ProjectionCompositionUtil.generateTextureGraph(state);
+
+        List<ProjectedTextureInfo> all = new ArrayList<>(kept.size() + textures.size());
+        all.addAll(kept);
+        all.addAll(textures);
+        timer.end(state, all.size(), true);
+        result.complete(state, all);
+        return result;
+    }
+
+    // times one stage into the metrics, and records it as an event when a flight recording is on
+    private static final class PhaseTimer {
+        private final ProjectionMetrics.Phase phase;
+        private final ProjectionPhaseEvent event = new ProjectionPhaseEvent();
+        private final long start;
+
+        private PhaseTimer(ProjectionMetrics.Phase phase) {
+            this.phase = phase;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        private void end(ProjectionState state, int partitionCount, boolean incremental) {
+            state.getMetrics().recordPhase(phase, System.nanoTime() - start);
+            event.end();
+            if(event.shouldCommit()) {
+                event.phase = phase.name();
+                event.faceCount = state.getMesh().faceCount();
+                event.partitionCount = partitionCount;
+                event.incremental = incremental;
+                event.commit();
+            }
+        }
+    }
+
+    // partition that lists the given face, where partition p lists faces [tFaceStarts[p], tFaceStarts[p + 1])
+    private static int partitionOf(int[] tFaceStarts, int tFace) {
+        int low = 0;
+        int high = tFaceStarts.length - 2;
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(tFaceStarts[mid] <= tFace) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
 }
@@ -1,12 +1,16 @@
 package io.hostilerobot.ceramicrelief.texture.projection;
 
+import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
+import io.hostilerobot.ceramicrelief.texture.TEdgeConnectionPolicy;
 import io.hostilerobot.ceramicrelief.texture.TFace;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.ProjectedTextureInfo;
 import javafx.geometry.Point2D;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.SimpleGraph;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * represents the resulting data of projecting a mesh to a texture
@@ -16,17 +20,36 @@ import java.util.List;
  *      tFaces: A set of triangles, each formed by 3 indices in tVertices for their actual location
  *      faceMapping: information on which faces in 3d correspond to which faces in 2d
  *      textureConnections: graph describing which faces are adjacent in 3d (even if they might not be adjacent in 2d)
+ *
+ * once complete, it also keeps what is needed to update it with {@link MeshProjectionStrategy#reproject}:
+ *      partitions: each traversal, in the order their faces and vertices are listed
+ *      connections: the policy every edge was projected with
+ *      meshVersion: version of the mesh that was projected
+ *      completeness: how much was projected before the budget ran out
+ *      metrics: counters and timings of the projection
  */
 public class MeshProjectionResult {
     private final List<TFace> tFaces;
     private final List<Point2D> tVertices;
     private final FaceMappingInfo faceMapping;
     private final Graph<TFace, EdgeInfo> textureConnections;
+    private List<ProjectedTextureInfo> partitions = List.of();
+    private Map<QMeshEdge, TEdgeConnectionPolicy> connections = Map.of();
+    private long meshVersion = -1; // -1 until complete
+    private ProjectionCompleteness completeness = null;
+    private ProjectionMetrics.Snapshot metrics = null;
 
     public MeshProjectionResult(int faceCount, int vertexCount) {
+        this(faceCount, vertexCount, new FaceMappingInfo(faceCount));
+    }
+
+    /**
+     * @param faceMapping mapping to write to, which may be shared with other results that place different faces
+     */
+    public MeshProjectionResult(int faceCount, int vertexCount, FaceMappingInfo faceMapping) {
         tFaces = new ArrayList<>(faceCount);
         tVertices = new ArrayList<>(vertexCount);
-        faceMapping = new FaceMappingInfo(faceCount);
+        this.faceMapping = faceMapping;
         textureConnections = new SimpleGraph<>(null, null, false);
     }
 
@@ -42,4 +65,37 @@ public class MeshProjectionResult {
     public Graph<TFace, EdgeInfo> getTextureConnections() {
         return textureConnections;
     }
+    public List<ProjectedTextureInfo> getPartitions() {
+        return partitions;
+    }
+    public Map<QMeshEdge, TEdgeConnectionPolicy> getConnections() {
+        return connections;
+    }
+    public long getMeshVersion() {
+        return meshVersion;
+    }
+    public boolean isComplete() {
+        return meshVersion >= 0;
+    }
+    /**
+     * @return how much of the projection was done before its budget ran out, or null until complete
+     */
+    public ProjectionCompleteness getCompleteness() {
+        return completeness;
+    }
+
+    /**
+     * @return counters and timings of the projection, or null until complete
+     */
+    public ProjectionMetrics.Snapshot getMetrics() {
+        return metrics;
+    }
+
+    void complete(ProjectionState state, List<ProjectedTextureInfo> partitions) {
+        this.partitions = partitions;
+        this.connections = state.getConnections();
+        this.meshVersion = state.getMesh().getVersion();
+        this.completeness = ProjectionCompleteness.of(partitions, state.getBudget());
+        this.metrics = state.getMetrics().snapshot();
+    }
 }
@@ -4,6 +4,7 @@ import io.hostilerobot.ceramicrelief.qmesh.QMesh;
 import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
 import io.hostilerobot.ceramicrelief.texture.TEdgeConnectionPolicy;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -20,4 +21,35 @@ public interface MeshProjectionStrategy {
      * @return the result of this projection
      */
     public MeshProjectionResult project(QMesh backingMesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy);
+
+    /**
+     * projects a 3d mesh onto a 2d surface, stopping early once the budget runs out.
+     * The result is still valid, with every face placed; see {@link MeshProjectionResult#getCompleteness()}
+     *
+     * @param budget deadline or cancellation for this projection.
+     *               Implementations that can't be cut short may ignore it and project everything
+     */
+    public default MeshProjectionResult project(QMesh backingMesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy,
+                                                ProjectionBudget budget) {
+        return project(backingMesh, initialPolicy);
+    }
+
+    /**
+     * projects a 3d mesh again after some connection policies changed, e.g. while editing seams
+     *
+     * @param backingMesh the 3d mesh that previous was projected from, possibly with vertices moved since
+     * @param previous a complete projection of backingMesh. It is left as is
+     * @param policyDelta the policies that changed. Other edges keep the policy they were projected with
+     * @return the result of this projection. Implementations may redo only the part affected by the change,
+     *         so it can be laid out differently than projecting from scratch would
+     */
+    public default MeshProjectionResult reproject(QMesh backingMesh, MeshProjectionResult previous,
+                                                  Map<QMeshEdge, TEdgeConnectionPolicy> policyDelta) {
+        if(!previous.isComplete()) {
+            throw new IllegalArgumentException("previous projection is not complete");
+        }
+        Map<QMeshEdge, TEdgeConnectionPolicy> policy = new HashMap<>(previous.getConnections());
+        policy.putAll(policyDelta);
+        return project(backingMesh, policy);
+    }
 }
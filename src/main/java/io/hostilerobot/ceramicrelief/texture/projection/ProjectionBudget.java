@@ -0,0 +1,79 @@
+package io.hostilerobot.ceramicrelief.texture.projection;
+
+import java.time.Duration;
+
+/**
+ * how long a projection may run: an optional deadline, and a token to cancel it from another thread.
+ *
+ * Once the budget is exhausted, traversals stop placing faces, and each face that is still unplaced is emitted
+ * as its own partition. So the projection still finishes with a valid result, just with more seams.
+ * See {@link ProjectionCompleteness} for how much was projected normally.
+ */
+public final class ProjectionBudget {
+    private final boolean hasDeadline;
+    private final long deadline; // in System.nanoTime()
+    private volatile boolean cancelled = false;
+    // sticky, so every check after the first one that fails is just a read
+    private volatile boolean exhausted = false;
+
+    private ProjectionBudget(boolean hasDeadline, long deadline) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return budget with no deadline, which only runs out if it's cancelled
+     */
+    public static ProjectionBudget unlimited() {
+        return new ProjectionBudget(false, 0);
+    }
+
+    /**
+     * @return budget that runs out once the given time has passed from now
+     */
+    public static ProjectionBudget within(Duration timeout) {
+        if(timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+        }
+        long nanos;
+        try {
+            nanos = timeout.toNanos();
+        } catch(ArithmeticException e) {
+            return unlimited(); // hundreds of years away
+        }
+        return until(System.nanoTime() + nanos);
+    }
+
+    /**
+     * @param deadline point in time to stop at, in terms of {@link System#nanoTime()}
+     */
+    public static ProjectionBudget until(long deadline) {
+        return new ProjectionBudget(true, deadline);
+    }
+
+    /**
+     * stops the projection using this budget as soon as possible. Can be called from any thread
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if the projection should stop: it was cancelled, or the deadline has passed
+     */
+    public boolean isExhausted() {
+        if(exhausted) {
+            return true;
+        }
+        // compare by difference, as nanoTime may wrap around
+        if(cancelled || (hasDeadline && System.nanoTime() - deadline >= 0)) {
+            exhausted = true;
+            return true;
+        }
+        return false;
+    }
+}
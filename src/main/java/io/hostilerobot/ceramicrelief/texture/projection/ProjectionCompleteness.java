@@ -0,0 +1,86 @@
+package io.hostilerobot.ceramicrelief.texture.projection;
+
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.ProjectedTextureInfo;
+
+import java.util.List;
+
+/**
+ * how much of a projection was done normally, for a projection that may have been cut short by its {@link ProjectionBudget}.
+ *
+ * A partition is incomplete if its traversal stopped while it could still have placed more faces. This includes the
+ * single face partitions that unplaced faces are emitted as once the budget runs out.
+ */
+public final class ProjectionCompleteness {
+    private final int faceCount;
+    private final int partitionCount;
+    private final int incompletePartitions;
+    private final int facesInIncompletePartitions;
+    private final boolean cancelled;
+
+    private ProjectionCompleteness(int faceCount, int partitionCount, int incompletePartitions,
+                                   int facesInIncompletePartitions, boolean cancelled) {
+        this.faceCount = faceCount;
+        this.partitionCount = partitionCount;
+        this.incompletePartitions = incompletePartitions;
+        this.facesInIncompletePartitions = facesInIncompletePartitions;
+        this.cancelled = cancelled;
+    }
+
+    static ProjectionCompleteness of(List<ProjectedTextureInfo> partitions, ProjectionBudget budget) {
+        int faceCount = 0;
+        int incompletePartitions = 0;
+        int facesInIncompletePartitions = 0;
+        for(ProjectedTextureInfo partition : partitions) {
+            faceCount += partition.getTFaceCount();
+            if(!partition.isComplete()) {
+                incompletePartitions++;
+                facesInIncompletePartitions += partition.getTFaceCount();
+            }
+        }
+        return new ProjectionCompleteness(faceCount, partitions.size(), incompletePartitions,
+                facesInIncompletePartitions, budget.isCancelled());
+    }
+
+    /**
+     * @return true if every traversal ran to the end, as if there were no budget
+     */
+    public boolean isComplete() {
+        return incompletePartitions == 0;
+    }
+
+    public int getFaceCount() {
+        return faceCount;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public int getIncompletePartitions() {
+        return incompletePartitions;
+    }
+
+    public int getFacesInIncompletePartitions() {
+        return facesInIncompletePartitions;
+    }
+
+    /**
+     * @return fraction of faces that are in complete partitions, from 0 to 1
+     */
+    public double getCompletedFraction() {
+        return faceCount == 0 ? 1 : (double) (faceCount - facesInIncompletePartitions) / faceCount;
+    }
+
+    /**
+     * @return true if the budget was cancelled, rather than running past its deadline
+     */
+    public boolean wasCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d partitions complete, %.1f%% of %d faces",
+                partitionCount - incompletePartitions, partitionCount, 100 * getCompletedFraction(), faceCount);
+    }
+}
@@ -0,0 +1,162 @@
+package io.hostilerobot.ceramicrelief.texture.projection;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counters for where a projection spends its time. These are striped, so the traversals running in parallel
+ * each add to them without contending, and each traversal adds its totals once at the end rather than per face.
+ * A complete {@link MeshProjectionResult} keeps a {@link Snapshot} of them.
+ *
+ * The same stages are also recorded as JDK Flight Recorder events, which cost nothing unless a recording is on.
+ */
+public final class ProjectionMetrics {
+    /**
+     * stages of a projection that are timed separately
+     */
+    public enum Phase {
+        TRAVERSE, PACK, GRAPH
+    }
+
+    private final LongAdder traversals = new LongAdder();
+    private final LongAdder incompleteTraversals = new LongAdder();
+    private final LongAdder facesPlaced = new LongAdder();
+    private final LongAdder candidatesQueued = new LongAdder();
+    private final LongAdder candidatesDropped = new LongAdder();
+    private final LongAdder overlapRejections = new LongAdder();
+    private final LongAdder indexVisits = new LongAdder();
+    private final LongAdder traversalNanos = new LongAdder();
+    private final LongAccumulator maxTraversalNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+
+    public ProjectionMetrics() {
+        for(int idx = 0; idx < phaseNanos.length; idx++) {
+            phaseNanos[idx] = new LongAdder();
+        }
+    }
+
+    /**
+     * adds the totals of one traversal
+     * @param candidatesQueued faces put on the heap to be placed
+     * @param candidatesDropped queued faces taken off the heap again, as they were placed through another edge first
+     * @param overlapRejections faces that weren't placed as they would overlap the faces placed so far
+     * @param indexVisits nodes, cells and triangles looked at by overlap queries
+     */
+    public void recordTraversal(int facesPlaced, int candidatesQueued, int candidatesDropped, int overlapRejections,
+                                long indexVisits, long nanos, boolean complete) {
+        traversals.increment();
+        if(!complete) {
+            incompleteTraversals.increment();
+        }
+        this.facesPlaced.add(facesPlaced);
+        this.candidatesQueued.add(candidatesQueued);
+        this.candidatesDropped.add(candidatesDropped);
+        this.overlapRejections.add(overlapRejections);
+        this.indexVisits.add(indexVisits);
+        traversalNanos.add(nanos);
+        maxTraversalNanos.accumulate(nanos);
+    }
+
+    public void recordPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * @return the counters so far. Counts from traversals still running may be left out
+     */
+    public Snapshot snapshot() {
+        long[] phases = new long[phaseNanos.length];
+        for(int idx = 0; idx < phases.length; idx++) {
+            phases[idx] = phaseNanos[idx].sum();
+        }
+        return new Snapshot(traversals.sum(), incompleteTraversals.sum(), facesPlaced.sum(),
+                candidatesQueued.sum(), candidatesDropped.sum(), overlapRejections.sum(), indexVisits.sum(),
+                traversalNanos.sum(), maxTraversalNanos.get(), phases);
+    }
+
+    /**
+     * counters of a projection at one point in time
+     */
+    public static final class Snapshot {
+        private final long traversals;
+        private final long incompleteTraversals;
+        private final long facesPlaced;
+        private final long candidatesQueued;
+        private final long candidatesDropped;
+        private final long overlapRejections;
+        private final long indexVisits;
+        private final long traversalNanos;
+        private final long maxTraversalNanos;
+        private final long[] phaseNanos;
+
+        private Snapshot(long traversals, long incompleteTraversals, long facesPlaced,
+                         long candidatesQueued, long candidatesDropped, long overlapRejections, long indexVisits,
+                         long traversalNanos, long maxTraversalNanos, long[] phaseNanos) {
+            this.traversals = traversals;
+            this.incompleteTraversals = incompleteTraversals;
+            this.facesPlaced = facesPlaced;
+            this.candidatesQueued = candidatesQueued;
+            this.candidatesDropped = candidatesDropped;
+            this.overlapRejections = overlapRejections;
+            this.indexVisits = indexVisits;
+            this.traversalNanos = traversalNanos;
+            this.maxTraversalNanos = maxTraversalNanos;
+            this.phaseNanos = phaseNanos;
+        }
+
+        public long getTraversals() {
+            return traversals;
+        }
+
+        public long getIncompleteTraversals() {
+            return incompleteTraversals;
+        }
+
+        public long getFacesPlaced() {
+            return facesPlaced;
+        }
+
+        public long getCandidatesQueued() {
+            return candidatesQueued;
+        }
+
+        public long getCandidatesDropped() {
+            return candidatesDropped;
+        }
+
+        public long getOverlapRejections() {
+            return overlapRejections;
+        }
+
+        public long getIndexVisits() {
+            return indexVisits;
+        }
+
+        /**
+         * @return time spent in traversals, summed over every thread
+         */
+        public long getTraversalNanos() {
+            return traversalNanos;
+        }
+
+        public long getMaxTraversalNanos() {
+            return maxTraversalNanos;
+        }
+
+        /**
+         * @return wall clock time spent in the given stage
+         */
+        public long getPhaseNanos(Phase phase) {
+            return phaseNanos[phase.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d traversals (%d incomplete), %d faces placed, %d candidates queued, %d dropped, "
+                            + "%d rejected for overlap, %d index visits, traverse %.1f ms, pack %.1f ms, graph %.1f ms",
+                    traversals, incompleteTraversals, facesPlaced, candidatesQueued, candidatesDropped,
+                    overlapRejections, indexVisits, getPhaseNanos(Phase.TRAVERSE) / 1e6,
+                    getPhaseNanos(Phase.PACK) / 1e6, getPhaseNanos(Phase.GRAPH) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.hostilerobot.ceramicrelief.texture.projection;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * flight recorder event for one stage of a {@link MeshProjectionStrategy} projection
+ */
+@Name("io.hostilerobot.ceramicrelief.ProjectionPhase")
+@Label("Projection Phase")
+@Category({"Ceramic Relief", "Projection"})
+@Description("One stage of projecting a mesh onto a texture")
+final class ProjectionPhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Faces")
+    int faceCount;
+
+    @Label("Partitions")
+    int partitionCount;
+
+    @Label("Incremental")
+    @Description("True if only part of an earlier projection was redone")
+    boolean incremental;
+}
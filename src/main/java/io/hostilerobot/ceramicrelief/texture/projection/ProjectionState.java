@@ -15,18 +15,45 @@ import java.util.Map;
  *      projection: the result, including any temporary or interim results
  *      connections: policy for how edges in 3d will form a 2d seam with neighbors.
  *                   May be modified or populated during the projection process.
+ *      budget: how long the projection may run before traversals are cut short
+ *      metrics: counters for each stage, shared with the states of the parts of this projection
  */
 public class ProjectionState {
     private final QMesh mesh;
     private final MeshProjectionResult projection;
     private final Map<QMeshEdge, TEdgeConnectionPolicy> connections;
+    private final ProjectionBudget budget;
+    private final ProjectionMetrics metrics;
 
     public ProjectionState(QMesh mesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy) {
+        this(mesh, initialPolicy, ProjectionBudget.unlimited());
+    }
+
+    public ProjectionState(QMesh mesh, Map<QMeshEdge, TEdgeConnectionPolicy> initialPolicy, ProjectionBudget budget) {
         this.mesh = mesh;
         this.connections = new HashMap<>(initialPolicy);
+        this.budget = budget;
+        this.metrics = new ProjectionMetrics();
         projection = new MeshProjectionResult(mesh.faceCount(), mesh.vertexCount());
     }
 
+    /**
+     * state that writes to the given projection and shares the given connections without copying them,
+     * e.g. to project part of a mesh on another thread
+     */
+    public ProjectionState(QMesh mesh, MeshProjectionResult projection, Map<QMeshEdge, TEdgeConnectionPolicy> connections) {
+        this(mesh, projection, connections, ProjectionBudget.unlimited(), new ProjectionMetrics());
+    }
+
+    public ProjectionState(QMesh mesh, MeshProjectionResult projection, Map<QMeshEdge, TEdgeConnectionPolicy> connections,
+                           ProjectionBudget budget, ProjectionMetrics metrics) {
+        this.mesh = mesh;
+        this.projection = projection;
+        this.connections = connections;
+        this.budget = budget;
+        this.metrics = metrics;
+    }
+
     public QMesh getMesh() {
         return mesh;
     }
@@ -36,4 +63,10 @@ public class ProjectionState {
     public Map<QMeshEdge, TEdgeConnectionPolicy> getConnections() {
         return connections;
     }
+    public ProjectionBudget getBudget() {
+        return budget;
+    }
+    public ProjectionMetrics getMetrics() {
+        return metrics;
+    }
 }
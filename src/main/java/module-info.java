@@ -8,6 +8,9 @@ module ceramic.autogen {
     requires org.jheaps;
     requires rtree2;
     requires javafx.swing;
+    requires jdk.incubator.vector;
+    requires jdk.management;
+    requires jdk.jfr;
 
     exports io.hostilerobot.ceramicrelief.drivers;
     exports io.hostilerobot.ceramicrelief.drivers.rtee;
@@ -0,0 +1,95 @@
+package io.hostilerobot.ceramicrelief.collection.heap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedDoubleHeapTest {
+
+    @Test
+    void pollsInKeyOrder() {
+        IndexedDoubleHeap heap = new IndexedDoubleHeap(5);
+        heap.insert(0, 3.0);
+        heap.insert(1, 1.0);
+        heap.insert(2, 2.0);
+        heap.insert(3, 0.5);
+        assertEquals(4, heap.size());
+        assertEquals(3, heap.poll());
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+        assertEquals(0, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void tiesPollByID() {
+        IndexedDoubleHeap heap = new IndexedDoubleHeap(4);
+        heap.insert(2, 1.0);
+        heap.insert(0, 1.0);
+        heap.insert(3, 1.0);
+        assertEquals(0, heap.poll());
+        assertEquals(2, heap.poll());
+        assertEquals(3, heap.poll());
+    }
+
+    @Test
+    void tiesPollByTieBreakerThenID() {
+        IndexedDoubleHeap heap = new IndexedDoubleHeap(4);
+        heap.insert(0, 1.0, 5L);
+        heap.insert(1, 1.0, 2L);
+        heap.insert(2, 1.0, 2L);
+        heap.insert(3, 0.5, 9L);
+        heap.update(0, 1.0, 1L);
+        assertEquals(3, heap.poll());
+        assertEquals(0, heap.poll());
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+    }
+
+    @Test
+    void updateAndRemove() {
+        IndexedDoubleHeap heap = new IndexedDoubleHeap(4);
+        heap.insert(0, 1.0);
+        heap.insert(1, 2.0);
+        heap.insert(2, 3.0);
+        heap.update(2, 0.0);
+        assertEquals(2, heap.peek());
+        heap.insert(2, 5.0); // inserting again changes the key
+        assertEquals(0, heap.peek());
+        assertTrue(heap.remove(0));
+        assertFalse(heap.remove(0));
+        assertFalse(heap.contains(0));
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+    }
+
+    @Test
+    void matchesSortedOrder() {
+        Random random = new Random(7);
+        int count = 200;
+        IndexedDoubleHeap heap = new IndexedDoubleHeap(count);
+        double[] keys = new double[count];
+        for(int id = 0; id < count; id++) {
+            keys[id] = random.nextInt(50);
+            heap.insert(id, keys[id]);
+        }
+        for(int id = 0; id < count; id += 3) {
+            keys[id] = random.nextInt(50);
+            heap.update(id, keys[id]);
+        }
+        for(int id = 1; id < count; id += 5) {
+            heap.remove(id);
+        }
+        int last = -1;
+        double lastKey = Double.NEGATIVE_INFINITY;
+        while(!heap.isEmpty()) {
+            int id = heap.poll();
+            assertNotEquals(1, id % 5);
+            assertTrue(keys[id] > lastKey || (keys[id] == lastKey && id > last));
+            last = id;
+            lastKey = keys[id];
+        }
+    }
+}
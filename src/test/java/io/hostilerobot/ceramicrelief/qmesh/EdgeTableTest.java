@@ -0,0 +1,72 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeTableTest {
+
+    @Test
+    void keyIsSymmetric() {
+        assertEquals(EdgeTable.key(3, 7), EdgeTable.key(7, 3));
+        assertEquals(3, EdgeTable.keyV1(EdgeTable.key(7, 3)));
+        assertEquals(7, EdgeTable.keyV2(EdgeTable.key(7, 3)));
+    }
+
+    @Test
+    void findMissing() {
+        EdgeTable table = new EdgeTable();
+        assertEquals(-1, table.find(0, 1));
+        table.insert(0, 1);
+        assertEquals(-1, table.find(1, 2));
+    }
+
+    @Test
+    void insertIsIdempotent() {
+        EdgeTable table = new EdgeTable();
+        int slot = table.insert(4, 2);
+        assertEquals(slot, table.insert(2, 4));
+        assertEquals(slot, table.find(2, 4));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void nonManifoldFacesSpill() {
+        EdgeTable table = new EdgeTable();
+        int slot = table.insert(0, 1);
+        for(int face = 0; face < 5; face++) {
+            table.addFace(slot, face);
+        }
+        assertEquals(5, table.faceCount(slot));
+        for(int face = 0; face < 5; face++) {
+            assertEquals(face, table.face(slot, face));
+        }
+    }
+
+    @Test
+    void repeatedFaceIsIgnored() {
+        EdgeTable table = new EdgeTable();
+        int slot = table.insert(0, 1);
+        table.addFace(slot, 3);
+        table.addFace(slot, 3);
+        assertEquals(1, table.faceCount(slot));
+    }
+
+    @Test
+    void survivesRehash() {
+        EdgeTable table = new EdgeTable(4);
+        for(int v = 0; v < 1000; v++) {
+            int slot = table.insert(v, v + 1);
+            table.addFace(slot, v);
+            table.addFace(slot, v + 1);
+            table.addFace(slot, v + 2);
+        }
+        assertEquals(1000, table.size());
+        for(int v = 0; v < 1000; v++) {
+            int slot = table.find(v + 1, v);
+            assertTrue(slot >= 0);
+            assertEquals(3, table.faceCount(slot));
+            assertEquals(v + 2, table.face(slot, 2));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeTopologyTest {
+    private static final int FIN = 8;
+
+    /**
+     * 2 x 2 grid with a fin: an extra face standing up on the diagonal (0, 4), so three faces meet there.
+     * <pre>
+     *     6 - 7 - 8
+     *     | / | / |
+     *     3 - 4 - 5
+     *     | / | / |
+     *     0 - 1 - 2
+     * </pre>
+     */
+    private static QMesh finnedGrid() {
+        QMesh grid = TestMeshes.grid(2);
+        double[] vertices = new double[(grid.vertexCount() + 1) * 3];
+        for(int vertex = 0; vertex < grid.vertexCount(); vertex++) {
+            vertices[vertex * 3] = grid.getVertexX(vertex);
+            vertices[vertex * 3 + 1] = grid.getVertexY(vertex);
+        }
+        vertices[grid.vertexCount() * 3 + 2] = 1;
+        int[] faces = new int[(grid.faceCount() + 1) * 3];
+        for(int face = 0; face < grid.faceCount(); face++) {
+            faces[face * 3] = grid.getFaceV1(face);
+            faces[face * 3 + 1] = grid.getFaceV2(face);
+            faces[face * 3 + 2] = grid.getFaceV3(face);
+        }
+        faces[FIN * 3] = 0;
+        faces[FIN * 3 + 1] = 4;
+        faces[FIN * 3 + 2] = grid.vertexCount();
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+
+    private static int[] facesOn(EdgeTopology topology, int edge) {
+        return IntStream.range(topology.start(edge), topology.end(edge)).map(topology::face).toArray();
+    }
+
+    // "v1-v2" for each edge, so a mismatch shows which edge it is
+    private static String[] pairs(EdgeTopology topology, int[] edges) {
+        return IntStream.of(edges).mapToObj(edge -> topology.v1(edge) + "-" + topology.v2(edge)).toArray(String[]::new);
+    }
+
+    @Test
+    void boundaryLoopAndFin() {
+        QMesh mesh = finnedGrid();
+        EdgeTopology topology = mesh.getEdgeTopology();
+        // 16 edges of the grid, and the two sides of the fin that stand up from it
+        assertEquals(18, topology.edgeCount());
+        assertFalse(topology.isClosed());
+        assertFalse(topology.isManifold());
+
+        // the loop around the grid, and the free sides of the fin, in ascending order
+        assertArrayEquals(new String[]{"0-1", "0-3", "0-9", "1-2", "2-5", "3-6", "4-9", "5-8", "6-7", "7-8"},
+                pairs(topology, topology.boundaryEdges()));
+        for(int edge : topology.boundaryEdges()) {
+            assertTrue(topology.isBoundary(edge));
+            assertEquals(1, topology.faceCount(edge));
+        }
+
+        int diagonal = topology.find(0, 4);
+        assertArrayEquals(new int[]{diagonal}, topology.nonManifoldEdges());
+        assertTrue(topology.isNonManifold(diagonal));
+        assertArrayEquals(new int[]{0, 1, FIN}, facesOn(topology, diagonal));
+
+        // the inner edges have two faces
+        int inner = topology.find(1, 4);
+        assertFalse(topology.isBoundary(inner));
+        assertFalse(topology.isNonManifold(inner));
+        assertArrayEquals(new int[]{0, 3}, facesOn(topology, inner));
+    }
+
+    @Test
+    void sharedEdgeAndTouchesNonManifold() {
+        QMesh mesh = finnedGrid();
+        EdgeTopology topology = mesh.getEdgeTopology();
+        int diagonal = topology.find(0, 4);
+        assertEquals(diagonal, topology.sharedEdge(0, 1));
+        assertEquals(diagonal, topology.sharedEdge(FIN, 0));
+        assertEquals(diagonal, topology.sharedEdge(1, FIN));
+        assertEquals(topology.find(1, 4), topology.sharedEdge(0, 3));
+        assertEquals(topology.find(1, 4), topology.sharedEdge(3, 0));
+        // faces 0 and 7 only meet at vertex 4
+        assertEquals(-1, topology.sharedEdge(0, 7));
+        assertEquals(-1, topology.sharedEdge(FIN, 6));
+
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            assertEquals(face == 0 || face == 1 || face == FIN, topology.touchesNonManifold(face), "face " + face);
+        }
+    }
+
+    @Test
+    void find() {
+        QMesh mesh = finnedGrid();
+        EdgeTopology topology = mesh.getEdgeTopology();
+        for(int edge = 0; edge < topology.edgeCount(); edge++) {
+            int v1 = topology.v1(edge), v2 = topology.v2(edge);
+            assertTrue(v1 < v2);
+            assertEquals(edge, topology.find(v1, v2));
+            assertEquals(edge, topology.find(v2, v1));
+            if(edge > 0) {
+                assertTrue(Arrays.compare(new int[]{topology.v1(edge - 1), topology.v2(edge - 1)}, new int[]{v1, v2}) < 0);
+            }
+        }
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            int[] corners = {mesh.getFaceV1(face), mesh.getFaceV2(face), mesh.getFaceV3(face)};
+            for(int corner = 0; corner < 3; corner++) {
+                assertEquals(topology.find(corners[corner], corners[(corner + 1) % 3]), topology.edgeOf(face, corner));
+            }
+        }
+        // diagonals of the other kind, and an edge off the mesh
+        assertEquals(-1, topology.find(1, 3));
+        assertEquals(-1, topology.find(0, 8));
+        assertEquals(-1, topology.find(4, 10));
+    }
+
+    @Test
+    void closedManifold() {
+        EdgeTopology topology = TestMeshes.sphere(5, 8).getEdgeTopology();
+        assertTrue(topology.isClosed());
+        assertTrue(topology.isManifold());
+        assertEquals(0, topology.boundaryEdges().length);
+        assertEquals(0, topology.nonManifoldEdges().length);
+        for(int edge = 0; edge < topology.edgeCount(); edge++) {
+            assertEquals(2, topology.faceCount(edge));
+        }
+    }
+}
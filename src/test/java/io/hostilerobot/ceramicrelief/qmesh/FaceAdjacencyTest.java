@@ -0,0 +1,208 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FaceAdjacencyTest {
+
+    private static QMeshStorage storage(int[] faces) {
+        int vertexCount = IntStream.of(faces).max().orElse(-1) + 1;
+        return new HeapQMeshStorage(new double[vertexCount * 3], faces);
+    }
+
+    private static int[] faces(QMesh mesh) {
+        int[] faces = new int[mesh.faceCount() * 3];
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            faces[face * 3] = mesh.getFaceV1(face);
+            faces[face * 3 + 1] = mesh.getFaceV2(face);
+            faces[face * 3 + 2] = mesh.getFaceV3(face);
+        }
+        return faces;
+    }
+
+    // the sort based index the builder uses
+    private static FaceAdjacency sorted(int[] faces) {
+        QMeshStorage storage = storage(faces);
+        return SortedEdges.of(storage).toAdjacency(storage.faceCount());
+    }
+
+    // the index built from an edge table filled face by face, as addTriangle does
+    private static FaceAdjacency fromEdgeTable(int[] faces) {
+        EdgeTable edges = new EdgeTable();
+        for(int face = 0; face < faces.length / 3; face++) {
+            for(int corner = 0; corner < 3; corner++) {
+                int va = faces[face * 3 + corner];
+                int vb = faces[face * 3 + (corner + 1) % 3];
+                edges.addFace(edges.insert(va, vb), face);
+            }
+        }
+        return FaceAdjacency.build(faces.length / 3, edges);
+    }
+
+    private static Set<Long> edgesOf(int[] faces, int face) {
+        Set<Long> edges = new TreeSet<>();
+        for(int corner = 0; corner < 3; corner++) {
+            edges.add(EdgeTable.key(faces[face * 3 + corner], faces[face * 3 + (corner + 1) % 3]));
+        }
+        return edges;
+    }
+
+    // neighbors of each face, found by comparing the edges of every pair of faces
+    private static int[][] bruteForce(int[] faces) {
+        int faceCount = faces.length / 3;
+        int[][] neighbors = new int[faceCount][];
+        for(int face = 0; face < faceCount; face++) {
+            Set<Long> edges = edgesOf(faces, face);
+            int self = face;
+            neighbors[face] = IntStream.range(0, faceCount)
+                    .filter(other -> other != self && edgesOf(faces, other).stream().anyMatch(edges::contains))
+                    .toArray();
+        }
+        return neighbors;
+    }
+
+    private static int[] neighbors(FaceAdjacency adjacency, int face) {
+        return IntStream.range(adjacency.start(face), adjacency.end(face)).map(adjacency::neighbor).toArray();
+    }
+
+    // both ways of building the index agree with the brute force one, and slots point back at each other
+    private static FaceAdjacency assertAdjacency(int[] faces) {
+        int[][] expected = bruteForce(faces);
+        FaceAdjacency adjacency = sorted(faces);
+        FaceAdjacency built = fromEdgeTable(faces);
+        assertEquals(expected.length, adjacency.faceCount());
+        assertEquals(expected.length, built.faceCount());
+        int slots = 0;
+        for(int face = 0; face < expected.length; face++) {
+            assertArrayEquals(expected[face], neighbors(adjacency, face), "face " + face);
+            assertArrayEquals(expected[face], neighbors(built, face), "face " + face);
+            assertEquals(expected[face].length, adjacency.degree(face));
+            slots += expected[face].length;
+        }
+        assertEquals(slots, adjacency.slotCount());
+        assertEquals(slots, built.slotCount());
+        assertSlotsAreSymmetric(adjacency);
+        assertSlotsAreSymmetric(built);
+        return adjacency;
+    }
+
+    private static void assertSlotsAreSymmetric(FaceAdjacency adjacency) {
+        for(int face = 0; face < adjacency.faceCount(); face++) {
+            assertEquals(-1, adjacency.slotOf(face, face));
+            for(int slot = adjacency.start(face); slot < adjacency.end(face); slot++) {
+                int other = adjacency.neighbor(slot);
+                assertEquals(slot, adjacency.slotOf(face, other));
+                int back = adjacency.slotOf(other, face);
+                assertTrue(back >= adjacency.start(other) && back < adjacency.end(other), "faces " + face + ", " + other);
+                assertEquals(face, adjacency.neighbor(back));
+                assertTrue(adjacency.areAdjacent(other, face));
+            }
+        }
+    }
+
+    @Test
+    void closedMesh() {
+        FaceAdjacency adjacency = assertAdjacency(faces(TestMeshes.sphere(5, 8)));
+        // every edge has two faces, so every face has three neighbors
+        for(int face = 0; face < adjacency.faceCount(); face++) {
+            assertEquals(3, adjacency.degree(face));
+        }
+    }
+
+    @Test
+    void openMesh() {
+        int size = 3;
+        FaceAdjacency adjacency = assertAdjacency(faces(TestMeshes.grid(size)));
+        // the diagonals run from the bottom left to the top right, so the faces in the other two corners have
+        // two sides on the boundary
+        assertEquals(1, adjacency.degree(2 * (size - 1)));
+        assertEquals(1, adjacency.degree(2 * size * (size - 1) + 1));
+        assertEquals(2, adjacency.degree(0));
+        // faces in the middle have all three sides shared
+        int middle = 2 * (size + 1);
+        assertEquals(3, adjacency.degree(middle));
+        assertEquals(3, adjacency.degree(middle + 1));
+        // faces of squares that only meet at a corner are not adjacent
+        assertFalse(adjacency.areAdjacent(0, middle));
+        assertEquals(-1, adjacency.slotOf(0, middle));
+    }
+
+    @Test
+    void nonManifoldEdge() {
+        // a fin: three faces on edge (0, 1), and a fourth face hanging off the first one
+        int[] faces = {
+                0, 1, 2,
+                1, 0, 3,
+                0, 1, 4,
+                2, 1, 5,
+        };
+        FaceAdjacency adjacency = assertAdjacency(faces);
+        assertArrayEquals(new int[]{1, 2, 3}, neighbors(adjacency, 0));
+        assertArrayEquals(new int[]{0, 2}, neighbors(adjacency, 1));
+        assertArrayEquals(new int[]{0, 1}, neighbors(adjacency, 2));
+        assertArrayEquals(new int[]{0}, neighbors(adjacency, 3));
+    }
+
+    @Test
+    void facesSharingTwoEdgesAreAdjacentOnce() {
+        // both faces use the same three vertices, so they share every edge
+        FaceAdjacency adjacency = assertAdjacency(new int[]{0, 1, 2, 2, 1, 0});
+        assertArrayEquals(new int[]{1}, neighbors(adjacency, 0));
+        assertArrayEquals(new int[]{0}, neighbors(adjacency, 1));
+    }
+
+    @Test
+    void repeatedVertex() {
+        // the builder accepts a face that uses a vertex twice. It lists edge (0, 1) twice, but it is
+        // only adjacent once to each face on that edge, and never to itself
+        int[] faces = {
+                0, 1, 2,
+                1, 0, 0,
+                0, 1, 3,
+        };
+        QMesh mesh = QMesh.builder().vertices(new double[12]).faces(faces).build();
+        assertEquals(3, mesh.faceCount());
+        FaceAdjacency adjacency = assertAdjacency(faces);
+        assertArrayEquals(new int[]{1, 2}, neighbors(adjacency, 0));
+        assertArrayEquals(new int[]{0, 2}, neighbors(adjacency, 1));
+        assertArrayEquals(new int[]{0, 1}, neighbors(adjacency, 2));
+        assertArrayEquals(new int[]{0, 2}, neighbors(mesh.getAdjacency(), 1));
+
+        SortedEdges edges = SortedEdges.of(storage(faces));
+        int edge = edges.find(1, 0);
+        assertArrayEquals(new int[]{0, 1, 2}, IntStream.range(edges.start(edge), edges.end(edge)).map(edges::face).toArray());
+        assertEquals(edge, edges.edgeOf(1, 0));
+        assertEquals(edge, edges.edgeOf(1, 2));
+        // the edge from the vertex to itself only has the degenerate face
+        int loop = edges.find(0, 0);
+        assertEquals(1, edges.faceCount(loop));
+        assertEquals(loop, edges.edgeOf(1, 1));
+    }
+
+    @Test
+    void sortedEdgesMatchTheFaces() {
+        int[] faces = faces(TestMeshes.sphere(5, 8));
+        SortedEdges edges = SortedEdges.of(storage(faces));
+        // every edge of a closed sphere has two faces
+        assertEquals(faces.length / 3 / 2 * 3, edges.edgeCount());
+        for(int edge = 1; edge < edges.edgeCount(); edge++) {
+            assertTrue(edges.key(edge - 1) < edges.key(edge));
+        }
+        for(int face = 0; face < faces.length / 3; face++) {
+            for(int corner = 0; corner < 3; corner++) {
+                int va = faces[face * 3 + corner];
+                int vb = faces[face * 3 + (corner + 1) % 3];
+                int edge = edges.edgeOf(face, corner);
+                assertEquals(edge, edges.find(va, vb));
+                assertEquals(EdgeTable.key(va, vb), edges.key(edge));
+                assertEquals(2, edges.faceCount(edge));
+            }
+        }
+        assertEquals(-1, edges.find(0, faces.length));
+    }
+}
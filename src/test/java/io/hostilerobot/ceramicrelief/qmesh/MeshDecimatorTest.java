@@ -0,0 +1,114 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshDecimatorTest {
+
+    // closed, manifold, and still a sphere: V - E + F == 2, so no vertex was pinched together
+    private static void assertClosedManifold(QMesh mesh) {
+        EdgeTopology topology = mesh.getEdgeTopology();
+        assertTrue(topology.isManifold());
+        assertTrue(topology.isClosed());
+        assertEquals(2, mesh.vertexCount() - topology.edgeCount() + mesh.faceCount());
+    }
+
+    private static void assertNoDegenerateFaces(QMesh mesh) {
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            int v1 = mesh.getFaceV1(face), v2 = mesh.getFaceV2(face), v3 = mesh.getFaceV3(face);
+            assertTrue(v1 != v2 && v2 != v3 && v3 != v1);
+        }
+    }
+
+    @Test
+    void reachesTargetFaceCount() {
+        QMesh mesh = TestMeshes.sphere(20, 30);
+        MeshDecimator.Decimated decimated = MeshDecimator.decimate(mesh, 300);
+        int faces = decimated.getMesh().faceCount();
+        // a collapse on a closed surface removes two faces at a time
+        assertTrue(faces <= 300 && faces >= 298, "faces: " + faces);
+    }
+
+    @Test
+    void keepsSurfaceManifold() {
+        QMesh decimated = MeshDecimator.decimate(TestMeshes.sphere(20, 30), 100).getMesh();
+        assertClosedManifold(decimated);
+        assertNoDegenerateFaces(decimated);
+    }
+
+    @Test
+    void doesNotFlipFaces() {
+        QMesh decimated = MeshDecimator.decimate(TestMeshes.sphere(20, 30), 200).getMesh();
+        // the sphere is centered on the origin and its faces wind outward, so every normal points away from it
+        for(int face = 0; face < decimated.faceCount(); face++) {
+            int v1 = decimated.getFaceV1(face);
+            QVertex3D normal = decimated.getNormal(face);
+            double outward = normal.getX() * decimated.getVertexX(v1) + normal.getY() * decimated.getVertexY(v1)
+                    + normal.getZ() * decimated.getVertexZ(v1);
+            assertTrue(outward > 0, "face " + face + " flipped");
+        }
+    }
+
+    @Test
+    void mapsFacesBothWays() {
+        QMesh mesh = TestMeshes.sphere(12, 16);
+        MeshDecimator.Decimated decimated = MeshDecimator.decimate(mesh, 80);
+        int[] faceMap = decimated.getFaceMap();
+        int[] originalFaceMap = decimated.getOriginalFaceMap();
+        assertEquals(decimated.getMesh().faceCount(), faceMap.length);
+        assertEquals(mesh.faceCount(), originalFaceMap.length);
+        for(int face = 0; face < faceMap.length; face++) {
+            // a face that survived maps back to itself
+            assertEquals(face, originalFaceMap[faceMap[face]]);
+        }
+        for(int original = 0; original < originalFaceMap.length; original++) {
+            assertTrue(originalFaceMap[original] >= 0 && originalFaceMap[original] < faceMap.length);
+        }
+    }
+
+    @Test
+    void keepsBoundary() {
+        QMesh decimated = MeshDecimator.decimate(TestMeshes.grid(10), 40).getMesh();
+        EdgeTopology topology = decimated.getEdgeTopology();
+        assertTrue(topology.isManifold());
+        assertNoDegenerateFaces(decimated);
+        // the corners of the grid are held in place
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for(int v = 0; v < decimated.vertexCount(); v++) {
+            minX = Math.min(minX, decimated.getVertexX(v));
+            maxX = Math.max(maxX, decimated.getVertexX(v));
+            minY = Math.min(minY, decimated.getVertexY(v));
+            maxY = Math.max(maxY, decimated.getVertexY(v));
+        }
+        assertEquals(0.0, minX, 1e-9);
+        assertEquals(10.0, maxX, 1e-9);
+        assertEquals(0.0, minY, 1e-9);
+        assertEquals(10.0, maxY, 1e-9);
+    }
+
+    @Test
+    void levelsGetCoarser() {
+        List<MeshDecimator.Decimated> levels = MeshDecimator.levels(TestMeshes.sphere(20, 30), 100, 500, 250);
+        assertEquals(3, levels.size());
+        int previous = Integer.MAX_VALUE;
+        for(MeshDecimator.Decimated level : levels) {
+            int faces = level.getMesh().faceCount();
+            assertTrue(faces < previous);
+            previous = faces;
+            assertClosedManifold(level.getMesh());
+        }
+        assertTrue(levels.get(0).getMesh().faceCount() <= 500);
+        assertTrue(levels.get(2).getMesh().faceCount() <= 100);
+    }
+
+    @Test
+    void targetAboveFaceCountKeepsMesh() {
+        QMesh mesh = TestMeshes.sphere(6, 8);
+        QMesh decimated = MeshDecimator.decimate(mesh, mesh.faceCount() * 2).getMesh();
+        assertEquals(mesh.faceCount(), decimated.faceCount());
+        assertEquals(mesh.vertexCount(), decimated.vertexCount());
+    }
+}
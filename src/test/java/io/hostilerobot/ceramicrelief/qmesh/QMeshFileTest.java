@@ -0,0 +1,118 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QMeshFileTest {
+
+    @TempDir
+    Path dir;
+
+    // tetrahedron, so every face has three neighbors
+    private static QMesh tetrahedron() {
+        double[] vertices = {0, 0, 0,  1, 0, 0,  0, 1, 0,  0, 0, 1};
+        int[] faces = {0, 2, 1,  0, 1, 3,  1, 2, 3,  0, 3, 2};
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+
+    private static void assertSameMesh(QMesh expected, QMesh actual) {
+        assertEquals(expected.vertexCount(), actual.vertexCount());
+        assertEquals(expected.faceCount(), actual.faceCount());
+        for(int v = 0; v < expected.vertexCount(); v++) {
+            assertEquals(expected.getVertexX(v), actual.getVertexX(v));
+            assertEquals(expected.getVertexY(v), actual.getVertexY(v));
+            assertEquals(expected.getVertexZ(v), actual.getVertexZ(v));
+        }
+        FaceAdjacency expectedAdjacency = expected.getAdjacency();
+        FaceAdjacency actualAdjacency = actual.getAdjacency();
+        assertEquals(expectedAdjacency.slotCount(), actualAdjacency.slotCount());
+        for(int f = 0; f < expected.faceCount(); f++) {
+            assertEquals(expected.getFaceV1(f), actual.getFaceV1(f));
+            assertEquals(expected.getFaceV2(f), actual.getFaceV2(f));
+            assertEquals(expected.getFaceV3(f), actual.getFaceV3(f));
+            assertEquals(expectedAdjacency.start(f), actualAdjacency.start(f));
+            assertEquals(expectedAdjacency.end(f), actualAdjacency.end(f));
+            for(int slot = expectedAdjacency.start(f); slot < expectedAdjacency.end(f); slot++) {
+                assertEquals(expectedAdjacency.neighbor(slot), actualAdjacency.neighbor(slot));
+            }
+            assertEquals(expected.getUnitNormalX(f), actual.getUnitNormalX(f));
+            assertEquals(expected.getUnitNormalY(f), actual.getUnitNormalY(f));
+            assertEquals(expected.getUnitNormalZ(f), actual.getUnitNormalZ(f));
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        QMesh mesh = tetrahedron();
+        Path path = dir.resolve("tetrahedron.qmesh");
+        QMeshFile.write(mesh, path, false);
+        try(Arena arena = Arena.ofConfined()) {
+            assertSameMesh(mesh, QMeshFile.map(path, arena));
+        }
+    }
+
+    @Test
+    void roundTripWithNormals() throws IOException {
+        QMesh mesh = tetrahedron();
+        Path path = dir.resolve("tetrahedron.qmesh");
+        QMeshFile.write(mesh, path, true);
+        try(Arena arena = Arena.ofConfined()) {
+            QMesh loaded = QMeshFile.map(path, arena);
+            assertSameMesh(mesh, loaded);
+            assertEquals(mesh.getNormal(2).getX(), loaded.getNormal(2).getX());
+        }
+    }
+
+    @Test
+    void roundTripEmpty() throws IOException {
+        QMesh mesh = QMesh.builder().build();
+        Path path = dir.resolve("empty.qmesh");
+        QMeshFile.write(mesh, path, true);
+        try(Arena arena = Arena.ofConfined()) {
+            QMesh loaded = QMeshFile.map(path, arena);
+            assertEquals(0, loaded.vertexCount());
+            assertEquals(0, loaded.faceCount());
+        }
+    }
+
+    @Test
+    void editsDoNotReachFile() throws IOException {
+        QMesh mesh = tetrahedron();
+        Path path = dir.resolve("tetrahedron.qmesh");
+        QMeshFile.write(mesh, path, false);
+        try(Arena arena = Arena.ofConfined()) {
+            QMesh loaded = QMeshFile.map(path, arena);
+            assertTrue(loaded.setVertex(3, 0, 0, 2));
+            assertEquals(2.0, loaded.getVertexZ(3));
+        }
+        try(Arena arena = Arena.ofConfined()) {
+            assertEquals(1.0, QMeshFile.map(path, arena).getVertexZ(3));
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path path = dir.resolve("not.qmesh");
+        Files.write(path, new byte[64]);
+        assertThrows(IOException.class, () -> QMeshFile.map(path));
+        Files.write(path, new byte[4]);
+        assertThrows(IOException.class, () -> QMeshFile.map(path));
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        Path path = dir.resolve("tetrahedron.qmesh");
+        QMeshFile.write(tetrahedron(), path, true);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> QMeshFile.map(path));
+    }
+}
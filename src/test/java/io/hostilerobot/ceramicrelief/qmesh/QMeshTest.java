@@ -0,0 +1,142 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QMeshTest {
+
+    private static QMesh triangle() {
+        return QMesh.builder().vertices(new double[]{0, 0, 0, 1, 0, 0, 0, 1, 0}).faces(new int[]{0, 1, 2}).build();
+    }
+
+    // the same mesh built from scratch, with every cache computed fresh from its current vertices
+    private static QMesh rebuilt(QMesh mesh) {
+        double[] vertices = new double[mesh.vertexCount() * 3];
+        for(int vertex = 0; vertex < mesh.vertexCount(); vertex++) {
+            vertices[vertex * 3] = mesh.getVertexX(vertex);
+            vertices[vertex * 3 + 1] = mesh.getVertexY(vertex);
+            vertices[vertex * 3 + 2] = mesh.getVertexZ(vertex);
+        }
+        int[] faces = new int[mesh.faceCount() * 3];
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            faces[face * 3] = mesh.getFaceV1(face);
+            faces[face * 3 + 1] = mesh.getFaceV2(face);
+            faces[face * 3 + 2] = mesh.getFaceV3(face);
+        }
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+
+    // faces that use the vertex, found by looking at every face
+    private static int[] facesUsing(QMesh mesh, int vertex) {
+        return IntStream.range(0, mesh.faceCount())
+                .filter(face -> mesh.getFaceV1(face) == vertex || mesh.getFaceV2(face) == vertex || mesh.getFaceV3(face) == vertex)
+                .toArray();
+    }
+
+    private static double[][] unitNormals(QMesh mesh) {
+        double[][] normals = new double[mesh.faceCount()][];
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            normals[face] = new double[]{mesh.getUnitNormalX(face), mesh.getUnitNormalY(face), mesh.getUnitNormalZ(face)};
+        }
+        return normals;
+    }
+
+    private static double[] ranks(DihedralRanking ranking) {
+        double[] ranks = new double[ranking.getAdjacency().slotCount()];
+        for(int slot = 0; slot < ranks.length; slot++) {
+            ranks[slot] = ranking.rank(slot);
+        }
+        return ranks;
+    }
+
+    @Test
+    void freezeReusesSnapshotUntilEdited() {
+        QMesh mesh = triangle();
+        QMesh frozen = mesh.freeze();
+        assertSame(frozen, mesh.freeze());
+        assertSame(frozen, frozen.freeze());
+
+        assertTrue(mesh.setVertex(2, 0, 2, 0));
+        QMesh edited = mesh.freeze();
+        assertNotSame(frozen, edited);
+        assertEquals(1, frozen.getVertexY(2));
+        assertEquals(2, edited.getVertexY(2));
+        assertSame(edited, mesh.freeze());
+    }
+
+    @Test
+    void settingAVertexOnlyChangesItsFaces() {
+        QMesh mesh = TestMeshes.sphere(8, 12);
+        // build the caches first, so moving the vertex has to patch them
+        double[][] normalsBefore = unitNormals(mesh);
+        DihedralRanking ranking = mesh.getDihedralRanking();
+        double[] ranksBefore = ranks(ranking);
+        long version = mesh.getVersion();
+
+        int vertex = 20;
+        int[] moved = facesUsing(mesh, vertex);
+        assertEquals(6, moved.length);
+        assertTrue(mesh.setVertex(vertex, 0.2, -0.3, 1.5));
+        assertTrue(mesh.getVersion() > version);
+        assertArrayEquals(moved, mesh.getChangedFaces(version).sorted().toArray());
+        assertArrayEquals(moved, mesh.getFacesOfVertex(vertex).toArray());
+
+        boolean[] isMoved = new boolean[mesh.faceCount()];
+        for(int face : moved) {
+            isMoved[face] = true;
+        }
+
+        QMesh expected = rebuilt(mesh);
+        double[][] normalsAfter = unitNormals(mesh);
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            if(isMoved[face]) {
+                assertFalse(Arrays.equals(normalsBefore[face], normalsAfter[face]), "face " + face);
+            } else {
+                assertArrayEquals(normalsBefore[face], normalsAfter[face], "face " + face);
+            }
+            assertArrayEquals(unitNormals(expected)[face], normalsAfter[face], 1e-12, "face " + face);
+        }
+
+        // the ranking is patched in place rather than rebuilt
+        assertSame(ranking, mesh.getDihedralRanking());
+        FaceAdjacency adjacency = ranking.getAdjacency();
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            for(int slot = adjacency.start(face); slot < adjacency.end(face); slot++) {
+                int other = adjacency.neighbor(slot);
+                assertEquals(expected.getDihedralRanking().rank(face, other), ranking.rank(slot), 1e-12, "faces " + face + ", " + other);
+                if(!isMoved[face] && !isMoved[other]) {
+                    assertEquals(ranksBefore[slot], ranking.rank(slot), "faces " + face + ", " + other);
+                }
+            }
+        }
+    }
+
+    @Test
+    void changedFacesSinceEachVersion() {
+        QMesh mesh = TestMeshes.sphere(8, 12);
+        long start = mesh.getVersion();
+        assertEquals(0, mesh.getChangedFaces(start).count());
+
+        mesh.setVertex(20, 0, 0, 2);
+        long afterFirst = mesh.getVersion();
+        mesh.setVertex(50, 0, 0, -2);
+        assertArrayEquals(facesUsing(mesh, 50), mesh.getChangedFaces(afterFirst).sorted().toArray());
+        int[] both = IntStream.concat(IntStream.of(facesUsing(mesh, 20)), IntStream.of(facesUsing(mesh, 50))).sorted().toArray();
+        assertArrayEquals(both, mesh.getChangedFaces(start).sorted().toArray());
+
+        // moving the same vertices over and over makes the journal drop its stale entries, and each face is still listed once
+        long beforeRepeats = mesh.getVersion();
+        for(int repeat = 0; repeat < 100; repeat++) {
+            mesh.setVertex(20, 0, 0, 2 + repeat);
+            mesh.setVertex(50, 0, 0, -2 - repeat);
+        }
+        assertArrayEquals(both, mesh.getChangedFaces(start).sorted().toArray());
+        assertArrayEquals(both, mesh.getChangedFaces(beforeRepeats).sorted().toArray());
+        assertEquals(0, mesh.getChangedFaces(mesh.getVersion()).count());
+        assertFalse(mesh.setVertex(mesh.vertexCount(), 0, 0, 0));
+    }
+}
@@ -0,0 +1,77 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+/**
+ * meshes for the qmesh tests
+ */
+final class TestMeshes {
+    private TestMeshes() {}
+
+    /**
+     * closed sphere of stacks x slices, with a single vertex at each pole. Faces wind outward
+     */
+    static QMesh sphere(int stacks, int slices) {
+        int ringVertices = (stacks - 1) * slices;
+        double[] vertices = new double[(ringVertices + 2) * 3];
+        for(int stack = 1; stack < stacks; stack++) {
+            double polar = Math.PI * stack / stacks;
+            for(int slice = 0; slice < slices; slice++) {
+                double azimuth = 2 * Math.PI * slice / slices;
+                int v = ((stack - 1) * slices + slice) * 3;
+                vertices[v] = Math.sin(polar) * Math.cos(azimuth);
+                vertices[v + 1] = Math.sin(polar) * Math.sin(azimuth);
+                vertices[v + 2] = Math.cos(polar);
+            }
+        }
+        int top = ringVertices;
+        int bottom = ringVertices + 1;
+        vertices[top * 3 + 2] = 1;
+        vertices[bottom * 3 + 2] = -1;
+
+        int[] faces = new int[slices * 2 * (stacks - 1) * 3];
+        int f = 0;
+        for(int slice = 0; slice < slices; slice++) {
+            int next = (slice + 1) % slices;
+            faces[f++] = top; faces[f++] = slice; faces[f++] = next;
+            int last = (stacks - 2) * slices;
+            faces[f++] = bottom; faces[f++] = last + next; faces[f++] = last + slice;
+        }
+        for(int stack = 0; stack < stacks - 2; stack++) {
+            for(int slice = 0; slice < slices; slice++) {
+                int a = stack * slices + slice;
+                int b = stack * slices + (slice + 1) % slices;
+                int c = a + slices;
+                int d = b + slices;
+                faces[f++] = a; faces[f++] = c; faces[f++] = d;
+                faces[f++] = a; faces[f++] = d; faces[f++] = b;
+            }
+        }
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+
+    /**
+     * open square grid in the xy plane, each square split into two faces
+     */
+    static QMesh grid(int size) {
+        double[] vertices = new double[(size + 1) * (size + 1) * 3];
+        for(int y = 0; y <= size; y++) {
+            for(int x = 0; x <= size; x++) {
+                int v = (y * (size + 1) + x) * 3;
+                vertices[v] = x;
+                vertices[v + 1] = y;
+            }
+        }
+        int[] faces = new int[size * size * 6];
+        int f = 0;
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                int a = y * (size + 1) + x;
+                int b = a + 1;
+                int c = a + size + 1;
+                int d = c + 1;
+                faces[f++] = a; faces[f++] = b; faces[f++] = d;
+                faces[f++] = a; faces[f++] = d; faces[f++] = c;
+            }
+        }
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+}
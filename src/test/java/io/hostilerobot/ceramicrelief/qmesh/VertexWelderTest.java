@@ -0,0 +1,97 @@
+package io.hostilerobot.ceramicrelief.qmesh;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexWelderTest {
+
+    // two triangles of a unit square, each with its own copy of the shared corners, as STL stores them
+    private static final double[] SQUARE = {
+            0, 0, 0,  1, 0, 0,  1, 1, 0,
+            0, 0, 0,  1, 1, 0,  0, 1, 0
+    };
+    private static final int[] SQUARE_FACES = {0, 1, 2, 3, 4, 5};
+
+    @Test
+    void weldsCoincidentVertices() {
+        VertexWelder.Welded welded = new VertexWelder(0.01).weld(SQUARE, SQUARE_FACES);
+        assertEquals(4, welded.vertexCount());
+        assertEquals(2, welded.faceCount());
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, welded.getVertexMap());
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, welded.getFaces());
+        assertArrayEquals(new int[]{0, 1}, welded.getFaceMap());
+    }
+
+    @Test
+    void weldsWithinTolerance() {
+        double[] vertices = SQUARE.clone();
+        vertices[9] += 0.004;  // second copy of (0, 0, 0)
+        vertices[13] -= 0.004; // second copy of (1, 1, 0)
+        VertexWelder.Welded welded = new VertexWelder(0.01).weld(vertices, SQUARE_FACES);
+        assertEquals(4, welded.vertexCount());
+        // a welded vertex keeps the position of the lowest vertex merged into it
+        assertEquals(0.0, welded.getVertices()[0]);
+        assertEquals(1.0, welded.getVertices()[7]);
+    }
+
+    @Test
+    void keepsVerticesBeyondTolerance() {
+        double[] vertices = SQUARE.clone();
+        vertices[9] += 0.02;
+        VertexWelder.Welded welded = new VertexWelder(0.01).weld(vertices, SQUARE_FACES);
+        assertEquals(5, welded.vertexCount());
+        assertNotEquals(welded.getVertexMap()[0], welded.getVertexMap()[3]);
+        assertEquals(welded.getVertexMap()[2], welded.getVertexMap()[4]);
+    }
+
+    @Test
+    void weldsAcrossCells() {
+        // close together, but on either side of a grid cell boundary
+        double[] vertices = {0.0099, 0, 0,  0.0101, 0, 0,  1, 0, 0};
+        VertexWelder.Welded welded = new VertexWelder(0.01).weld(vertices, new int[0]);
+        assertEquals(2, welded.vertexCount());
+        assertEquals(0, welded.getVertexMap()[1]);
+    }
+
+    @Test
+    void weldingIsTransitive() {
+        // each vertex is within tolerance of the next, but the ends are not
+        double[] vertices = {0, 0, 0,  0.008, 0, 0,  0.016, 0, 0,  0.024, 0, 0};
+        VertexWelder.Welded welded = new VertexWelder(0.01).weld(vertices, new int[0]);
+        assertEquals(1, welded.vertexCount());
+        assertArrayEquals(new int[]{0, 0, 0, 0}, welded.getVertexMap());
+    }
+
+    @Test
+    void dropsCollapsedFaces() {
+        double[] vertices = {
+                0, 0, 0,  1, 0, 0,  0, 1, 0,
+                1, 0, 0,  1.001, 0, 0,  1, 1, 0, // sliver with a side shorter than the tolerance
+                1, 0, 0,  1, 1, 0,  0, 1, 0
+        };
+        int[] faces = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+        VertexWelder.Welded welded = new VertexWelder(0.01).weld(vertices, faces);
+        assertEquals(2, welded.faceCount());
+        assertArrayEquals(new int[]{0, 2}, welded.getFaceMap());
+        int[] weldedFaces = welded.getFaces();
+        for(int face = 0; face < welded.faceCount(); face++) {
+            assertNotEquals(weldedFaces[face * 3], weldedFaces[face * 3 + 1]);
+            assertNotEquals(weldedFaces[face * 3 + 1], weldedFaces[face * 3 + 2]);
+            assertNotEquals(weldedFaces[face * 3 + 2], weldedFaces[face * 3]);
+        }
+    }
+
+    @Test
+    void weldedBuildConnectsFaces() {
+        QMesh mesh = QMesh.builder().vertices(SQUARE.clone()).faces(SQUARE_FACES.clone()).weld(0.01).build();
+        assertEquals(4, mesh.vertexCount());
+        assertTrue(mesh.getAdjacency().areAdjacent(0, 1));
+    }
+
+    @Test
+    void rejectsNonPositiveTolerance() {
+        assertThrows(IllegalArgumentException.class, () -> new VertexWelder(0.0));
+        assertThrows(IllegalArgumentException.class, () -> new VertexWelder(Double.NaN));
+    }
+}
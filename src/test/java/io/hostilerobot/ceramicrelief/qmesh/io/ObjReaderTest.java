@@ -0,0 +1,134 @@
+package io.hostilerobot.ceramicrelief.qmesh.io;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjReaderTest {
+
+    @TempDir
+    Path dir;
+
+    private QMesh read(String contents) throws IOException {
+        Path path = dir.resolve("mesh.obj");
+        Files.writeString(path, contents);
+        return ObjReader.read(path);
+    }
+
+    private static void assertFace(QMesh mesh, int face, int v1, int v2, int v3) {
+        assertEquals(v1, mesh.getFaceV1(face));
+        assertEquals(v2, mesh.getFaceV2(face));
+        assertEquals(v3, mesh.getFaceV3(face));
+    }
+
+    @Test
+    void readsVerticesAndFaces() throws IOException {
+        QMesh mesh = read("""
+                # square
+                v 0 0 0
+                v 1.5 0 -2
+                v 1e1 2.5E-1 0
+                v -0.5 1 0 1.0
+                f 1 2 3
+                f 1 3 4
+                """);
+        assertEquals(4, mesh.vertexCount());
+        assertEquals(1.5, mesh.getVertexX(1));
+        assertEquals(-2.0, mesh.getVertexZ(1));
+        assertEquals(10.0, mesh.getVertexX(2));
+        assertEquals(0.25, mesh.getVertexY(2));
+        assertEquals(-0.5, mesh.getVertexX(3)); // the w coordinate is ignored
+        assertEquals(2, mesh.faceCount());
+        assertFace(mesh, 0, 0, 1, 2);
+        assertFace(mesh, 1, 0, 2, 3);
+    }
+
+    @Test
+    void skipsTextureAndNormalIndices() throws IOException {
+        QMesh mesh = read("""
+                v 0 0 0
+                v 1 0 0
+                v 0 1 0
+                vt 0 0
+                vn 0 0 1
+                g group
+                usemtl material
+                f 1/1/1 2//1 3/1
+                """);
+        assertEquals(3, mesh.vertexCount());
+        assertEquals(1, mesh.faceCount());
+        assertFace(mesh, 0, 0, 1, 2);
+    }
+
+    @Test
+    void resolvesNegativeIndices() throws IOException {
+        QMesh mesh = read("""
+                v 0 0 0
+                v 1 0 0
+                v 0 1 0
+                f -3 -2 -1
+                v 1 1 0
+                f 2 -1 -2
+                """);
+        assertEquals(2, mesh.faceCount());
+        assertFace(mesh, 0, 0, 1, 2);
+        assertFace(mesh, 1, 1, 3, 2);
+    }
+
+    @Test
+    void triangulatesPolygonsAsFans() throws IOException {
+        QMesh mesh = read("""
+                v 0 0 0
+                v 1 0 0
+                v 2 1 0
+                v 1 2 0
+                v 0 1 0
+                f 1 2 3 4 5
+                """);
+        assertEquals(3, mesh.faceCount());
+        assertFace(mesh, 0, 0, 1, 2);
+        assertFace(mesh, 1, 0, 2, 3);
+        assertFace(mesh, 2, 0, 3, 4);
+    }
+
+    @Test
+    void readsWindowsLineEndings() throws IOException {
+        QMesh mesh = read("v 0 0 0\r\nv 1 0 0\r\nv 0 1 0\r\nf 1 2 3\r\n");
+        assertEquals(3, mesh.vertexCount());
+        assertFace(mesh, 0, 0, 1, 2);
+    }
+
+    @Test
+    void resolvesIndicesAcrossChunks() throws IOException {
+        // big enough to be split into several chunks, with faces referring back to vertices in earlier chunks
+        int quads = 60_000;
+        StringBuilder obj = new StringBuilder();
+        for(int i = 0; i <= quads; i++) {
+            obj.append("v ").append(i).append(" 0 0\n");
+            obj.append("v ").append(i).append(" 1 0\n");
+            if(i > 0) {
+                obj.append("f -4 -3 -1 -2\n");
+            }
+        }
+        QMesh mesh = read(obj.toString());
+        assertEquals((quads + 1) * 2, mesh.vertexCount());
+        assertEquals(quads * 2, mesh.faceCount());
+        for(int quad = 0; quad < quads; quad++) {
+            int first = quad * 2;
+            assertFace(mesh, quad * 2, first, first + 1, first + 3);
+            assertFace(mesh, quad * 2 + 1, first, first + 3, first + 2);
+        }
+    }
+
+    @Test
+    void rejectsMalformedFaces() {
+        assertThrows(IOException.class, () -> read("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 0 1 2\n"));
+        assertThrows(IOException.class, () -> read("v 0 0 0\nv 1 0 0\nf 1 2\n"));
+    }
+}
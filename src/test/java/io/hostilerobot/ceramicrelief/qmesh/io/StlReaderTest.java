@@ -0,0 +1,109 @@
+package io.hostilerobot.ceramicrelief.qmesh.io;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StlReaderTest {
+
+    @TempDir
+    Path dir;
+
+    // two triangles of a unit square
+    private static final float[][] SQUARE = {
+            {0, 0, 0,  1, 0, 0,  1, 1, 0},
+            {0, 0, 0,  1, 1, 0,  0, 1, 0}
+    };
+
+    private Path write(String header, float[][] triangles) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(84 + triangles.length * 50).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+        buffer.put(headerBytes, 0, Math.min(headerBytes.length, 80));
+        buffer.position(80);
+        buffer.putInt(triangles.length);
+        for(float[] triangle : triangles) {
+            buffer.putFloat(0).putFloat(0).putFloat(1); // normal, which is ignored
+            for(float coordinate : triangle) {
+                buffer.putFloat(coordinate);
+            }
+            buffer.putShort((short) 0);
+        }
+        Path path = dir.resolve("mesh.stl");
+        Files.write(path, buffer.array());
+        return path;
+    }
+
+    @Test
+    void readsBinary() throws IOException {
+        QMesh.Builder builder = StlReader.read(write("binary", SQUARE), QMesh.builder());
+        QMesh mesh = builder.build();
+        // unwelded, every triangle has its own vertices
+        assertEquals(6, mesh.vertexCount());
+        assertEquals(2, mesh.faceCount());
+        assertEquals(1.0, mesh.getVertexX(4));
+        assertEquals(1.0, mesh.getVertexY(4));
+        assertEquals(3, mesh.getFaceV1(1));
+        assertEquals(4, mesh.getFaceV2(1));
+        assertEquals(5, mesh.getFaceV3(1));
+    }
+
+    @Test
+    void readWelds() throws IOException {
+        QMesh mesh = StlReader.read(write("binary", SQUARE));
+        assertEquals(4, mesh.vertexCount());
+        assertEquals(2, mesh.faceCount());
+        assertTrue(mesh.getAdjacency().areAdjacent(0, 1));
+    }
+
+    @Test
+    void readsBinaryWithSolidHeader() throws IOException {
+        // many exporters start binary headers with "solid" too. The size tells them apart
+        QMesh mesh = StlReader.read(write("solid exported", SQUARE));
+        assertEquals(2, mesh.faceCount());
+    }
+
+    @Test
+    void readsEmpty() throws IOException {
+        QMesh mesh = StlReader.read(write("empty", new float[0][]));
+        assertEquals(0, mesh.vertexCount());
+        assertEquals(0, mesh.faceCount());
+    }
+
+    @Test
+    void rejectsAscii() throws IOException {
+        Path path = dir.resolve("ascii.stl");
+        Files.writeString(path, """
+                solid square
+                  facet normal 0 0 1
+                    outer loop
+                      vertex 0 0 0
+                      vertex 1 0 0
+                      vertex 1 1 0
+                    endloop
+                  endfacet
+                endsolid square
+                """);
+        IOException e = assertThrows(IOException.class, () -> StlReader.read(path));
+        assertTrue(e.getMessage().contains("ASCII"));
+    }
+
+    @Test
+    void rejectsWrongSize() throws IOException {
+        Path path = write("binary", SQUARE);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> StlReader.read(path));
+        Files.write(path, new byte[20]);
+        assertThrows(IOException.class, () -> StlReader.read(path));
+    }
+}
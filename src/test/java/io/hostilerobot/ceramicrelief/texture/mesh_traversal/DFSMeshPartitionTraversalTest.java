@@ -0,0 +1,130 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
+
+import io.hostilerobot.ceramicrelief.collection.heap.IndexedDoubleHeap;
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.SpatialIndex2D;
+import io.hostilerobot.ceramicrelief.texture.projection.FaceMappingInfo;
+import io.hostilerobot.ceramicrelief.texture.projection.ProjectionState;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DFSMeshPartitionTraversalTest {
+
+    // projects every face that isn't placed yet with the given traversal, and returns how many traversals it took
+    private static int projectRemaining(MeshPartitionTraversal traversal, ProjectionState state) {
+        FaceMappingInfo faceMapping = state.getProjection().getFaceMapping();
+        int traversals = 0;
+        for(int face = 0; face < state.getMesh().faceCount(); face++) {
+            if(!faceMapping.isFacePlacedOnTexture(face)) {
+                traversal.projectSubset(face, state);
+                traversals++;
+            }
+        }
+        return traversals;
+    }
+
+    @Test
+    void scratchIsReusedBetweenTraversals() {
+        QMesh mesh = TestMeshes.tubes(6, 4, 12);
+        ProjectionState state = new ProjectionState(mesh, Map.of());
+        DFSMeshPartitionTraversal traversal = new DFSMeshPartitionTraversal();
+        TraversalScratch scratch = new TraversalScratch();
+        traversal.projectSubset(0, state, scratch);
+
+        int[] fromFace = scratch.fromFace;
+        double[] vectors = scratch.vectors;
+        IndexedDoubleHeap heap = scratch.heap;
+        SpatialIndex2D index = scratch.index;
+        int traversals = projectRemaining((face, s) -> traversal.projectSubset(face, s, scratch), state);
+        assertTrue(traversals >= 5);
+        assertSame(fromFace, scratch.fromFace);
+        assertSame(vectors, scratch.vectors);
+        assertSame(heap, scratch.heap);
+        assertSame(index, scratch.index);
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void sessionMatchesTraversalsOnTheirOwn() {
+        QMesh mesh = TestMeshes.tubes(4, 6, 10);
+        DFSMeshPartitionTraversal traversal = new DFSMeshPartitionTraversal();
+        ProjectionState separate = new ProjectionState(mesh, Map.of());
+        ProjectionState session = new ProjectionState(mesh, Map.of());
+        assertEquals(projectRemaining(traversal, separate), projectRemaining(traversal.session(), session));
+        assertEquals(separate.getProjection().getTVertices(), session.getProjection().getTVertices());
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            assertEquals(separate.getProjection().getFaceMapping().getTFace(face),
+                    session.getProjection().getFaceMapping().getTFace(face));
+        }
+    }
+
+    @Test
+    void sessionDoesNotAllocateScratchPerTraversal() {
+        // many small components, so each traversal is cheap next to the buffers for the whole mesh
+        QMesh mesh = TestMeshes.tubes(400, 1, 4);
+        DFSMeshPartitionTraversal traversal = new DFSMeshPartitionTraversal();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+
+        ProjectionState separate = new ProjectionState(mesh, Map.of());
+        long before = threads.getThreadAllocatedBytes(thread);
+        int separateTraversals = projectRemaining(traversal, separate);
+        long separateBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+        ProjectionState session = new ProjectionState(mesh, Map.of());
+        before = threads.getThreadAllocatedBytes(thread);
+        int sessionTraversals = projectRemaining(traversal.session(), session);
+        long sessionBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(separateTraversals, sessionTraversals);
+        // a session allocates its buffers once, rather than once per traversal
+        assertTrue(sessionBytes * 10 < separateBytes, sessionBytes + " bytes with a session, " + separateBytes + " without");
+    }
+
+    @Test
+    void scratchMovesFromLargerMeshToSmaller() {
+        // many vertices and many traversals first, then a mesh with more faces over fewer vertices,
+        // so the face stamps are regrown while the vertex stamps of the first mesh are kept
+        QMesh first = TestMeshes.triangles(100);
+        QMesh second = TestMeshes.tubes(1, 6, 10);
+        assertTrue(second.faceCount() > first.faceCount());
+        assertTrue(second.vertexCount() < first.vertexCount());
+        DFSMeshPartitionTraversal traversal = new DFSMeshPartitionTraversal();
+
+        ProjectionState fresh = new ProjectionState(second, Map.of());
+        projectRemaining(traversal, fresh);
+
+        TraversalScratch scratch = new TraversalScratch();
+        MeshPartitionTraversal reused = (face, s) -> traversal.projectSubset(face, s, scratch);
+        projectRemaining(reused, new ProjectionState(first, Map.of()));
+        ProjectionState state = new ProjectionState(second, Map.of());
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> projectRemaining(reused, state));
+
+        assertEquals(fresh.getProjection().getTVertices(), state.getProjection().getTVertices());
+        for(int face = 0; face < second.faceCount(); face++) {
+            assertEquals(fresh.getProjection().getFaceMapping().getTFace(face),
+                    state.getProjection().getFaceMapping().getTFace(face));
+        }
+    }
+
+    @Test
+    void firstFaceWithCoincidentPoints() {
+        // enough faces for the quadtree. The first two points of face 0 are at the same spot, so laying it down
+        // gives a triangle with NaN bounds, which is inserted without an overlap test
+        QMesh mesh = TestMeshes.tubes(1, 35, 30);
+        assertTrue(mesh.faceCount() > SpatialIndex2D.RTREE_MAX_FACES);
+        int v1 = mesh.getFaceV1(0), v2 = mesh.getFaceV2(0);
+        mesh.setVertex(v2, mesh.getVertexX(v1), mesh.getVertexY(v1), mesh.getVertexZ(v1));
+
+        ProjectionState state = new ProjectionState(mesh, Map.of());
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> projectRemaining(new DFSMeshPartitionTraversal(), state));
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            assertTrue(state.getProjection().getFaceMapping().isFacePlacedOnTexture(face));
+        }
+    }
+}
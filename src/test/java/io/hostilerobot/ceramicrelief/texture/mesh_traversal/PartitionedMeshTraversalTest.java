@@ -0,0 +1,142 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.texture.TFace;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection.Triangle2D;
+import io.hostilerobot.ceramicrelief.texture.projection.FaceMappingInfo;
+import io.hostilerobot.ceramicrelief.texture.projection.ProjectionState;
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedMeshTraversalTest {
+
+    // many components of a few hundred faces each, enough for several parallel tasks
+    private static QMesh parallelMesh() {
+        QMesh mesh = TestMeshes.tubes(24, 10, 30);
+        assertTrue(PartitionComponents.of(mesh, new HashMap<>()).runs(4096).length - 1 > 1);
+        return mesh;
+    }
+
+    private static int[] allFaces(QMesh mesh) {
+        return IntStream.range(0, mesh.faceCount()).toArray();
+    }
+
+    private static void assertSameProjection(ProjectionState expected, ProjectionState actual) {
+        assertEquals(expected.getProjection().getTVertices(), actual.getProjection().getTVertices());
+        List<TFace> expectedFaces = expected.getProjection().getTFaces();
+        List<TFace> actualFaces = actual.getProjection().getTFaces();
+        assertEquals(expectedFaces.size(), actualFaces.size());
+        for(int idx = 0; idx < expectedFaces.size(); idx++) {
+            assertEquals(expectedFaces.get(idx).getV1(), actualFaces.get(idx).getV1());
+            assertEquals(expectedFaces.get(idx).getV2(), actualFaces.get(idx).getV2());
+            assertEquals(expectedFaces.get(idx).getV3(), actualFaces.get(idx).getV3());
+        }
+        FaceMappingInfo expectedMapping = expected.getProjection().getFaceMapping();
+        FaceMappingInfo actualMapping = actual.getProjection().getFaceMapping();
+        for(int face = 0; face < expected.getMesh().faceCount(); face++) {
+            assertEquals(expectedMapping.getTFace(face), actualMapping.getTFace(face), "face " + face);
+        }
+    }
+
+    // no two faces of the same partition overlap in the texture. Returns the tFace after the last partition
+    private static int assertNoOverlaps(ProjectionState state, List<ProjectedTextureInfo> partitions, int firstTFace) {
+        List<TFace> tFaces = state.getProjection().getTFaces();
+        List<Point2D> tVertices = state.getProjection().getTVertices();
+        int start = firstTFace;
+        for(ProjectedTextureInfo partition : partitions) {
+            int end = start + partition.getTFaceCount();
+            Triangle2D[] triangles = new Triangle2D[end - start];
+            for(int idx = start; idx < end; idx++) {
+                TFace face = tFaces.get(idx);
+                triangles[idx - start] = new Triangle2D(tVertices.get(face.getV1()), tVertices.get(face.getV2()), tVertices.get(face.getV3()));
+            }
+            for(int i = 0; i < triangles.length; i++) {
+                for(int j = i + 1; j < triangles.length; j++) {
+                    assertFalse(triangles[i].intersects(triangles[j]), "tFaces " + (start + i) + " and " + (start + j));
+                }
+            }
+            start = end;
+        }
+        return start;
+    }
+
+    private static void assertEveryFaceMapped(ProjectionState state) {
+        FaceMappingInfo faceMapping = state.getProjection().getFaceMapping();
+        int tFaceCount = state.getProjection().getTFaces().size();
+        boolean[] used = new boolean[tFaceCount];
+        for(int face = 0; face < state.getMesh().faceCount(); face++) {
+            assertTrue(faceMapping.isFacePlacedOnTexture(face));
+            int tFace = faceMapping.getTFace(face);
+            assertTrue(tFace >= 0 && tFace < tFaceCount);
+            assertFalse(used[tFace], "tFace " + tFace + " is mapped twice");
+            used[tFace] = true;
+        }
+    }
+
+    @Test
+    void parallelMatchesSequential() {
+        QMesh mesh = parallelMesh();
+        PartitionedMeshTraversal traversal = new PartitionedMeshTraversal(new DFSMeshPartitionTraversal());
+
+        ProjectionState sequential = new ProjectionState(mesh, Map.of());
+        List<ProjectedTextureInfo> sequentialPartitions = traversal.projectFaces(sequential, allFaces(mesh));
+        ProjectionState parallel = new ProjectionState(mesh, Map.of());
+        List<ProjectedTextureInfo> parallelPartitions = traversal.projectAll(parallel);
+
+        assertEquals(sequentialPartitions.size(), parallelPartitions.size());
+        assertSameProjection(sequential, parallel);
+        assertEveryFaceMapped(parallel);
+        assertEquals(mesh.faceCount(), assertNoOverlaps(parallel, parallelPartitions, 0));
+    }
+
+    @Test
+    void parallelKeepsFacesPlacedBefore() {
+        QMesh mesh = parallelMesh();
+        PartitionedMeshTraversal traversal = new PartitionedMeshTraversal(new DFSMeshPartitionTraversal());
+        // a face from each of two tubes, so both tubes are placed before the rest
+        int[] first = {5 * 600 + 17, 9 * 600 + 3};
+
+        ProjectionState sequential = new ProjectionState(mesh, Map.of());
+        traversal.projectFaces(sequential, first);
+        traversal.projectFaces(sequential, allFaces(mesh));
+
+        ProjectionState parallel = new ProjectionState(mesh, Map.of());
+        List<ProjectedTextureInfo> before = traversal.projectFaces(parallel, first);
+        int placedBefore = parallel.getProjection().getTFaces().size();
+        int[] mappingBefore = new int[mesh.faceCount()];
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            mappingBefore[face] = parallel.getProjection().getFaceMapping().isFacePlacedOnTexture(face)
+                    ? parallel.getProjection().getFaceMapping().getTFace(face) : -1;
+        }
+        List<ProjectedTextureInfo> after = traversal.projectAll(parallel);
+
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            if(mappingBefore[face] >= 0) {
+                assertEquals(mappingBefore[face], parallel.getProjection().getFaceMapping().getTFace(face));
+            }
+        }
+        assertSameProjection(sequential, parallel);
+        assertEveryFaceMapped(parallel);
+        assertEquals(placedBefore, assertNoOverlaps(parallel, before, 0));
+        assertEquals(mesh.faceCount(), assertNoOverlaps(parallel, after, placedBefore));
+    }
+
+    @Test
+    void projectingAgainPlacesNothing() {
+        QMesh mesh = parallelMesh();
+        PartitionedMeshTraversal traversal = new PartitionedMeshTraversal(new DFSMeshPartitionTraversal());
+        ProjectionState state = new ProjectionState(mesh, Map.of());
+        traversal.projectAll(state);
+        int tFaces = state.getProjection().getTFaces().size();
+        assertTrue(traversal.projectAll(state).isEmpty());
+        assertEquals(tFaces, state.getProjection().getTFaces().size());
+        assertEveryFaceMapped(state);
+    }
+}
@@ -0,0 +1,63 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+
+/**
+ * meshes for the traversal tests
+ */
+final class TestMeshes {
+    private TestMeshes() {}
+
+    /**
+     * count closed tubes of (rings x segments) quads, each split into two faces, side by side along x.
+     * The tubes don't touch, so each is its own component
+     */
+    static QMesh tubes(int count, int rings, int segments) {
+        int tubeVertices = (rings + 1) * segments;
+        double[] vertices = new double[count * tubeVertices * 3];
+        int[] faces = new int[count * rings * segments * 6];
+        int f = 0;
+        for(int tube = 0; tube < count; tube++) {
+            int base = tube * tubeVertices;
+            for(int ring = 0; ring <= rings; ring++) {
+                for(int segment = 0; segment < segments; segment++) {
+                    double angle = 2 * Math.PI * segment / segments;
+                    int v = (base + ring * segments + segment) * 3;
+                    vertices[v] = Math.cos(angle) + tube * 3;
+                    vertices[v + 1] = Math.sin(angle);
+                    vertices[v + 2] = ring * (2 * Math.PI / segments);
+                }
+            }
+            for(int ring = 0; ring < rings; ring++) {
+                for(int segment = 0; segment < segments; segment++) {
+                    int a = base + ring * segments + segment;
+                    int b = base + ring * segments + (segment + 1) % segments;
+                    int c = a + segments;
+                    int d = b + segments;
+                    faces[f++] = a; faces[f++] = b; faces[f++] = d;
+                    faces[f++] = a; faces[f++] = d; faces[f++] = c;
+                }
+            }
+        }
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+
+    /**
+     * count separate triangles, so every face is its own partition
+     */
+    static QMesh triangles(int count) {
+        double[] vertices = new double[count * 9];
+        int[] faces = new int[count * 3];
+        for(int t = 0; t < count; t++) {
+            int v = t * 9;
+            vertices[v] = t * 2;
+            vertices[v + 3] = t * 2 + 1;
+            vertices[v + 7] = 1;
+            vertices[v + 6] = t * 2;
+            faces[t * 3] = t * 3;
+            faces[t * 3 + 1] = t * 3 + 1;
+            faces[t * 3 + 2] = t * 3 + 2;
+        }
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+}
@@ -0,0 +1,101 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Orientation2DTest {
+
+    // sign of the determinant worked out exactly, as every double is a finite decimal
+    private static int exactSign(double ax, double ay, double bx, double by, double cx, double cy) {
+        BigDecimal acx = new BigDecimal(ax).subtract(new BigDecimal(cx));
+        BigDecimal bcy = new BigDecimal(by).subtract(new BigDecimal(cy));
+        BigDecimal acy = new BigDecimal(ay).subtract(new BigDecimal(cy));
+        BigDecimal bcx = new BigDecimal(bx).subtract(new BigDecimal(cx));
+        return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+    }
+
+    private static int sign(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (int) Math.signum(Orientation2D.orient2d(ax, ay, bx, by, cx, cy));
+    }
+
+    private static int naiveSign(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (int) Math.signum((ax - cx) * (by - cy) - (ay - cy) * (bx - cx));
+    }
+
+    @Test
+    void counterclockwiseClockwiseAndInALine() {
+        assertTrue(Orientation2D.orient2d(0, 0, 1, 0, 0, 1) > 0);
+        assertTrue(Orientation2D.orient2d(0, 0, 0, 1, 1, 0) < 0);
+        assertEquals(0.0, Orientation2D.orient2d(0, 0, 1, 1, 2, 2));
+        assertEquals(0.0, Orientation2D.orient2d(-3, 7, -3, 7, 5, 1));
+        assertEquals(0.0, Orientation2D.orient2d(1e100, 1e100, -1e100, -1e100, 0, 0));
+    }
+
+    @Test
+    void nearlyInALineAroundAPoint() {
+        // Shewchuk's example: a point moved a few ulps around (0.5, 0.5), against the line through (12, 12) and (24, 24).
+        // The plain cross product gets many of these signs wrong
+        double ulp = Math.ulp(0.5);
+        int naiveWrong = 0;
+        for(int i = 0; i < 64; i++) {
+            for(int j = 0; j < 64; j++) {
+                double ax = 0.5 + i * ulp;
+                double ay = 0.5 + j * ulp;
+                int expected = exactSign(ax, ay, 12, 12, 24, 24);
+                assertEquals(expected, sign(ax, ay, 12, 12, 24, 24), "(" + i + ", " + j + ")");
+                if(naiveSign(ax, ay, 12, 12, 24, 24) != expected) {
+                    naiveWrong++;
+                }
+            }
+        }
+        assertTrue(naiveWrong > 0);
+    }
+
+    @Test
+    void inALineWithoutRoundNumbers() {
+        // points on the line through a and b, found as a + t(b - a) for t where that is exact
+        double ax = 0.1, ay = 0.3, bx = 0.1 + 0x1p-3, by = 0.3 + 0x1p-4;
+        for(int k = -8; k <= 8; k++) {
+            double cx = ax + k * 0x1p-3;
+            double cy = ay + k * 0x1p-4;
+            int expected = exactSign(ax, ay, bx, by, cx, cy);
+            assertEquals(expected, sign(ax, ay, bx, by, cx, cy), "k = " + k);
+            // one ulp either way across the line
+            double up = Math.nextUp(cy), down = Math.nextDown(cy);
+            assertEquals(exactSign(ax, ay, bx, by, cx, up), sign(ax, ay, bx, by, cx, up));
+            assertEquals(exactSign(ax, ay, bx, by, cx, down), sign(ax, ay, bx, by, cx, down));
+        }
+    }
+
+    @Test
+    void matchesExactSignForRandomPoints() {
+        Random random = new Random(7);
+        for(int n = 0; n < 20000; n++) {
+            double ax = random.nextDouble(), ay = random.nextDouble();
+            double bx = random.nextDouble(), by = random.nextDouble();
+            // c near the line through a and b
+            double t = random.nextDouble() * 4 - 2;
+            double cx = ax + t * (bx - ax) + (random.nextInt(5) - 2) * Math.ulp(ax);
+            double cy = ay + t * (by - ay) + (random.nextInt(5) - 2) * Math.ulp(ay);
+            assertEquals(exactSign(ax, ay, bx, by, cx, cy), sign(ax, ay, bx, by, cx, cy));
+        }
+    }
+
+    @Test
+    void swappingPointsFlipsTheSign() {
+        Random random = new Random(11);
+        for(int n = 0; n < 2000; n++) {
+            double ax = 0.5 + random.nextInt(64) * Math.ulp(0.5), ay = 0.5 + random.nextInt(64) * Math.ulp(0.5);
+            double bx = 12, by = 12, cx = 24, cy = 24;
+            int s = sign(ax, ay, bx, by, cx, cy);
+            assertEquals(s, sign(bx, by, cx, cy, ax, ay));
+            assertEquals(s, sign(cx, cy, ax, ay, bx, by));
+            assertEquals(-s, sign(bx, by, ax, ay, cx, cy));
+            assertEquals(-s, sign(ax, ay, cx, cy, bx, by));
+        }
+    }
+}
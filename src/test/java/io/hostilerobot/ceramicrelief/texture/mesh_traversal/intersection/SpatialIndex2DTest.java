@@ -0,0 +1,176 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialIndex2DTest {
+    private static final List<Supplier<SpatialIndex2D>> INDEXES = List.of(
+            RStarTreeIndex2D::new, QuadTreeIndex2D::new, GridIndex2D::new, () -> new GridIndex2D(0.5));
+
+    /**
+     * an index next to a plain list of what went into it, checked against each other on every query
+     */
+    private static final class Checked {
+        private final SpatialIndex2D index;
+        private final List<Triangle2D> inserted = new ArrayList<>();
+
+        private Checked(SpatialIndex2D index) {
+            this.index = index;
+        }
+
+        void insert(Triangle2D triangle) {
+            index.insert(triangle);
+            inserted.add(triangle);
+            assertEquals(inserted.size(), index.size());
+        }
+
+        boolean query(Triangle2D triangle) {
+            boolean expected = false;
+            for(Triangle2D other : inserted) {
+                if(triangle.intersects(other)) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals(expected, index.anyIntersects(triangle), () -> index.getClass().getSimpleName() + " " + inserted.size());
+            return expected;
+        }
+
+        void clear() {
+            index.clear();
+            inserted.clear();
+            assertEquals(0, index.size());
+        }
+    }
+
+    private static Triangle2D randomTriangle(Random random, double x, double y, double range, double size) {
+        double ax = x + random.nextDouble() * range, ay = y + random.nextDouble() * range;
+        return new Triangle2D(ax, ay, ax + random.nextDouble() * size, ay + random.nextDouble() * size,
+                ax + random.nextDouble() * size - size / 2, ay + random.nextDouble() * size - size / 2);
+    }
+
+    // queries, then inserts the triangle if nothing overlaps it, as the traversal does. Returns how many were inserted
+    private static int fill(Checked checked, Random random, int count, double x, double y, double range, double size) {
+        int inserted = 0;
+        for(int n = 0; n < count; n++) {
+            Triangle2D triangle = randomTriangle(random, x, y, range, size);
+            if(!checked.query(triangle)) {
+                checked.insert(triangle);
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+
+    @Test
+    void matchesBruteForce() {
+        for(Supplier<SpatialIndex2D> supplier : INDEXES) {
+            Random random = new Random(1);
+            Checked checked = new Checked(supplier.get());
+            // placed sparsely, so a good share of queries pass and get inserted
+            assertTrue(fill(checked, random, 1500, 0, 0, 40, 1) > 300);
+            // then everything, overlapping or not
+            for(int n = 0; n < 300; n++) {
+                checked.insert(randomTriangle(random, 0, 0, 40, 2));
+            }
+            for(int n = 0; n < 1000; n++) {
+                checked.query(randomTriangle(random, -5, -5, 50, random.nextDouble() * 4));
+            }
+        }
+    }
+
+    @Test
+    void clearedIndexIsReused() {
+        for(Supplier<SpatialIndex2D> supplier : INDEXES) {
+            Random random = new Random(2);
+            Checked checked = new Checked(supplier.get());
+            fill(checked, random, 500, 0, 0, 20, 1);
+            checked.clear();
+            assertFalse(checked.index.anyIntersects(new Triangle2D(-1e9, -1e9, 1e9, -1e9, 0, 1e9)));
+            // the next partition is somewhere else, at another scale
+            fill(checked, random, 500, 5000, -5000, 2000, 100);
+            checked.clear();
+            fill(checked, random, 500, 0.25, 0.25, 0.01, 0.001);
+        }
+    }
+
+    @Test
+    void growsInEveryDirection() {
+        for(Supplier<SpatialIndex2D> supplier : INDEXES) {
+            Random random = new Random(3);
+            Checked checked = new Checked(supplier.get());
+            checked.insert(new Triangle2D(0, 0, 1, 0, 0, 1));
+            double[][] corners = {{1000, 1000}, {-1000, 1000}, {1000, -1000}, {-1000, -1000}, {1e6, 0}, {0, -1e6}};
+            for(double[] corner : corners) {
+                Triangle2D far = new Triangle2D(corner[0], corner[1], corner[0] + 1, corner[1], corner[0], corner[1] + 1);
+                assertFalse(checked.query(far));
+                checked.insert(far);
+                assertTrue(checked.query(new Triangle2D(corner[0] + 0.1, corner[1] + 0.1, corner[0] + 0.2, corner[1] + 0.1,
+                        corner[0] + 0.1, corner[1] + 0.2)));
+                fill(checked, random, 50, corner[0] - 20, corner[1] - 20, 40, 2);
+            }
+            assertTrue(checked.query(new Triangle2D(0.1, 0.1, 0.2, 0.1, 0.1, 0.2)));
+            for(int n = 0; n < 500; n++) {
+                checked.query(randomTriangle(random, -1100, -1100, 2200, random.nextDouble() * 300));
+            }
+        }
+    }
+
+    @Test
+    void largeTrianglesAmongSmallOnes() {
+        for(Supplier<SpatialIndex2D> supplier : INDEXES) {
+            Random random = new Random(4);
+            Checked checked = new Checked(supplier.get());
+            // the first triangle sizes the grid's cells, so the large ones cover far more than its limit
+            fill(checked, random, 300, 0, 0, 30, 0.5);
+            checked.insert(new Triangle2D(-100, -100, 200, -100, -100, 200));
+            checked.insert(new Triangle2D(40, 0, 80, 0, 40, 40));
+            for(int n = 0; n < 500; n++) {
+                checked.query(randomTriangle(random, -120, -120, 340, 0.5));
+            }
+            // queries covering too many cells as well
+            for(int n = 0; n < 100; n++) {
+                checked.query(randomTriangle(random, -120, -120, 340, 150));
+            }
+        }
+    }
+
+    @Test
+    void degenerateAndNaNTriangles() {
+        double nan = Double.NaN, inf = Double.POSITIVE_INFINITY;
+        Triangle2D[] odd = {
+                new Triangle2D(0, 0, 0, 0, nan, nan),              // a face whose first two points coincide
+                new Triangle2D(nan, 0, 1, 1, 2, 0),
+                new Triangle2D(3, 3, 3, 3, 3, 3),                  // a single point
+                new Triangle2D(0, 5, 2, 5, 4, 5),                  // points in a line
+                new Triangle2D(-inf, 0, 1, 1, 1, 0),
+                new Triangle2D(0, 0, inf, inf, 0, 1),
+                new Triangle2D(1e300, 1e300, -1e300, 1e300, 0, -1e300),
+        };
+        for(Supplier<SpatialIndex2D> supplier : INDEXES) {
+            // one of them first, as a traversal of a degenerate first face would
+            for(Triangle2D first : odd) {
+                Random random = new Random(5);
+                Checked checked = new Checked(supplier.get());
+                checked.insert(first);
+                for(Triangle2D triangle : odd) {
+                    checked.query(triangle);
+                }
+                fill(checked, random, 300, -10, -10, 20, 1);
+                for(Triangle2D triangle : odd) {
+                    checked.query(triangle);
+                    checked.insert(triangle);
+                }
+                for(int n = 0; n < 300; n++) {
+                    checked.query(randomTriangle(random, -10, -10, 20, 1));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Triangle2DTest {
+
+    private static void assertOverlap(boolean expected, Triangle2D a, Triangle2D b) {
+        assertEquals(expected, a.intersects(b));
+        assertEquals(expected, b.intersects(a));
+    }
+
+    @Test
+    void sharedEdgeDoesNotOverlap() {
+        Triangle2D a = new Triangle2D(0, 0, 1, 0, 0, 1);
+        assertOverlap(false, a, new Triangle2D(1, 0, 1, 1, 0, 1));
+        // the same, winding the other way
+        assertOverlap(false, a, new Triangle2D(0, 1, 1, 1, 1, 0));
+        // a shared edge whose points aren't round numbers
+        Triangle2D b = new Triangle2D(0.1, 0.1, 0.7, 0.3, 0.2, 0.9);
+        assertOverlap(false, b, new Triangle2D(0.7, 0.3, 0.2, 0.9, 0.95, 0.85));
+    }
+
+    @Test
+    void sharedVertexDoesNotOverlap() {
+        Triangle2D a = new Triangle2D(0, 0, 1, 0, 0, 1);
+        assertOverlap(false, a, new Triangle2D(0, 0, -1, 0, 0, -1));
+        assertOverlap(false, a, new Triangle2D(1, 0, 2, 0, 2, 1));
+    }
+
+    @Test
+    void touchingAlongPartOfAnEdgeDoesNotOverlap() {
+        Triangle2D a = new Triangle2D(0, 0, 2, 0, 0, 2);
+        assertOverlap(false, a, new Triangle2D(0.5, 0, 1.5, 0, 1, -1));
+        // a point of one on the middle of a side of the other
+        assertOverlap(false, a, new Triangle2D(1, 1, 3, 1, 1, 3));
+    }
+
+    @Test
+    void pointAcrossASideByAnUlp() {
+        // a is below x + y = 1. b has a point near that line and the rest far above it, so it overlaps a
+        // only when that point is strictly below the line
+        Triangle2D a = new Triangle2D(0, 0, 1, 0, 0, 1);
+        for(double t : new double[]{0.1, 0.3, 0.7, 0.9}) {
+            double y = 1 - t;
+            for(int k = -3; k <= 3; k++) {
+                double py = y;
+                for(int step = 0; step < Math.abs(k); step++) {
+                    py = k < 0 ? Math.nextDown(py) : Math.nextUp(py);
+                }
+                boolean below = new BigDecimal(t).add(new BigDecimal(py)).compareTo(BigDecimal.ONE) < 0;
+                Triangle2D b = new Triangle2D(t, py, t + 1, py + 1, t + 2, py);
+                assertOverlap(below, a, b);
+            }
+        }
+    }
+
+    @Test
+    void containedOverlaps() {
+        Triangle2D outer = new Triangle2D(0, 0, 10, 0, 0, 10);
+        assertOverlap(true, outer, new Triangle2D(1, 1, 2, 1, 1, 2));
+        assertOverlap(true, outer, new Triangle2D(1, 2, 2, 1, 1, 1));
+        // inside, touching a side
+        assertOverlap(true, outer, new Triangle2D(0, 1, 2, 1, 0, 3));
+        assertOverlap(true, outer, new Triangle2D(0, 0, 10, 0, 0, 10));
+    }
+
+    @Test
+    void crossingOverlaps() {
+        assertOverlap(true, new Triangle2D(0, 0, 4, 0, 2, 3), new Triangle2D(0, 2, 2, -1, 4, 2));
+        // no point of either inside the other
+        assertOverlap(true, new Triangle2D(0, 1, 4, 1, 2, 5), new Triangle2D(0, 3, 2, -1, 4, 3));
+    }
+
+    @Test
+    void apartDoesNotOverlap() {
+        Triangle2D a = new Triangle2D(0, 0, 1, 0, 0, 1);
+        assertOverlap(false, a, new Triangle2D(5, 5, 6, 5, 5, 6));
+        // bounds overlap, but the hypotenuse divides them
+        assertOverlap(false, a, new Triangle2D(0.6, 0.6, 1, 0.6, 0.6, 1));
+    }
+
+    @Test
+    void pointsInALine() {
+        Triangle2D a = new Triangle2D(0, 0, 4, 0, 0, 4);
+        // crosses a
+        assertOverlap(true, a, new Triangle2D(-1, 1, 1, 1, 3, 1));
+        // along a side of a
+        assertOverlap(false, a, new Triangle2D(1, 0, 2, 0, 3, 0));
+        // away from a
+        assertOverlap(false, a, new Triangle2D(5, 5, 6, 6, 7, 7));
+    }
+
+    @Test
+    void containsPoints() {
+        Triangle2D a = new Triangle2D(0, 0, 4, 0, 0, 4);
+        assertTrue(a.contains(1, 1));
+        assertFalse(a.contains(2, 2));
+        assertFalse(a.contains(0, 1));
+        assertFalse(a.contains(3, 3));
+        assertTrue(new Triangle2D(0, 4, 4, 0, 0, 0).contains(1, 1));
+        assertFalse(new Triangle2D(0, 0, 1, 1, 2, 2).contains(1, 1));
+    }
+
+    @Test
+    void intersectsBounds() {
+        Triangle2D a = new Triangle2D(0, 0, 4, 0, 0, 4);
+        assertTrue(a.intersectsBounds(1, 1, 2, 2));
+        assertTrue(a.intersectsBounds(-1, -1, 5, 5));
+        // the corner of the box is on the hypotenuse
+        assertFalse(a.intersectsBounds(2, 2, 3, 3));
+        assertFalse(a.intersectsBounds(3, 3, 4, 4));
+        assertFalse(a.intersectsBounds(5, 0, 6, 1));
+    }
+}
@@ -0,0 +1,147 @@
+package io.hostilerobot.ceramicrelief.texture.mesh_traversal.intersection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TriangleBatch2DTest {
+
+    private static TriangleBatch2D batch(List<Triangle2D> triangles) {
+        TriangleBatch2D batch = new TriangleBatch2D();
+        for(Triangle2D triangle : triangles) {
+            batch.add(triangle);
+        }
+        return batch;
+    }
+
+    // the lowest index in [from, to) of a triangle that overlaps query by the scalar test, or -1
+    private static int firstIntersecting(List<Triangle2D> triangles, Triangle2D query, int from, int to) {
+        for(int idx = from; idx < to; idx++) {
+            if(query.intersects(triangles.get(idx))) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    // every query against every range starting at each triangle, through both the range and the ID list
+    private static void assertMatchesScalar(List<Triangle2D> triangles, List<Triangle2D> queries) {
+        TriangleBatch2D batch = batch(triangles);
+        int size = triangles.size();
+        int[] reversed = new int[size];
+        for(int idx = 0; idx < size; idx++) {
+            reversed[idx] = size - 1 - idx;
+        }
+        for(Triangle2D query : queries) {
+            for(int from = 0; from < size; from += 3) {
+                assertEquals(firstIntersecting(triangles, query, from, size), batch.firstIntersecting(query, from, size));
+            }
+            int expected = -1;
+            for(int id : reversed) {
+                if(query.intersects(triangles.get(id))) {
+                    expected = id;
+                    break;
+                }
+            }
+            assertEquals(expected, batch.firstIntersecting(query, reversed, 0, size));
+            assertEquals(expected >= 0, batch.anyIntersects(query, 0, size));
+        }
+    }
+
+    // a grid of squares split into two faces, turned by an angle so no coordinate is a round number.
+    // Neighbors share their points exactly, as faces of a texture do
+    private static List<Triangle2D> turnedGrid(int size, double angle, double scale) {
+        double cos = Math.cos(angle) * scale, sin = Math.sin(angle) * scale;
+        List<Triangle2D> triangles = new ArrayList<>();
+        for(int i = 0; i < size; i++) {
+            for(int j = 0; j < size; j++) {
+                double ax = cos * i - sin * j, ay = sin * i + cos * j;
+                double bx = cos * (i + 1) - sin * j, by = sin * (i + 1) + cos * j;
+                double cx = cos * i - sin * (j + 1), cy = sin * i + cos * (j + 1);
+                double dx = cos * (i + 1) - sin * (j + 1), dy = sin * (i + 1) + cos * (j + 1);
+                triangles.add(new Triangle2D(ax, ay, bx, by, dx, dy));
+                triangles.add(new Triangle2D(ax, ay, dx, dy, cx, cy));
+            }
+        }
+        return triangles;
+    }
+
+    @Test
+    void matchesScalarOnRandomTriangles() {
+        Random random = new Random(3);
+        List<Triangle2D> triangles = new ArrayList<>();
+        List<Triangle2D> queries = new ArrayList<>();
+        for(int n = 0; n < 200; n++) {
+            triangles.add(randomTriangle(random, 10, 1.5));
+        }
+        for(int n = 0; n < 100; n++) {
+            queries.add(randomTriangle(random, 10, 3));
+        }
+        assertMatchesScalar(triangles, queries);
+    }
+
+    @Test
+    void matchesScalarOnTouchingTriangles() {
+        // points on a small integer lattice, so many triangles share points and sides, or have points in a line
+        Random random = new Random(5);
+        List<Triangle2D> triangles = new ArrayList<>();
+        for(int n = 0; n < 150; n++) {
+            triangles.add(new Triangle2D(random.nextInt(5), random.nextInt(5), random.nextInt(5),
+                    random.nextInt(5), random.nextInt(5), random.nextInt(5)));
+        }
+        assertMatchesScalar(triangles, triangles);
+    }
+
+    @Test
+    void neighborsInAGridDoNotOverlap() {
+        List<Triangle2D> triangles = turnedGrid(8, 0.3, 0.1);
+        TriangleBatch2D batch = batch(triangles);
+        for(int idx = 0; idx < triangles.size(); idx++) {
+            Triangle2D triangle = triangles.get(idx);
+            assertEquals(-1, batch.firstIntersecting(triangle, 0, idx));
+            assertEquals(-1, batch.firstIntersecting(triangle, idx + 1, triangles.size()));
+            assertEquals(idx, batch.firstIntersecting(triangle, idx, triangles.size()));
+        }
+        assertMatchesScalar(triangles, turnedGrid(4, 0.3 + 1e-12, 0.2));
+    }
+
+    @Test
+    void matchesScalarOnNaNAndInfiniteTriangles() {
+        double nan = Double.NaN, inf = Double.POSITIVE_INFINITY;
+        List<Triangle2D> triangles = new ArrayList<>(List.of(
+                new Triangle2D(0, 0, 0, 0, nan, nan),
+                new Triangle2D(nan, 0, 1, 1, 2, 0),
+                new Triangle2D(-inf, 0, 1, 1, 1, 0),
+                new Triangle2D(0, 0, inf, inf, 0, 1)));
+        // once on their own, where the lanes left over after the vectors take them, then among enough to fill vectors
+        assertMatchesScalar(triangles, triangles);
+        Random random = new Random(9);
+        for(int n = 0; n < 40; n++) {
+            triangles.add(randomTriangle(random, 4, 2));
+        }
+        assertMatchesScalar(triangles, triangles);
+    }
+
+    @Test
+    void clearKeepsNothing() {
+        TriangleBatch2D batch = new TriangleBatch2D();
+        Triangle2D triangle = new Triangle2D(0, 0, 1, 0, 0, 1);
+        for(int n = 0; n < 40; n++) {
+            batch.add(triangle);
+        }
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertFalse(batch.anyIntersects(triangle, 0, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.firstIntersecting(triangle, 0, 1));
+    }
+
+    private static Triangle2D randomTriangle(Random random, double range, double size) {
+        double x = random.nextDouble() * range, y = random.nextDouble() * range;
+        return new Triangle2D(x, y, x + random.nextDouble() * size, y + random.nextDouble() * size,
+                x + random.nextDouble() * size - size / 2, y + random.nextDouble() * size - size / 2);
+    }
+}
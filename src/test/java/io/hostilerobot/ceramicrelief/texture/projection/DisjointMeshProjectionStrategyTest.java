@@ -0,0 +1,196 @@
+package io.hostilerobot.ceramicrelief.texture.projection;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.qmesh.QMeshEdge;
+import io.hostilerobot.ceramicrelief.texture.TEdgeConnectionPolicy;
+import io.hostilerobot.ceramicrelief.texture.TFace;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.DFSMeshPartitionTraversal;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.ProjectedTextureInfo;
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DisjointMeshProjectionStrategyTest {
+    private static final int SIZE = 4;
+
+    private static DisjointMeshProjectionStrategy strategy() {
+        return new DisjointMeshProjectionStrategy(new DFSMeshPartitionTraversal(), ProjectionTestMeshes.stackingPacker());
+    }
+
+    // every edge of the grid, with the policy the default projection gives it
+    private static Map<QMeshEdge, TEdgeConnectionPolicy> allEdges(QMesh mesh) {
+        return strategy().project(mesh, new HashMap<>()).getConnections();
+    }
+
+    // the two faces of a square of the grid are 2 * square and 2 * square + 1
+    private static int squareOf(int face) {
+        return face / 2;
+    }
+
+    /**
+     * seams everywhere but across the diagonal of each square, so every partition is a square of two faces.
+     * Then no partition is cut short by an overlap, and a partition that reprojecting keeps is the same one
+     * projecting from scratch would make
+     */
+    private static Map<QMeshEdge, TEdgeConnectionPolicy> squares(QMesh mesh) {
+        Map<QMeshEdge, TEdgeConnectionPolicy> policy = new HashMap<>();
+        for(QMeshEdge edge : allEdges(mesh).keySet()) {
+            boolean diagonal = squareOf(edge.getFace1()) == squareOf(edge.getFace2());
+            policy.put(edge, diagonal ? TEdgeConnectionPolicy.ADJACENT_EDGE : TEdgeConnectionPolicy.NO_EDGE);
+        }
+        return policy;
+    }
+
+    private static QMeshEdge edgeBetween(Map<QMeshEdge, TEdgeConnectionPolicy> edges, int square1, int square2) {
+        for(QMeshEdge edge : edges.keySet()) {
+            int a = squareOf(edge.getFace1()), b = squareOf(edge.getFace2());
+            if((a == square1 && b == square2) || (a == square2 && b == square1)) {
+                return edge;
+            }
+        }
+        throw new AssertionError("squares " + square1 + " and " + square2 + " don't share an edge");
+    }
+
+    // true if the two faces are in the same partition of result
+    private static boolean together(QMesh mesh, MeshProjectionResult result, int face1, int face2) {
+        return layout(mesh, result)[face1].partitionFaces.contains(face2);
+    }
+
+    /**
+     * how a result lays out one face: the faces of its partition, how many texture vertices that partition has,
+     * and where its points are, relative to the lowest corner of its partition. Packing moves whole partitions,
+     * so this is the same for two results that place faces the same way
+     */
+    private static final class FaceLayout {
+        private final TreeSet<Integer> partitionFaces;
+        private final int partitionTVertices;
+        private final double[] points;
+
+        private FaceLayout(TreeSet<Integer> partitionFaces, int partitionTVertices, double[] points) {
+            this.partitionFaces = partitionFaces;
+            this.partitionTVertices = partitionTVertices;
+            this.points = points;
+        }
+    }
+
+    private static FaceLayout[] layout(QMesh mesh, MeshProjectionResult result) {
+        assertTrue(result.isComplete());
+        List<ProjectedTextureInfo> partitions = result.getPartitions();
+        List<TFace> tFaces = result.getTFaces();
+        List<Point2D> tVertices = result.getTVertices();
+        FaceLayout[] layout = new FaceLayout[mesh.faceCount()];
+        int tFaceStart = 0, tVertexStart = 0;
+        for(ProjectedTextureInfo partition : partitions) {
+            int tFaceEnd = tFaceStart + partition.getTFaceCount();
+            int tVertexEnd = tVertexStart + partition.getTVertexCount();
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            for(Point2D vertex : tVertices.subList(tVertexStart, tVertexEnd)) {
+                minX = Math.min(minX, vertex.getX());
+                minY = Math.min(minY, vertex.getY());
+            }
+            TreeSet<Integer> faces = new TreeSet<>();
+            for(int face = 0; face < mesh.faceCount(); face++) {
+                int tFace = result.getFaceMapping().getTFace(face);
+                if(tFace >= tFaceStart && tFace < tFaceEnd) {
+                    faces.add(face);
+                }
+            }
+            for(int face : faces) {
+                TFace tFace = tFaces.get(result.getFaceMapping().getTFace(face));
+                double[] points = new double[6];
+                int[] ids = {tFace.getV1(), tFace.getV2(), tFace.getV3()};
+                for(int idx = 0; idx < 3; idx++) {
+                    assertTrue(ids[idx] >= tVertexStart && ids[idx] < tVertexEnd, "face " + face + " uses a vertex of another partition");
+                    points[idx * 2] = tVertices.get(ids[idx]).getX() - minX;
+                    points[idx * 2 + 1] = tVertices.get(ids[idx]).getY() - minY;
+                }
+                layout[face] = new FaceLayout(faces, partition.getTVertexCount(), points);
+            }
+            tFaceStart = tFaceEnd;
+            tVertexStart = tVertexEnd;
+        }
+        assertEquals(tFaces.size(), tFaceStart);
+        assertEquals(tVertices.size(), tVertexStart);
+        return layout;
+    }
+
+    private static void assertSameLayout(QMesh mesh, MeshProjectionResult expected, MeshProjectionResult actual) {
+        assertEquals(expected.getPartitions().size(), actual.getPartitions().size());
+        assertEquals(expected.getTVertices().size(), actual.getTVertices().size());
+        assertEquals(expected.getConnections(), actual.getConnections());
+        FaceLayout[] expectedLayout = layout(mesh, expected);
+        FaceLayout[] actualLayout = layout(mesh, actual);
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            assertNotNull(actualLayout[face], "face " + face + " is not placed");
+            assertEquals(expectedLayout[face].partitionFaces, actualLayout[face].partitionFaces, "face " + face);
+            assertEquals(expectedLayout[face].partitionTVertices, actualLayout[face].partitionTVertices, "face " + face);
+            assertArrayEquals(expectedLayout[face].points, actualLayout[face].points, 1e-9, "face " + face);
+        }
+    }
+
+    // reprojects previous with delta, and checks it against projecting from scratch with the edited policies
+    private static MeshProjectionResult reprojectMatchesProject(QMesh mesh, MeshProjectionResult previous,
+                                                                Map<QMeshEdge, TEdgeConnectionPolicy> delta) {
+        MeshProjectionResult reprojected = strategy().reproject(mesh, previous, delta);
+        assertNotSame(previous, reprojected);
+        Map<QMeshEdge, TEdgeConnectionPolicy> policy = new HashMap<>(previous.getConnections());
+        policy.putAll(delta);
+        assertSameLayout(mesh, strategy().project(mesh, policy), reprojected);
+        return reprojected;
+    }
+
+    @Test
+    void flippingOnePolicy() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        MeshProjectionResult previous = strategy().project(mesh, squares(mesh));
+        assertEquals(SIZE * SIZE, previous.getPartitions().size());
+        // the two faces of a square wind the same way, so mirroring across the diagonal leaves them apart
+        QMeshEdge diagonal = edgeBetween(previous.getConnections(), 5, 5);
+        MeshProjectionResult reprojected = reprojectMatchesProject(mesh, previous,
+                Map.of(diagonal, TEdgeConnectionPolicy.MIRRORED_EDGE));
+        assertEquals(TEdgeConnectionPolicy.MIRRORED_EDGE, reprojected.getConnections().get(diagonal));
+        assertEquals(SIZE * SIZE + 1, reprojected.getPartitions().size());
+        assertFalse(together(mesh, reprojected, 10, 11));
+    }
+
+    @Test
+    void mergingTwoPartitions() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        MeshProjectionResult previous = strategy().project(mesh, squares(mesh));
+        QMeshEdge between = edgeBetween(previous.getConnections(), 5, 6);
+        MeshProjectionResult merged = reprojectMatchesProject(mesh, previous,
+                Map.of(between, TEdgeConnectionPolicy.ADJACENT_EDGE));
+        assertEquals(SIZE * SIZE - 1, merged.getPartitions().size());
+        assertTrue(together(mesh, merged, 10, 12));
+        // square 0 wasn't touched, so it is copied over as it was
+        assertSame(previous.getPartitions().getFirst(), merged.getPartitions().getFirst());
+    }
+
+    @Test
+    void splittingAPartition() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        Map<QMeshEdge, TEdgeConnectionPolicy> policy = squares(mesh);
+        QMeshEdge between = edgeBetween(policy, 5, 6);
+        policy.put(between, TEdgeConnectionPolicy.ADJACENT_EDGE);
+        MeshProjectionResult previous = strategy().project(mesh, policy);
+        assertTrue(together(mesh, previous, 10, 12));
+
+        MeshProjectionResult split = reprojectMatchesProject(mesh, previous, Map.of(between, TEdgeConnectionPolicy.NO_EDGE));
+        assertEquals(previous.getPartitions().size() + 1, split.getPartitions().size());
+        assertFalse(together(mesh, split, 10, 12));
+    }
+
+    @Test
+    void unchangedPoliciesKeepThePreviousResult() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        MeshProjectionResult previous = strategy().project(mesh, squares(mesh));
+        QMeshEdge edge = previous.getConnections().keySet().iterator().next();
+        assertSame(previous, strategy().reproject(mesh, previous, Map.of(edge, previous.getConnections().get(edge))));
+    }
+}
@@ -0,0 +1,128 @@
+package io.hostilerobot.ceramicrelief.texture.projection;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.texture.TFace;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.DFSMeshPartitionTraversal;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.MeshPartitionTraversal;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.ProjectedTextureInfo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionBudgetTest {
+    private static final int SIZE = 8;
+
+    private static DisjointMeshProjectionStrategy strategy(MeshPartitionTraversal traversal) {
+        return new DisjointMeshProjectionStrategy(traversal, ProjectionTestMeshes.stackingPacker());
+    }
+
+    // each face is placed exactly once, and the partitions add up to all of them
+    private static void assertEveryFacePlaced(QMesh mesh, MeshProjectionResult result) {
+        assertTrue(result.isComplete());
+        assertEquals(mesh.faceCount(), result.getTFaces().size());
+        boolean[] used = new boolean[mesh.faceCount()];
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            assertTrue(result.getFaceMapping().isFacePlacedOnTexture(face), "face " + face);
+            int tFace = result.getFaceMapping().getTFace(face);
+            assertFalse(used[tFace], "tFace " + tFace + " is mapped twice");
+            used[tFace] = true;
+        }
+        int faces = 0;
+        for(ProjectedTextureInfo partition : result.getPartitions()) {
+            faces += partition.getTFaceCount();
+        }
+        assertEquals(mesh.faceCount(), faces);
+        assertEquals(mesh.faceCount(), result.getCompleteness().getFaceCount());
+        assertEquals(result.getPartitions().size(), result.getCompleteness().getPartitionCount());
+    }
+
+    @Test
+    void expiredDeadlineGivesSingleFacePartitions() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        ProjectionBudget budget = ProjectionBudget.until(System.nanoTime() - 1);
+        MeshProjectionResult result = strategy(new DFSMeshPartitionTraversal()).project(mesh, new HashMap<>(), budget);
+
+        assertEveryFacePlaced(mesh, result);
+        // no traversal got past its first face
+        assertEquals(mesh.faceCount(), result.getPartitions().size());
+        ProjectionCompleteness completeness = result.getCompleteness();
+        assertFalse(completeness.isComplete());
+        assertEquals(mesh.faceCount(), completeness.getIncompletePartitions());
+        assertEquals(mesh.faceCount(), completeness.getFacesInIncompletePartitions());
+        assertEquals(0, completeness.getCompletedFraction());
+        assertFalse(completeness.wasCancelled());
+    }
+
+    @Test
+    void cancellingFromAnotherThread() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        ProjectionBudget budget = ProjectionBudget.unlimited();
+        DFSMeshPartitionTraversal dfs = new DFSMeshPartitionTraversal();
+        int[] traversals = {0};
+        // cancels from another thread once the first traversal is done, and waits for it before going on
+        MeshPartitionTraversal cancelling = (initialFace, state) -> {
+            if(traversals[0]++ == 1) {
+                Thread canceller = new Thread(budget::cancel);
+                canceller.start();
+                assertDoesNotThrow(() -> canceller.join());
+            }
+            return dfs.projectSubset(initialFace, state);
+        };
+        MeshProjectionResult result = strategy(cancelling).project(mesh, new HashMap<>(), budget);
+
+        assertEveryFacePlaced(mesh, result);
+        List<ProjectedTextureInfo> partitions = result.getPartitions();
+        ProjectedTextureInfo first = partitions.getFirst();
+        assertTrue(first.isComplete());
+        assertTrue(first.getTFaceCount() > 1);
+        // every face the first traversal didn't reach is left on its own
+        int remaining = mesh.faceCount() - first.getTFaceCount();
+        assertEquals(1 + remaining, partitions.size());
+        ProjectionCompleteness completeness = result.getCompleteness();
+        assertTrue(completeness.wasCancelled());
+        assertFalse(completeness.isComplete());
+        assertEquals(remaining, completeness.getIncompletePartitions());
+        assertEquals(remaining, completeness.getFacesInIncompletePartitions());
+        assertEquals((double) first.getTFaceCount() / mesh.faceCount(), completeness.getCompletedFraction(), 1e-12);
+    }
+
+    @Test
+    void unlimitedBudgetMatchesPlainProject() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        DisjointMeshProjectionStrategy strategy = strategy(new DFSMeshPartitionTraversal());
+        MeshProjectionResult plain = strategy.project(mesh, new HashMap<>());
+        MeshProjectionResult unlimited = strategy.project(mesh, new HashMap<>(), ProjectionBudget.unlimited());
+
+        assertEveryFacePlaced(mesh, unlimited);
+        assertEquals(plain.getPartitions().size(), unlimited.getPartitions().size());
+        assertEquals(plain.getTVertices(), unlimited.getTVertices());
+        List<TFace> plainFaces = plain.getTFaces();
+        List<TFace> unlimitedFaces = unlimited.getTFaces();
+        for(int idx = 0; idx < plainFaces.size(); idx++) {
+            assertEquals(plainFaces.get(idx).getV1(), unlimitedFaces.get(idx).getV1());
+            assertEquals(plainFaces.get(idx).getV2(), unlimitedFaces.get(idx).getV2());
+            assertEquals(plainFaces.get(idx).getV3(), unlimitedFaces.get(idx).getV3());
+        }
+        for(int face = 0; face < mesh.faceCount(); face++) {
+            assertEquals(plain.getFaceMapping().getTFace(face), unlimited.getFaceMapping().getTFace(face));
+        }
+        assertEquals(plain.getConnections(), unlimited.getConnections());
+        assertTrue(unlimited.getCompleteness().isComplete());
+        assertEquals(1, unlimited.getCompleteness().getCompletedFraction());
+        assertFalse(unlimited.getCompleteness().wasCancelled());
+    }
+
+    @Test
+    void generousTimeoutCompletes() {
+        QMesh mesh = ProjectionTestMeshes.grid(SIZE);
+        MeshProjectionResult result = strategy(new DFSMeshPartitionTraversal())
+                .project(mesh, new HashMap<>(), ProjectionBudget.within(Duration.ofDays(1)));
+        assertEveryFacePlaced(mesh, result);
+        assertTrue(result.getCompleteness().isComplete());
+        assertThrows(IllegalArgumentException.class, () -> ProjectionBudget.within(Duration.ofSeconds(-1)));
+    }
+}
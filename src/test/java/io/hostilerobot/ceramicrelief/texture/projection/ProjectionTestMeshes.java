@@ -0,0 +1,58 @@
+package io.hostilerobot.ceramicrelief.texture.projection;
+
+import io.hostilerobot.ceramicrelief.qmesh.QMesh;
+import io.hostilerobot.ceramicrelief.texture.mesh_traversal.BoundingBox2D;
+import io.hostilerobot.ceramicrelief.texture.packing.BoxPacker2D;
+import javafx.geometry.Point2D;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * meshes and a packer for the projection tests
+ */
+final class ProjectionTestMeshes {
+    private ProjectionTestMeshes() {}
+
+    /**
+     * flat grid of (size x size) unit squares in the xy plane, each split into two faces
+     */
+    static QMesh grid(int size) {
+        double[] vertices = new double[(size + 1) * (size + 1) * 3];
+        for(int row = 0; row <= size; row++) {
+            for(int col = 0; col <= size; col++) {
+                int v = (row * (size + 1) + col) * 3;
+                vertices[v] = col;
+                vertices[v + 1] = row;
+            }
+        }
+        int[] faces = new int[size * size * 6];
+        int f = 0;
+        for(int row = 0; row < size; row++) {
+            for(int col = 0; col < size; col++) {
+                int a = row * (size + 1) + col;
+                int b = a + 1;
+                int c = a + size + 1;
+                int d = c + 1;
+                faces[f++] = a; faces[f++] = b; faces[f++] = d;
+                faces[f++] = a; faces[f++] = d; faces[f++] = c;
+            }
+        }
+        return QMesh.builder().vertices(vertices).faces(faces).build();
+    }
+
+    /**
+     * stacks the boxes on top of each other, with a gap between them
+     */
+    static BoxPacker2D stackingPacker() {
+        return boxes -> {
+            List<Point2D> packing = new ArrayList<>(boxes.size());
+            double y = 0;
+            for(BoundingBox2D box : boxes) {
+                packing.add(new Point2D(0, y));
+                y += box.getMaxY() - box.getMinY() + 1;
+            }
+            return packing;
+        };
+    }
+}